@@ -12,10 +12,12 @@ import ucar.nc2.*;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
 import ucar.nc2.util.CancelTask;
 
+import ucar.unidata.io.InMemoryRandomAccessFile;
 import ucar.unidata.io.RandomAccessFile;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * IOSP for BUFR data - version 2, use the preprocessor
@@ -40,6 +42,30 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
 
   //static public final Set<NetcdfDataset.Enhance> enhance = Collections.unmodifiableSet(EnumSet.of(NetcdfDataset.Enhance.ScaleMissing));
 
+  // see setExecutor()
+  static private volatile Executor executor;
+  static private volatile int maxMessagesPerTask = 16;
+  static private final int maxTasksAhead = 8; // per iterator
+
+  /**
+   * Set the Executor used to decode messages in parallel when iterating over the observations. Null (the default)
+   * means decode serially on the calling thread. The calling thread scans the message headers, and hands batches of
+   * at most messagesPerTask data messages to the executor; each task opens its own RandomAccessFile.
+   * The observations are still returned in file order.
+   *
+   * @param exec use this Executor, shared by all files
+   * @param messagesPerTask max number of messages decoded by one task, must be > 0
+   */
+  static public void setExecutor(Executor exec, int messagesPerTask) {
+    if (messagesPerTask < 1) throw new IllegalArgumentException("messagesPerTask must be > 0");
+    executor = exec;
+    maxMessagesPerTask = messagesPerTask;
+  }
+
+  static public void setExecutor(Executor exec) {
+    executor = exec;
+  }
+
 
   ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -121,12 +147,57 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
   @Override
   public Array readData(Variable v2, Section section) throws IOException, InvalidRangeException {
     //return new ArraySequence(obsStructure.makeStructureMembers(), getStructureIterator(null, -1), nelems);
-    return new ArraySequence(obsStructure.makeStructureMembers(), new SeqIter(), nelems);
+    return new ArraySequence(obsStructure.makeStructureMembers(), makeSeqIter(), nelems);
   }
 
   @Override
   public StructureDataIterator getStructureIterator(Structure s, int bufferSize) throws java.io.IOException {
-    return isSingle ? new SeqIterSingle() : new SeqIter();
+    return isSingle ? new SeqIterSingle() : makeSeqIter();
+  }
+
+  // the parallel iterator reopens the file in each task, so it must be a local file
+  private StructureDataIterator makeSeqIter() {
+    Executor exec = executor;
+    if (exec != null && !(raf instanceof InMemoryRandomAccessFile) && new File(raf.getLocation()).exists())
+      return new SeqIterParallel(exec);
+    return new SeqIter();
+  }
+
+  // next data message with the same data descriptors as the protoMessage, or null when done
+  private Message nextDataMessage() throws IOException {
+    while (scanner.hasNext()) {
+      Message m = scanner.next();
+      if (m == null) {
+        log.warn("BUFR scanner hasNext() true but next() null!");
+        return null;
+      }
+      if (m.containsBufrTable()) // data messages only
+        continue;
+
+      // mixed messages
+      if (!protoMessage.equals(m)) {
+        if (messHash == null) messHash = new HashSet<>(20);
+        if (!messHash.contains(m.hashCode())) {
+          log.warn("File " + raf.getLocation() + " has different BUFR message types hash=" + protoMessage.hashCode() + "; skipping");
+          messHash.add(m.hashCode());
+        }
+        continue;
+      }
+      return m;
+    }
+    return null;
+  }
+
+  private ArrayStructure readMessage(Message m, RandomAccessFile rafData) throws IOException {
+    ArrayStructure as;
+    if (m.dds.isCompressed()) {
+      MessageCompressedDataReader reader = new MessageCompressedDataReader();
+      as = reader.readEntireMessage(obsStructure, protoMessage, m, rafData, null);
+    } else {
+      MessageUncompressedDataReader reader = new MessageUncompressedDataReader();
+      as = reader.readEntireMessage(obsStructure, protoMessage, m, rafData, null);
+    }
+    return as;
   }
 
   private class SeqIter implements StructureDataIterator {
@@ -170,39 +241,132 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
     }
 
     private StructureDataIterator readNextMessage() throws IOException {
-      if (!scanner.hasNext()) return null;
-      Message m = scanner.next();
-      if (m == null) {
-          log.warn("BUFR scanner hasNext() true but next() null!");
-          return null;
-      }
-      if (m.containsBufrTable()) // data messages only
-        return readNextMessage();
+      Message m = nextDataMessage();
+      if (m == null) return null;
+      ArrayStructure as = readMessage(m, raf);
+      return as.getStructureDataIterator();
+    }
 
-      // mixed messages
-      if (!protoMessage.equals(m)) {
-        if (messHash == null) messHash = new HashSet<>(20);
-        if (!messHash.contains(m.hashCode()))  {
-          log.warn("File " + raf.getLocation() + " has different BUFR message types hash=" + protoMessage.hashCode() + "; skipping");
-          messHash.add(m.hashCode());
+    @Override
+    public int getCurrentRecno() {
+      return recnum - 1;
+    }
+
+    @Override
+    public void close() {
+      if (currIter != null) currIter.close();
+      currIter = null;
+      if (debugIter) System.out.printf("BUFR read recnum %d%n", recnum);
+    }
+  }
+
+  /*
+   The calling thread runs the MessageScanner, which only reads the message headers, and collects batches of data
+   messages. Each batch is decoded on the executor with its own RandomAccessFile. At most maxTasksAhead batches are
+   pending, and they are consumed in the order they were submitted, so the observations come back in file order.
+   If scanning or decoding fails, the batches still pending are cancelled.
+   */
+  private class SeqIterParallel implements StructureDataIterator {
+    private final Executor exec;
+    private final ArrayDeque<Future<List<ArrayStructure>>> pending = new ArrayDeque<>();
+    private Iterator<ArrayStructure> currBatch;
+    private StructureDataIterator currIter;
+    private boolean scanDone;
+    private int recnum = 0;
+
+    SeqIterParallel(Executor exec) {
+      this.exec = exec;
+      reset();
+    }
+
+    @Override
+    public StructureDataIterator reset() {
+      cancelPending();
+      recnum = 0;
+      currIter = null;
+      currBatch = null;
+      scanDone = false;
+      scanner.reset();
+      return this;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+      while (currIter == null || !currIter.hasNext()) {
+        if (currBatch == null || !currBatch.hasNext()) {
+          currBatch = nextBatch();
+          if (currBatch == null) {
+            currIter = null;
+            nelems = recnum;
+            return false;
+          }
+        } else {
+          currIter = currBatch.next().getStructureDataIterator();
         }
-        return readNextMessage();
       }
+      return true;
+    }
 
-      ArrayStructure as = readMessage(m);
-      return as.getStructureDataIterator();
+    @Override
+    public StructureData next() throws IOException {
+      recnum++;
+      return currIter.next();
     }
 
-    private ArrayStructure readMessage(Message m) throws IOException {
-      ArrayStructure as;
-      if (m.dds.isCompressed()) {
-        MessageCompressedDataReader reader = new MessageCompressedDataReader();
-        as = reader.readEntireMessage(obsStructure, protoMessage, m, raf, null);
-      } else {
-        MessageUncompressedDataReader reader = new MessageUncompressedDataReader();
-        as = reader.readEntireMessage(obsStructure, protoMessage, m, raf, null);
+    private Iterator<ArrayStructure> nextBatch() throws IOException {
+      try {
+        submitTasks();
+        Future<List<ArrayStructure>> future = pending.poll();
+        if (future == null) return null;
+        return future.get().iterator();
+
+      } catch (InterruptedException e) {
+        cancelPending();
+        Thread.currentThread().interrupt();
+        throw new IOException("BufrIosp2 interrupted", e);
+
+      } catch (ExecutionException e) {
+        cancelPending();
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) throw (IOException) cause;
+        throw new IOException(cause);
+
+      } catch (IOException | RuntimeException e) {
+        cancelPending();
+        throw e;
+      }
+    }
+
+    // scan ahead until maxTasksAhead batches are pending, or the file is done
+    private void submitTasks() throws IOException {
+      int messagesPerTask = maxMessagesPerTask;
+      while (!scanDone && pending.size() < maxTasksAhead) {
+        List<Message> batch = new ArrayList<>(messagesPerTask);
+        while (batch.size() < messagesPerTask) {
+          Message m = nextDataMessage();
+          if (m == null) {
+            scanDone = true;
+            break;
+          }
+          m.getRootDataDescriptor(); // construct the data descriptors here, not in the task
+          batch.add(m);
+        }
+        if (batch.isEmpty()) break;
+
+        FutureTask<List<ArrayStructure>> task = new FutureTask<>(new MessageReaderTask(batch));
+        try {
+          exec.execute(task);
+        } catch (RejectedExecutionException e) {
+          task.run(); // executor is shut down
+        }
+        pending.add(task);
       }
-      return as;
+    }
+
+    private void cancelPending() {
+      for (Future<List<ArrayStructure>> future : pending)
+        future.cancel(true);
+      pending.clear();
     }
 
     @Override
@@ -212,12 +376,32 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
 
     @Override
     public void close() {
+      cancelPending();
       if (currIter != null) currIter.close();
       currIter = null;
+      currBatch = null;
       if (debugIter) System.out.printf("BUFR read recnum %d%n", recnum);
     }
   }
 
+  private class MessageReaderTask implements Callable<List<ArrayStructure>> {
+    private final List<Message> messages; // in file order
+
+    MessageReaderTask(List<Message> messages) {
+      this.messages = messages;
+    }
+
+    @Override
+    public List<ArrayStructure> call() throws IOException {
+      List<ArrayStructure> result = new ArrayList<>(messages.size());
+      try (RandomAccessFile rafData = new RandomAccessFile(raf.getLocation(), "r")) {
+        for (Message m : messages)
+          result.add(readMessage(m, rafData));
+      }
+      return result;
+    }
+  }
+
   private class SeqIterSingle implements StructureDataIterator {
     StructureDataIterator currIter;
     int recnum = 0;
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.featurecollection.FeatureCollectionType;
+import thredds.inventory.CollectionUpdateType;
+import ucar.coord.Coordinate;
+import ucar.nc2.grib.collection.GribCdmIndex;
+import ucar.nc2.grib.collection.GribCollectionImmutable;
+import ucar.nc2.grib.collection.GribCollectionProto;
+import ucar.nc2.stream.NcStream;
+import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+import ucar.unidata.util.test.TestDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The groups of a collection are decoded from the index when first used;
+ * fetching one group alone must give the same group as decoding them all in order.
+ */
+@Category(NeedsCdmUnitTest.class)
+public class TestGribCollectionLazyGroups {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private FeatureCollectionConfig makeConfig() throws IOException {
+    FeatureCollectionConfig config = new FeatureCollectionConfig("gfs_2p5deg_lazy", "test/gfs_2p5deg_lazy", FeatureCollectionType.GRIB2,
+            TestDir.cdmUnitTestDir + "gribCollections/gfs_2p5deg/.*grib2", null, null, null, "directory", null);
+    GribCdmIndex.updateGribCollection(config, CollectionUpdateType.test, logger);
+    return config;
+  }
+
+  @Test
+  public void compareOneGroupWithAll() throws IOException {
+    FeatureCollectionConfig config = makeConfig();
+
+    List<String> all = new ArrayList<>();
+    try (GribCollectionImmutable gc = GribCdmIndex.openGribCollection(config, CollectionUpdateType.nocheck, logger)) {
+      Assert.assertNotNull(gc);
+      for (GribCollectionImmutable.Dataset ds : gc.getDatasets()) {
+        for (GribCollectionImmutable.GroupGC g : ds.getGroups())
+          Assert.assertTrue(g.getId(), g.getVariables().size() > 0);
+        all.add(summarize(ds.getGroup(ds.getGroupsSize() - 1)));
+      }
+    }
+
+    List<String> one = new ArrayList<>();
+    try (GribCollectionImmutable gc = GribCdmIndex.openGribCollection(config, CollectionUpdateType.nocheck, logger)) {
+      Assert.assertNotNull(gc);
+      for (GribCollectionImmutable.Dataset ds : gc.getDatasets())
+        one.add(summarize(ds.getGroup(ds.getGroupsSize() - 1)));
+    }
+
+    Assert.assertEquals(all, one);
+  }
+
+  // a group whose own length is right but whose contents are not a Group must fail the open, so the index is rebuilt
+  @Test
+  public void badGroupFailsOpen() throws IOException {
+    FeatureCollectionConfig config = makeConfig();
+    String indexFilename;
+    try (GribCollectionImmutable gc = GribCdmIndex.openGribCollection(config, CollectionUpdateType.nocheck, logger)) {
+      Assert.assertNotNull(gc);
+      indexFilename = gc.getLocation();
+    }
+
+    File bad = new File(tempFolder.getRoot(), new File(indexFilename).getName());
+    try (RandomAccessFile raf = new RandomAccessFile(indexFilename, "r");
+         FileOutputStream out = new FileOutputStream(bad)) {
+      Assert.assertEquals(GribCdmIndex.GribCollectionType.Partition2, GribCdmIndex.getType(raf)); // reads the magic
+      raf.readInt();
+      long skip = raf.readLong();
+      raf.skipBytes(skip);
+      long headerLen = raf.getFilePointer();
+      byte[] m = new byte[NcStream.readVInt(raf)];
+      raf.readFully(m);
+
+      byte[] header = new byte[(int) headerLen];
+      raf.seek(0);
+      raf.readFully(header);
+      byte[] proto = breakLastGroup(GribCollectionProto.GribCollection.parseFrom(m));
+      out.write(header);
+      NcStream.writeVInt(out, proto.length);
+      out.write(proto);
+    }
+
+    Assert.assertNull(GribCdmIndex.openCdmIndex(bad.getPath(), config, false, logger));
+  }
+
+  // the last group of the first dataset gets a coord whose only field has an invalid wire type
+  private byte[] breakLastGroup(GribCollectionProto.GribCollection proto) throws IOException {
+    GribCollectionProto.Dataset ds = proto.getDataset(0);
+    ByteArrayOutputStream dsBytes = new ByteArrayOutputStream();
+    CodedOutputStream dsOut = CodedOutputStream.newInstance(dsBytes);
+    ds.toBuilder().clearGroups().build().writeTo(dsOut);
+    for (int i = 0; i < ds.getGroupsCount(); i++) {
+      ByteString group = ds.getGroups(i).toByteString();
+      if (i == ds.getGroupsCount() - 1) {
+        byte[] badCoord = {(byte) WireFormat.makeTag(1, 7), 0};
+        ByteArrayOutputStream coordField = new ByteArrayOutputStream();
+        CodedOutputStream coordOut = CodedOutputStream.newInstance(coordField);
+        coordOut.writeByteArray(GribCollectionProto.Group.COORDS_FIELD_NUMBER, badCoord);
+        coordOut.flush();
+        group = group.concat(ByteString.copyFrom(coordField.toByteArray()));
+      }
+      dsOut.writeBytes(GribCollectionProto.Dataset.GROUPS_FIELD_NUMBER, group);
+    }
+    dsOut.flush();
+
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    CodedOutputStream out = CodedOutputStream.newInstance(result);
+    proto.toBuilder().clearDataset().build().writeTo(out);
+    out.writeByteArray(GribCollectionProto.GribCollection.DATASET_FIELD_NUMBER, dsBytes.toByteArray());
+    for (int i = 1; i < proto.getDatasetCount(); i++)
+      out.writeMessage(GribCollectionProto.GribCollection.DATASET_FIELD_NUMBER, proto.getDataset(i));
+    out.flush();
+    return result.toByteArray();
+  }
+
+  private String summarize(GribCollectionImmutable.GroupGC g) {
+    StringBuilder sb = new StringBuilder(g.getType() + " " + g.getId());
+    for (Coordinate coord : g.getCoordinates())
+      sb.append(" ").append(coord.getName()).append("=").append(coord.getSize());
+    for (GribCollectionImmutable.VariableIndex vi : g.getVariables())
+      sb.append(" ").append(vi.toStringFrom());
+    return sb.toString();
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.featurecollection.FeatureCollectionType;
+import thredds.inventory.CollectionUpdateType;
+import ucar.nc2.grib.collection.GribCdmIndex;
+import ucar.nc2.grib.collection.GribCollectionImmutable;
+import ucar.unidata.util.test.ParallelReads;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+import ucar.unidata.util.test.TestDir;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reading the gbx9 indexes in parallel must give the same collection index as reading them serially,
+ * with the files numbered in path order.
+ */
+@Category(NeedsCdmUnitTest.class)
+public class TestGribIndexCreationParallel {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Test
+  public void compareWithSerial() throws Exception {
+    FeatureCollectionConfig config = new FeatureCollectionConfig("gfs_2p5deg_parallel", "test/gfs_2p5deg_parallel", FeatureCollectionType.GRIB2,
+            TestDir.cdmUnitTestDir + "gribCollections/gfs_2p5deg/.*grib2", null, null, null, "directory", null);
+
+    ParallelReads.assertSameAsSerial(4, exec -> GribCdmIndex.setGbxIndexExecutor(exec, 2), () -> buildAndSummarize(config));
+  }
+
+  private List<String> buildAndSummarize(FeatureCollectionConfig config) throws IOException {
+    GribCdmIndex.updateGribCollection(config, CollectionUpdateType.always, logger);
+
+    List<String> result = new ArrayList<>();
+    try (GribCollectionImmutable gc = GribCdmIndex.openGribCollection(config, CollectionUpdateType.nocheck, logger)) {
+      Assert.assertNotNull(gc);
+      String last = null;
+      for (int fileno = 0; fileno < gc.getFiles().size(); fileno++) {
+        String filename = gc.getFilename(fileno);
+        if (last != null) Assert.assertTrue(filename, last.compareTo(filename) < 0);
+        result.add(filename);
+        last = filename;
+      }
+      for (GribCollectionImmutable.Dataset ds : gc.getDatasets())
+        for (GribCollectionImmutable.GroupGC g : ds.getGroups())
+          for (GribCollectionImmutable.VariableIndex vi : g.getVariables())
+            result.add(ds.getType() + " " + g.getId() + " " + vi.toStringFrom());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.bufr;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureDataIterator;
+import ucar.ma2.StructureMembers;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Sequence;
+import ucar.unidata.util.test.ParallelReads;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+import ucar.unidata.util.test.TestDir;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoding BUFR messages in parallel must return the same observations, in the same order, as decoding serially.
+ */
+@Category(NeedsCdmUnitTest.class)
+public class TestBufrReadParallel {
+
+  @Test
+  public void compareWithSerial() throws Exception {
+    String filename = TestDir.cdmUnitTestDir + "formats/bufr/userExamples/BUFR_99990223.bin";
+    List<String> serial = ParallelReads.assertSameAsSerial(4, exec -> BufrIosp2.setExecutor(exec, 3), () -> readAll(filename));
+    Assert.assertTrue(serial.size() > 0);
+  }
+
+  private List<String> readAll(String filename) throws IOException {
+    List<String> result = new ArrayList<>();
+    try (NetcdfFile ncfile = NetcdfFile.open(filename)) {
+      Sequence obs = (Sequence) ncfile.findVariable(BufrIosp2.obsRecord);
+      Assert.assertNotNull(obs);
+      try (StructureDataIterator iter = obs.getStructureIterator()) {
+        while (iter.hasNext()) {
+          StructureData sdata = iter.next();
+          StringBuilder sb = new StringBuilder();
+          for (StructureMembers.Member m : sdata.getMembers())
+            sb.append(m.getName()).append("=").append(sdata.getArray(m)).append(";");
+          result.add(sb.toString());
+        }
+      }
+    }
+    return result;
+  }
+}
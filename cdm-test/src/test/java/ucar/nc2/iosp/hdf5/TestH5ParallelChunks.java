@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.ma2.Array;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.ParallelReads;
+import ucar.unidata.util.test.TestDir;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Filtering the chunks of a variable on a thread pool must give the same data as filtering them serially. */
+@RunWith(Parameterized.class)
+@Category(NeedsCdmUnitTest.class)
+public class TestH5ParallelChunks {
+
+  @Parameterized.Parameters(name = "{0} {1} {2}")
+  public static List<Object[]> getTestParameters() {
+    List<Object[]> result = new ArrayList<>();
+    String fukushima = TestDir.cdmUnitTestDir + "formats/netcdf4/ncom_relo_fukushima_1km_tmp_2011040800_t000.nc4";
+    result.add(new Object[]{fukushima, "water_temp", null});
+    result.add(new Object[]{fukushima, "water_temp", "0,3:30:3,100:300,:"});
+    result.add(new Object[]{TestH5.testDir + "aura/OMI-Aura_L3-OMTO3e_2005m1214_v002-2006m0929t143855.he5",
+            "HDFEOS/GRIDS/OMI_Column_Amount_O3/Data_Fields/ColumnAmountO3", null});
+    return result;
+  }
+
+  private final String filename;
+  private final String varName;
+  private final String section;
+
+  public TestH5ParallelChunks(String filename, String varName, String section) {
+    this.filename = filename;
+    this.varName = varName;
+    this.section = section;
+  }
+
+  @Test
+  public void testSameAsSerial() throws Exception {
+    // chunksAhead smaller than the pool, so the window slides while tasks are still running
+    ParallelReads.assertSameAsSerial(4, exec -> H5iosp.setChunkExecutor(exec, 2), this::read);
+  }
+
+  // open the file each time, so the chunks are not served by the previous read's chunk cache
+  private ByteBuffer read() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFile.open(filename)) {
+      Variable v = ncfile.findVariable(varName);
+      assert v != null : varName;
+      Array data = (section == null) ? v.read() : v.read(section);
+      return data.getDataAsByteBuffer();
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.dataset;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.constants.CDM;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the old element by element enhancement on boxed Numbers (EnhanceScaleMissingUnsignedImpl.convertBoxed)
+ * against the primitive loops of convert(), for packed data with scale_factor, add_offset and _FillValue.
+ * threads > 0 runs convert() in parallel chunks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnhanceBenchmark {
+
+  @Param({"short", "byte", "int"})
+  public String type;
+
+  @Param({"false", "true"})
+  public boolean unsigned;
+
+  @Param({"0", "4"})
+  public int threads;
+
+  @Param({"1038240"}) // 0.25 degree global grid
+  public int npts;
+
+  private EnhanceScaleMissingUnsignedImpl enhance;
+  private Array packed;
+  private ExecutorService exec;
+
+  @Setup
+  public void setup() {
+    DataType dataType = DataType.getType(type);
+    NetcdfDataset ds = new NetcdfDataset();
+    VariableDS v = new VariableDS(ds, ds.getRootGroup(), null, "packed", dataType, "", null, null);
+    v.addAttribute(new Attribute(CDM.SCALE_FACTOR, dataType == DataType.INT ? (Number) 0.001 : (Number) 0.01f));
+    v.addAttribute(new Attribute(CDM.ADD_OFFSET, 273.15f));
+    v.addAttribute(new Attribute(CDM.FILL_VALUE, Array.factory(dataType, new int[] {1})));
+    if (unsigned)
+      v.addAttribute(new Attribute(CDM.UNSIGNED, "true"));
+    enhance = new EnhanceScaleMissingUnsignedImpl(v);
+
+    // random values, 1% are _FillValue (zero)
+    Random random = new Random(42);
+    packed = Array.factory(dataType, new int[] {npts});
+    for (int i = 0; i < npts; i++)
+      packed.setInt(i, random.nextInt(100) == 0 ? 0 : random.nextInt());
+
+    if (threads > 0) {
+      exec = Executors.newFixedThreadPool(threads);
+      EnhanceScaleMissingUnsignedImpl.setExecutor(exec, npts / threads / 2);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (exec != null) {
+      EnhanceScaleMissingUnsignedImpl.setExecutor(null, 1000 * 1000);
+      exec.shutdown();
+    }
+  }
+
+  @Benchmark
+  public void boxed(Blackhole bh) {
+    DataType outType = enhance.getScaledOffsetType();
+    Array out = Array.factory(outType, packed.getShape());
+    enhance.convertBoxed(packed, out, unsigned, true, true);
+    bh.consume(out);
+  }
+
+  @Benchmark
+  public void primitive(Blackhole bh) {
+    bh.consume(enhance.convert(packed, true, true, true));
+  }
+}
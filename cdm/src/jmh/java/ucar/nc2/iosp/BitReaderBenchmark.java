@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ucar.unidata.io.InMemoryRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare BitReader.bits2UInt() one value at a time against BitReader.unpack(), for the bit widths common in GRIB.
+ * The "raf" variants read through an in-memory RandomAccessFile, like the GRIB1 reader;
+ * the others read from a preloaded byte[], like the GRIB2 reader.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BitReaderBenchmark {
+
+  @Param({"8", "12", "13", "16", "24"})
+  public int nbits;
+
+  @Param({"1038240"}) // 0.25 degree global grid
+  public int npts;
+
+  private byte[] packed;
+  private int[] dest;
+
+  @Setup
+  public void setup() {
+    packed = new byte[(int) (((long) nbits * npts + 7) / 8)];
+    new Random(42).nextBytes(packed);
+    dest = new int[npts];
+  }
+
+  @Benchmark
+  public void bits2UInt(Blackhole bh) throws IOException {
+    BitReader reader = new BitReader(packed);
+    for (int i = 0; i < npts; i++)
+      dest[i] = (int) reader.bits2UInt(nbits);
+    bh.consume(dest);
+  }
+
+  @Benchmark
+  public void unpack(Blackhole bh) throws IOException {
+    BitReader reader = new BitReader(packed);
+    reader.unpack(nbits, npts, dest);
+    bh.consume(dest);
+  }
+
+  @Benchmark
+  public void bits2UIntRaf(Blackhole bh) throws IOException {
+    try (RandomAccessFile raf = new InMemoryRandomAccessFile("bench", packed)) {
+      BitReader reader = new BitReader(raf, 0);
+      for (int i = 0; i < npts; i++)
+        dest[i] = (int) reader.bits2UInt(nbits);
+    }
+    bh.consume(dest);
+  }
+
+  @Benchmark
+  public void unpackRaf(Blackhole bh) throws IOException {
+    try (RandomAccessFile raf = new InMemoryRandomAccessFile("bench", packed)) {
+      BitReader reader = new BitReader(raf, 0);
+      reader.unpack(nbits, npts, dest);
+    }
+    bh.consume(dest);
+  }
+}
@@ -16,6 +16,8 @@ import ucar.nc2.util.Misc;
 import javax.annotation.Nonnull;
 import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import static ucar.ma2.DataType.*;
 
@@ -545,6 +547,50 @@ class EnhanceScaleMissingUnsignedImpl implements EnhanceScaleMissingUnsigned {
     }
     
     Array out = Array.factory(outType, in.getShape());
+    Object src = in.get1DJavaArray(in.getDataType()); // canonical order, no copy if possible
+    Object dest = out.getStorage();
+    // NaN is always missing, so without missing values there is nothing to replace
+    boolean missing = convertMissing && hasMissing();
+
+    if (!canConvertFast(src, dest, convertUnsigned, applyScaleOffset, missing)) {
+      convertBoxed(in, out, convertUnsigned, applyScaleOffset, convertMissing);
+      return out;
+    }
+
+    int n = (int) out.getSize();
+    Executor exec = executor;
+    int chunkSize = minParallelSize;
+    if (exec == null || n < chunkSize) {
+      convertFast(src, dest, 0, n, convertUnsigned, applyScaleOffset, missing);
+      return out;
+    }
+
+    // convert contiguous chunks in parallel
+    boolean unsigned = convertUnsigned, scaleOffset = applyScaleOffset;
+    int nchunks = (n + chunkSize - 1) / chunkSize;
+    CompletableFuture<?>[] chunks = new CompletableFuture<?>[nchunks];
+    for (int i = 0; i < nchunks; i++) {
+      int start = (int) ((long) n * i / nchunks);
+      int end = (int) ((long) n * (i + 1) / nchunks);
+      chunks[i] = CompletableFuture.runAsync(() -> convertFast(src, dest, start, end, unsigned, scaleOffset, missing), exec);
+    }
+    CompletableFuture.allOf(chunks).join();
+    return out;
+  }
+
+  // see NetcdfDataset.setEnhanceExecutor()
+  static void setExecutor(Executor exec, int minSize) {
+    if (minSize <= 0)
+      throw new IllegalArgumentException("minSize must be > 0");
+    minParallelSize = minSize;
+    executor = exec;
+  }
+
+  static private volatile Executor executor;
+  static private volatile int minParallelSize = 1000 * 1000;
+
+  // element by element on boxed Numbers; handles every combination of types
+  void convertBoxed(Array in, Array out, boolean convertUnsigned, boolean applyScaleOffset, boolean convertMissing) {
     IndexIterator iterIn = in.getIndexIterator();
     IndexIterator iterOut = out.getIndexIterator();
   
@@ -563,7 +609,90 @@ class EnhanceScaleMissingUnsignedImpl implements EnhanceScaleMissingUnsigned {
       
       iterOut.setObjectNext(value);
     }
-  
-    return out;
+  }
+
+  // The primitive loops handle floating point results, unsigned widening of integers, and plain copies.
+  private boolean canConvertFast(Object src, Object dest, boolean unsigned, boolean scaleOffset, boolean missing) {
+    if (dest instanceof float[] || dest instanceof double[]) {
+      return src instanceof byte[] || src instanceof short[] || src instanceof int[] || src instanceof long[] ||
+             src instanceof float[] || src instanceof double[];
+    }
+    if (scaleOffset || missing) {
+      return false;
+    }
+    if (!unsigned) {
+      return src.getClass() == dest.getClass();
+    }
+    return (src instanceof byte[] && dest instanceof short[]) || (src instanceof short[] && dest instanceof int[]) ||
+           (src instanceof int[] && dest instanceof long[]);
+  }
+
+  // convert elements [start, end) of the 1D java arrays; canConvertFast() must be true
+  private void convertFast(Object src, Object dest, int start, int end, boolean unsigned, boolean scaleOffset,
+          boolean missing) {
+    float[] fdest = (dest instanceof float[]) ? (float[]) dest : null;
+    double[] ddest = (dest instanceof double[]) ? (double[]) dest : null;
+
+    if (fdest == null && ddest == null) {  // integral result: only widening or copying
+      if (!unsigned) {
+        System.arraycopy(src, start, dest, start, end - start);
+      } else if (src instanceof byte[]) {
+        byte[] s = (byte[]) src;
+        short[] d = (short[]) dest;
+        for (int i = start; i < end; i++) d[i] = (short) (s[i] & 0xff);
+      } else if (src instanceof short[]) {
+        short[] s = (short[]) src;
+        int[] d = (int[]) dest;
+        for (int i = start; i < end; i++) d[i] = s[i] & 0xffff;
+      } else {
+        int[] s = (int[]) src;
+        long[] d = (long[]) dest;
+        for (int i = start; i < end; i++) d[i] = s[i] & 0xffffffffL;
+      }
+      return;
+    }
+
+    if (src instanceof short[]) {
+      short[] s = (short[]) src;
+      for (int i = start; i < end; i++)
+        store(fdest, ddest, i, unsigned ? (s[i] & 0xffff) : s[i], scaleOffset, missing);
+    } else if (src instanceof byte[]) {
+      byte[] s = (byte[]) src;
+      for (int i = start; i < end; i++)
+        store(fdest, ddest, i, unsigned ? (s[i] & 0xff) : s[i], scaleOffset, missing);
+    } else if (src instanceof int[]) {
+      int[] s = (int[]) src;
+      for (int i = start; i < end; i++)
+        store(fdest, ddest, i, unsigned ? (s[i] & 0xffffffffL) : s[i], scaleOffset, missing);
+    } else if (src instanceof long[]) {
+      long[] s = (long[]) src;
+      for (int i = start; i < end; i++) {
+        long v = s[i];
+        double d = (unsigned && v < 0) ? DataType.widenNumberIfNegative(v).doubleValue() : v;
+        store(fdest, ddest, i, d, scaleOffset, missing);
+      }
+    } else if (src instanceof float[]) {
+      float[] s = (float[]) src;
+      for (int i = start; i < end; i++)
+        store(fdest, ddest, i, s[i], scaleOffset, missing);
+    } else {
+      double[] s = (double[]) src;
+      for (int i = start; i < end; i++)
+        store(fdest, ddest, i, s[i], scaleOffset, missing);
+    }
+  }
+
+  private void store(float[] fdest, double[] ddest, int i, double value, boolean scaleOffset, boolean missing) {
+    if (scaleOffset) {
+      value = scale * value + offset;
+    }
+    if (missing && isMissing(value)) {
+      value = Double.NaN;
+    }
+    if (fdest != null) {
+      fdest[i] = (float) value;
+    } else {
+      ddest[i] = value;
+    }
   }
 }
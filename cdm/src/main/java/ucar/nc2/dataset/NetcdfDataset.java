@@ -26,6 +26,7 @@ import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * NetcdfDataset extends the netCDF API, adding standard attribute parsing such as
@@ -233,6 +234,16 @@ public class NetcdfDataset extends ucar.nc2.NetcdfFile {
     return missingDataIsMissing;
   }
 
+  /**
+   * Apply unsigned, scale/offset and missing enhancements to large arrays in parallel.
+   *
+   * @param exec shared by all datasets; null means convert on the calling thread (default)
+   * @param minParallelSize arrays with at least this many elements are split into chunks of about this size, must be > 0
+   */
+  static public void setEnhanceExecutor(Executor exec, int minParallelSize) {
+    EnhanceScaleMissingUnsignedImpl.setExecutor(exec, minParallelSize);
+  }
+
   ////////////////////////////////////////////////////////////////////////////////////
   // NetcdfFile caching
 
@@ -46,6 +46,7 @@ public class CoverageCollection implements Closeable, CoordSysContainer {
   private final FeatureType coverageType;
   protected final CoverageReader reader;
   protected final HorizCoordSys hcs;
+  private volatile Closeable owner; // LOOK mutable
 
   /**
    *
@@ -274,7 +275,22 @@ public class CoverageCollection implements Closeable, CoordSysContainer {
     return null;
   }
 
+  /**
+   * Set by the FeatureDatasetCoverage that contains this collection while it is in a FileCache,
+   * so that close() returns the dataset to the cache instead of closing the reader.
+   *
+   * @param owner close this instead of the reader; null to close the reader.
+   */
+  void setOwner(Closeable owner) {
+    this.owner = owner;
+  }
+
   public void close() throws IOException {
+    Closeable owner = this.owner;
+    if (owner != null) {
+      owner.close();
+      return;
+    }
     try {
       reader.close();
     } catch (IOException e) {
@@ -18,6 +18,7 @@ import ucar.nc2.ft.FeatureDataset;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.util.cache.FileCacheIF;
+import ucar.nc2.util.cache.FileCacheable;
 import ucar.unidata.geoloc.LatLonRect;
 
 import javax.annotation.Nullable;
@@ -182,7 +183,7 @@ public class FeatureDatasetCoverage implements FeatureDataset, Closeable {
 
   @Override
   public long getLastModified() {
-    return 0; // LOOK
+    return (closer instanceof FileCacheable) ? ((FileCacheable) closer).getLastModified() : 0;
   }
 
   private FileCacheIF fileCache; // LOOK mutable
@@ -190,16 +191,19 @@ public class FeatureDatasetCoverage implements FeatureDataset, Closeable {
   @Override
   public synchronized void setFileCache(FileCacheIF fileCache) {
     this.fileCache = fileCache;
+    for (CoverageCollection cc : covCollections)   // closing the collection releases this dataset to the cache
+      cc.setOwner(fileCache == null ? null : this);
   }
 
+  // release any resources like file handles, while this sits unused in the FileCache
   @Override
   public void release() throws IOException {
-    // reader.release()
+    if (closer instanceof FileCacheable) ((FileCacheable) closer).release();
   }
 
   @Override
   public void reacquire() throws IOException {
-    // reader.reacquire()
+    if (closer instanceof FileCacheable) ((FileCacheable) closer).reacquire();
   }
 
   public synchronized void close() throws java.io.IOException {
@@ -210,6 +214,8 @@ public class FeatureDatasetCoverage implements FeatureDataset, Closeable {
   }
 
   private void reallyClose() throws IOException {
+    for (CoverageCollection cc : covCollections)
+      cc.setOwner(null);
     try {
       closer.close();
     } catch (IOException ioe) {
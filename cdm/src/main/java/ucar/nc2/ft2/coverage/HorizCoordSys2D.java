@@ -11,6 +11,7 @@ import ucar.unidata.geoloc.LatLonPointImpl;
 import ucar.unidata.geoloc.LatLonRect;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Formatter;
 import java.util.List;
 
@@ -117,18 +118,25 @@ public class HorizCoordSys2D extends HorizCoordSys {
   }
 
   // return y, x ranges
-  private Optional<List<RangeIterator>> computeBounds(LatLonRect llbb, int horizStride) {
+  Optional<List<RangeIterator>> computeBounds(LatLonRect llbb, int horizStride) {
     synchronized (this) {
       if (edges == null) edges = new Edges();
     }
-    return edges.computeBoundsExhaustive(llbb, horizStride);
+    return edges.computeBounds(llbb, horizStride);
   }
 
-  // assume this class is instantiated when these edges are needed
+  // assume this class is instantiated when these edges are needed.
+  // immutable once constructed, so shared by all requests on this HorizCoordSys2D
   private class Edges {
     private ArrayDouble.D2 latEdge, lonEdge;
     private MAMath.MinMax latMinMax, lonMinMax;
 
+    // spatial index: a grid of buckets over the lat/lon bounding box, each listing the cells (row * ncols + col)
+    // whose bounding box overlaps it. the cells of bucket b are bucketCells[bucketStart[b] .. bucketStart[b+1])
+    private int nbLat, nbLon;
+    private double bucketLat, bucketLon;
+    private int[] bucketStart, bucketCells;
+
     Edges() {
       latEdge = (ArrayDouble.D2) latAxis2D.getCoordBoundsAsArray();
       lonEdge = (ArrayDouble.D2) lonAxis2D.getCoordBoundsAsArray();
@@ -147,6 +155,82 @@ public class HorizCoordSys2D extends HorizCoordSys {
       if (debug)
         System.out.printf("Bounds (%d %d): lat= (%f,%f) lon = (%f,%f) %n",
                 nrows, ncols, latMinMax.min, latMinMax.max, lonMinMax.min, lonMinMax.max);
+
+      makeIndex();
+    }
+
+    private void makeIndex() {
+      // about 4 cells per bucket, with the aspect ratio of the grid
+      int nbuckets = Math.max(1, nrows * ncols / 4);
+      nbLat = (int) Math.max(1, Math.min(nbuckets, Math.round(Math.sqrt((double) nbuckets * nrows / ncols))));
+      nbLon = Math.max(1, nbuckets / nbLat);
+      bucketLat = (latMinMax.max - latMinMax.min) / nbLat;
+      bucketLon = (lonMinMax.max - lonMinMax.min) / nbLon;
+      if (!(bucketLat > 0)) bucketLat = 1.0; // single row, or all NaN
+      if (!(bucketLon > 0)) bucketLon = 1.0;
+
+      // count the cells in each bucket, then fill
+      bucketStart = new int[nbLat * nbLon + 1];
+      double[] bb = new double[4];
+      for (int row = 0; row < nrows; row++) {
+        for (int col = 0; col < ncols; col++) {
+          if (!cellBounds(row, col, bb)) continue;
+          for (int i = latBucket(bb[0]); i <= latBucket(bb[1]); i++)
+            for (int j = lonBucket(bb[2]); j <= lonBucket(bb[3]); j++)
+              bucketStart[i * nbLon + j + 1]++;
+        }
+      }
+      for (int b = 1; b < bucketStart.length; b++)
+        bucketStart[b] += bucketStart[b - 1];
+
+      bucketCells = new int[bucketStart[bucketStart.length - 1]];
+      int[] next = Arrays.copyOf(bucketStart, bucketStart.length - 1);
+      for (int row = 0; row < nrows; row++) {
+        for (int col = 0; col < ncols; col++) {
+          if (!cellBounds(row, col, bb)) continue;
+          for (int i = latBucket(bb[0]); i <= latBucket(bb[1]); i++)
+            for (int j = lonBucket(bb[2]); j <= lonBucket(bb[3]); j++)
+              bucketCells[next[i * nbLon + j]++] = row * ncols + col;
+        }
+      }
+
+      if (debug)
+        System.out.printf("Index (%d %d) buckets has %d entries for %d cells%n", nbLat, nbLon, bucketCells.length, nrows * ncols);
+    }
+
+    // bounding box {minLat, maxLat, minLon, maxLon} of the cell's corners that are not NaN; false if all are NaN
+    private boolean cellBounds(int row, int col, double[] bb) {
+      bb[0] = bb[2] = Double.MAX_VALUE;
+      bb[1] = bb[3] = -Double.MAX_VALUE;
+      boolean ok = false;
+      for (int i = row; i <= row + 1; i++) {
+        for (int j = col; j <= col + 1; j++) {
+          double lat = latEdge.get(i, j);
+          double lon = lonEdge.get(i, j);
+          if (Double.isNaN(lat) || Double.isNaN(lon)) continue;
+          bb[0] = Math.min(bb[0], lat);
+          bb[1] = Math.max(bb[1], lat);
+          bb[2] = Math.min(bb[2], lon);
+          bb[3] = Math.max(bb[3], lon);
+          ok = true;
+        }
+      }
+      return ok;
+    }
+
+    private boolean cellHasNaN(int row, int col) {
+      for (int i = row; i <= row + 1; i++)
+        for (int j = col; j <= col + 1; j++)
+          if (Double.isNaN(latEdge.get(i, j)) || Double.isNaN(lonEdge.get(i, j))) return true;
+      return false;
+    }
+
+    private int latBucket(double lat) {
+      return Math.max(0, Math.min(nbLat - 1, (int) ((lat - latMinMax.min) / bucketLat)));
+    }
+
+    private int lonBucket(double lon) {
+      return Math.max(0, Math.min(nbLon - 1, (int) ((lon - lonMinMax.min) / bucketLon)));
     }
 
     /**
@@ -159,70 +243,27 @@ public class HorizCoordSys2D extends HorizCoordSys {
      */
     public boolean findCoordElement(double wantLat, double wantLon, int[] rectIndex) {
       double wantLonNormal = LatLonPointImpl.lonNormalFrom(wantLon, lonMinMax.min);
-      return findCoordElementNoForce(wantLat, wantLonNormal, rectIndex);
+      return findCoordElementIndexed(wantLat, wantLonNormal, rectIndex);
     }
 
-    private boolean findCoordElementNoForce(double wantLat, double wantLon, int[] rectIndex) {
+    // only the cells in the point's bucket can contain it
+    private boolean findCoordElementIndexed(double wantLat, double wantLon, int[] rectIndex) {
       if (wantLat < latMinMax.min) return false;
       if (wantLat > latMinMax.max) return false;
       if (wantLon < lonMinMax.min) return false;
       if (wantLon > lonMinMax.max) return false;
 
-      double gradientLat = (latMinMax.max - latMinMax.min) / nrows;
-      double gradientLon = (lonMinMax.max - lonMinMax.min) / ncols;
-
-      double diffLat = wantLat - latMinMax.min;
-      double diffLon = wantLon - lonMinMax.min;
-
-      // initial guess
-      rectIndex[0] = (int) Math.round(diffLat / gradientLat);  // row
-      rectIndex[1] = (int) Math.round(diffLon / gradientLon);  // col
-
-      int count = 0;
-      while (true) {
-        count++;
-        if (debug) System.out.printf("%nIteration %d %n", count);
+      int b = latBucket(wantLat) * nbLon + lonBucket(wantLon);
+      for (int i = bucketStart[b]; i < bucketStart[b + 1]; i++) {
+        int row = bucketCells[i] / ncols;
+        int col = bucketCells[i] % ncols;
+        if (cellHasNaN(row, col)) continue;
+        rectIndex[0] = row;
+        rectIndex[1] = col;
         if (contains(wantLat, wantLon, rectIndex))
           return true;
-
-        if (!jump2(wantLat, wantLon, rectIndex))
-          return false;
-
-        // bouncing around
-        if (count > 10) {
-          // last ditch attempt
-          return incr(wantLat, wantLon, rectIndex);
-          //if (!ok)
-          //  log.error("findCoordElement didnt converge lat,lon = "+wantLat+" "+ wantLon);
-          //return ok;
-        }
       }
-    }
-
-    /**
-     * Is the point (lat,lon) contained in the (row, col) rectangle ?
-     *
-     * @param wantLat   lat of point
-     * @param wantLon   lon of point
-     * @param rectIndex rectangle row, col, will be clipped to [0, nrows), [0, ncols)
-     * @return true if contained
-     */
-    private boolean containsOld(double wantLat, double wantLon, int[] rectIndex) {
-      rectIndex[0] = Math.max(Math.min(rectIndex[0], nrows - 1), 0);
-      rectIndex[1] = Math.max(Math.min(rectIndex[1], ncols - 1), 0);
-
-      int row = rectIndex[0];
-      int col = rectIndex[1];
-
-      if (debug) System.out.printf(" (%d,%d) contains (%f,%f) in (lat=%f %f) (lon=%f %f) ?%n",
-              rectIndex[0], rectIndex[1], wantLat, wantLon,
-              latEdge.get(row, col), latEdge.get(row + 1, col), lonEdge.get(row, col), lonEdge.get(row, col + 1));
-
-      if (wantLat < latEdge.get(row, col)) return false;
-      if (wantLat > latEdge.get(row + 1, col)) return false;
-      if (wantLon < lonEdge.get(row, col)) return false;
-      if (wantLon > lonEdge.get(row, col + 1)) return false;
-      return true;
+      return false;
     }
 
     /**
@@ -297,143 +338,8 @@ public class HorizCoordSys2D extends HorizCoordSys {
       return det > 0;
     }
 
-    private boolean jumpOld(double wantLat, double wantLon, int[] rectIndex) {
-      int row = Math.max(Math.min(rectIndex[0], nrows - 1), 0);
-      int col = Math.max(Math.min(rectIndex[1], ncols - 1), 0);
-      double gradientLat = latEdge.get(row + 1, col) - latEdge.get(row, col);
-      double gradientLon = lonEdge.get(row, col + 1) - lonEdge.get(row, col);
-
-      double diffLat = wantLat - latEdge.get(row, col);
-      double diffLon = wantLon - lonEdge.get(row, col);
-
-      int drow = (int) Math.round(diffLat / gradientLat);
-      int dcol = (int) Math.round(diffLon / gradientLon);
-
-      if (debug) System.out.printf("   jump from %d %d (grad=%f %f) (diff=%f %f) (delta=%d %d)",
-              row, col, gradientLat, gradientLon,
-              diffLat, diffLon, drow, dcol);
-
-      if ((drow == 0) && (dcol == 0)) {
-        if (debug) System.out.printf("%n   incr:");
-        return incr(wantLat, wantLon, rectIndex);
-      } else {
-        rectIndex[0] = Math.max(Math.min(row + drow, nrows - 1), 0);
-        rectIndex[1] = Math.max(Math.min(col + dcol, ncols - 1), 0);
-        if (debug) System.out.printf(" to (%d %d)%n", rectIndex[0], rectIndex[1]);
-        if ((row == rectIndex[0]) && (col == rectIndex[1])) return false; // nothing has changed
-      }
-
-      return true;
-    }
-
-    /**
-     * jump to a new row,col
-     *
-     * @param wantLat   want this lat
-     * @param wantLon   want this lon
-     * @param rectIndex starting row, col and replaced by new guess
-     * @return true if new guess, false if failure
-     */
-  /*
-    choose x, y such that (matrix multiply) :
-
-    (wantx) = (fxx fxy)  (x)
-    (wanty)   (fyx fyy)  (y)
-
-     where fxx = d(fx)/dx  ~= delta lon in lon direction
-     where fxy = d(fx)/dy  ~= delta lon in lat direction
-     where fyx = d(fy)/dx  ~= delta lat in lon direction
-     where fyy = d(fy)/dy  ~= delta lat in lat direction
-
-    2 linear equations in 2 unknowns, solve in usual way
-   */
-    private boolean jump2(double wantLat, double wantLon, int[] rectIndex) {
-      int row = Math.max(Math.min(rectIndex[0], nrows - 1), 0);
-      int col = Math.max(Math.min(rectIndex[1], ncols - 1), 0);
-      double lat = latEdge.get(row, col);
-      double lon = lonEdge.get(row, col);
-      double diffLat = wantLat - lat;
-      double diffLon = wantLon - lon;
-
-      double dlatdy = latEdge.get(row + 1, col) - lat;
-      double dlatdx = latEdge.get(row, col + 1) - lat;
-      double dlondx = lonEdge.get(row, col + 1) - lon;
-      double dlondy = lonEdge.get(row + 1, col) - lon;
-
-      // solve for dlon
-
-      double dx = (diffLon - dlondy * diffLat / dlatdy) / (dlondx - dlatdx * dlondy / dlatdy);
-      // double dy =  (diffLat - dlatdx * diffLon / dlondx) / (dlatdy - dlatdx * dlondy / dlondx);
-      double dy = (diffLat - dlatdx * dx) / dlatdy;
-
-      if (debug)
-        System.out.printf("   jump from %d %d (dlondx=%f dlondy=%f dlatdx=%f dlatdy=%f) (diffLat,Lon=%f %f) (deltalat,Lon=%f %f)",
-                row, col, dlondx, dlondy, dlatdx, dlatdy,
-                diffLat, diffLon, dy, dx);
-
-      int drow = (int) Math.round(dy);
-      int dcol = (int) Math.round(dx);
-
-      if ((drow == 0) && (dcol == 0)) {
-        if (debug) System.out.printf("%n   incr:");
-        return incr(wantLat, wantLon, rectIndex);
-      } else {
-        rectIndex[0] = Math.max(Math.min(row + drow, nrows - 1), 0);
-        rectIndex[1] = Math.max(Math.min(col + dcol, ncols - 1), 0);
-        if (debug) System.out.printf(" to (%d %d)%n", rectIndex[0], rectIndex[1]);
-        if ((row == rectIndex[0]) && (col == rectIndex[1])) return false; // nothing has changed
-      }
-
-      return true;
-    }
-
-    private boolean incr(double wantLat, double wantLon, int[] rectIndex) {
-      int row = rectIndex[0];
-      int col = rectIndex[1];
-      double diffLat = wantLat - latEdge.get(row, col);
-      double diffLon = wantLon - lonEdge.get(row, col);
-
-      if (Math.abs(diffLat) > Math.abs(diffLon)) { // try lat first
-        rectIndex[0] = row + ((diffLat > 0) ? 1 : -1);
-        if (contains(wantLat, wantLon, rectIndex)) return true;
-        rectIndex[1] = col + ((diffLon > 0) ? 1 : -1);
-        if (contains(wantLat, wantLon, rectIndex)) return true;
-      } else {
-        rectIndex[1] = col + ((diffLon > 0) ? 1 : -1);
-        if (contains(wantLat, wantLon, rectIndex)) return true;
-        rectIndex[0] = row + ((diffLat > 0) ? 1 : -1);
-        if (contains(wantLat, wantLon, rectIndex)) return true;
-      }
-
-      // back to original, do box search
-      rectIndex[0] = row;
-      rectIndex[1] = col;
-      return box9(wantLat, wantLon, rectIndex);
-    }
-
-    // we think its got to be in one of the 9 boxes around rectIndex
-    private boolean box9(double wantLat, double wantLon, int[] rectIndex) {
-      int row = rectIndex[0];
-      int minrow = Math.max(row - 1, 0);
-      int maxrow = Math.min(row + 1, nrows);
-
-      int col = rectIndex[1];
-      int mincol = Math.max(col - 1, 0);
-      int maxcol = Math.min(col + 1, ncols);
-
-      if (debug) System.out.printf("%n   box9:");
-      for (int i = minrow; i <= maxrow; i++)
-        for (int j = mincol; j <= maxcol; j++) {
-          rectIndex[0] = i;
-          rectIndex[1] = j;
-          if (contains(wantLat, wantLon, rectIndex)) return true;
-        }
-
-      return false;
-    }
-
     // return y, x ranges
-    Optional<List<RangeIterator>> computeBoundsExhaustive(LatLonRect rect, int horizStride) {
+    Optional<List<RangeIterator>> computeBounds(LatLonRect rect, int horizStride) {
       LatLonPointImpl llpt = rect.getLowerLeftPoint();
       LatLonPointImpl urpt = rect.getUpperRightPoint();
 
@@ -477,17 +383,30 @@ public class HorizCoordSys2D extends HorizCoordSys {
         maxRow = ny;
       }
 
-      // brute force, examine every point LOOK BAD
-      for (int row = 0; row <= ny; row++) {
-        for (int col = 0; col <= nx; col++) {
-          double lat = latEdge.get(row, col);
-          double lon = lonEdge.get(row, col);
-
-          if ((lat >= miny) && (lat <= maxy) && (lon >= minx) && (lon <= maxx)) {
-            if (col > maxCol) maxCol = col;
-            if (col < minCol) minCol = col;
-            if (row > maxRow) maxRow = row;
-            if (row < minRow) minRow = row;
+      // every edge point is a corner of a cell listed in the bucket that contains the point,
+      // so only the corners of the cells in the buckets that overlap the rectangle need to be examined
+      if (miny <= latMinMax.max && maxy >= latMinMax.min && minx <= lonMinMax.max && maxx >= lonMinMax.min) {
+        int minLonBucket = lonBucket(minx), maxLonBucket = lonBucket(maxx);
+        for (int i = latBucket(miny); i <= latBucket(maxy); i++) {
+          for (int j = minLonBucket; j <= maxLonBucket; j++) {
+            int b = i * nbLon + j;
+            for (int k = bucketStart[b]; k < bucketStart[b + 1]; k++) {
+              int cellRow = bucketCells[k] / ncols;
+              int cellCol = bucketCells[k] % ncols;
+              for (int row = cellRow; row <= cellRow + 1; row++) {
+                for (int col = cellCol; col <= cellCol + 1; col++) {
+                  double lat = latEdge.get(row, col);
+                  double lon = lonEdge.get(row, col);
+
+                  if ((lat >= miny) && (lat <= maxy) && (lon >= minx) && (lon <= maxx)) {
+                    if (col > maxCol) maxCol = col;
+                    if (col < minCol) minCol = col;
+                    if (row > maxRow) maxRow = row;
+                    if (row < minRow) minRow = row;
+                  }
+                }
+              }
+            }
           }
         }
       }
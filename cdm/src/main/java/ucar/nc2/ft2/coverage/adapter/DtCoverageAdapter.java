@@ -14,6 +14,8 @@ import ucar.nc2.constants.FeatureType;
 import ucar.nc2.dataset.*;
 import ucar.nc2.ft2.coverage.*;
 import ucar.nc2.util.Misc;
+import ucar.nc2.util.cache.FileCacheIF;
+import ucar.nc2.util.cache.FileCacheable;
 import ucar.unidata.util.Parameter;
 
 import java.io.IOException;
@@ -27,7 +29,7 @@ import java.util.*;
  * @author caron
  * @since 5/1/2015
  */
-public class DtCoverageAdapter implements CoverageReader, CoordAxisReader {
+public class DtCoverageAdapter implements CoverageReader, CoordAxisReader, FileCacheable {
 
   public static FeatureDatasetCoverage factory(DtCoverageDataset proxy, Formatter errlog) {
     DtCoverageAdapter reader = new DtCoverageAdapter(proxy);
@@ -356,6 +358,29 @@ public class DtCoverageAdapter implements CoverageReader, CoordAxisReader {
     return proxy.getLocation();
   }
 
+  //////////////////////////////////////////////////////////////////////////////////////
+  // FileCacheable, for the FeatureDatasetCoverage that owns this reader
+
+  @Override
+  public long getLastModified() {
+    return proxy.getLastModified();
+  }
+
+  @Override
+  public void setFileCache(FileCacheIF fileCache) {
+    // the FeatureDatasetCoverage is cached, not the reader
+  }
+
+  @Override
+  public void release() throws IOException {
+    proxy.release();
+  }
+
+  @Override
+  public void reacquire() throws IOException {
+    proxy.reacquire();
+  }
+
   @Override
   public GeoReferencedArray readData(Coverage coverage, SubsetParams params, boolean canonicalOrder) throws IOException, InvalidRangeException {
     DtCoverage grid = (DtCoverage) coverage.getUserObject();
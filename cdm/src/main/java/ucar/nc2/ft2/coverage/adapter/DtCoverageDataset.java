@@ -441,4 +441,18 @@ public class DtCoverageDataset implements Closeable {
       ncd = null;
     }
   }
+
+  // release any resources like file handles
+  public void release() throws IOException {
+    if (ncd != null) ncd.release();
+  }
+
+  // reacquire any resources like file handles
+  public void reacquire() throws IOException {
+    if (ncd != null) ncd.reacquire();
+  }
+
+  public long getLastModified() {
+    return (ncd != null) ? ncd.getLastModified() : 0;
+  }
 }
@@ -11,12 +11,16 @@ import ucar.ma2.Section;
 import ucar.nc2.*;
 import ucar.nc2.constants.*;
 import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.iosp.netcdf3.N3outputStreamWriter;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.util.Optional;
 import ucar.unidata.geoloc.*;
 import ucar.unidata.geoloc.projection.LatLonProjection;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
 
 /**
@@ -53,12 +57,34 @@ public class CFGridCoverageWriter2 {
           SubsetParams subset, boolean tryToAddLatLon2D, boolean testSizeOnly, NetcdfFileWriter writer)
           throws IOException, InvalidRangeException {
     CFGridCoverageWriter2 writer2 = new CFGridCoverageWriter2();
-    return writer2.writeFile(gdsOrg, gridNames, subset, tryToAddLatLon2D, testSizeOnly, writer);
+    return writer2.writeFile(gdsOrg, gridNames, subset, tryToAddLatLon2D, testSizeOnly, writer, null);
   }
 
-  private ucar.nc2.util.Optional<Long> writeFile(CoverageCollection gdsOrg, List<String> gridNames,
-          SubsetParams subsetParams, boolean tryToAddLatLon2D, boolean testSizeOnly, NetcdfFileWriter writer)
+  /**
+   * Write a netcdf-3/CF file from a CoverageDataset directly to a stream, without writing a file first.
+   * The netcdf-3 layout is fixed once the header is known, so the header is written first, then the data for each
+   * variable in file order. The 64-bit offset variant is used if the data is larger than 2 Gbytes.
+
+   * @param gdsOrg            the CoverageDataset
+   * @param gridNames         the list of coverage names to be written, or null for all
+   * @param subset            defines the requested subset, or null to include everything in gdsOrg
+   * @param tryToAddLatLon2D  add 2D lat/lon coordinates, if possible
+   * @param out               write to this stream; it is flushed but not closed
+   * @return  the total number of bytes that the variables in the output file occupy.
+   * @throws IOException
+   * @throws InvalidRangeException
+   */
+  public static ucar.nc2.util.Optional<Long> writeToStream(CoverageCollection gdsOrg, List<String> gridNames,
+          SubsetParams subset, boolean tryToAddLatLon2D, OutputStream out)
           throws IOException, InvalidRangeException {
+    CFGridCoverageWriter2 writer2 = new CFGridCoverageWriter2();
+    NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, null); // only used to define the metadata
+    return writer2.writeFile(gdsOrg, gridNames, subset, tryToAddLatLon2D, false, writer, out);
+  }
+
+  private ucar.nc2.util.Optional<Long> writeFile(CoverageCollection gdsOrg, List<String> gridNames,
+          SubsetParams subsetParams, boolean tryToAddLatLon2D, boolean testSizeOnly, NetcdfFileWriter writer,
+          OutputStream out) throws IOException, InvalidRangeException {
     if (gridNames == null) {  // want all of them
       gridNames = new LinkedList<>();
 
@@ -111,7 +137,10 @@ public class CFGridCoverageWriter2 {
       totalSizeOfVars += var.getSize() * var.getElementSize();
     }
 
-    if (!testSizeOnly) {
+    if (out != null) {
+      writeStream(gdsOrg, subsetParams, subsetDataset, writer, shouldAddLatLon2D, isLargeFile(totalSizeOfVars), out);
+
+    } else if (!testSizeOnly) {
       // Actually create file and write variable data to it.
       writer.setLargeFile(isLargeFile(totalSizeOfVars));
       writer.create();
@@ -401,8 +430,79 @@ public class CFGridCoverageWriter2 {
     }
   }
 
+  // write the header, then each variable's data in file order
+  private void writeStream(CoverageCollection gdsOrg, SubsetParams subsetParams, CoverageCollection subsetDataset,
+          NetcdfFileWriter writer, boolean shouldAddLatLon2D, boolean isLargeFile, OutputStream out)
+          throws IOException, InvalidRangeException {
+    // the data source of each variable
+    Map<Variable, CoverageCoordAxis> axisVars = new HashMap<>();
+    Map<Variable, CoverageCoordAxis> boundsVars = new HashMap<>();
+    for (CoverageCoordAxis axis : subsetDataset.getCoordAxes()) {
+      Variable v = writer.findVariable(axis.getName());
+      if (v != null) axisVars.put(v, axis);
+      if (axis.isInterval()) boundsVars.put(writer.findVariable(axis.getName() + BOUNDS), axis);
+    }
+    Map<Variable, Coverage> coverageVars = new HashMap<>();
+    for (Coverage coverage : subsetDataset.getCoverages())
+      coverageVars.put(writer.findVariable(coverage.getName()), coverage);
+    Array[] latlon = shouldAddLatLon2D ? makeLatLon2D(subsetDataset) : null;
+    Variable latVar = shouldAddLatLon2D ? writer.findVariable("lat") : null;
+    Variable lonVar = shouldAddLatLon2D ? writer.findVariable("lon") : null;
+
+    NetcdfFile ncfile = writer.addGroup(null, null).getNetcdfFile(); // see writeFile()
+    N3outputStreamWriter streamWriter = new N3outputStreamWriter(ncfile);
+    streamWriter.setLargeFile(isLargeFile);
+
+    DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(out, 64 * 1000));
+    streamWriter.writeHeader(stream, 0);
+
+    for (Variable v : ncfile.getVariables()) {
+      Array data = null;
+      if (axisVars.containsKey(v)) {
+        data = axisVars.get(v).getCoordsAsArray();
+
+      } else if (boundsVars.containsKey(v)) {
+        data = boundsVars.get(v).getCoordBoundsAsArray();
+
+      } else if (coverageVars.containsKey(v)) {
+        // we need to call readData on the original
+        Coverage coverage = coverageVars.get(v);
+        GeoReferencedArray array = gdsOrg.findCoverage(coverage.getName()).readData(subsetParams);
+        checkConformance(coverage, array, gdsOrg.getName());
+        data = array.getData();
+
+      } else if (v == latVar) {
+        data = latlon[0];
+
+      } else if (v == lonVar) {
+        data = latlon[1];
+      }
+
+      if (show) System.out.printf("CFGridCoverageWriter2 stream %s%n", v.getNameAndDimensions());
+      if (data == null) // coordinate transform variables
+        streamWriter.writeNonRecordFill(v, stream);
+      else
+        streamWriter.writeNonRecordData(v, stream, data);
+    }
+
+    stream.flush();
+  }
+
   private void writeLatLon2D(CoverageCollection subsetDataset, NetcdfFileWriter writer)
           throws IOException, InvalidRangeException {
+    Array[] latlon = makeLatLon2D(subsetDataset);
+
+    Variable latVar = writer.findVariable("lat");
+    assert latVar != null : "We should have added lat var in addLatLon2D().";
+    writer.write(latVar, latlon[0]);
+
+    Variable lonVar = writer.findVariable("lon");
+    assert lonVar != null : "We should have added lon var in addLatLon2D().";
+    writer.write(lonVar, latlon[1]);
+  }
+
+  // lat and lon for each projection point: { lat, lon }
+  private Array[] makeLatLon2D(CoverageCollection subsetDataset) {
     HorizCoordSys horizCoordSys = subsetDataset.getHorizCoordSys();
     CoverageCoordAxis1D xAxis = horizCoordSys.getXAxis();
     CoverageCoordAxis1D yAxis = horizCoordSys.getYAxis();
@@ -430,15 +530,9 @@ public class CFGridCoverageWriter2 {
       }
     }
 
-    Variable latVar = writer.findVariable("lat");
-    assert latVar != null : "We should have added lat var in addLatLon2D().";
     Array latDataArray = Array.factory(DataType.DOUBLE, new int[] { numY, numX }, latData);
-    writer.write(latVar, latDataArray);
-
-    Variable lonVar = writer.findVariable("lon");
-    assert lonVar != null : "We should have added lon var in addLatLon2D().";
     Array lonDataArray = Array.factory(DataType.DOUBLE, new int[] { numY, numX }, lonData);
-    writer.write(lonVar, lonDataArray);
+    return new Array[] { latDataArray, lonDataArray };
   }
 
   private void checkConformance(Coverage gridSubset, GeoReferencedArray geo, String where) {
@@ -9,6 +9,7 @@ import ucar.unidata.io.RandomAccessFile;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Helper for reading data that has been bit packed.
@@ -31,6 +32,8 @@ public class BitReader {
   private byte bitBuf = 0;
   private int bitPos = 0; // Current bit position in bitBuf.
 
+  private byte[] scratch; // reused by unpack() when reading from raf
+
   // for testing
   public BitReader(byte[] test) {
     this.data = test;
@@ -133,6 +136,180 @@ public class BitReader {
     return result;
   }
 
+  /**
+   * Read the next count values of nbits each, and return them as unsigned ints.
+   * Same as calling bits2UInt(nbits) count times, but unpacks a word at a time.
+   *
+   * @param nbits the number of bits in each value, must be 0 <= nbits <= 32.
+   *              When nbits == 32, use (dest[i] & 0xffffffffL) to get the unsigned value.
+   * @param count the number of values to read
+   * @param dest  put the values in here, starting at 0
+   * @throws java.io.IOException on read error
+   */
+  public void unpack(int nbits, int count, int[] dest) throws IOException {
+    unpack(nbits, count, dest, 0);
+  }
+
+  /**
+   * Read the next count values of nbits each, and return them as unsigned ints.
+   * Same as calling bits2UInt(nbits) count times, but unpacks a word at a time.
+   *
+   * @param nbits   the number of bits in each value, must be 0 <= nbits <= 32.
+   *                When nbits == 32, use (dest[i] & 0xffffffffL) to get the unsigned value.
+   * @param count   the number of values to read
+   * @param dest    put the values in here
+   * @param destPos starting at this index in dest
+   * @throws java.io.IOException on read error
+   */
+  public void unpack(int nbits, int count, int[] dest, int destPos) throws IOException {
+    if (nbits < 0 || nbits > 32)
+      throw new IllegalArgumentException("nbits must be 0 <= nbits <= 32; was " + nbits);
+    if (count <= 0) return;
+    if (nbits == 0) {
+      Arrays.fill(dest, destPos, destPos + count, 0);
+      return;
+    }
+    long nbitsTotal = (long) nbits * count;
+
+    // the remaining bitPos bits of bitBuf come first, then the following bytes
+    byte[] src;
+    long bitOffset;
+    if (raf == null) {
+      src = data;
+      bitOffset = 8L * dataPos - bitPos;
+      if (bitOffset + nbitsTotal > 8L * src.length)
+        throw new EOFException();
+    } else {
+      int nbytes = (int) Math.max(0, (nbitsTotal - bitPos + 7) / 8);
+      if (scratch == null || scratch.length < nbytes + 1)
+        scratch = new byte[nbytes + 1];
+      src = scratch;
+      src[0] = bitBuf;
+      raf.readFully(src, 1, nbytes);
+      bitOffset = 8 - bitPos;
+    }
+
+    unpackBits(src, bitOffset, nbits, count, dest, destPos);
+
+    // leave the state as if bits2UInt had been called
+    long end = bitOffset + nbitsTotal;
+    int endByte = (int) ((end + 7) >>> 3);
+    bitPos = (int) (8L * endByte - end);
+    bitBuf = (bitPos > 0) ? src[endByte - 1] : 0;
+    if (raf == null)
+      dataPos = endByte;
+  }
+
+  /**
+   * Unpack count values of nbits each from src, starting at bitOffset. Use this for random access into packed data
+   * that is already in memory.
+   *
+   * @param src       packed big-endian values, no padding
+   * @param bitOffset offset of the first value, in bits from the start of src
+   * @param nbits     the number of bits in each value, must be 0 <= nbits <= 32.
+   * @param count     the number of values to read
+   * @param dest      put the values in here
+   * @param destPos   starting at this index in dest
+   * @throws EOFException if src does not contain all the bits
+   */
+  public static void unpack(byte[] src, long bitOffset, int nbits, int count, int[] dest, int destPos) throws EOFException {
+    if (nbits < 0 || nbits > 32)
+      throw new IllegalArgumentException("nbits must be 0 <= nbits <= 32; was " + nbits);
+    if (count <= 0) return;
+    if (nbits == 0) {
+      Arrays.fill(dest, destPos, destPos + count, 0);
+      return;
+    }
+    if (bitOffset < 0 || bitOffset + (long) nbits * count > 8L * src.length)
+      throw new EOFException();
+    unpackBits(src, bitOffset, nbits, count, dest, destPos);
+  }
+
+  /*
+   * Unpack count values of nbits (1 <= nbits <= 32) from src, starting at bitOffset.
+   * Values are big-endian and packed without padding, as in GRIB and BUFR.
+   * Byte aligned widths of 8, 12, 16, 24 and 32 bits have their own loops, the rest go through a 64-bit accumulator
+   * that is refilled 32 bits at a time.
+   */
+  private static void unpackBits(byte[] src, long bitOffset, int nbits, int count, int[] dest, int destPos) {
+    int p = (int) (bitOffset >>> 3);
+    int shift = (int) (bitOffset & 7);
+    int destEnd = destPos + count;
+
+    if (shift == 0) {
+      switch (nbits) {
+        case 8:
+          for (int i = destPos; i < destEnd; i++)
+            dest[i] = src[p++] & BYTE_BITMASK;
+          return;
+
+        case 12: {
+          int i = destPos;
+          for (; i + 1 < destEnd; i += 2) { // 2 values in 3 bytes
+            int b0 = src[p] & BYTE_BITMASK;
+            int b1 = src[p + 1] & BYTE_BITMASK;
+            int b2 = src[p + 2] & BYTE_BITMASK;
+            dest[i] = (b0 << 4) | (b1 >>> 4);
+            dest[i + 1] = ((b1 & 0x0F) << 8) | b2;
+            p += 3;
+          }
+          if (i < destEnd)
+            dest[i] = ((src[p] & BYTE_BITMASK) << 4) | ((src[p + 1] & BYTE_BITMASK) >>> 4);
+          return;
+        }
+
+        case 16:
+          for (int i = destPos; i < destEnd; i++) {
+            dest[i] = ((src[p] & BYTE_BITMASK) << 8) | (src[p + 1] & BYTE_BITMASK);
+            p += 2;
+          }
+          return;
+
+        case 24:
+          for (int i = destPos; i < destEnd; i++) {
+            dest[i] = ((src[p] & BYTE_BITMASK) << 16) | ((src[p + 1] & BYTE_BITMASK) << 8) | (src[p + 2] & BYTE_BITMASK);
+            p += 3;
+          }
+          return;
+
+        case 32:
+          for (int i = destPos; i < destEnd; i++) {
+            dest[i] = ((src[p] & BYTE_BITMASK) << 24) | ((src[p + 1] & BYTE_BITMASK) << 16) |
+                    ((src[p + 2] & BYTE_BITMASK) << 8) | (src[p + 3] & BYTE_BITMASK);
+            p += 4;
+          }
+          return;
+      }
+    }
+
+    // general case: acc holds accBits unconsumed bits in its low end, always < 64 bits
+    long mask = (1L << nbits) - 1;
+    long acc = 0;
+    int accBits = 0;
+    if (shift != 0) {
+      acc = src[p++] & (BYTE_BITMASK >>> shift);
+      accBits = 8 - shift;
+    }
+    int lastWordStart = src.length - 4;
+    for (int i = destPos; i < destEnd; i++) {
+      if (accBits < nbits) {
+        if (p <= lastWordStart) {
+          acc = (acc << 32) | (((src[p] & BYTE_BITMASK) << 24) | ((src[p + 1] & BYTE_BITMASK) << 16) |
+                  ((src[p + 2] & BYTE_BITMASK) << 8) | (src[p + 3] & BYTE_BITMASK)) & 0xFFFFFFFFL;
+          accBits += 32;
+          p += 4;
+        } else {
+          while (accBits < nbits) {
+            acc = (acc << 8) | (src[p++] & BYTE_BITMASK);
+            accBits += 8;
+          }
+        }
+      }
+      accBits -= nbits;
+      dest[i] = (int) ((acc >>> accBits) & mask);
+    }
+  }
+
   /**
    * Read the next nb bits and return an Signed Long .
    *
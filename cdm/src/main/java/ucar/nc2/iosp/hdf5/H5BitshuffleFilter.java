@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import java.io.IOException;
+
+/**
+ * The HDF5 bitshuffle filter (id 32008), optionally combined with LZ4 or Zstandard compression.
+ * Client data: [2] = element size, [3] = block size in elements (0 = default), [4] = 0 none, 2 = LZ4, 3 = zstd.
+ * <p>
+ * The data is processed in blocks of elements (a multiple of 8). Within a block, the bits are transposed so that
+ * bit b of byte j of all the elements are stored together, in row 8*j+b. Elements left over after the last multiple
+ * of 8 are stored as is. When compressed, the chunk starts with the decoded size (8 bytes) and the block size in
+ * bytes (4 bytes), and each block is its compressed size (4 bytes) followed by the compressed block.
+ * All integers are big endian.
+ *
+ * @see <a href="https://github.com/kiyo-masui/bitshuffle">bitshuffle</a>
+ */
+class H5BitshuffleFilter implements H5FilterDecoder {
+  static final int ID = 32008;
+
+  static private final int COMPRESS_NONE = 0;
+  static private final int COMPRESS_LZ4 = 2;
+  static private final int COMPRESS_ZSTD = 3;
+
+  static private final int BLOCKED_MULT = 8;       // block sizes must be a multiple of this
+  static private final int TARGET_BLOCK_BYTES = 8192;
+  static private final int MIN_BLOCK_SIZE = 128;
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public String getName() {
+    return "bitshuffle";
+  }
+
+  @Override
+  public byte[] decode(byte[] in, int inLength, int[] clientData, int elemSize, int chunkBytes) throws IOException {
+    if (clientData.length > 2 && clientData[2] > 0) elemSize = clientData[2];
+    int compression = (clientData.length > 4) ? clientData[4] : COMPRESS_NONE;
+    if (elemSize <= 0)
+      throw new IOException("bitshuffle has bad element size = " + elemSize);
+
+    if (compression == COMPRESS_NONE) {
+      int blockSize = (clientData.length > 3) ? clientData[3] : 0;
+      if (blockSize == 0) blockSize = defaultBlockSize(elemSize);
+      return unshuffle(in, inLength, elemSize, blockSize);
+    }
+    if (compression != COMPRESS_LZ4 && compression != COMPRESS_ZSTD)
+      throw new IOException("bitshuffle has unknown compression = " + compression);
+    if (compression == COMPRESS_ZSTD && !H5FilterRegistry.zstdAvailable)
+      throw new IOException("bitshuffle with zstd compression needs aircompressor on the classpath");
+
+    if (inLength < 12)
+      throw new IOException("bitshuffle chunk too short, length = " + inLength);
+    long nbytes = H5Lz4Filter.readLong(in, 0);
+    int blockSize = H5Lz4Filter.readInt(in, 8) / elemSize;
+    if (nbytes < 0 || nbytes > Integer.MAX_VALUE - 8 || nbytes % elemSize != 0)
+      throw new IOException("bitshuffle chunk has bad size = " + nbytes);
+    if (blockSize <= 0 || blockSize % BLOCKED_MULT != 0)
+      throw new IOException("bitshuffle chunk has bad block size = " + blockSize);
+
+    byte[] out = new byte[(int) nbytes];
+    int nelems = (int) (nbytes / elemSize);
+    byte[] tmp = new byte[blockSize * elemSize];
+    int inPos = 12;
+    int elem = 0;
+    while (nelems - elem >= BLOCKED_MULT) {
+      int size = Math.min(blockSize, (nelems - elem) / BLOCKED_MULT * BLOCKED_MULT);
+      int blockBytes = size * elemSize;
+      if (inPos + 4 > inLength)
+        throw new IOException("bitshuffle chunk is truncated");
+      int compressedSize = H5Lz4Filter.readInt(in, inPos);
+      inPos += 4;
+      if (compressedSize < 0 || compressedSize > inLength - inPos)
+        throw new IOException("bitshuffle block has bad size = " + compressedSize);
+
+      if (compression == COMPRESS_LZ4) {
+        int n = H5Lz4Filter.decompressBlock(in, inPos, compressedSize, tmp, 0, blockBytes);
+        if (n != blockBytes)
+          throw new IOException("bitshuffle block decoded to " + n + " bytes, expected " + blockBytes);
+      } else {
+        H5ZstdFilter.decompress(in, inPos, compressedSize, tmp, 0, blockBytes);
+      }
+      untranspose(tmp, 0, out, elem * elemSize, size, elemSize);
+      inPos += compressedSize;
+      elem += size;
+    }
+
+    // leftover elements are not shuffled or compressed
+    int leftover = out.length - elem * elemSize;
+    if (leftover > inLength - inPos)
+      throw new IOException("bitshuffle chunk is truncated");
+    System.arraycopy(in, inPos, out, elem * elemSize, leftover);
+    return out;
+  }
+
+  static int defaultBlockSize(int elemSize) {
+    int blockSize = TARGET_BLOCK_BYTES / elemSize;
+    blockSize = (blockSize / BLOCKED_MULT) * BLOCKED_MULT;
+    return Math.max(blockSize, MIN_BLOCK_SIZE);
+  }
+
+  // uncompressed: unshuffle each block, leftover elements and bytes are copied as is
+  private byte[] unshuffle(byte[] in, int inLength, int elemSize, int blockSize) throws IOException {
+    if (blockSize % BLOCKED_MULT != 0)
+      throw new IOException("bitshuffle has bad block size = " + blockSize);
+    byte[] out = new byte[inLength];
+    int nelems = inLength / elemSize;
+    int elem = 0;
+    while (nelems - elem >= BLOCKED_MULT) {
+      int size = Math.min(blockSize, (nelems - elem) / BLOCKED_MULT * BLOCKED_MULT);
+      untranspose(in, elem * elemSize, out, elem * elemSize, size, elemSize);
+      elem += size;
+    }
+    System.arraycopy(in, elem * elemSize, out, elem * elemSize, inLength - elem * elemSize);
+    return out;
+  }
+
+  /**
+   * Undo the bit transpose of one block.
+   * Row 8*j+b of the input holds bit b of byte j of the n elements, one bit per element; each row is n/8 bytes.
+   * Eight rows (the 8 bits of byte j) for 8 elements make an 8x8 bit matrix, which is transposed in a long.
+   *
+   * @param in       shuffled block
+   * @param inPos    start of the block
+   * @param out      put elements here
+   * @param outPos   starting here
+   * @param n        number of elements in the block, a multiple of 8
+   * @param elemSize bytes per element
+   */
+  static void untranspose(byte[] in, int inPos, byte[] out, int outPos, int n, int elemSize) {
+    int rowBytes = n / 8;
+    for (int j = 0; j < elemSize; j++) {
+      int rowStart = inPos + 8 * j * rowBytes;
+      for (int g = 0; g < rowBytes; g++) {
+        long x = 0;
+        for (int b = 0; b < 8; b++)
+          x |= (in[rowStart + b * rowBytes + g] & 0xffL) << (8 * b);
+
+        // transpose: byte m of the result holds the bits of element 8*g+m
+        long t = (x ^ (x >>> 7)) & 0x00AA00AA00AA00AAL;
+        x = x ^ t ^ (t << 7);
+        t = (x ^ (x >>> 14)) & 0x0000CCCC0000CCCCL;
+        x = x ^ t ^ (t << 14);
+        t = (x ^ (x >>> 28)) & 0x00000000F0F0F0F0L;
+        x = x ^ t ^ (t << 28);
+
+        int dest = outPos + 8 * g * elemSize + j;
+        for (int m = 0; m < 8; m++) {
+          out[dest] = (byte) x;
+          x >>>= 8;
+          dest += elemSize;
+        }
+      }
+    }
+  }
+}
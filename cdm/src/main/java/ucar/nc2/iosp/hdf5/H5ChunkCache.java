@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import java.nio.ByteBuffer;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of decompressed (filtered) chunks of one HDF5 file, keyed by the file position of the chunk.
+ * Bounded by the total bytes held; chunks bigger than the cache are not kept.
+ * Like the HDF5 library raw data chunk cache, but shared by all the variables of the file.
+ */
+class H5ChunkCache {
+  private final LinkedHashMap<Long, ByteBuffer> map = new LinkedHashMap<>(64, 0.75f, true); // access order
+  private long maxBytes;
+  private long bytes;
+  private long hits, misses;
+
+  H5ChunkCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * Get a chunk.
+   * @param filePos file position of the (compressed) chunk
+   * @return a new ByteBuffer view of the decompressed chunk, or null if not cached
+   */
+  synchronized ByteBuffer get(long filePos) {
+    if (maxBytes <= 0) return null;
+    ByteBuffer bb = map.get(filePos);
+    if (bb == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return bb.duplicate().order(bb.order()); // callers change the position
+  }
+
+  /**
+   * Add a chunk.
+   * @param filePos file position of the (compressed) chunk
+   * @param bb the decompressed chunk, position must be 0. Its contents must not be modified.
+   */
+  synchronized void put(long filePos, ByteBuffer bb) {
+    long size = bb.capacity();
+    if (maxBytes <= 0 || size > maxBytes) return;
+    ByteBuffer old = map.put(filePos, bb.duplicate().order(bb.order()));
+    if (old != null) bytes -= old.capacity();
+    bytes += size;
+    evict();
+  }
+
+  synchronized void clear() {
+    map.clear();
+    bytes = 0;
+  }
+
+  synchronized void showStats(Formatter f) {
+    long total = hits + misses;
+    f.format("ChunkCache: chunks=%d bytes=%d maxBytes=%d hits=%d misses=%d hitRate=%.3f%n", map.size(), bytes, maxBytes,
+            hits, misses, total == 0 ? 0.0 : (double) hits / total);
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Long, ByteBuffer>> iter = map.entrySet().iterator();
+    while (bytes > Math.max(maxBytes, 0) && iter.hasNext()) {
+      bytes -= iter.next().getValue().capacity();
+      iter.remove();
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import java.io.IOException;
+
+/**
+ * Decodes the chunks of an HDF5 dataset written with a filter (compressor), identified by its registered HDF5 filter id.
+ * Deflate, shuffle and fletcher32 are handled directly by the HDF5 iosp; other filters are found in H5FilterRegistry.
+ * <p>
+ * Implementations are found with the java.util.ServiceLoader: list the class in
+ * META-INF/services/ucar.nc2.iosp.hdf5.H5FilterDecoder, or call H5FilterRegistry.register().
+ * Implementations must be thread safe, since chunks may be decoded in parallel.
+ *
+ * @see <a href="https://portal.hdfgroup.org/display/support/Filters">Registered HDF5 filters</a>
+ */
+public interface H5FilterDecoder {
+
+  /**
+   * @return the registered HDF5 filter id
+   */
+  int getId();
+
+  /**
+   * @return the name of the filter
+   */
+  String getName();
+
+  /**
+   * Undo the filter on one chunk.
+   *
+   * @param in         the filtered bytes. Must not be modified or returned.
+   * @param inLength   number of valid bytes in {@code in}
+   * @param clientData the filter's client data values, from the filter pipeline message
+   * @param elemSize   size in bytes of one element of the dataset
+   * @param chunkBytes decoded size in bytes of a whole chunk, or 0 if not known
+   * @return a new array, holding exactly the decoded bytes
+   * @throws IOException if the chunk is corrupt
+   */
+  byte[] decode(byte[] in, int inLength, int[] clientData, int elemSize, int chunkBytes) throws IOException;
+}
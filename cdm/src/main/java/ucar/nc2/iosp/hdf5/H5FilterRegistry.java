@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The decoders for HDF5 filters other than deflate, shuffle and fletcher32, keyed by filter id.
+ * Has pure-Java decoders for LZ4, bitshuffle, Zstandard and szip (not yet used, see H5SzipFilter); others are found with the ServiceLoader.
+ * Zstandard uses aircompressor, an optional dependency: it is only registered if aircompressor is on the classpath.
+ * A decoder found by the ServiceLoader, or registered later, replaces a built-in one with the same id.
+ */
+public class H5FilterRegistry {
+  static private org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(H5FilterRegistry.class);
+
+  static private final Map<Integer, H5FilterDecoder> decoders = new ConcurrentHashMap<>();
+
+  // H5ZstdFilter can only be loaded if this is true
+  static final boolean zstdAvailable = isClassAvailable("io.airlift.compress.zstd.ZstdDecompressor");
+
+  static {
+    register(new H5SzipFilter());
+    register(new H5Lz4Filter());
+    register(new H5BitshuffleFilter());
+    if (zstdAvailable)
+      register(new H5ZstdFilter());
+    else
+      log.debug("aircompressor not on the classpath, no Zstandard HDF5 filter");
+
+    try {
+      for (H5FilterDecoder decoder : ServiceLoader.load(H5FilterDecoder.class)) {
+        log.info("ServiceLoader H5FilterDecoder {} id={}", decoder.getClass().getName(), decoder.getId());
+        register(decoder);
+      }
+    } catch (ServiceConfigurationError e) {
+      log.error("Failed to load H5FilterDecoder", e);
+    }
+  }
+
+  /**
+   * Register a filter decoder, replacing any previous one with the same id.
+   * @param decoder the decoder
+   */
+  static public void register(H5FilterDecoder decoder) {
+    decoders.put(decoder.getId(), decoder);
+  }
+
+  /**
+   * Find the decoder for a filter.
+   * @param filterId HDF5 filter id
+   * @return the decoder, or null if none is registered
+   */
+  static public H5FilterDecoder getDecoder(int filterId) {
+    return decoders.get(filterId);
+  }
+
+  /**
+   * @return all registered decoders
+   */
+  static public List<H5FilterDecoder> getDecoders() {
+    return Collections.unmodifiableList(new ArrayList<>(decoders.values()));
+  }
+
+  static private boolean isClassAvailable(String className) {
+    try {
+      Class.forName(className, false, H5FilterRegistry.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import java.io.IOException;
+
+/**
+ * The HDF5 LZ4 filter (id 32004), as written by the HDF Group's H5Zlz4 plugin.
+ * The chunk starts with the decoded size (8 bytes) and the block size (4 bytes);
+ * then each block is its compressed size (4 bytes) followed by an LZ4 block, or the raw bytes if it didnt compress.
+ * All integers are big endian.
+ */
+class H5Lz4Filter implements H5FilterDecoder {
+  static final int ID = 32004;
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public String getName() {
+    return "lz4";
+  }
+
+  @Override
+  public byte[] decode(byte[] in, int inLength, int[] clientData, int elemSize, int chunkBytes) throws IOException {
+    if (inLength < 12)
+      throw new IOException("LZ4 chunk too short, length = " + inLength);
+    long origSize = readLong(in, 0);
+    long blockSize = readInt(in, 8) & 0xffffffffL;
+    if (origSize < 0 || origSize > Integer.MAX_VALUE - 8)
+      throw new IOException("LZ4 chunk has bad size = " + origSize);
+    if (blockSize == 0 || blockSize > origSize) blockSize = origSize;
+
+    byte[] out = new byte[(int) origSize];
+    int inPos = 12;
+    int outPos = 0;
+    while (outPos < out.length) {
+      if (inPos + 4 > inLength)
+        throw new IOException("LZ4 chunk is truncated");
+      int compressedSize = readInt(in, inPos);
+      inPos += 4;
+      int size = (int) Math.min(blockSize, out.length - outPos);
+      if (compressedSize < 0 || compressedSize > inLength - inPos)
+        throw new IOException("LZ4 block has bad size = " + compressedSize);
+
+      if (compressedSize == size) { // stored uncompressed
+        System.arraycopy(in, inPos, out, outPos, size);
+      } else {
+        int n = decompressBlock(in, inPos, compressedSize, out, outPos, size);
+        if (n != size)
+          throw new IOException("LZ4 block decoded to " + n + " bytes, expected " + size);
+      }
+      inPos += compressedSize;
+      outPos += size;
+    }
+    return out;
+  }
+
+  /**
+   * Decompress one LZ4 block (the raw block format, not the frame format).
+   *
+   * @param in        compressed bytes
+   * @param inPos     start of the block
+   * @param inLen     length of the block
+   * @param out       put decompressed bytes here
+   * @param outPos    starting at this position
+   * @param maxOutLen no more than this many
+   * @return number of bytes decompressed
+   * @throws IOException if the block is corrupt
+   */
+  static int decompressBlock(byte[] in, int inPos, int inLen, byte[] out, int outPos, int maxOutLen) throws IOException {
+    int ip = inPos;
+    int inEnd = inPos + inLen;
+    int op = outPos;
+    int outEnd = outPos + maxOutLen;
+
+    while (ip < inEnd) {
+      int token = in[ip++] & 0xff;
+
+      // literals
+      int literalLen = token >>> 4;
+      if (literalLen == 15) {
+        int b;
+        do {
+          if (ip >= inEnd) throw new IOException("LZ4 block is corrupt: truncated literal length");
+          b = in[ip++] & 0xff;
+          literalLen += b;
+        } while (b == 255);
+      }
+      if (literalLen > inEnd - ip || literalLen > outEnd - op)
+        throw new IOException("LZ4 block is corrupt: literals overflow");
+      System.arraycopy(in, ip, out, op, literalLen);
+      ip += literalLen;
+      op += literalLen;
+
+      if (ip >= inEnd) break; // the last sequence has only literals
+
+      // match
+      if (ip + 2 > inEnd) throw new IOException("LZ4 block is corrupt: truncated offset");
+      int offset = (in[ip] & 0xff) | ((in[ip + 1] & 0xff) << 8);
+      ip += 2;
+      if (offset == 0 || offset > op - outPos)
+        throw new IOException("LZ4 block is corrupt: bad offset = " + offset);
+
+      int matchLen = token & 0x0f;
+      if (matchLen == 15) {
+        int b;
+        do {
+          if (ip >= inEnd) throw new IOException("LZ4 block is corrupt: truncated match length");
+          b = in[ip++] & 0xff;
+          matchLen += b;
+        } while (b == 255);
+      }
+      matchLen += 4;
+      if (matchLen > outEnd - op)
+        throw new IOException("LZ4 block is corrupt: match overflow");
+
+      int from = op - offset;
+      if (offset >= matchLen) {
+        System.arraycopy(out, from, out, op, matchLen);
+        op += matchLen;
+      } else { // overlapping copy repeats the last offset bytes
+        for (int i = 0; i < matchLen; i++)
+          out[op++] = out[from++];
+      }
+    }
+
+    return op - outPos;
+  }
+
+  static int readInt(byte[] b, int pos) {
+    return ((b[pos] & 0xff) << 24) | ((b[pos + 1] & 0xff) << 16) | ((b[pos + 2] & 0xff) << 8) | (b[pos + 3] & 0xff);
+  }
+
+  static long readLong(byte[] b, int pos) {
+    return ((long) readInt(b, pos) << 32) | (readInt(b, pos + 4) & 0xffffffffL);
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * The HDF5 szip filter (id 4): CCSDS 121.0 adaptive entropy coding, decoded as libaec's szip compatible library does.
+ * Client data: [0] = options mask, [1] = pixels per block, [2] = bits per pixel, [3] = pixels per scanline.
+ * The chunk starts with the decoded size (4 bytes, little endian).
+ * <p>
+ * 32 and 64 bit pixels are coded as bytes, after the bytes of the pixels are interleaved by significance.
+ * Scanlines that are not a whole number of blocks are padded to one.
+ * <p>
+ * Not used on files yet: H5header skips variables with this filter, until the decoder is checked against szip data
+ * written by libaec and the HDF5 library.
+ *
+ * @see <a href="https://gitlab.dkrz.de/k202009/libaec">libaec</a>
+ */
+class H5SzipFilter implements H5FilterDecoder {
+  static final int ID = 4;
+
+  // szip options mask
+  static private final int MSB_OPTION_MASK = 16;
+  static private final int NN_OPTION_MASK = 32;
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public String getName() {
+    return "szip";
+  }
+
+  @Override
+  public byte[] decode(byte[] in, int inLength, int[] clientData, int elemSize, int chunkBytes) throws IOException {
+    if (clientData.length < 4)
+      throw new IOException("szip filter needs 4 client data values, has " + clientData.length);
+    int options = clientData[0];
+    int pixelsPerBlock = clientData[1];
+    int bitsPerPixel = clientData[2];
+    int pixelsPerScanline = clientData[3];
+    if (pixelsPerBlock <= 0 || pixelsPerScanline <= 0 || bitsPerPixel <= 0 || bitsPerPixel > 64)
+      throw new IOException("szip filter has bad parameters");
+    if (inLength < 4)
+      throw new IOException("szip chunk too short, length = " + inLength);
+
+    long size = (in[0] & 0xffL) | ((in[1] & 0xffL) << 8) | ((in[2] & 0xffL) << 16) | ((in[3] & 0xffL) << 24);
+    if (size > Integer.MAX_VALUE - 8)
+      throw new IOException("szip chunk has bad size = " + size);
+    byte[] out = new byte[(int) size];
+
+    boolean deinterleave = (bitsPerPixel == 32 || bitsPerPixel == 64);
+    int bitsPerSample = deinterleave ? 8 : bitsPerPixel;
+    if (bitsPerSample > 32)
+      throw new IOException("szip filter has bad bits per pixel = " + bitsPerPixel);
+    int pixelSize = bytesPerSample(bitsPerSample);
+    int rsi = (pixelsPerScanline + pixelsPerBlock - 1) / pixelsPerBlock;
+    boolean padScanline = (pixelsPerScanline % pixelsPerBlock) != 0;
+
+    byte[] buf = out;
+    if (padScanline || deinterleave) {
+      long scanlines = (out.length / pixelSize + pixelsPerScanline - 1) / pixelsPerScanline;
+      long bufSize = (long) rsi * pixelsPerBlock * pixelSize * scanlines;
+      if (bufSize > Integer.MAX_VALUE - 8)
+        throw new IOException("szip chunk too large");
+      buf = new byte[(int) bufSize];
+    }
+
+    AecDecoder aec = new AecDecoder(in, 4, inLength, bitsPerSample, pixelsPerBlock, rsi,
+            (options & NN_OPTION_MASK) != 0, (options & MSB_OPTION_MASK) != 0);
+    int total = aec.decode(buf);
+
+    if (padScanline) {
+      int lineBytes = pixelsPerScanline * pixelSize;
+      int paddedBytes = rsi * pixelsPerBlock * pixelSize;
+      int n = 0;
+      for (int src = 0; src < total && n < buf.length; src += paddedBytes) {
+        int len = Math.min(lineBytes, total - src);
+        System.arraycopy(buf, src, buf, n, len);
+        n += len;
+      }
+      total = n;
+    }
+
+    if (deinterleave) {
+      int wordSize = bitsPerPixel / 8;
+      int nwords = out.length / wordSize;
+      for (int i = 0; i < nwords; i++)
+        for (int j = 0; j < wordSize; j++)
+          out[i * wordSize + j] = buf[j * nwords + i];
+    } else if (buf != out) {
+      System.arraycopy(buf, 0, out, 0, Math.min(total, out.length));
+    }
+    return out;
+  }
+
+  static private int bytesPerSample(int bits) {
+    return (bits > 16) ? 4 : (bits > 8) ? 2 : 1;
+  }
+
+  /**
+   * Decoder for the CCSDS 121.0 adaptive entropy coded stream.
+   * Each block of samples starts with an option id: low entropy (zero blocks or second extension),
+   * sample splitting with k low bits, or uncompressed.
+   * With preprocessing, the first sample of each reference sample interval (rsi blocks) is the raw reference value
+   * and the rest are mapped differences from the previous sample.
+   */
+  static private class AecDecoder {
+    static private final int ROS = 5; // zero block "remainder of segment"
+    static private final int SE_TABLE_SIZE = 90;
+    static private final int[] seTable = makeSeTable();
+
+    private final byte[] in;
+    private final int inEnd;
+    private long bitPos; // next bit to read, relative to in[0]
+
+    private final int bitsPerSample;
+    private final int blockSize;
+    private final int rsi;
+    private final boolean preprocess;
+    private final boolean msb;
+    private final int idLen;
+    private final int pixelSize;
+    private final long xmax;
+
+    private final long[] rsiBuffer; // the samples of the current reference sample interval
+
+    AecDecoder(byte[] in, int start, int end, int bitsPerSample, int blockSize, int rsi, boolean preprocess, boolean msb) {
+      this.in = in;
+      this.inEnd = end;
+      this.bitPos = 8L * start;
+      this.bitsPerSample = bitsPerSample;
+      this.blockSize = blockSize;
+      this.rsi = rsi;
+      this.preprocess = preprocess;
+      this.msb = msb;
+      this.idLen = (bitsPerSample > 16) ? 5 : (bitsPerSample > 8) ? 4 : 3;
+      this.pixelSize = bytesPerSample(bitsPerSample);
+      this.xmax = (1L << bitsPerSample) - 1;
+      this.rsiBuffer = new long[rsi * blockSize];
+    }
+
+    /**
+     * Decode until out is full or the input is used up. Like libaec, running out of input is not an error;
+     * a block cut off by the end of the input is dropped.
+     * @return number of bytes decoded
+     */
+    int decode(byte[] out) throws IOException {
+      int maxSamples = out.length / pixelSize;
+      int nout = 0; // samples written to out
+      boolean eof = false;
+      while (!eof && nout < maxSamples) {
+        int n = 0; // samples in the rsi buffer
+        try {
+          while (n < rsiBuffer.length && nout + n < maxSamples)
+            n = decodeBlock(n);
+        } catch (EOFException e) {
+          eof = true;
+        }
+        n = Math.min(n, maxSamples - nout);
+        nout = flush(out, nout, n);
+      }
+      return nout * pixelSize;
+    }
+
+    // decode one block (or run of zero blocks) into the rsi buffer starting at n, return the new number of samples
+    private int decodeBlock(int n) throws IOException {
+      boolean ref = preprocess && (n == 0);
+      int id = (int) bits(idLen);
+
+      if (id == 0) { // low entropy
+        boolean secondExtension = bits(1) == 1;
+        if (ref) rsiBuffer[n++] = bits(bitsPerSample);
+
+        if (secondExtension) {
+          int i = ref ? 1 : 0;
+          while (i < blockSize) {
+            int m = fs();
+            if (m > SE_TABLE_SIZE)
+              throw new IOException("szip data is corrupt: bad second extension code");
+            int d1 = m - seTable[2 * m + 1];
+            if ((i & 1) == 0) {
+              rsiBuffer[n++] = seTable[2 * m] - d1;
+              i++;
+            }
+            rsiBuffer[n++] = d1;
+            i++;
+          }
+
+        } else { // zero blocks
+          int zeroBlocks = fs() + 1;
+          if (zeroBlocks == ROS) {
+            int b = (n - (ref ? 1 : 0)) / blockSize;
+            zeroBlocks = Math.min(rsi - b, 64 - (b % 64));
+          } else if (zeroBlocks > ROS) {
+            zeroBlocks--;
+          }
+          int zeroSamples = zeroBlocks * blockSize - (ref ? 1 : 0);
+          if (n + zeroSamples > rsiBuffer.length)
+            throw new IOException("szip data is corrupt: too many zero blocks");
+          for (int i = 0; i < zeroSamples; i++)
+            rsiBuffer[n++] = 0;
+        }
+
+      } else if (id == (1 << idLen) - 1) { // uncompressed
+        for (int i = 0; i < blockSize; i++)
+          rsiBuffer[n++] = bits(bitsPerSample);
+
+      } else { // sample splitting: the fundamental sequences, then the k low bits of each sample
+        int k = id - 1;
+        if (ref) rsiBuffer[n++] = bits(bitsPerSample);
+        int start = n;
+        int count = blockSize - (ref ? 1 : 0);
+        for (int i = 0; i < count; i++)
+          rsiBuffer[n++] = fs();
+        if (k > 0) {
+          for (int i = start; i < n; i++)
+            rsiBuffer[i] = (rsiBuffer[i] << k) | bits(k);
+        }
+      }
+      return n;
+    }
+
+    // undo the preprocessing and write n samples of the rsi buffer to out, return the new number of samples in out
+    private int flush(byte[] out, int nout, int n) {
+      if (!preprocess) {
+        for (int i = 0; i < n; i++)
+          put(out, nout++, rsiBuffer[i]);
+        return nout;
+      }
+
+      long med = xmax / 2 + 1;
+      long data = 0;
+      for (int i = 0; i < n; i++) {
+        long d = rsiBuffer[i];
+        if (i == 0) {
+          data = d; // reference sample
+        } else {
+          long halfD = (d >>> 1) + (d & 1);
+          long mask = ((data & med) != 0) ? xmax : 0;
+          if (halfD <= (mask ^ data)) {
+            data += ((d & 1) == 0) ? (d >>> 1) : -((d + 1) >>> 1);
+          } else {
+            data = mask ^ d;
+          }
+        }
+        put(out, nout++, data);
+      }
+      return nout;
+    }
+
+    private void put(byte[] out, int sample, long value) {
+      int pos = sample * pixelSize;
+      if (msb) {
+        for (int i = pixelSize - 1; i >= 0; i--) {
+          out[pos + i] = (byte) value;
+          value >>>= 8;
+        }
+      } else {
+        for (int i = 0; i < pixelSize; i++) {
+          out[pos + i] = (byte) value;
+          value >>>= 8;
+        }
+      }
+    }
+
+    private long bitsLeft() {
+      return 8L * inEnd - bitPos;
+    }
+
+    // read n <= 32 bits, most significant first
+    private long bits(int n) throws IOException {
+      if (n > bitsLeft())
+        throw new EOFException("szip data is truncated");
+      long result = 0;
+      while (n > 0) {
+        int bytePos = (int) (bitPos >>> 3);
+        int bitOffset = (int) (bitPos & 7);
+        int avail = 8 - bitOffset;
+        int take = Math.min(avail, n);
+        int b = (in[bytePos] & 0xff) >>> (avail - take);
+        result = (result << take) | (b & ((1 << take) - 1));
+        bitPos += take;
+        n -= take;
+      }
+      return result;
+    }
+
+    // fundamental sequence: the number of 0 bits before the next 1 bit
+    private int fs() throws IOException {
+      int count = 0;
+      while (true) {
+        if (bitPos >= 8L * inEnd)
+          throw new EOFException("szip data is truncated");
+        int bytePos = (int) (bitPos >>> 3);
+        int bitOffset = (int) (bitPos & 7);
+        int b = (in[bytePos] << bitOffset) & 0xff; // remaining bits of this byte, at the top
+        if (b == 0) {
+          count += 8 - bitOffset;
+          bitPos += 8 - bitOffset;
+        } else {
+          int zeros = Integer.numberOfLeadingZeros(b) - 24;
+          count += zeros;
+          bitPos += zeros + 1;
+          return count;
+        }
+      }
+    }
+
+    static private int[] makeSeTable() {
+      int[] table = new int[2 * (SE_TABLE_SIZE + 1)];
+      int k = 0;
+      for (int i = 0; i < 13; i++) {
+        int ms = k;
+        for (int j = 0; j <= i; j++) {
+          table[2 * k] = i;
+          table[2 * k + 1] = ms;
+          k++;
+        }
+      }
+      return table;
+    }
+  }
+}
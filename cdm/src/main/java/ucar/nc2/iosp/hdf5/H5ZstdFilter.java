@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.zstd.ZstdDecompressor;
+
+import java.io.IOException;
+
+/**
+ * The HDF5 Zstandard filter (id 32015): the chunk is one or more zstd frames.
+ * Uses the pure-Java decompressor from aircompressor, which is optional: check H5FilterRegistry.zstdAvailable before
+ * loading this class.
+ */
+class H5ZstdFilter implements H5FilterDecoder {
+  static final int ID = 32015;
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public String getName() {
+    return "zstd";
+  }
+
+  @Override
+  public byte[] decode(byte[] in, int inLength, int[] clientData, int elemSize, int chunkBytes) throws IOException {
+    try {
+      long size = ZstdDecompressor.getDecompressedSize(in, 0, inLength);
+      if (size < 0) size = chunkBytes; // content size not in the frame header
+      if (size <= 0 || size > Integer.MAX_VALUE - 8)
+        throw new IOException("Zstandard chunk has unknown or bad size = " + size);
+      byte[] out = new byte[(int) size];
+      decompress(in, 0, inLength, out, 0, out.length);
+      return out;
+
+    } catch (MalformedInputException e) {
+      throw new IOException("Zstandard chunk is corrupt", e);
+    }
+  }
+
+  /**
+   * Decompress zstd frames holding exactly size bytes into out[outPos].
+   */
+  static void decompress(byte[] in, int inPos, int inLen, byte[] out, int outPos, int size) throws IOException {
+    try {
+      int n = new ZstdDecompressor().decompress(in, inPos, inLen, out, outPos, size);
+      if (n != size)
+        throw new IOException("Zstandard data decoded to " + n + " bytes, expected " + size);
+    } catch (MalformedInputException e) {
+      throw new IOException("Zstandard data is corrupt", e);
+    }
+  }
+}
@@ -1334,10 +1334,10 @@ public class H5header extends NCheader
       return null;
     }
 
-    // deal with filters, cant do SZIP
+    // deal with filters, cant do SZIP: H5SzipFilter has not been checked against files written with libaec
     if (facade.dobj.mfp != null) {
       for (Filter f : facade.dobj.mfp.filters) {
-        if (f.id == 4) {
+        if (f.id == H5SzipFilter.ID) {
           log.debug("SKIPPING variable with SZIP Filter= " + facade.dobj.mfp + " for variable " + facade.name);
           return null;
         }
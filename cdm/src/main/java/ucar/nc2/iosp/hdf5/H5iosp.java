@@ -20,6 +20,7 @@ import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Formatter;
+import java.util.concurrent.Executor;
 
 /**
  * HDF5 I/O
@@ -29,6 +30,10 @@ import java.util.Formatter;
 
 public class H5iosp extends AbstractIOServiceProvider {
   static public final String IOSP_MESSAGE_INCLUDE_ORIGINAL_ATTRIBUTES = "IncludeOrgAttributes";
+  // send IOSP_MESSAGE_CHUNK_CACHE_SIZE + "=" + nbytes to size the decompressed chunk cache of one file
+  static public final String IOSP_MESSAGE_CHUNK_CACHE_SIZE = "ChunkCacheSize";
+  // System property name for -D flag: default size in bytes of the decompressed chunk cache of each file
+  static public final String CHUNK_CACHE_SIZE = "unidata.h5iosp.chunkcache.size";
 
   static public final int VLEN_T_SIZE = 16; // Appears to be no way to compute on the fly.
 
@@ -90,12 +95,50 @@ public class H5iosp extends AbstractIOServiceProvider {
     useHdfEos = val;
   }
 
+  /**
+   * Filter (eg inflate, unshuffle) the chunks of a read in parallel.
+   * The compressed bytes are read in file order on the calling thread, and the chunks are used in order.
+   *
+   * @param exec shared by all files; null means filter on the calling thread (default)
+   * @param chunksAhead max number of chunks read ahead of the one being used, must be > 0
+   */
+  public static void setChunkExecutor(Executor exec, int chunksAhead) {
+    H5tiledLayoutBB.setExecutor(exec, chunksAhead);
+  }
+
+  static private long defaultChunkCacheSize = readChunkCacheSizeProperty();
+
+  /**
+   * Set the default size of the cache of decompressed chunks, for files opened after this.
+   * Each open file has its own cache, which only holds chunks of filtered (eg compressed) variables.
+   * Default is the -Dunidata.h5iosp.chunkcache.size system property, else 0 (off).
+   *
+   * @param nbytes max bytes of decompressed chunks kept for each file, 0 = off
+   */
+  public static void setChunkCacheSize(long nbytes) {
+    defaultChunkCacheSize = nbytes;
+  }
+
+  private static long readChunkCacheSizeProperty() {
+    String s = System.getProperty(CHUNK_CACHE_SIZE);
+    if (s == null) return 0;
+    try {
+      long size = Long.parseLong(s.trim());
+      if (size >= 0) return size;
+      log.warn(String.format("-D%s must be >= 0", CHUNK_CACHE_SIZE));
+    } catch (NumberFormatException nfe) {
+      log.warn(String.format("-D%s is not an integer", CHUNK_CACHE_SIZE));
+    }
+    return 0;
+  }
+
   //////////////////////////////////////////////////////////////////////////////////
 
   //private RandomAccessFile raf;
   private H5header headerParser;
   private boolean isEos;
   boolean includeOriginalAttributes = false;
+  private final H5ChunkCache chunkCache = new H5ChunkCache(defaultChunkCacheSize);
 
   /////////////////////////////////////////////////////////////////////////////
   // reading
@@ -138,7 +181,7 @@ public class H5iosp extends AbstractIOServiceProvider {
       if (debugFilter) System.out.println("read variable filtered " + v2.getFullName() + " vinfo = " + vinfo);
       assert vinfo.isChunked;
       ByteOrder bo = (vinfo.typeInfo.endian == 0) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
-      layout = new H5tiledLayoutBB(v2, wantSection, raf, vinfo.mfp.getFilters(), bo);
+      layout = new H5tiledLayoutBB(v2, wantSection, raf, vinfo.mfp.getFilters(), bo, chunkCache);
       if (vinfo.typeInfo.isVString) {
         data = readFilteredStringData((LayoutBB) layout);
       } else{
@@ -559,6 +602,7 @@ public class H5iosp extends AbstractIOServiceProvider {
   public void close() throws IOException {
     super.close();
     headerParser.close();
+    chunkCache.clear();
   }
 
   @Override
@@ -588,6 +632,7 @@ public class H5iosp extends AbstractIOServiceProvider {
       H5header detailParser = new H5header(raf, ncfile, this);
       detailParser.read(pw);
       f.format("%s", super.getDetailInfo());
+      chunkCache.showStats(f);
       f.format("%s", os.toString(CDM.UTF8));
 
     } catch (IOException e) {
@@ -604,6 +649,15 @@ public class H5iosp extends AbstractIOServiceProvider {
       return null;
     }
 
+    if (message.toString().startsWith(IOSP_MESSAGE_CHUNK_CACHE_SIZE + "=")) {
+      try {
+        chunkCache.setMaxBytes(Long.parseLong(message.toString().substring(IOSP_MESSAGE_CHUNK_CACHE_SIZE.length() + 1).trim()));
+      } catch (NumberFormatException nfe) {
+        log.warn("H5iosp: bad iosp message {}", message);
+      }
+      return null;
+    }
+
     if (message.toString().equals("header"))
       return headerParser;
 
@@ -12,14 +12,22 @@ import ucar.ma2.Section;
 import ucar.nc2.Variable;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
-import ucar.nc2.util.IO;
 import ucar.unidata.io.RandomAccessFile;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.DataFormatException;
+import java.util.zip.ZipException;
 
 /**
  * Iterator to read/write subsets of an array.
@@ -31,15 +39,26 @@ import java.nio.ByteOrder;
  */
 class H5tiledLayoutBB implements LayoutBB {
 
-  static final int DEFAULTZIPBUFFERSIZE = 512;
-  // System property name for -D flag
-  static final String INFLATEBUFFERSIZE = "unidata.h5iosp.inflate.buffersize";
+  // Copied from ArrayList.
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
 
   static public boolean debugFilter = false;
 
+  // if set, chunks are filtered (eg inflated) in parallel
+  static private volatile Executor executor;
+  static private volatile int maxChunksAhead = 16;
+
+  // see H5iosp.setChunkExecutor()
+  static void setExecutor(Executor exec, int chunksAhead) {
+    if (chunksAhead < 1) throw new IllegalArgumentException("chunksAhead must be > 0");
+    executor = exec;
+    maxChunksAhead = chunksAhead;
+  }
+
   private LayoutBBTiled delegate;
 
   private RandomAccessFile raf;
+  private H5ChunkCache chunkCache; // may be null
   private H5header.Filter[] filters;
   private ByteOrder byteOrder;
                                                                                                      
@@ -48,9 +67,14 @@ class H5tiledLayoutBB implements LayoutBB {
   private int elemSize; // last dimension of the StorageLayout message
   private int nChunkDims;
 
-  private boolean debug = false;
+  private int chunkBytes; // uncompressed size of a chunk in bytes, 0 if too big for an array
+
+  // used for every chunk when reading serially: the layout is iterated by one thread, and each chunk's ByteBuffer
+  // is used up before the next chunk is read.
+  private final ChunkFilter chunkFilter = new ChunkFilter();
+  private ParallelDataChunkIterator parallelIter; // null when reading serially
 
-  private int inflatebuffersize = DEFAULTZIPBUFFERSIZE;
+  private boolean debug = false;
 
   /**
    * Constructor.
@@ -60,10 +84,13 @@ class H5tiledLayoutBB implements LayoutBB {
    * @param wantSection the wanted section of data, contains a List of Range objects. must be complete
    * @param raf the RandomAccessFile
    * @param filters set of filters that have been applied to the data
+   * @param byteOrder byte order of the data
+   * @param chunkCache cache of decompressed chunks for this file, may be null
    * @throws InvalidRangeException if section invalid for this variable
    * @throws java.io.IOException   on io error
    */
-  H5tiledLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf, H5header.Filter[] filters, ByteOrder byteOrder) throws InvalidRangeException, IOException
+  H5tiledLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf, H5header.Filter[] filters, ByteOrder byteOrder,
+                  H5ChunkCache chunkCache) throws InvalidRangeException, IOException
   {
     wantSection = Section.fill(wantSection, v2.getShape());
 
@@ -72,6 +99,7 @@ class H5tiledLayoutBB implements LayoutBB {
     assert vinfo.btree != null;
 
     this.raf = raf;
+    this.chunkCache = (chunkCache != null && chunkCache.isEnabled()) ? chunkCache : null;
     this.filters = filters;
     this.byteOrder = byteOrder;
 
@@ -89,25 +117,21 @@ class H5tiledLayoutBB implements LayoutBB {
     this.chunkSize = new int[nChunkDims];
     System.arraycopy(vinfo.storageSize, 0, chunkSize, 0, nChunkDims);
     this.elemSize = vinfo.storageSize[vinfo.storageSize.length - 1]; // last one is always the elements size
+    long nbytes = elemSize;
+    for (int size : chunkSize) nbytes *= size;
+    this.chunkBytes = (nbytes > 0 && nbytes <= MAX_ARRAY_LEN) ? (int) nbytes : 0;
 
     // create the data chunk iterator
     DataBTree.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorFilter(this.want);
-    DataChunkIterator dcIter = new DataChunkIterator(iter);
-    delegate = new LayoutBBTiled(dcIter, chunkSize, elemSize, this.want);
-
-    if(System.getProperty(INFLATEBUFFERSIZE) != null)  {
-      try {
-        int size = Integer.parseInt(System.getProperty(INFLATEBUFFERSIZE));
-        if(size <= 0)
-          H5iosp.log.warn(String.format("-D%s must be > 0",INFLATEBUFFERSIZE));
-        else
-          this.inflatebuffersize = size;
-      } catch (NumberFormatException nfe) {
-        H5iosp.log.warn(String.format("-D%s is not an integer",INFLATEBUFFERSIZE));
-      }
+    Executor exec = executor;
+    LayoutBBTiled.DataChunkIterator dcIter;
+    if (exec == null) {
+      dcIter = new DataChunkIterator(iter);
+    } else {
+      parallelIter = new ParallelDataChunkIterator(iter, exec, maxChunksAhead);
+      dcIter = parallelIter;
     }
-    if(debugFilter)
-      System.out.printf("inflate buffer size -D%s = %d%n",INFLATEBUFFERSIZE,this.inflatebuffersize);
+    delegate = new LayoutBBTiled(dcIter, chunkSize, elemSize, this.want);
 
     if (debug) System.out.println(" H5tiledLayout: " + this);
   }
@@ -157,11 +181,100 @@ class H5tiledLayoutBB implements LayoutBB {
     }
   }
 
-  private class DataChunk implements ucar.nc2.iosp.LayoutBBTiled.DataChunk {
-    // Copied from ArrayList.
-    private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+  /*
+   * Reads the compressed bytes of the chunks ahead of the consumer, in file order on the calling thread,
+   * and hands them to the executor to be filtered. The chunks are still returned in order.
+   * If reading or filtering a chunk fails, the chunks still pending are cancelled.
+   */
+  private class ParallelDataChunkIterator implements LayoutBBTiled.DataChunkIterator {
+    private final DataBTree.DataChunkIterator delegate;
+    private final Executor exec;
+    private final int chunksAhead;
+    private final ArrayDeque<DataChunk> window = new ArrayDeque<>();
+    private final ArrayDeque<ChunkFilter> chunkFilters = new ArrayDeque<>(); // reused by the tasks
+
+    ParallelDataChunkIterator(DataBTree.DataChunkIterator delegate, Executor exec, int chunksAhead) {
+      this.delegate = delegate;
+      this.exec = exec;
+      this.chunksAhead = chunksAhead;
+    }
+
+    public boolean hasNext() {
+      return !window.isEmpty() || delegate.hasNext();
+    }
+
+    public LayoutBBTiled.DataChunk next() throws IOException {
+      try {
+        if (window.isEmpty()) readAhead(1);
+        DataChunk result = window.pollFirst();
+        readAhead(chunksAhead);
+        return result;
+      } catch (IOException | RuntimeException e) {
+        cancel();
+        throw e;
+      }
+    }
+
+    void cancel() {
+      for (DataChunk dc : window) {
+        if (dc.result != null) dc.result.cancel(true);
+      }
+      window.clear();
+    }
+
+    private void readAhead(int max) throws IOException {
+      while (window.size() < max && delegate.hasNext()) {
+        DataChunk dc = new DataChunk(delegate.next());
+        window.addLast(dc);
+
+        // chunks that dont intersect are skipped by LayoutBBTiled, dont read them
+        try {
+          if (!new Section(dc.getOffset(), chunkSize).intersects(want)) continue;
+        } catch (InvalidRangeException e) {
+          throw new IllegalStateException(e);
+        }
+
+        final DataBTree.DataChunk chunk = dc.delegate;
+        ByteBuffer cached = (chunkCache == null) ? null : chunkCache.get(chunk.filePos);
+        if (cached != null) {
+          dc.result = CompletableFuture.completedFuture(cached);
+          continue;
+        }
 
+        final byte[] raw = new byte[chunk.size];
+        raf.seek(chunk.filePos);
+        raf.readFully(raw);
+
+        FutureTask<ByteBuffer> task = new FutureTask<>(() -> {
+          ChunkFilter cf = acquire();
+          try {
+            return cf.filter(chunk, raw);
+          } finally {
+            release(cf);
+          }
+        });
+        exec.execute(task);
+        dc.result = task;
+      }
+    }
+
+    private ChunkFilter acquire() {
+      synchronized (chunkFilters) {
+        ChunkFilter cf = chunkFilters.pollFirst();
+        return (cf != null) ? cf : new ChunkFilter();
+      }
+    }
+
+    private void release(ChunkFilter cf) {
+      synchronized (chunkFilters) {
+        chunkFilters.addFirst(cf);
+      }
+    }
+  }
+
+  private class DataChunk implements ucar.nc2.iosp.LayoutBBTiled.DataChunk {
     DataBTree.DataChunk delegate;
+    Future<ByteBuffer> result; // when filtering in parallel
 
     DataChunk(DataBTree.DataChunk delegate) {
       this.delegate = delegate;
@@ -198,61 +311,171 @@ class H5tiledLayoutBB implements LayoutBB {
 
     public ByteBuffer getByteBuffer() throws IOException {
       try {
-        // read the data
-        byte[] data = new byte[delegate.size];
-        raf.seek(delegate.filePos);
-        raf.readFully(data);
+        ByteBuffer bb;
+        if (result != null) {
+          bb = result.get();
+        } else {
+          bb = (chunkCache == null) ? null : chunkCache.get(delegate.filePos);
+          if (bb != null) return bb;
+          bb = chunkFilter.read(delegate);
+        }
+        if (chunkCache != null) chunkCache.put(delegate.filePos, bb);
+        return bb;
+
+      } catch (InterruptedException e) {
+        parallelIter.cancel();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted waiting for HDF5 chunk");
+
+      } catch (ExecutionException e) {
+        parallelIter.cancel();
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) throw (IOException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw outOfMemory((Error) cause);
+        throw new IOException(cause);
+
+      } catch (OutOfMemoryError e) {
+        throw outOfMemory(e);
+      }
+    }
+
+    private Error outOfMemory(Error e) {
+      if (!(e instanceof OutOfMemoryError)) return e;
+      Error oom =  new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the " +
+              "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
+      oom.initCause(e);  // OutOfMemoryError lacks a constructor with a cause parameter.
+      return oom;
+    }
+  }
+
+  /*
+   * Undoes the filters of a chunk. Keeps reusable buffers for the compressed bytes and intermediate results,
+   * so must be used by one thread at a time. The returned ByteBuffer is always a new array.
+   */
+  private class ChunkFilter {
+    private byte[] readBuffer;
+    private final byte[][] scratch = new byte[2][];
+    private int dataLength; // number of valid bytes in the current filter buffer
+
+    // read the chunk and undo its filters
+    ByteBuffer read(DataBTree.DataChunk chunk) throws IOException {
+      H5header.Filter[] active = activeFilters(chunk);
+      byte[] data = getBuffer(lastCopy(active) < 0 ? -1 : 2, chunk.size);
+      raf.seek(chunk.filePos);
+      raf.readFully(data, 0, chunk.size);
+      return filter(active, data, chunk.size);
+    }
+
+    // undo the filters of a chunk already read into raw, which may be returned
+    ByteBuffer filter(DataBTree.DataChunk chunk, byte[] raw) throws IOException {
+      return filter(activeFilters(chunk), raw, chunk.size);
+    }
+
+    private ByteBuffer filter(H5header.Filter[] active, byte[] data, int size) throws IOException {
+      dataLength = size;
+      int lastCopy = lastCopy(active);
 
       // apply filters backwards
-      for (int i = filters.length - 1; i >= 0; i--) {
-        H5header.Filter f = filters[i];
-        if (isBitSet(delegate.filterMask, i)) {
-          if (debug) System.out.println("skip for chunk " + delegate);
-          continue;
-        }
+      for (int i = 0; i < active.length; i++) {
+        H5header.Filter f = active[i];
+        int which = (i == lastCopy) ? -1 : (data == scratch[0] ? 1 : 0);
         if (f.id == 1) {
-          data = inflate(data);
+          data = inflate(data, which, hasFletcher32(active, i + 1));
         } else if (f.id == 2) {
-          data = shuffle(data, f.data[0]);
+          data = unshuffle(data, f.data[0], which);
         } else if (f.id == 3) {
           data = checkfletcher32(data);
         /* }  else if (f.id == 307) {
           data = unbzip2(data); */
-        } else
-          throw new RuntimeException("Unknown filter type="+f.id);
+        } else {
+          H5FilterDecoder decoder = H5FilterRegistry.getDecoder(f.id);
+          if (decoder == null)
+            throw new RuntimeException("Unknown filter type=" + f.id + " name=" + f.name +
+                    ((f.id == H5ZstdFilter.ID) ? " (needs aircompressor on the classpath)" : ""));
+          data = decoder.decode(data, dataLength, f.data, elemSize, chunkBytes);
+          dataLength = data.length;
+          if (debug || debugFilter)
+            System.out.println(" " + decoder.getName() + " bytes out= " + dataLength);
+        }
       }
 
-        ByteBuffer result = ByteBuffer.wrap(data);
-        result.order(byteOrder);
-        return result;
-      } catch (OutOfMemoryError e) {
-        Error oom =  new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the " +
-                "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
-        oom.initCause(e);  // OutOfMemoryError lacks a constructor with a cause parameter.
-        throw oom;
+      ByteBuffer result = ByteBuffer.wrap(data, 0, dataLength);
+      result.order(byteOrder);
+      return result;
+    }
+
+    // the filters that apply to this chunk, in the order they must be undone
+    private H5header.Filter[] activeFilters(DataBTree.DataChunk chunk) {
+      H5header.Filter[] active = new H5header.Filter[filters.length];
+      int nactive = 0;
+      for (int i = filters.length - 1; i >= 0; i--) {
+        if (isBitSet(chunk.filterMask, i)) {
+          if (debug) System.out.println("skip for chunk " + chunk);
+          continue;
+        }
+        active[nactive++] = filters[i];
+      }
+      return Arrays.copyOf(active, nactive);
+    }
+
+    // the last filter that writes a new buffer puts its output into a new array, which is returned.
+    // the compressed bytes and any intermediate results use the reusable buffers.
+    // H5FilterDecoders always return a new array.
+    private int lastCopy(H5header.Filter[] active) {
+      int lastCopy = -1;
+      for (int i = 0; i < active.length; i++) {
+        H5header.Filter f = active[i];
+        if ((f.id == 1) || (f.id == 2 && f.data[0] > 1) || (f.id > 3)) lastCopy = i;
       }
+      return lastCopy;
+    }
+
+    private boolean hasFletcher32(H5header.Filter[] active, int start) {
+      for (int i = start; i < active.length; i++)
+        if (active[i].id == 3) return true;
+      return false;
     }
 
     /**
-     * inflate data
+     * inflate data, straight into a buffer sized from the chunk layout
      *
-     * @param compressed compressed data
-     * @return uncompressed data
+     * @param compressed compressed data, dataLength bytes
+     * @param which reusable buffer to inflate into, or -1 for a new array
+     * @param hasChecksum a fletcher32 checksum follows the uncompressed data
+     * @return uncompressed data, dataLength bytes
      * @throws IOException on I/O error
      */
-    private byte[] inflate(byte[] compressed) throws IOException {
-      // run it through the Inflator
-      ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-      java.util.zip.Inflater inflater = new java.util.zip.Inflater();
-      java.util.zip.InflaterInputStream inflatestream
-        = new java.util.zip.InflaterInputStream(in, inflater, inflatebuffersize);
-      int len = Math.min(8 * compressed.length, MAX_ARRAY_LEN);
-      ByteArrayOutputStream out = new ByteArrayOutputStream(len); // Fixes KXL-349288
-      IO.copyB(inflatestream, out, len);
-
-      byte[] uncomp = out.toByteArray();
+    private byte[] inflate(byte[] compressed, int which, boolean hasChecksum) throws IOException {
+      int len = (chunkBytes > 0) ? chunkBytes + (hasChecksum ? 4 : 0) : Math.min(8 * dataLength, MAX_ARRAY_LEN);
+      byte[] uncomp = getBuffer(which, len);
+      int n = 0;
+
+      java.util.zip.Inflater inflater = InflaterPool.acquire();
+      try {
+        inflater.setInput(compressed, 0, dataLength);
+        while (!inflater.finished()) {
+          if (n == uncomp.length) { // chunk is bigger than expected
+            if (uncomp.length >= MAX_ARRAY_LEN)
+              throw new IOException("Inflated HDF5 chunk is bigger than the maximum length of a byte array");
+            int grow = (int) Math.min(2L * uncomp.length + 512, MAX_ARRAY_LEN);
+            uncomp = Arrays.copyOf(uncomp, grow);
+            if (which >= 0) scratch[which] = uncomp;
+          }
+          int count = inflater.inflate(uncomp, n, uncomp.length - n);
+          if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+            throw new EOFException("Unexpected end of ZLIB input stream");
+          n += count;
+        }
+      } catch (DataFormatException e) {
+        throw new ZipException(e.getMessage());
+      } finally {
+        InflaterPool.release(inflater);
+      }
+
       if (debug || debugFilter)
-        System.out.println(" inflate bytes in= " + compressed.length + " bytes out= " + uncomp.length);
+        System.out.println(" inflate bytes in= " + dataLength + " bytes out= " + n);
+      dataLength = n;
       return uncomp;
     }
 
@@ -279,43 +502,43 @@ class H5tiledLayoutBB implements LayoutBB {
 
      // just strip off the 4-byte fletcher32 checksum at the end
     private byte[] checkfletcher32(byte[] org) throws IOException {
-      byte[] result = new byte[org.length-4];
-      System.arraycopy(org, 0, result, 0, result.length);
-      if (debug) System.out.println(" checkfletcher32 bytes in= " + org.length + " bytes out= " + result.length);
-      return result;
+      if (debug) System.out.println(" checkfletcher32 bytes in= " + dataLength + " bytes out= " + (dataLength - 4));
+      dataLength -= 4;
+      return org;
     }
 
-    private byte[] shuffle(byte[] data, int n) throws IOException {
-      if (debug) System.out.println(" shuffle bytes in= " + data.length + " n= " + n);
-
-      assert data.length % n == 0;
+    private byte[] unshuffle(byte[] data, int n, int which) throws IOException {
+      if (debug) System.out.println(" shuffle bytes in= " + dataLength + " n= " + n);
       if (n <= 1) return data;
 
-      int m = data.length / n;
-      int[] count = new int[n];
-      for (int k = 0; k < n; k++) count[k] = k * m;
-
-      byte[] result = new byte[data.length];
-      /* for (int i = 0; i < data.length; i += n) {
-        for (int k = 0; k < n; k++) {
-          result[count[k]++] = data[i + k];
-        }
-      } */
-
-      for (int i = 0; i < m; i++) {
-        for (int j = 0; j < n; j++) {
-          result[i*n+j] = data[i + count[j]];
-        }
+      int m = dataLength / n;
+      byte[] result = getBuffer(which, dataLength);
+      for (int j = 0; j < n; j++) {
+        int src = j * m;
+        for (int i = 0, dest = j; i < m; i++, dest += n)
+          result[dest] = data[src++];
       }
 
+      // bytes left over that dont make a whole element are not shuffled
+      int done = m * n;
+      System.arraycopy(data, done, result, done, dataLength - done);
       return result;
     }
 
+    // which = 0 or 1: scratch buffers for filter output; 2: compressed data; -1: new array
+    private byte[] getBuffer(int which, int size) {
+      if (which < 0) return new byte[size];
+      if (which == 2) {
+        if (readBuffer == null || readBuffer.length < size) readBuffer = new byte[size];
+        return readBuffer;
+      }
+      if (scratch[which] == null || scratch[which].length < size) scratch[which] = new byte[size];
+      return scratch[which];
+    }
+
     boolean isBitSet(int val, int bitno) {
       return ((val >>> bitno) & 1) != 0;
     }
-
   }
 
-
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import java.util.ArrayDeque;
+import java.util.zip.Inflater;
+
+/**
+ * A small pool of Inflaters, to avoid creating one (with its native zlib memory) for every chunk.
+ * Inflaters beyond the pool size are end()-ed when released, so native memory is freed promptly.
+ */
+class InflaterPool {
+  private static final int MAX_POOLED = 32;
+  private static final ArrayDeque<Inflater> pool = new ArrayDeque<>();
+
+  static Inflater acquire() {
+    synchronized (pool) {
+      Inflater inflater = pool.pollFirst();
+      if (inflater != null) return inflater;
+    }
+    return new Inflater();
+  }
+
+  static void release(Inflater inflater) {
+    inflater.reset();
+    synchronized (pool) {
+      if (pool.size() < MAX_POOLED) {
+        pool.addFirst(inflater);
+        return;
+      }
+    }
+    inflater.end();
+  }
+}
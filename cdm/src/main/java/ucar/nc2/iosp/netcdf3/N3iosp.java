@@ -834,7 +834,7 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
     }
   }
 
-  private Array makeConstantArray(Variable v) {
+  static Array makeConstantArray(Variable v) {
     Class classType = v.getDataType().getPrimitiveClassType();
     //int [] shape = v.getShape();
     Attribute att = v.findAttribute(CDM.FILL_VALUE);
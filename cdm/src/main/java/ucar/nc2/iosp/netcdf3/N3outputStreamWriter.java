@@ -11,6 +11,7 @@ import ucar.ma2.*;
 import ucar.nc2.*;
 import ucar.nc2.iosp.IospHelper;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.io.IOException;
 import java.io.DataOutputStream;
@@ -35,7 +36,7 @@ public class N3outputStreamWriter extends N3streamWriter {
         Variable v = vinfo.v;
         assert filePos == vinfo.offset;
         if (debugPos) System.out.println(" writing at "+filePos+" should be "+vinfo.offset+" "+v.getFullName());
-        int nbytes = writeDataFast(v, stream, v.read());
+        long nbytes = writeData(v, stream, v.read());
         filePos += nbytes;
         filePos += pad(stream, nbytes, (byte) 0);
       }
@@ -62,7 +63,7 @@ public class N3outputStreamWriter extends N3streamWriter {
           for (Vinfo vinfo : vinfoList) {
             if (vinfo.isRecord) {
               Variable v = vinfo.v;
-              int nbytes = writeDataFast(v, stream, sdata.getArray(v.getShortName()));
+              long nbytes = writeData(v, stream, sdata.getArray(v.getShortName()));
               count += nbytes;
               count += pad(stream, nbytes, (byte) 0);
               if (first && debugWriteData) System.out.println(v.getShortName() + " wrote " + count + " bytes");
@@ -98,6 +99,18 @@ public class N3outputStreamWriter extends N3streamWriter {
     }
   }
 
+  /**
+   * Write the fill value for a non-record variable that has no data.
+   * Uses the _FillValue attribute if present, else the default fill value for the type.
+   *
+   * @param v      write this variable
+   * @param stream to this stream
+   * @throws IOException on write error
+   */
+  public void writeNonRecordFill(Variable v, DataOutputStream stream) throws IOException {
+    writeNonRecordData(v, stream, N3iosp.makeConstantArray(v));
+  }
+
   private int recno = 0;
   private boolean first = true;
 
@@ -126,85 +139,48 @@ public class N3outputStreamWriter extends N3streamWriter {
   /////////////////////////////////////////////
 
 
-  private long writeData(Variable v, DataOutputStream stream, Array values) throws java.io.IOException {
-    DataType dataType = v.getDataType();
-    IndexIterator ii = values.getIndexIterator();
-
-    if (dataType == DataType.BYTE) {
-      while (ii.hasNext())
-        stream.write(ii.getByteNext());
-      return values.getSize();
+  // max bytes converted at once
+  static private final int chunkSize = 64 * 1000;
+  private ByteBuffer chunk;
 
-    } else if (dataType == DataType.CHAR) {
-      while (ii.hasNext())
-        stream.write(ii.getByteNext());
-      return values.getSize();
-
-    } else if (dataType == DataType.SHORT) {
-      while (ii.hasNext())
-        stream.writeShort(ii.getShortNext());
-      return 2 * values.getSize();
-
-    } else if (dataType == DataType.INT) {
-      while (ii.hasNext())
-        stream.writeInt(ii.getIntNext());
-      return 4 * values.getSize();
-
-    } else if (dataType == DataType.FLOAT) {
-      while (ii.hasNext())
-        stream.writeFloat(ii.getFloatNext());
-      return 4 * values.getSize();
-
-    } else if (dataType == DataType.DOUBLE) {
-      while (ii.hasNext())
-        stream.writeDouble(ii.getDoubleNext());
-      return 8 * values.getSize();
-    }
-
-    throw new IllegalStateException("dataType= " + dataType);
-  }
-
-  private int writeDataFast(Variable v, DataOutputStream stream, Array values) throws java.io.IOException {
+  // convert the values to big endian a chunk at a time, and write each chunk in one call
+  private long writeData(Variable v, DataOutputStream stream, Array values) throws java.io.IOException {
     DataType dataType = v.getDataType();
 
     if (dataType == DataType.BYTE) {
-      byte[] pa = (byte[]) values.get1DJavaArray(byte.class);
-      for (int i = 0; i < pa.length; i++)
-        stream.write(pa[i]);
+      byte[] pa = (byte[]) values.get1DJavaArray(DataType.BYTE);
+      stream.write(pa);
       return pa.length;
 
     } else if (dataType == DataType.CHAR) {
-      byte[] pa = IospHelper.convertCharToByte((char[]) values.get1DJavaArray(char.class));
-      for (int i = 0; i < pa.length; i++)
-        stream.write(pa[i]);
+      byte[] pa = IospHelper.convertCharToByte((char[]) values.get1DJavaArray(DataType.CHAR));
+      stream.write(pa);
       return pa.length;
-
-    } else if (dataType == DataType.SHORT) {
-      short[] pa = (short[]) values.get1DJavaArray(short.class);
-      for (int i = 0; i < pa.length; i++)
-        stream.writeShort(pa[i]);
-      return 2 * pa.length;
-
-    } else if (dataType == DataType.INT) {
-      int[] pa = (int[]) values.get1DJavaArray(int.class);
-      for (int i = 0; i < pa.length; i++)
-        stream.writeInt(pa[i]);
-      return 4 * pa.length;
-
-    } else if (dataType == DataType.FLOAT) {
-      float[] pa = (float[]) values.get1DJavaArray(float.class);
-      for (int i = 0; i < pa.length; i++)
-        stream.writeFloat(pa[i]);
-      return 4 * pa.length;
-
-    } else if (dataType == DataType.DOUBLE) {
-      double[] pa = (double[]) values.get1DJavaArray(double.class);
-      for (int i = 0; i < pa.length; i++)
-        stream.writeDouble(pa[i]);
-      return 8 * pa.length;
     }
 
-    throw new IllegalStateException("dataType= " + dataType);
+    if (chunk == null) chunk = ByteBuffer.allocate(chunkSize); // big endian
+    int elemSize = dataType.getSize();
+    int chunkElems = chunkSize / 8;
+    Object pa = values.get1DJavaArray(dataType);
+    int n = java.lang.reflect.Array.getLength(pa);
+
+    for (int start = 0; start < n; start += chunkElems) {
+      int count = Math.min(chunkElems, n - start);
+      chunk.clear();
+      if (dataType == DataType.SHORT) {
+        chunk.asShortBuffer().put((short[]) pa, start, count);
+      } else if (dataType == DataType.INT) {
+        chunk.asIntBuffer().put((int[]) pa, start, count);
+      } else if (dataType == DataType.FLOAT) {
+        chunk.asFloatBuffer().put((float[]) pa, start, count);
+      } else if (dataType == DataType.DOUBLE) {
+        chunk.asDoubleBuffer().put((double[]) pa, start, count);
+      } else {
+        throw new IllegalStateException("dataType= " + dataType);
+      }
+      stream.write(chunk.array(), 0, count * elemSize);
+    }
+    return (long) elemSize * n;
   }
 
   ////////////////////////////////////////
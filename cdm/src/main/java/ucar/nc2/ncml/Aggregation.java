@@ -27,10 +27,15 @@ import ucar.nc2.util.DiskCache2;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 
 /**
  * Superclass for NcML Aggregation.
@@ -103,12 +108,28 @@ public abstract class Aggregation {
       diskCache2.setAlwaysUseCache(true); // the persistence cache file has same name as the ncml - must put it into the cache else clobber ncml  7/31/2014
   }
 
-  // experimental multithreading
-  static protected Executor executor;
+  static protected volatile Executor executor;
+  static protected volatile int maxParallelReads = 8;
   static public void setExecutor(Executor exec) {
     executor = exec;
   }
 
+  /**
+   * Read the nested datasets of an aggregation in parallel.
+   *
+   * @param exec use this Executor, shared by all aggregations; null means serial (default)
+   * @param maxParallelReads max number of nested datasets one read request uses at the same time, must be > 0
+   */
+  static public void setExecutor(Executor exec, int maxParallelReads) {
+    if (maxParallelReads <= 0)
+      throw new IllegalArgumentException("maxParallelReads must be > 0");
+    Aggregation.maxParallelReads = maxParallelReads;
+    executor = exec;
+  }
+
+  // nested reads running in the executor dont fan out again (nested aggregations), to avoid deadlock
+  static private final ThreadLocal<Boolean> inNestedRead = ThreadLocal.withInitial(() -> false);
+
   static public void setTypicalDatasetMode(String mode) {
     if (mode.equalsIgnoreCase("random"))
       typicalDatasetMode = TypicalDataset.RANDOM;
@@ -241,6 +262,82 @@ public abstract class Aggregation {
   }
 
 
+  /**
+   * The read of (part of) a variable from one nested dataset, which copies the data into the result array.
+   */
+  protected interface NestedRead {
+    void read() throws IOException, InvalidRangeException;
+  }
+
+  /**
+   * Run the reads of the nested datasets. With an executor, at most maxParallelReads run at the same time,
+   * otherwise they are run in order in this thread. If one fails, the others still pending are cancelled.
+   *
+   * @param reads      each writes a different part of the result array
+   * @param cancelTask allow cancellation
+   * @return false if cancelled
+   */
+  protected boolean runNestedReads(List<NestedRead> reads, CancelTask cancelTask) throws IOException, InvalidRangeException {
+    Executor exec = executor;
+    if (exec == null || reads.size() < 2 || inNestedRead.get()) {
+      for (NestedRead read : reads) {
+        read.read();
+        if ((cancelTask != null) && cancelTask.isCancel())
+          return false;
+      }
+      return true;
+    }
+
+    CompletionService<Void> completionService = new ExecutorCompletionService<>(exec);
+    List<Future<Void>> futures = new ArrayList<>(reads.size());
+    int maxRunning = maxParallelReads;
+    int next = 0, running = 0;
+    try {
+      while (true) {
+        while (next < reads.size() && running < maxRunning && !((cancelTask != null) && cancelTask.isCancel())) {
+          NestedRead read = reads.get(next++);
+          futures.add(completionService.submit(() -> {
+            inNestedRead.set(true);
+            try {
+              read.read();
+            } finally {
+              inNestedRead.set(false);
+            }
+            return null;
+          }));
+          running++;
+        }
+        if (running == 0) break;
+        Future<Void> done = completionService.take();
+        running--;
+        done.get();
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted reading aggregation " + getLocation());
+
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof InvalidRangeException) throw (InvalidRangeException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new IOException(cause);
+
+    } finally {
+      if (running > 0) {  // failed or interrupted: cancel the reads still pending and take them off the queue
+        for (Future<Void> f : futures) f.cancel(true);
+        try {
+          for (; running > 0; running--) completionService.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    return !((cancelTask != null) && cancelTask.isCancel());
+  }
+
   protected String getLocation() {
     return ncDataset.getLocation();
   }
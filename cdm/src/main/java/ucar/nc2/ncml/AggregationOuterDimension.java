@@ -17,10 +17,6 @@ import ucar.nc2.util.CancelTask;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 
 /**
  * Superclass for Aggregations on the outer dimension: joinNew, joinExisting, Fmrc, FmrcSingle
@@ -319,12 +315,13 @@ public abstract class AggregationOuterDimension extends Aggregation implements P
 
     List<Range> ranges = section.getRanges();
     Range joinRange = section.getRange(0);
-    List<Range> nestedSection = new ArrayList<>(ranges); // get copy
     List<Range> innerSection = ranges.subList(1, ranges.size());
+    long innerSize = new Section(innerSection).computeSize();
 
     if (debug) System.out.println("   agg wants range=" + mainv.getFullName() + "(" + joinRange + ")");
 
-    // LOOK: could multithread here
+    // each nested dataset goes into its own part of the result, so they can be read in parallel
+    List<NestedRead> reads = new ArrayList<>();
     List<Dataset> nestedDatasets = getDatasets();
     for (Dataset nested : nestedDatasets) {
       DatasetOuterDimension dod = (DatasetOuterDimension) nested;
@@ -334,23 +331,28 @@ public abstract class AggregationOuterDimension extends Aggregation implements P
       //if (debug)
       //  System.out.println("   agg use " + nested.aggStart + ":" + nested.aggEnd + " range= " + nestedJoinRange + " file " + nested.getLocation());
 
-      Array varData;
+      List<Range> nestedSection;
       if ((type == Type.joinNew) || (type == Type.forecastModelRunCollection)) {
-        varData = dod.read(mainv, cancelTask, innerSection);
+        nestedSection = innerSection;
       } else {
+        nestedSection = new ArrayList<>(ranges); // get copy
         nestedSection.set(0, nestedJoinRange);
-        varData = dod.read(mainv, cancelTask, nestedSection);
       }
 
-      if ((cancelTask != null) && cancelTask.isCancel())
-        return null;
-      varData = MAMath.convert(varData, dtype); // just in case it need to be converted
+      int start = destPos;
+      int nelems = (int) (nestedJoinRange.length() * innerSize);
+      destPos += nelems;
 
-      Array.arraycopy(varData, 0, sectionData, destPos, (int) varData.getSize());
-      destPos += varData.getSize();
+      reads.add(() -> {
+        Array varData = dod.read(mainv, cancelTask, nestedSection);
+        if (varData == null) return; // cancelled
+        varData = MAMath.convert(varData, dtype); // just in case it need to be converted
+        // may have less than asked for (fmrc ragged time)
+        Array.arraycopy(varData, 0, sectionData, start, (int) Math.min(varData.getSize(), nelems));
+      });
     }
 
-    return sectionData;
+    return runNestedReads(reads, cancelTask) ? sectionData : null;
   }
 
   /**
@@ -391,74 +393,28 @@ public abstract class AggregationOuterDimension extends Aggregation implements P
     //  return readAggCoord(mainv, cancelTask);
 
     Array allData = Array.factory(dtype, mainv.getShape());
-    int destPos = 0;
+    long innerSize = (mainv.getShape(0) == 0) ? 0 : mainv.getSize() / mainv.getShape(0);
 
+    // each nested dataset goes into its own part of the result, so they can be read in parallel
+    List<NestedRead> reads = new ArrayList<>();
     List<Dataset> nestedDatasets = getDatasets();
-    if (executor != null) {
-      CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
-
-      int count = 0;
-      for (Dataset vnested : nestedDatasets)
-        completionService.submit(new ReaderTask(vnested, mainv, cancelTask, count++));
-
-      try {
-        int n = nestedDatasets.size();
-        for (int i = 0; i < n; ++i) {
-          Result r = completionService.take().get();
-          if (r != null) {
-            r.data = MAMath.convert(r.data, dtype); // just in case it needs to be converted
-            int size = (int) r.data.getSize();
-            Array.arraycopy(r.data, 0, allData, size * r.index, size);
-          }
-        }
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-      } catch (ExecutionException e) {
-        throw new IOException(e.getMessage());
-      }
-
-    } else {
+    for (Dataset vnested : nestedDatasets) {
+      DatasetOuterDimension dod = (DatasetOuterDimension) vnested;
+      int start = (int) (dod.aggStart * innerSize);
+      int nelems = (int) ((dod.aggEnd - dod.aggStart) * innerSize);
 
-      for (Dataset vnested : nestedDatasets) {
-        Array varData = vnested.read(mainv, cancelTask);
-        if ((cancelTask != null) && cancelTask.isCancel())
-          return null;
+      reads.add(() -> {
+        Array varData = dod.read(mainv, cancelTask);
+        if (varData == null) return; // cancelled
         varData = MAMath.convert(varData, dtype); // just in case it need to be converted
-
-        Array.arraycopy(varData, 0, allData, destPos, (int) varData.getSize());
-        destPos += varData.getSize();
-      }
+        Array.arraycopy(varData, 0, allData, start, (int) Math.min(varData.getSize(), nelems));
+      });
     }
 
-    return allData;
-  }
-
-  private static class ReaderTask implements Callable<Result> {
-    Dataset ds;
-    Variable mainv;
-    CancelTask cancelTask;
-    int index;
-
-    ReaderTask(Dataset ds, Variable mainv, CancelTask cancelTask, int index) {
-      this.ds = ds;
-      this.mainv = mainv;
-      this.cancelTask = cancelTask;
-      this.index = index;
-    }
-
-    public Result call() throws Exception {
-      Array data = ds.read(mainv, cancelTask);
-      return new Result(data, index);
-    }
-  }
-
-  private static class Result {
-    Array data;
-    int index;
-
-    Result(Array data, int index) {
-      this.data = data;
-      this.index = index;
+    try {
+      return runNestedReads(reads, cancelTask) ? allData : null;
+    } catch (InvalidRangeException e) {
+      throw new IllegalArgumentException("readAgg " + getLocation(), e);
     }
   }
 
@@ -133,7 +133,8 @@ public class AggregationTiled extends Aggregation implements ProxyReader {
     Section wantSection = mainv.getShapeAsSection();
     if (debug) System.out.println("wantSection: " + wantSection + " for var " + mainv.getFullName());
 
-    // make concurrent
+    // the tiles go into different parts of allData, so they can be read in parallel
+    List<NestedRead> reads = new ArrayList<>();
     List<Dataset> nestedDatasets = getDatasets();
     for (Dataset vnested : nestedDatasets) {
       DatasetTiled dtiled = (DatasetTiled) vnested;
@@ -142,41 +143,32 @@ public class AggregationTiled extends Aggregation implements ProxyReader {
       Section tiledSection = dtiled.makeVarSection(mainv);
       //System.out.println(" tiledSection: " + tiledSection);
 
-      // now use a TileLayout to figure out how to "distribute" it to the result array
-      Array varData;
-      TileLayout index;
-      try {
+      NestedRead read = () -> {
         // read in the entire data from this nested dataset
-        varData = dtiled.read(mainv, cancelTask);
+        Array varData = dtiled.read(mainv, cancelTask);
         if (varData == null)
           throw new IOException("cant read "+mainv.getFullName());
-
-        index = new TileLayout(tiledSection, wantSection);
-
         if (debug) System.out.println(" varData read: " + new Section(varData.getShape()));
-      } catch (InvalidRangeException e) {
-        throw new IllegalArgumentException(e.getMessage());
-      }
-
 
-      while (index.hasNext()) {
-        try {
-          Array.arraycopy(varData, index.srcPos, allData, index.resultPos, index.nelems);
-        } catch (RuntimeException e) {
-          System.out.println(index.toString());
-          throw e;
-        }
-      }
+        // now use a TileLayout to figure out how to "distribute" it to the result array
+        copyTile(varData, new TileLayout(tiledSection, wantSection), allData);
+      };
 
       // covers the case of coordinate variables for a 1 row or 1 col tiling.
       // doesnt eliminate duplicate reading in general
-      if (varData.getSize() == mainv.getSize()) break;
-
-      if ((cancelTask != null) && cancelTask.isCancel())
-        return null;
+      if (tiledSection.computeSize() == mainv.getSize()) {
+        reads.clear();
+        reads.add(read);
+        break;
+      }
+      reads.add(read);
     }
 
-    return allData;
+    try {
+      return runNestedReads(reads, cancelTask) ? allData : null;
+    } catch (InvalidRangeException e) {
+      throw new IllegalArgumentException(e.getMessage());
+    }
   }
 
   @Override
@@ -193,17 +185,13 @@ public class AggregationTiled extends Aggregation implements ProxyReader {
       System.out.println(dtype + " allData allocated: " + new Section(allData.getShape()));
     }
 
-    // make concurrent
-
-    // run through all the datasets
+    // run through all the datasets; the tiles go into different parts of allData, so they can be read in parallel
+    List<NestedRead> reads = new ArrayList<>();
     List<Dataset> nestedDatasets = getDatasets();
-    for (Dataset vnested : nestedDatasets) {
-      DatasetTiled dtiled = (DatasetTiled) vnested;
-      Section tiledSection = dtiled.makeVarSection(mainv);
-      TileLayout index;
-      Array varData;
-
-      try {
+    try {
+      for (Dataset vnested : nestedDatasets) {
+        DatasetTiled dtiled = (DatasetTiled) vnested;
+        Section tiledSection = dtiled.makeVarSection(mainv);
         if (!tiledSection.intersects(wantSection))
           continue;
 
@@ -214,35 +202,39 @@ public class AggregationTiled extends Aggregation implements ProxyReader {
         if (debug) System.out.println(" intersection: " + needToRead);
 
         Section localNeed = needToRead.shiftOrigin(tiledSection); // shifted to the tiled section
-        varData = dtiled.read(mainv, cancelTask, localNeed.getRanges());
-        if (varData == null)
-          throw new IOException("cant read "+mainv.getFullName());
-
-        index = new TileLayout(needToRead, wantSection);
-
-      } catch (InvalidRangeException e) {
-        throw new IllegalArgumentException(e.getMessage());
-      }
-
-      while (index.hasNext()) {
-        try {
-          Array.arraycopy(varData, index.srcPos, allData, index.resultPos, index.nelems);
-        } catch (RuntimeException e) {
-          System.out.println(" tiledSection: " + tiledSection);
-          System.out.println(index.toString());
-          throw e;
+        NestedRead read = () -> {
+          Array varData = dtiled.read(mainv, cancelTask, localNeed.getRanges());
+          if (varData == null)
+            throw new IOException("cant read "+mainv.getFullName());
+          copyTile(varData, new TileLayout(needToRead, wantSection), allData);
+        };
+
+        // covers the case of coordinate variables for a 1 row or 1 col tiling.
+        // doesnt eliminate duplicate reading in general
+        if (tiledSection.computeSize() == mainv.getSize()) {
+          reads.clear();
+          reads.add(read);
+          break;
         }
+        reads.add(read);
       }
 
-      // covers the case of coordinate variables for a 1 row or 1 col tiling.
-      // doesnt eliminate duplicate reading in general
-      if (varData.getSize() == mainv.getSize()) break;
+      return runNestedReads(reads, cancelTask) ? allData : null;
 
-      if ((cancelTask != null) && cancelTask.isCancel())
-        return null;
+    } catch (InvalidRangeException e) {
+      throw new IllegalArgumentException(e.getMessage());
     }
+  }
 
-    return allData;
+  private void copyTile(Array varData, TileLayout index, Array allData) {
+    while (index.hasNext()) {
+      try {
+        Array.arraycopy(varData, index.srcPos, allData, index.resultPos, index.nelems);
+      } catch (RuntimeException e) {
+        System.out.println(index.toString());
+        throw e;
+      }
+    }
   }
 
   private class TileLayout {
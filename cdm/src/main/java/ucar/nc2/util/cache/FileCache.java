@@ -13,10 +13,16 @@ import ucar.nc2.util.Misc;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Keep cache of open FileCacheable objects, for example NetcdfFile.
@@ -49,6 +55,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * </pre>
  * All methods are thread safe.
  * Cleanup is done automatically in a background thread, using LRU algorithm.
+ * <p/>
+ * Concurrent misses on the same hashKey are coalesced: one thread opens the file, the others wait for it,
+ * and then for the file to be released, before opening their own copy.
  *
  * @author caron
  * @since May 30, 2008
@@ -103,11 +112,20 @@ public class FileCache implements FileCacheIF {
 
   protected final ConcurrentHashMap<Object, CacheElement> cache; // unique files (by key, often = filename)
   protected final ConcurrentHashMap<FileCacheable, CacheElement.CacheFile> files; // list of all files in the cache
+  // files being opened (by key); completed with the time the open took in nanosecs, 0 if it failed
+  private final ConcurrentHashMap<Object, CompletableFuture<Long>> opening = new ConcurrentHashMap<>();
+  private static final long cancelPollMsecs = 100; // how often a waiting thread checks its cancelTask
 
   // debugging and stats
   protected final AtomicInteger cleanups = new AtomicInteger();  // how many cleanups
   protected final AtomicInteger hits = new AtomicInteger();
   protected final AtomicInteger miss = new AtomicInteger();
+  protected final AtomicInteger opens = new AtomicInteger();
+  protected final AtomicLong openNanos = new AtomicLong();
+  protected final AtomicLong maxOpenNanos = new AtomicLong();
+  protected final AtomicInteger coalesced = new AtomicInteger(); // waited for another thread to open the same file
+  protected final AtomicInteger coalescedHits = new AtomicInteger(); // then got it from the cache
+  protected final AtomicLong coalescedNanos = new AtomicLong();
   protected ConcurrentHashMap<Object, Tracker> track;
   protected boolean trackAll = false;
 
@@ -244,8 +262,81 @@ public class FileCache implements FileCacheIF {
     miss.incrementAndGet();
     if (t != null) t.miss++;
 
+    // single flight: if another thread is already opening this file, wait for it instead
+    CompletableFuture<Long> myOpen = null;
+    if (!disabled.get()) {
+      myOpen = new CompletableFuture<>();
+      CompletableFuture<Long> inFlight = opening.putIfAbsent(hashKey, myOpen);
+      if (inFlight != null) {
+        myOpen = null;
+        ncfile = waitForOpen(hashKey, inFlight, cancelTask);
+        if (ncfile != null) return ncfile;
+        if ((cancelTask != null) && (cancelTask.isCancel())) return null; // user canceled while waiting
+      }
+    }
+
     // open the file
-    ncfile = factory.open(location, buffer_size, cancelTask, spiObject);
+    long start = System.nanoTime();
+    long took = 0;
+    try {
+      ncfile = factory.open(location, buffer_size, cancelTask, spiObject);
+      took = System.nanoTime() - start;
+      opens.incrementAndGet();
+      openNanos.addAndGet(took);
+      maxOpenNanos.accumulateAndGet(took, Math::max);
+
+      return addToCache(hashKey, ncfile, cancelTask);
+
+    } finally {
+      if (myOpen != null) {
+        opening.remove(hashKey, myOpen);
+        myOpen.complete(took);
+      }
+    }
+  }
+
+  /**
+   * Wait for another thread to open the file, then look for it in the cache.
+   * Opening our own copy would take about as long as the other open did, so wait that long for a copy to be released.
+   *
+   * @param cancelTask user can cancel, ok to be null; polled while waiting
+   * @return file from the cache, or null if none became available or the user canceled
+   */
+  private FileCacheable waitForOpen(Object hashKey, CompletableFuture<Long> inFlight, CancelTask cancelTask) throws IOException {
+    coalesced.incrementAndGet();
+    long start = System.nanoTime();
+    try {
+      long openTook;
+      if (cancelTask == null) {
+        openTook = inFlight.get();
+      } else {
+        while (true) {
+          if (cancelTask.isCancel()) return null;
+          try {
+            openTook = inFlight.get(cancelPollMsecs, TimeUnit.MILLISECONDS);
+            break;
+          } catch (TimeoutException e) {
+            // still opening, check the cancelTask again
+          }
+        }
+        if (cancelTask.isCancel()) return null;
+      }
+      FileCacheable ncfile = acquireCacheOnly(hashKey, TimeUnit.NANOSECONDS.toMillis(openTook));
+      if (ncfile != null) coalescedHits.incrementAndGet();
+      return ncfile;
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("FileCache " + name + " interrupted waiting for " + hashKey);
+    } catch (ExecutionException e) {
+      return null; // never happens, opens are completed normally
+    } finally {
+      coalescedNanos.addAndGet(System.nanoTime() - start);
+    }
+  }
+
+  // put a newly opened file into the cache, locked
+  private FileCacheable addToCache(Object hashKey, FileCacheable ncfile, CancelTask cancelTask) throws IOException {
     if (cacheLog.isDebugEnabled())
       cacheLog.debug("FileCache " + name + " acquire " + hashKey + " " + ncfile.getLocation());
     if (debugPrint) System.out.println("  FileCache " + name + " acquire " + hashKey + " " + ncfile.getLocation());
@@ -258,39 +349,23 @@ public class FileCache implements FileCacheIF {
 
     if (disabled.get()) return ncfile;
 
-    // see if cache element already exists
-    // cant use putIfAbsent, because we cant create the CacheElement until we know if doesnt exist
-    CacheElement elem;
-    synchronized (cache) {
-      elem = cache.get(hashKey);
-      if (elem == null) cache.put(hashKey, new CacheElement(ncfile, hashKey)); // new element
-    }
+    // add a new cache element, or add to the existing one's list
+    // compute() locks only this key's bin, and is atomic with the removal of empty elements in cleanup
+    cache.compute(hashKey, (key, elem) -> {
+      if (elem == null) return new CacheElement(ncfile, key);
+      elem.addFile(ncfile);
+      return elem;
+    });
 
-    // already exists, add to list
-    if (elem != null) {
-      synchronized (elem) {
-        elem.addFile(ncfile); // add to existing list
-      }
-    }
-
-    // increment the number of files in the cache
-    //int count = counter.incrementAndGet();
-
-    // do we need a cleanup ??
+    // do we need a cleanup ?? compareAndSet tells other threads not to schedule another cleanup
     boolean needHard = false;
     boolean needSoft = false;
-    synchronized (hasScheduled) {
-      if (!hasScheduled.get()) {
-        int count = files.size();
-        if ((count > hardLimit) && (hardLimit > 0)) {
-          needHard = true;
-          hasScheduled.getAndSet(true); // tell other threads not to schedule another cleanup
-
-        } else if ((count > softLimit) && (softLimit > 0)) {   // && wantsCleanup) { //
-          hasScheduled.getAndSet(true); // tell other threads not to schedule another cleanup
-          needSoft = true;
-        }
-      }
+    int count = files.size();
+    if ((count > hardLimit) && (hardLimit > 0)) {
+      needHard = hasScheduled.compareAndSet(false, true);
+
+    } else if ((count > softLimit) && (softLimit > 0)) {
+      needSoft = hasScheduled.compareAndSet(false, true);
     }
 
     if (needHard) {
@@ -314,21 +389,28 @@ public class FileCache implements FileCacheIF {
    * @return file if its in the cache, null otherwise.
    */
   private FileCacheable acquireCacheOnly(Object hashKey) {
+    try {
+      return acquireCacheOnly(hashKey, 0);
+    } catch (InterruptedException e) {
+      return null; // not waiting, cant happen
+    }
+  }
+
+  /**
+   * Try to find a file in the cache, waiting for one to be released if all are locked.
+   *
+   * @param hashKey used as the key.
+   * @param waitMsecs wait up to this long for a locked file to be released, 0 = dont wait
+   * @return file if its in the cache, null otherwise.
+   */
+  private FileCacheable acquireCacheOnly(Object hashKey, long waitMsecs) throws InterruptedException {
     if (disabled.get()) return null;
 
     // see if its in the cache
     CacheElement wantCacheElem = cache.get(hashKey);
     if (wantCacheElem == null) return null;  // not found in cache
 
-    CacheElement.CacheFile want = null;
-    synchronized (wantCacheElem) { // synch in order to traverse the list
-      for (CacheElement.CacheFile file : wantCacheElem.list) {
-        if (file.isLocked.compareAndSet(false, true)) {
-          want = file;
-          break;
-        }
-      }
-    }
+    CacheElement.CacheFile want = wantCacheElem.lockFile(waitMsecs);
     if (want == null) return null; // no unlocked file in cache
 
     // check if modified, remove if so
@@ -431,8 +513,8 @@ public class FileCache implements FileCacheIF {
       }
       file.lastAccessed = System.currentTimeMillis();
       file.countAccessed++;
-      file.isLocked.set(false);
       file.ncfile.release();
+      file.unlock();
 
       if (cacheLog.isDebugEnabled()) cacheLog.debug("FileCache " + name + " release " + ncfile.getLocation()+"; hash= "+ncfile.hashCode());
       if (debugPrint) System.out.printf("  FileCache %s release %s lock=%s count=%d%n", name, ncfile.getLocation(), file.isLocked.get(), countLocked());
@@ -493,15 +575,7 @@ public class FileCache implements FileCacheIF {
         }
       }
 
-      // remove empty cache elements
-      synchronized (cache) {
-        for (CacheElement elem : cache.values()) {
-          synchronized (elem) {
-            if (elem.list.size() == 0)
-              cache.remove(elem.hashKey);
-          }
-        }
-      }
+      removeEmptyElements();
     }
 
     // close all files in deleteList
@@ -527,6 +601,17 @@ public class FileCache implements FileCacheIF {
     //System.out.println("\n*NetcdfFileCache.clearCache force= " + force + " deleted= " + deleteList.size() + " left=" + counter.get());
   }
 
+  // remove empty cache elements; computeIfPresent is atomic with adding a file to the element in acquire
+  private void removeEmptyElements() {
+    for (Object hashKey : cache.keySet()) {
+      cache.computeIfPresent(hashKey, (key, elem) -> {
+        synchronized (elem) {
+          return elem.list.isEmpty() ? null : elem;
+        }
+      });
+    }
+  }
+
   /**
    * Show individual cache entries, add to formatter.
    *
@@ -576,6 +661,11 @@ public class FileCache implements FileCacheIF {
    */
   public void showStats(Formatter format) {
     format.format("  hits= %d miss= %d nfiles= %d elems= %d%n", hits.get(), miss.get(), files.size(), cache.values().size());
+    int nopens = opens.get();
+    int ncoalesced = coalesced.get();
+    format.format("  opens= %d avg= %.2f max= %.2f msecs; coalesced= %d (found in cache %d) avg wait= %.2f msecs%n",
+        nopens, nopens == 0 ? 0.0 : openNanos.get() / 1.0e6 / nopens, maxOpenNanos.get() / 1.0e6,
+        ncoalesced, coalescedHits.get(), ncoalesced == 0 ? 0.0 : coalescedNanos.get() / 1.0e6 / ncoalesced);
   }
 
   public void showTracking(Formatter format) {
@@ -686,15 +776,7 @@ public class FileCache implements FileCacheIF {
           System.out.println("FileCache " + name + " cleanup couldnt remove enough to keep under the maximum= " + maxElements + " due to locked files; currently at = " + (size - count));
       }
 
-      // remove empty cache elements
-      synchronized (cache) {
-        for (CacheElement elem : cache.values()) {
-          synchronized (elem) {
-            if (elem.list.size() == 0)
-              cache.remove(elem.hashKey);
-          }
-        }
-      }
+      removeEmptyElements();
 
       // now actually close the files
       long start = System.currentTimeMillis();
@@ -754,6 +836,29 @@ public class FileCache implements FileCacheIF {
       return file;
     }
 
+    private volatile int waiting; // threads waiting in lockFile(), changed only while synchronized
+
+    // lock an unlocked file, waiting up to msecs for one to be released
+    CacheFile lockFile(long msecs) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + msecs;
+      synchronized (this) { // synch in order to traverse the list
+        waiting++;
+        try {
+          while (true) {
+            for (CacheFile file : list) {
+              if (file.isLocked.compareAndSet(false, true))
+                return file;
+            }
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0 || list.isEmpty()) return null;
+            wait(wait);
+          }
+        } finally {
+          waiting--;
+        }
+      }
+    }
+
     public String toString() {
       return hashKey + " count=" + list.size();
     }
@@ -780,6 +885,15 @@ public class FileCache implements FileCacheIF {
         return ncfile.getLocation();
       }
 
+      void unlock() {
+        isLocked.set(false);
+        if (waiting > 0) { // volatile read after volatile write, so a waiter sees the unlock or gets notified
+          synchronized (CacheElement.this) {
+            CacheElement.this.notifyAll();
+          }
+        }
+      }
+
       void remove() {
         synchronized (CacheElement.this) {
           if (!list.remove(this))
@@ -5,93 +5,338 @@
 package ucar.unidata.io;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Use NIO MappedByteBuffer to implement a RandomAccessFile.
- * Limited to 2G size. Not currently used - NOT UP TO DATE DO NOT USE
+ * Use NIO MappedByteBuffers to implement a read-only RandomAccessFile.
+ * The file is mapped in fixed size windows (default 1 Gbyte), as they are needed, so any size file can be used.
+ * Reads come straight from the OS page cache; the bulk array reads use typed views of the mapped windows.
+ * <p>
+ * RandomAccessFile.acquire() uses this for files under the locations set by setMappedLocations().
+ *
  * @author john
  */
 public class MMapRandomAccessFile extends RandomAccessFile {
+  static public final int DEFAULT_WINDOW_SIZE = 1 << 30;
+  static private final int SEARCH_BUFFER_SIZE = 64 * 1000;
 
-  private MappedByteBuffer source;
+  // files under these directories are opened as MMapRandomAccessFile by RandomAccessFile.acquire()
+  static private volatile List<String> mappedLocations = Collections.emptyList();
 
   /**
-    * Constructor for in-memory "files"
-    * @param location used as a name
-    * @param mode the open mode
-    * @throws java.io.IOException on error
-    */
+   * Set the directories whose files are opened as MMapRandomAccessFile by RandomAccessFile.acquire().
+   * @param locations directory locations, replaces any previous ones. empty or null means none.
+   */
+  static public void setMappedLocations(List<String> locations) {
+    List<String> result = new ArrayList<>();
+    if (locations != null) {
+      for (String location : locations) {
+        location = location.replace('\\', '/');
+        result.add(location.endsWith("/") ? location : location + "/");
+      }
+    }
+    mappedLocations = Collections.unmodifiableList(result);
+  }
+
+  static public List<String> getMappedLocations() {
+    return mappedLocations;
+  }
+
+  /**
+   * @param location file location
+   * @return true if this file should be opened as a MMapRandomAccessFile
+   */
+  static public boolean isMappedLocation(String location) {
+    List<String> locations = mappedLocations;
+    if (locations.isEmpty() || location == null) return false;
+    location = location.replace('\\', '/');
+    for (String dir : locations)
+      if (location.startsWith(dir)) return true;
+    return false;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////
+
+  private final int windowShift;
+  private final long windowMask;
+  private final long fileLength;
+  private MappedByteBuffer[] windows; // mapped when first used
+
+  /**
+   * Constructor, using the default window size.
+   * @param location location of the file
+   * @param mode the open mode, must be "r"
+   * @throws java.io.IOException on error
+   */
   public MMapRandomAccessFile(String location, String mode) throws IOException {
+    this(location, mode, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param location location of the file
+   * @param mode the open mode, must be "r"
+   * @param windowSize map the file in windows of this many bytes, must be a power of 2
+   * @throws java.io.IOException on error
+   */
+  public MMapRandomAccessFile(String location, String mode, int windowSize) throws IOException {
     super(location, mode, 1);
-    FileChannel channel = file.getChannel();
-    source = channel.map( readonly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, (long) 0, channel.size());
-    //channel.close();
-
-    bufferStart = 0;
-	  dataSize = (int) channel.size();
-	  dataEnd = channel.size();
-    filePosition = 0;
-    buffer = null;
-    endOfFile = false;
+    if (!readonly) {
+      file.close();
+      throw new IllegalArgumentException("MMapRandomAccessFile is read only");
+    }
+    if (windowSize <= 0 || Integer.bitCount(windowSize) != 1) {
+      file.close();
+      throw new IllegalArgumentException("windowSize must be a power of 2");
+    }
+    this.windowShift = Integer.numberOfTrailingZeros(windowSize);
+    this.windowMask = windowSize - 1;
+
+    fileLength = file.getChannel().size();
+    int nwindows = (int) ((fileLength + windowMask) >>> windowShift);
+    windows = new MappedByteBuffer[nwindows];
+    // the reads come from the mapped windows; the base class buffer stays empty, unless readBuffer() is called
+  }
+
+  private MappedByteBuffer getWindow(int index) throws IOException {
+    MappedByteBuffer window = windows[index];
+    if (window == null) {
+      long start = (long) index << windowShift;
+      long size = Math.min(windowMask + 1, fileLength - start);
+      window = file.getChannel().map(FileChannel.MapMode.READ_ONLY, start, size);
+      windows[index] = window;
+    }
+    return window;
   }
 
+  // a view of the mapped bytes starting at pos, in the current byte order. may have fewer than nbytes, if pos+nbytes
+  // crosses into the next window.
+  private ByteBuffer getView(long pos, long nbytes) throws IOException {
+    ByteBuffer view = getWindow((int) (pos >>> windowShift)).duplicate();
+    int offset = (int) (pos & windowMask);
+    view.position(offset);
+    view.limit((int) Math.min(view.capacity(), offset + nbytes));
+    return view.slice().order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+  }
 
-  public void flush() throws IOException {
-    if (bufferModified) {
-      source.force();
-      bufferModified = false;
+  // copy bytes starting at pos, return number copied
+  private int copy(long pos, byte[] b, int off, int len) throws IOException {
+    len = (int) Math.min(len, fileLength - pos);
+    int done = 0;
+    while (done < len) {
+      ByteBuffer view = getView(pos + done, len - done);
+      int n = view.remaining();
+      view.get(b, off + done, n);
+      done += n;
     }
+    return len;
   }
 
-  public long length( ) {
-    return dataEnd;
+  private void checkAvailable(long nbytes) throws EOFException {
+    if (filePosition + nbytes > fileLength)
+      throw new EOFException("Reading " + location + " at " + filePosition + " file length = " + fileLength);
   }
 
-  public void seek( long pos ) {
+  @Override
+  public synchronized void close() throws IOException {
+    super.close();
+    if (file == null && windows != null) { // really closed, not just released to the cache
+      Arrays.fill(windows, null); // unmapped when garbage collected
+    }
+  }
+
+  @Override
+  public void setBufferSize(int bufferSize) {
+    // do nothing
+  }
+
+  @Override
+  public long length() {
+    return fileLength;
+  }
+
+  // the reads don't use the base class buffer, so seek doesn't fill it
+  @Override
+  public void seek(long pos) throws IOException {
+    if (pos < 0)
+      throw new java.io.IOException("Negative seek offset");
     filePosition = pos;
-    if( filePosition < dataEnd )
-      source.position((int) filePosition);
-    else
-      endOfFile = true;
+    endOfFile = (pos >= fileLength);
   }
 
-   public void unread( ) {
-     seek( filePosition-1);
-   }
+  // fill the base class buffer from the mapping, as the base class does from the file
+  @Override
+  protected void readBuffer(long pos) throws IOException {
+    bufferStart = pos;
+    filePosition = pos;
+    dataSize = (pos < fileLength) ? copy(pos, buffer, 0, buffer.length) : 0;
+    dataEnd = bufferStart + dataSize;
+    endOfFile = (dataSize == 0);
+  }
+
+  @Override
+  public void unread() {
+    filePosition--;
+    endOfFile = false;
+  }
 
+  @Override
   public int read() throws IOException {
-    // If the file position is within the data, return the byte...
-    if( filePosition < dataEnd ) {
-      filePosition++;
-      return source.get() & 0xff;
+    if (filePosition >= fileLength) {
+      endOfFile = true;
+      return -1;
+    }
+    int b = getWindow((int) (filePosition >>> windowShift)).get((int) (filePosition & windowMask)) & 0xff;
+    filePosition++;
+    return b;
+  }
 
-    } else {
-       return -1;
+  @Override
+  public int readBytes(byte[] b, int off, int len) throws IOException {
+    if (filePosition >= fileLength) {
+      endOfFile = true;
+      return -1;
     }
+    int n = copy(filePosition, b, off, len);
+    filePosition += n;
+    return n;
   }
 
-   public int readBytes( byte dst[], int offset, int length ) throws IOException {
-     if( endOfFile ) return -1;
+  @Override
+  protected int read_(long pos, byte[] b, int offset, int len) throws IOException {
+    if (pos >= fileLength) return -1;
+    return copy(pos, b, offset, len);
+  }
 
-     length = (int) Math.min( length, dataEnd - filePosition);
-     if (length > 0) {
-       source.get(dst, offset, length);
-       filePosition += length;
-     }
-     return length;
-   }
+  @Override
+  public void readShort(short[] pa, int start, int n) throws IOException {
+    checkAvailable(2L * n);
+    while (n > 0) {
+      ByteBuffer view = getView(filePosition, 2L * n);
+      int count = view.remaining() / 2;
+      if (count == 0) { // element crosses into the next window
+        pa[start++] = readShort();
+        n--;
+        continue;
+      }
+      view.asShortBuffer().get(pa, start, count);
+      filePosition += 2L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readInt(int[] pa, int start, int n) throws IOException {
+    checkAvailable(4L * n);
+    while (n > 0) {
+      ByteBuffer view = getView(filePosition, 4L * n);
+      int count = view.remaining() / 4;
+      if (count == 0) { // element crosses into the next window
+        pa[start++] = readInt();
+        n--;
+        continue;
+      }
+      view.asIntBuffer().get(pa, start, count);
+      filePosition += 4L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readLong(long[] pa, int start, int n) throws IOException {
+    checkAvailable(8L * n);
+    while (n > 0) {
+      ByteBuffer view = getView(filePosition, 8L * n);
+      int count = view.remaining() / 8;
+      if (count == 0) { // element crosses into the next window
+        pa[start++] = readLong();
+        n--;
+        continue;
+      }
+      view.asLongBuffer().get(pa, start, count);
+      filePosition += 8L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readFloat(float[] pa, int start, int n) throws IOException {
+    checkAvailable(4L * n);
+    while (n > 0) {
+      ByteBuffer view = getView(filePosition, 4L * n);
+      int count = view.remaining() / 4;
+      if (count == 0) { // element crosses into the next window
+        pa[start++] = readFloat();
+        n--;
+        continue;
+      }
+      view.asFloatBuffer().get(pa, start, count);
+      filePosition += 4L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readDouble(double[] pa, int start, int n) throws IOException {
+    checkAvailable(8L * n);
+    while (n > 0) {
+      ByteBuffer view = getView(filePosition, 8L * n);
+      int count = view.remaining() / 8;
+      if (count == 0) { // element crosses into the next window
+        pa[start++] = readDouble();
+        n--;
+        continue;
+      }
+      view.asDoubleBuffer().get(pa, start, count);
+      filePosition += 8L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public boolean searchForward(KMPMatch match, int maxBytes) throws IOException {
+    long start = filePosition;
+    long last = (maxBytes < 0) ? fileLength : Math.min(fileLength, start + maxBytes);
+    int matchLen = match.getMatchLength();
+
+    byte[] scan = new byte[(int) Math.max(0, Math.min(SEARCH_BUFFER_SIZE, last - start))];
+    long pos = start;
+    while (last - pos >= matchLen) {
+      int n = (int) Math.min(scan.length, last - pos);
+      copy(pos, scan, 0, n);
+      int found = match.indexOf(scan, 0, n);
+      if (found >= 0) {
+        seek(pos + found);
+        return true;
+      }
+      pos += n - matchLen + 1; // overlap, in case the match crosses the end of scan
+    }
+
+    // failure
+    seek(last);
+    return false;
+  }
 
-  public void write( int b ) throws IOException {
-     source.put( (byte)b);
-     filePosition++;
-     bufferModified = true;
+  @Override
+  public void write(int b) throws IOException {
+    throw new IOException("MMapRandomAccessFile is read only");
   }
 
-  public void writeBytes( byte dst[], int offset, int length ) throws IOException {
-    source.put(dst, offset, length);
-    filePosition += length;
+  @Override
+  public void writeBytes(byte[] b, int off, int len) throws IOException {
+    throw new IOException("MMapRandomAccessFile is read only");
   }
 
-}
\ No newline at end of file
+}
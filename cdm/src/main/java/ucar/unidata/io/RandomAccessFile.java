@@ -16,6 +16,7 @@ import ucar.unidata.util.StringUtil2;
 
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
@@ -56,6 +57,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
   static public final int LITTLE_ENDIAN = 1;
 
   static protected final int defaultBufferSize = 8092;  // The default buffer size, in bytes.
+  static private final int bulkReadSize = 1024 * 1024;  // max bytes per direct read in the bulk array reads
 
   ///////////////////////////////////////////////////////////////////////
   // debug leaks - keep track of open files
@@ -163,7 +165,8 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
   static private final ucar.nc2.util.cache.FileFactory factory = new FileFactory() {
     public FileCacheable open(DatasetUrl durl, int buffer_size, CancelTask cancelTask, Object iospMessage) throws IOException {
       String location = StringUtil2.replace(durl.trueurl, "\\", "/"); // canonicalize the name
-      RandomAccessFile result = new RandomAccessFile(location, "r", buffer_size);
+      RandomAccessFile result = MMapRandomAccessFile.isMappedLocation(location) ? new MMapRandomAccessFile(location, "r") :
+              new RandomAccessFile(location, "r", buffer_size);
       result.cacheState = 1;  // in use
       return result;
     }
@@ -187,14 +190,16 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
 
   static public RandomAccessFile acquire(String location) throws IOException {
     if (cache == null)
-      return new RandomAccessFile(location, "r");
+      return MMapRandomAccessFile.isMappedLocation(location) ? new MMapRandomAccessFile(location, "r") :
+              new RandomAccessFile(location, "r");
     else
       return (RandomAccessFile) cache.acquire(factory, new DatasetUrl(null, location));
   }
 
   static public RandomAccessFile acquire(String location, int buffer_size) throws IOException {
     if (cache == null)
-      return new RandomAccessFile(location, "r", buffer_size);
+      return MMapRandomAccessFile.isMappedLocation(location) ? new MMapRandomAccessFile(location, "r") :
+              new RandomAccessFile(location, "r", buffer_size);
     else
       return (RandomAccessFile) cache.acquire(factory, location, new DatasetUrl(null, location), buffer_size, null, null);
   }
@@ -232,6 +237,11 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    */
   protected byte buffer[];
 
+  /**
+   * Scratch space for bulk array reads that bypass the buffer, allocated on first use and reused.
+   */
+  private byte[] bulkBuffer;
+
   /**
    * The offset in bytes of the start of the buffer, from the start of the file.
    */
@@ -430,6 +440,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     // Close the underlying file object.
     file.close();
     file = null;  // help the gc
+    bulkBuffer = null;
   }
 
   @Override
@@ -1105,9 +1116,18 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n     read this many elements
    * @throws IOException on read error
    */
-  public final void readShort(short[] pa, int start, int n) throws IOException {
-    for (int i = 0; i < n; i++) {
-      pa[start + i] = readShort();
+  public void readShort(short[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = nextElements(2, n);
+      if (bb == null) { // element straddles the end of the buffer
+        pa[start++] = readShort();
+        n--;
+        continue;
+      }
+      int count = bb.remaining() / 2;
+      bb.asShortBuffer().get(pa, start, count);
+      start += count;
+      n -= count;
     }
   }
 
@@ -1258,9 +1278,18 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n     read this many elements
    * @throws IOException on read error
    */
-  public final void readInt(int[] pa, int start, int n) throws IOException {
-    for (int i = 0; i < n; i++) {
-      pa[start + i] = readInt();
+  public void readInt(int[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = nextElements(4, n);
+      if (bb == null) { // element straddles the end of the buffer
+        pa[start++] = readInt();
+        n--;
+        continue;
+      }
+      int count = bb.remaining() / 4;
+      bb.asIntBuffer().get(pa, start, count);
+      start += count;
+      n -= count;
     }
   }
 
@@ -1324,9 +1353,18 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n     read this many elements
    * @throws IOException on read error
    */
-  public final void readLong(long[] pa, int start, int n) throws IOException {
-    for (int i = 0; i < n; i++) {
-      pa[start + i] = readLong();
+  public void readLong(long[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = nextElements(8, n);
+      if (bb == null) { // element straddles the end of the buffer
+        pa[start++] = readLong();
+        n--;
+        continue;
+      }
+      int count = bb.remaining() / 8;
+      bb.asLongBuffer().get(pa, start, count);
+      start += count;
+      n -= count;
     }
   }
 
@@ -1361,9 +1399,18 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n     read this many elements
    * @throws IOException on read error
    */
-  public final void readFloat(float[] pa, int start, int n) throws IOException {
-    for (int i = 0; i < n; i++) {
-      pa[start + i] = Float.intBitsToFloat(readInt());
+  public void readFloat(float[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = nextElements(4, n);
+      if (bb == null) { // element straddles the end of the buffer
+        pa[start++] = readFloat();
+        n--;
+        continue;
+      }
+      int count = bb.remaining() / 4;
+      bb.asFloatBuffer().get(pa, start, count);
+      start += count;
+      n -= count;
     }
   }
 
@@ -1398,10 +1445,61 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n     read this many elements
    * @throws IOException on read error
    */
-  public final void readDouble(double[] pa, int start, int n) throws IOException {
-    for (int i = 0; i < n; i++) {
-      pa[start + i] = Double.longBitsToDouble(readLong());
+  public void readDouble(double[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = nextElements(8, n);
+      if (bb == null) { // element straddles the end of the buffer
+        pa[start++] = readDouble();
+        n--;
+        continue;
+      }
+      int count = bb.remaining() / 8;
+      bb.asDoubleBuffer().get(pa, start, count);
+      start += count;
+      n -= count;
+    }
+  }
+
+  /**
+   * Get the next elements for the bulk array reads, as a view in this file's byte order, and advance the file position.
+   * The elements are copied straight out of the buffer; large requests are read directly from the file, bypassing the
+   * buffer, as readBytes() does.
+   *
+   * @param elemSize size of one element in bytes
+   * @param n        maximum number of elements wanted
+   * @return view of between 1 and n whole elements, or null if the next element straddles the end of the buffer
+   * @throws IOException on read error, EOFException if there are no more bytes
+   */
+  private ByteBuffer nextElements(int elemSize, int n) throws IOException {
+    if (filePosition >= dataEnd) {
+      long want = (long) elemSize * n;
+      if (want > buffer.length) {
+        int len = (int) Math.min(want, bulkReadSize / elemSize * elemSize);
+        if (bulkBuffer == null || bulkBuffer.length < len)
+          bulkBuffer = new byte[len];
+        byte[] b = bulkBuffer;
+        int done = 0;
+        while (done < len) {
+          int got = read_(filePosition + done, b, done, len - done);
+          if (got <= 0)
+            throw new EOFException("Reading " + location + " at " + (filePosition + done) + " file length = " + length());
+          done += got;
+        }
+        filePosition += len;
+        return ByteBuffer.wrap(b, 0, len).slice().order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+      }
+
+      seek(filePosition); // refill the buffer
+      if (endOfFile)
+        throw new EOFException("Reading " + location + " at " + filePosition + " file length = " + length());
     }
+
+    int avail = (int) (dataEnd - filePosition);
+    if (avail < elemSize) return null;
+    int count = Math.min(n, avail / elemSize);
+    ByteBuffer bb = ByteBuffer.wrap(buffer, (int) (filePosition - bufferStart), count * elemSize).slice();
+    filePosition += count * elemSize;
+    return bb.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
   }
 
   /**
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Formatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of fixed size, aligned blocks of remote files read by HTTPRandomAccessFile, shared by all open files.
+ * Blocks are keyed by URL plus the ETag or Last-Modified header, so a changed file is not served from stale blocks.
+ * The size is weighted by bytes, so maxBytes bounds the heap used.
+ * Off by default; turn on with init(maxBytes, blockSize).
+ * <p>
+ * A block that is being fetched is registered, so that concurrent readers (and prefetch) of the same block
+ * wait for the one request instead of issuing their own.
+ */
+public class HTTPBlockCache {
+  static public final int defaultBlockSize = 64 * 1024;
+
+  private static volatile HTTPBlockCache instance;
+
+  /**
+   * Turn on the cache, replacing any existing one.
+   *
+   * @param maxSizeBytes maximum bytes of blocks to hold; if <= 0, turn the cache off.
+   * @param blockSize    size of a block in bytes; a file is read in multiples of this.
+   */
+  public static synchronized void init(long maxSizeBytes, int blockSize) {
+    if (maxSizeBytes <= 0) {
+      shutdown();
+      return;
+    }
+    if (blockSize <= 0)
+      throw new IllegalArgumentException("blockSize must be > 0");
+    HTTPBlockCache old = instance;
+    instance = new HTTPBlockCache(maxSizeBytes, blockSize);
+    if (old != null) {
+      instance.prefetchExecutor = old.prefetchExecutor;
+      instance.prefetchBlocks = old.prefetchBlocks;
+      old.cache.invalidateAll();
+    }
+  }
+
+  /**
+   * After a read, fetch the next blocks of the file in the background.
+   * Ignored if the cache is off.
+   *
+   * @param exec    use this Executor; null means no prefetch (default)
+   * @param nblocks number of blocks to read ahead
+   */
+  public static synchronized void setPrefetch(Executor exec, int nblocks) {
+    HTTPBlockCache c = instance;
+    if (c == null) return;
+    c.prefetchExecutor = (nblocks > 0) ? exec : null;
+    c.prefetchBlocks = nblocks;
+  }
+
+  public static synchronized void shutdown() {
+    if (instance != null) instance.cache.invalidateAll();
+    instance = null;
+  }
+
+  /** @return the current cache, or null if off */
+  public static HTTPBlockCache getInstance() {
+    return instance;
+  }
+
+  public static void clear() {
+    HTTPBlockCache c = instance;
+    if (c != null) c.cache.invalidateAll();
+  }
+
+  public static void showCache(Formatter f) {
+    HTTPBlockCache c = instance;
+    if (c == null) {
+      f.format("HTTPBlockCache : turned off%n");
+      return;
+    }
+    CacheStats stats = c.cache.stats();
+    f.format("HTTPBlockCache: blocks=%d blockSize=%d maxBytes=%d prefetchBlocks=%d%n", c.cache.size(), c.blockSize,
+            c.maxBytes, (c.prefetchExecutor == null) ? 0 : c.prefetchBlocks);
+    f.format(" hitRate=%.3f hits=%d misses=%d evictions=%d%n", stats.hitRate(), stats.hitCount(), stats.missCount(),
+            stats.evictionCount());
+    f.format(" requests=%d bytesRead=%d prefetchRequests=%d waitedForOtherRequest=%d%n", c.requests.get(),
+            c.bytesRead.get(), c.prefetchRequests.get(), c.waits.get());
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////
+
+  private final Cache<Key, byte[]> cache;
+  private final ConcurrentHashMap<Key, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+  private final long maxBytes;
+  private final int blockSize;
+  private volatile Executor prefetchExecutor;
+  private volatile int prefetchBlocks;
+
+  // stats
+  private final AtomicLong requests = new AtomicLong(), bytesRead = new AtomicLong();
+  private final AtomicLong prefetchRequests = new AtomicLong(), waits = new AtomicLong();
+
+  private HTTPBlockCache(long maxBytes, int blockSize) {
+    this.maxBytes = maxBytes;
+    this.blockSize = blockSize;
+    this.cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Key key, byte[] data) -> data.length)
+            .recordStats()
+            .build();
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  Executor getPrefetchExecutor() {
+    return prefetchExecutor;
+  }
+
+  int getPrefetchBlocks() {
+    return prefetchBlocks;
+  }
+
+  /**
+   * Get a block if its in the cache.
+   * @return the block, or null. Do not modify.
+   */
+  byte[] get(String fileId, long blockno) {
+    return cache.getIfPresent(new Key(fileId, blockno));
+  }
+
+  /** Get a block without counting a hit or miss. */
+  boolean contains(String fileId, long blockno) {
+    return cache.asMap().containsKey(new Key(fileId, blockno));
+  }
+
+  /**
+   * Register that this thread will fetch the block.
+   * @return null if the caller now owns the fetch, and must call loaded() or failed();
+   *   otherwise the pending result of whoever is already fetching it.
+   */
+  CompletableFuture<byte[]> startLoad(String fileId, long blockno) {
+    return loading.putIfAbsent(new Key(fileId, blockno), new CompletableFuture<>());
+  }
+
+  /** Add a fetched block to the cache, and wake up anyone waiting for it. */
+  void loaded(String fileId, long blockno, byte[] data) {
+    Key key = new Key(fileId, blockno);
+    cache.put(key, data);
+    CompletableFuture<byte[]> pending = loading.remove(key);
+    if (pending != null) pending.complete(data);
+  }
+
+  /** The fetch of the block failed; anyone waiting for it gets null and must fetch it themselves. */
+  void failed(String fileId, long blockno) {
+    CompletableFuture<byte[]> pending = loading.remove(new Key(fileId, blockno));
+    if (pending != null) pending.complete(null);
+  }
+
+  void addRequest(long nbytes, boolean isPrefetch) {
+    requests.incrementAndGet();
+    bytesRead.addAndGet(nbytes);
+    if (isPrefetch) prefetchRequests.incrementAndGet();
+  }
+
+  void addWait() {
+    waits.incrementAndGet();
+  }
+
+  long getRequestCount() {
+    return requests.get();
+  }
+
+  @Immutable
+  private static class Key {
+    private final String fileId;
+    private final long blockno;
+
+    Key(String fileId, long blockno) {
+      this.fileId = fileId;
+      this.blockno = blockno;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return blockno == key.blockno && fileId.equals(key.fileId);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * fileId.hashCode() + Long.hashCode(blockno);
+    }
+  }
+}
@@ -14,14 +14,25 @@ import ucar.unidata.util.Urlencoded;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Gives access to files over HTTP, using "Accept-Ranges" HTTP header to do random access.
  * This version uses a single instance of HttpClient, following performance guidelines at
  * http://jakarta.apache.org/commons/httpclient/performance.html
  * Plus other improvements.
+ * <p>
+ * If the HTTPBlockCache is on, reads go through it: the file is read in aligned blocks that are shared by all
+ * open files, adjacent missing blocks are fetched with one Range request, and the next blocks of a sequential
+ * read may be fetched in the background. Servers that send neither ETag nor Last-Modified bypass the cache,
+ * since a changed file could not be told from the cached one.
  *
  * @author John Caron, based on work by Donald Denbo
  */
@@ -36,6 +47,8 @@ public class HTTPRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
   private String url;
   private HTTPSession session = null;
   private long total_length = 0;
+  private String fileId;         // url plus ETag or Last-Modified, identifies the file in the block cache; null if neither
+  private long nextBlock = -1;   // block following the last read, to detect sequential reads
 
   public HTTPRandomAccessFile(String url) throws IOException {
     this(url, defaultHTTPBufferSize);
@@ -71,6 +84,13 @@ public class HTTPRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
         throw new IOException("Server does not support byte Ranges");
       }
 
+      // identifies this version of the file in the block cache
+      head = method.getResponseHeader("ETag");
+      if (head == null)
+        head = method.getResponseHeader("Last-Modified");
+      if (head != null)
+        fileId = url + "#" + head.getValue();
+
       head = method.getResponseHeader("Content-Length");
       if (head == null) {
         throw new IOException("Server does not support Content-Length");
@@ -90,7 +110,12 @@ public class HTTPRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
     if (needtest && !rangeOk(url))
       throw new IOException("Server does not support byte Ranges");
 
-    if (total_length > 0) {
+    HTTPBlockCache blockCache = getBlockCache();
+    if (blockCache != null) {
+      // read a block at a time, the block cache keeps them
+      setBufferSize(blockCache.getBlockSize());
+
+    } else if (total_length > 0) {
       // this means that we will read the file in one gulp then deal with it in memory
       int useBuffer = (int) Math.min(total_length, maxHTTPBufferSize); // entire file size if possible
       useBuffer = Math.max(useBuffer, defaultHTTPBufferSize); // minimum buffer
@@ -170,6 +195,20 @@ public class HTTPRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
    */
   @Override
   protected int read_(long pos, byte[] buff, int offset, int len) throws IOException {
+    HTTPBlockCache blockCache = getBlockCache();
+    // very large reads would just flush the cache
+    if (blockCache != null && len <= blockCache.getMaxBytes() / 4)
+      return readBlocks(blockCache, pos, buff, offset, len);
+    return readRange(session, pos, buff, offset, len);
+  }
+
+  // without a validator, cached blocks could be from an older version of the file
+  private HTTPBlockCache getBlockCache() {
+    return (fileId == null) ? null : HTTPBlockCache.getInstance();
+  }
+
+  // one Range request
+  private int readRange(HTTPSession session, long pos, byte[] buff, int offset, int len) throws IOException {
     long end = pos + len - 1;
     if (end >= total_length)
       end = total_length - 1;
@@ -199,6 +238,170 @@ public class HTTPRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
     }
   }
 
+  // read through the block cache
+  private int readBlocks(HTTPBlockCache blockCache, long pos, byte[] buff, int offset, int len) throws IOException {
+    if (pos >= total_length)
+      return -1;
+    len = (int) Math.min(len, total_length - pos);
+    if (len <= 0)
+      return 0;
+
+    int blockSize = blockCache.getBlockSize();
+    long first = pos / blockSize;
+    long last = (pos + len - 1) / blockSize;
+    int n = (int) (last - first + 1);
+    byte[][] blocks = new byte[n][];
+    CompletableFuture<byte[]>[] others = new CompletableFuture[n]; // being fetched by someone else
+    boolean[] mine = new boolean[n]; // we have to fetch it
+
+    try {
+      for (int i = 0; i < n; i++) {
+        blocks[i] = blockCache.get(fileId, first + i);
+        if (blocks[i] == null) {
+          others[i] = blockCache.startLoad(fileId, first + i);
+          mine[i] = (others[i] == null);
+          if (!mine[i]) blockCache.addWait();
+        }
+      }
+
+      // adjacent missing blocks are fetched in one request
+      int i = 0;
+      while (i < n) {
+        if (!mine[i]) {
+          i++;
+          continue;
+        }
+        int j = i;
+        while (j + 1 < n && mine[j + 1])
+          j++;
+        fetchBlocks(blockCache, session, first + i, first + j, blocks, i, false);
+        i = j + 1;
+      }
+
+    } finally {
+      for (int i = 0; i < n; i++)
+        if (mine[i] && blocks[i] == null)
+          blockCache.failed(fileId, first + i);
+    }
+
+    for (int i = 0; i < n; i++) {
+      if (others[i] == null) continue;
+      try {
+        blocks[i] = others[i].get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted reading " + url);
+      } catch (ExecutionException e) {
+        blocks[i] = null;
+      }
+      if (blocks[i] == null) // the other request failed, try ourselves
+        blocks[i] = fetchBlock(blockCache, first + i);
+    }
+
+    int done = 0;
+    for (int i = 0; i < n && done < len; i++) {
+      byte[] block = blocks[i];
+      if (block == null) break;
+      int from = (i == 0) ? (int) (pos - first * blockSize) : 0;
+      int count = Math.min(block.length - from, len - done);
+      if (count <= 0) break;
+      System.arraycopy(block, from, buff, offset + done, count);
+      done += count;
+    }
+
+    if (first == nextBlock || first + 1 == nextBlock)
+      prefetch(blockCache, last + 1);
+    nextBlock = last + 1;
+
+    return done;
+  }
+
+  // fetch one block that someone else failed to get
+  private byte[] fetchBlock(HTTPBlockCache blockCache, long blockno) throws IOException {
+    byte[][] result = new byte[1][];
+    if (blockCache.startLoad(fileId, blockno) != null) // someone else is trying again; dont wait for them twice
+      return readBlockUncached(blockCache, blockno);
+    try {
+      fetchBlocks(blockCache, session, blockno, blockno, result, 0, false);
+    } finally {
+      if (result[0] == null)
+        blockCache.failed(fileId, blockno);
+    }
+    return result[0];
+  }
+
+  private byte[] readBlockUncached(HTTPBlockCache blockCache, long blockno) throws IOException {
+    int blockSize = blockCache.getBlockSize();
+    long start = blockno * blockSize;
+    byte[] data = new byte[(int) Math.min(blockSize, total_length - start)];
+    int n = readRange(session, start, data, 0, data.length);
+    return (n == data.length) ? data : Arrays.copyOf(data, Math.max(n, 0));
+  }
+
+  /*
+   * Fetch blocks firstBlock to lastBlock inclusive with one request, and add them to the cache.
+   * The caller must have called startLoad() on each of them. The blocks are also put into dest, starting at destIndex.
+   * A block that is not complete (server sent less than asked for) is left null.
+   */
+  private void fetchBlocks(HTTPBlockCache blockCache, HTTPSession session, long firstBlock, long lastBlock,
+                           byte[][] dest, int destIndex, boolean isPrefetch) throws IOException {
+    int blockSize = blockCache.getBlockSize();
+    long start = firstBlock * blockSize;
+    int len = (int) (Math.min((lastBlock + 1) * blockSize, total_length) - start);
+    byte[] data = new byte[len];
+    int n = readRange(session, start, data, 0, len);
+    blockCache.addRequest(Math.max(n, 0), isPrefetch);
+
+    for (long b = firstBlock; b <= lastBlock; b++) {
+      int from = (int) ((b - firstBlock) * blockSize);
+      int want = (int) Math.min(blockSize, total_length - b * blockSize);
+      if (from + want > n) break;
+      byte[] block = Arrays.copyOfRange(data, from, from + want);
+      blockCache.loaded(fileId, b, block);
+      dest[destIndex + (int) (b - firstBlock)] = block;
+    }
+  }
+
+  // fetch the blocks following a sequential read in the background, skipping the ones already there
+  private void prefetch(HTTPBlockCache blockCache, long next) {
+    Executor exec = blockCache.getPrefetchExecutor();
+    if (exec == null || session == null)
+      return;
+
+    long lastInFile = (total_length - 1) / blockCache.getBlockSize();
+    long end = Math.min(next + blockCache.getPrefetchBlocks() - 1, lastInFile);
+    long start = next;
+    while (start <= end && blockCache.contains(fileId, start))
+      start++;
+    long stop = start; // exclusive
+    while (stop <= end && !blockCache.contains(fileId, stop) && blockCache.startLoad(fileId, stop) == null)
+      stop++;
+    if (stop == start)
+      return;
+
+    long firstBlock = start, lastBlock = stop - 1;
+    byte[][] result = new byte[(int) (lastBlock - firstBlock + 1)][];
+    Runnable task = () -> {
+      // use a separate session, closing this file must not close a request running in another thread
+      try (HTTPSession prefetchSession = HTTPFactory.newSession(url)) {
+        fetchBlocks(blockCache, prefetchSession, firstBlock, lastBlock, result, 0, true);
+      } catch (IOException | RuntimeException e) {
+        if (debug) System.out.println(" HTTPRandomAccessFile prefetch failed " + e.getMessage());
+      } finally {
+        for (int i = 0; i < result.length; i++)
+          if (result[i] == null)
+            blockCache.failed(fileId, firstBlock + i);
+      }
+    };
+
+    try {
+      exec.execute(task);
+    } catch (RejectedExecutionException e) {
+      for (long b = firstBlock; b <= lastBlock; b++)
+        blockCache.failed(fileId, b);
+    }
+  }
+
   private int copy(InputStream in, byte[] buff, int offset, int want) throws IOException {
     int done = 0;
     while (want > 0) {
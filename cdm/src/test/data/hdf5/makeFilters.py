@@ -0,0 +1,415 @@
+#!/usr/bin/env python3
+"""
+Writes filters.h5, the test file for the HDF5 filter decoders in ucar.nc2.iosp.hdf5.
+
+There are four contiguous datasets, int16, int32, float32 and float64, each (10, 150). Every other dataset holds
+the same data as the one its name starts with, chunked and written through a filter pipeline:
+lz4 (32004), bitshuffle (32008) without compression, with lz4 and with zstd, zstd (32015) and szip (4).
+The szip datasets have 16, 32 and 64 bit pixels, with and without nearest neighbor preprocessing, and scanlines
+that are not a whole number of blocks.
+
+The file is written by hand (superblock version 0, version 1 object headers), since h5py and the filter plugins
+are not always at hand. LZ4 and Zstandard compression use the system liblz4 and libzstd. The szip stream is
+encoded here, making the same choices as libaec's encoder. Since that encoder is not libaec itself, the cdm skips
+the szip datasets until there is a file written by libaec to check them against.
+
+Usage: python3 makeFilters.py [filters.h5]
+"""
+import ctypes
+import math
+import struct
+import sys
+
+UNDEF = 0xffffffffffffffff
+NROWS, NCOLS = 10, 150
+
+lz4 = ctypes.CDLL("liblz4.so.1")
+zstd = ctypes.CDLL("libzstd.so.1")
+zstd.ZSTD_compress.restype = ctypes.c_size_t
+zstd.ZSTD_compressBound.restype = ctypes.c_size_t
+
+
+# ---------------------------------------------------------------------------------------------------------------
+# the data
+
+def lcg(seed):
+    while True:
+        seed = (seed * 6364136223846793005 + 1442695040888963407) & 0xffffffffffffffff
+        yield seed >> 32
+
+
+def make_data(kind):
+    """rows of zeros, a ramp, a sine, noise and a constant"""
+    rand = lcg({"int16": 1, "int32": 2, "float32": 3, "float64": 4}[kind])
+    values = []
+    for r in range(NROWS):
+        for c in range(NCOLS):
+            pattern = r % 5
+            if kind == "int16":
+                v = [0, 1000 + 3 * r + c, round(300 * math.sin(c / 7)), next(rand) % 65536 - 32768, 7][pattern]
+            elif kind == "int32":
+                v = [0, 100000 + 37 * c, round(1e6 * math.sin(c / 11)), next(rand) - 2 ** 31, -1][pattern]
+            else:
+                v = [0.0, 0.25 * c + r, 100 * math.sin(c / 9), (next(rand) - 2 ** 31) / 1000, 3.5][pattern]
+            values.append(v)
+    return values
+
+
+TYPES = {  # struct format, bytes per element
+    "int16": ("<h", 2),
+    "int32": ("<i", 4),
+    "float32": ("<f", 4),
+    "float64": ("<d", 8),
+}
+
+
+def pack(kind, values):
+    fmt = TYPES[kind][0]
+    return b"".join(struct.pack(fmt, v) for v in values)
+
+
+def datatype_message(kind):
+    if kind.startswith("int"):
+        size = TYPES[kind][1]
+        return struct.pack("<B3BIHH", 0x10, 0x08, 0, 0, size, 0, 8 * size) + bytes(4)
+    if kind == "float32":
+        return struct.pack("<B3BIHHBBBBI", 0x11, 0x20, 31, 0, 4, 0, 32, 23, 8, 0, 23, 127)
+    return struct.pack("<B3BIHHBBBBI", 0x11, 0x20, 63, 0, 8, 0, 64, 52, 11, 0, 52, 1023)
+
+
+# ---------------------------------------------------------------------------------------------------------------
+# the filters, as the HDF5 plugins write them
+
+def lz4_block(data):
+    out = ctypes.create_string_buffer(len(data) + len(data) // 255 + 16)
+    n = lz4.LZ4_compress_default(data, out, len(data), len(out))
+    assert n > 0
+    return out.raw[:n]
+
+
+def zstd_frame(data, level):
+    cap = zstd.ZSTD_compressBound(len(data))
+    out = ctypes.create_string_buffer(cap)
+    n = zstd.ZSTD_compress(out, cap, data, len(data), level)
+    assert n < cap
+    return out.raw[:n]
+
+
+def h5lz4(data, cd):
+    """H5Zlz4: a block that does not get smaller is stored as is"""
+    block_size = min(cd[0], len(data)) if cd[0] else len(data)
+    out = [struct.pack(">QI", len(data), block_size)]
+    for start in range(0, len(data), block_size):
+        block = data[start:start + block_size]
+        comp = lz4_block(block)
+        if len(comp) >= len(block):
+            comp = block
+        out.append(struct.pack(">I", len(comp)) + comp)
+    return b"".join(out)
+
+
+def transpose(block, n, elem_size):
+    """bit b of byte j of element i goes to bit i%8 of byte i/8 of row 8*j+b"""
+    out = bytearray(len(block))
+    row_bytes = n // 8
+    for i in range(n):
+        for j in range(elem_size):
+            byte = block[i * elem_size + j]
+            for b in range(8):
+                if (byte >> b) & 1:
+                    out[(8 * j + b) * row_bytes + i // 8] |= 1 << (i % 8)
+    return bytes(out)
+
+
+def bitshuffle(data, cd):
+    elem_size, block_size, compression = cd[2], cd[3], cd[4]
+    if block_size == 0:
+        block_size = max(8192 // elem_size // 8 * 8, 128)
+    nelems = len(data) // elem_size
+    blocks, elem = [], 0
+    while nelems - elem >= 8:
+        size = min(block_size, (nelems - elem) // 8 * 8)
+        shuffled = transpose(data[elem * elem_size:(elem + size) * elem_size], size, elem_size)
+        if compression == 2:
+            shuffled = lz4_block(shuffled)
+        elif compression == 3:
+            shuffled = zstd_frame(shuffled, cd[5])
+        blocks.append(shuffled if compression == 0 else struct.pack(">I", len(shuffled)) + shuffled)
+        elem += size
+    blocks.append(data[elem * elem_size:])
+    if compression == 0:
+        return b"".join(blocks)
+    return struct.pack(">QI", len(data), block_size * elem_size) + b"".join(blocks)
+
+
+def h5zstd(data, cd):
+    return zstd_frame(data, cd[0])
+
+
+SZ_EC, SZ_LSB, SZ_NN, SZ_RAW = 4, 8, 32, 128
+
+
+def szip(data, cd):
+    """H5Z_filter_szip: the decoded size (4 bytes, little endian), then what libaec's SZ_BufftoBuffCompress writes"""
+    mask, ppb, bpp, pps = cd
+    preprocess = (mask & SZ_NN) != 0
+    buf = data
+    if bpp in (32, 64):  # bytes interleaved by significance, coded as 8 bit samples
+        word = bpp // 8
+        nwords = len(data) // word
+        buf = bytes(data[i * word + j] for j in range(word) for i in range(nwords))
+        bps = 8
+    else:
+        bps = bpp
+    pixel = (bps + 7) // 8
+    rsi = (pps + ppb - 1) // ppb
+
+    if pps % ppb:  # pad each scanline to rsi blocks: repeat the last pixel when preprocessing, else zeros
+        line, padded = pps * pixel, rsi * ppb * pixel
+        out = bytearray()
+        for start in range(0, len(buf), line):
+            chunk = buf[start:start + line]
+            fill = chunk[-pixel:] if preprocess else bytes(pixel)
+            out += chunk + fill * ((padded - len(chunk)) // pixel)
+        buf = bytes(out)
+
+    samples = [int.from_bytes(buf[i:i + pixel], "little") for i in range(0, len(buf), pixel)]
+    return struct.pack("<I", len(data)) + AecEncoder(bps, ppb, rsi, preprocess).encode(samples)
+
+
+class BitWriter:
+    def __init__(self):
+        self.bits = []
+
+    def put(self, value, n):
+        self.bits.extend((value >> i) & 1 for i in range(n - 1, -1, -1))
+
+    def fs(self, value):
+        self.bits.extend([0] * value + [1])
+
+    def tobytes(self):
+        bits = self.bits + [0] * (-len(self.bits) % 8)
+        return bytes(int("".join(map(str, bits[i:i + 8])), 2) for i in range(0, len(bits), 8))
+
+
+class AecEncoder:
+    """CCSDS 121.0 adaptive entropy coder: each block uses the cheapest of zero block, second extension,
+    sample splitting and uncompressed"""
+
+    def __init__(self, bps, block_size, rsi, preprocess):
+        self.bps, self.block_size, self.rsi, self.preprocess = bps, block_size, rsi, preprocess
+        self.id_len = 5 if bps > 16 else 4 if bps > 8 else 3
+        self.xmax = (1 << bps) - 1
+        self.out = BitWriter()
+
+    def encode(self, samples):
+        n = self.rsi * self.block_size
+        for start in range(0, len(samples), n):
+            x = samples[start:start + n]
+            x += [x[-1]] * (-len(x) % self.block_size)  # the decoder drops whatever is past the end
+            self.encode_rsi(x)
+        return self.out.tobytes()
+
+    def encode_rsi(self, x):
+        if self.preprocess:
+            d = [0]
+            for prev, cur in zip(x, x[1:]):
+                if cur >= prev:
+                    d.append(2 * (cur - prev) if cur - prev <= prev else cur)
+                else:
+                    d.append(2 * (prev - cur) - 1 if prev - cur <= self.xmax - prev else self.xmax - cur)
+        else:
+            d = x
+        bs = self.block_size
+        nblocks = len(d) // bs
+        b = 0
+        while b < nblocks:
+            ref = self.preprocess and b == 0
+            block = d[b * bs:(b + 1) * bs]
+            if not any(block):
+                end = b + 1
+                limit = min(nblocks, (b // 64 + 1) * 64)
+                while end < limit and not any(d[end * bs:(end + 1) * bs]):
+                    end += 1
+                self.zero_blocks(x[0] if ref else None, end - b, end == limit and self.rsi == nblocks)
+                b = end
+            else:
+                self.encode_block(block, x[0] if ref else None)
+                b += 1
+
+    def zero_blocks(self, ref, count, to_end):
+        self.out.put(0, self.id_len)
+        self.out.put(0, 1)
+        if ref is not None:
+            self.out.put(ref, self.bps)
+        if count >= 5 and to_end:
+            self.out.fs(4)  # remainder of segment
+        elif count < 5:
+            self.out.fs(count - 1)
+        else:
+            self.out.fs(count)
+
+    def encode_block(self, block, ref):
+        body = block[1:] if ref is not None else block
+        options = []
+
+        pairs = [0] + block[1:] if ref is not None else block
+        codes = []
+        for i in range(0, len(pairs), 2):
+            s = pairs[i] + pairs[i + 1]
+            codes.append(s * (s + 1) // 2 + pairs[i + 1])
+        if max(codes) <= 90:
+            options.append((1 + sum(c + 1 for c in codes), "se", codes))
+
+        for k in range(0, min((1 << self.id_len) - 2, self.bps)):
+            options.append((sum((v >> k) + 1 for v in body) + k * len(body), "split", k))
+
+        options.append((self.bps * len(block), "raw", None))
+        cost, option, arg = min(options, key=lambda o: o[0])
+
+        if option == "se":
+            self.out.put(0, self.id_len)
+            self.out.put(1, 1)
+            if ref is not None:
+                self.out.put(ref, self.bps)
+            for c in codes:
+                self.out.fs(c)
+        elif option == "split":
+            self.out.put(arg + 1, self.id_len)
+            if ref is not None:
+                self.out.put(ref, self.bps)
+            for v in body:
+                self.out.fs(v >> arg)
+            for v in body:
+                self.out.put(v & ((1 << arg) - 1), arg)
+        else:
+            self.out.put((1 << self.id_len) - 1, self.id_len)
+            if ref is not None:
+                self.out.put(ref, self.bps)
+            for v in body:
+                self.out.put(v, self.bps)
+
+
+FILTERS = {"lz4": (32004, h5lz4), "bitshuffle": (32008, bitshuffle), "zstd": (32015, h5zstd), "szip": (4, szip)}
+
+# name, chunk shape, filter, client data
+DATASETS = [
+    ("int32_lz4", (4, 64), "lz4", [256]),
+    ("int16_bitshuffle", (3, 50), "bitshuffle", [0, 5, 2, 64, 0]),
+    ("float32_bitshuffle_lz4", (5, 75), "bitshuffle", [0, 5, 4, 0, 2]),
+    ("float64_bitshuffle_zstd", (3, 70), "bitshuffle", [0, 5, 8, 128, 3, 3]),
+    ("int32_zstd", (5, 100), "zstd", [3]),
+    ("int16_szip_nn", (4, 50), "szip", [SZ_NN | SZ_RAW | SZ_LSB, 16, 16, 50]),
+    ("int16_szip_ec", (5, 30), "szip", [SZ_EC | SZ_RAW | SZ_LSB, 8, 16, 30]),
+    ("int32_szip_nn", (4, 64), "szip", [SZ_NN | SZ_RAW | SZ_LSB, 16, 32, 64]),
+    ("float32_szip_nn", (3, 75), "szip", [SZ_NN | SZ_RAW | SZ_LSB, 32, 32, 75]),
+    ("float64_szip_ec", (2, 150), "szip", [SZ_EC | SZ_RAW | SZ_LSB, 32, 64, 150]),
+]
+
+
+# ---------------------------------------------------------------------------------------------------------------
+# the file
+
+class File:
+    def __init__(self):
+        self.buf = bytearray(96)  # superblock
+
+    def alloc(self, data):
+        self.buf += bytes(-len(self.buf) % 8)
+        addr = len(self.buf)
+        self.buf += data
+        return addr
+
+    def object_header(self, messages):
+        body = b""
+        for mtype, data in messages:
+            data += bytes(-len(data) % 8)
+            body += struct.pack("<HHB3x", mtype, len(data), 0) + data
+        return self.alloc(struct.pack("<BBHII4x", 1, 0, len(messages), 1, len(body)) + body)
+
+
+def dataspace_message():
+    return struct.pack("<BBBB4xQQ", 1, 2, 0, 0, NROWS, NCOLS)
+
+
+def fill_message():
+    return struct.pack("<BBBB", 2, 3, 2, 0)
+
+
+def filter_message(fid, name, cd):
+    name = name.encode() + b"\0"
+    name += bytes(-len(name) % 8)
+    data = struct.pack("<HHHH", fid, len(name), 0, len(cd)) + name + struct.pack("<%dI" % len(cd), *cd)
+    if len(cd) % 2:
+        data += bytes(4)
+    return struct.pack("<BB6x", 1, 1) + data
+
+
+def write_chunked(f, kind, values, chunk, filter_name, cd):
+    fid, encode = FILTERS[filter_name]
+    elem_size = TYPES[kind][1]
+    entries = []
+    for r0 in range(0, NROWS, chunk[0]):
+        for c0 in range(0, NCOLS, chunk[1]):
+            chunk_values = []
+            for r in range(r0, r0 + chunk[0]):
+                for c in range(c0, c0 + chunk[1]):
+                    inside = r < NROWS and c < NCOLS
+                    chunk_values.append(values[r * NCOLS + c] if inside else 0)
+            encoded = encode(pack(kind, chunk_values), cd)
+            entries.append((len(encoded), r0, c0, f.alloc(encoded)))
+
+    btree = struct.pack("<4sBBHQQ", b"TREE", 1, 0, len(entries), UNDEF, UNDEF)
+    for size, r0, c0, addr in entries:
+        btree += struct.pack("<IIQQQ", size, 0, r0, c0, 0) + struct.pack("<Q", addr)
+    btree += struct.pack("<IIQQQ", 0, 0, NROWS, NCOLS, 0)
+    btree_addr = f.alloc(btree)
+
+    layout = struct.pack("<BBBQIII", 3, 2, 3, btree_addr, chunk[0], chunk[1], elem_size)
+    return f.object_header([(1, dataspace_message()), (3, datatype_message(kind)), (5, fill_message()),
+                            (11, filter_message(fid, filter_name, cd)), (8, layout)])
+
+
+def main(filename):
+    f = File()
+    data = {kind: make_data(kind) for kind in TYPES}
+    objects = {}
+    for kind, values in data.items():
+        raw = pack(kind, values)
+        addr = f.alloc(raw)
+        layout = struct.pack("<BBQQ", 3, 1, addr, len(raw))
+        objects[kind] = f.object_header([(1, dataspace_message()), (3, datatype_message(kind)),
+                                         (5, fill_message()), (8, layout)])
+    for name, chunk, filter_name, cd in DATASETS:
+        kind = name.split("_")[0]
+        objects[name] = write_chunked(f, kind, data[kind], chunk, filter_name, cd)
+
+    # root group: a local heap with the names, one symbol table node, a B-tree pointing to it
+    names = sorted(objects)
+    heap_data = bytearray(8)  # the empty name at offset 0
+    offsets = {}
+    for name in names:
+        offsets[name] = len(heap_data)
+        heap_data += name.encode() + b"\0"
+        heap_data += bytes(-len(heap_data) % 8)
+    heap_data_addr = f.alloc(bytes(heap_data))
+    heap_addr = f.alloc(struct.pack("<4sB3xQQQ", b"HEAP", 0, len(heap_data), 1, heap_data_addr))
+
+    snod = struct.pack("<4sBBH", b"SNOD", 1, 0, len(names))
+    for name in names:
+        snod += struct.pack("<QQII16x", offsets[name], objects[name], 0, 0)
+    snod_addr = f.alloc(snod)
+
+    btree_addr = f.alloc(struct.pack("<4sBBHQQQQQ", b"TREE", 0, 0, 1, UNDEF, UNDEF, 0, snod_addr,
+                                     offsets[names[-1]]))
+    root_addr = f.object_header([(17, struct.pack("<QQ", btree_addr, heap_addr))])
+
+    f.buf[0:96] = (b"\x89HDF\r\n\x1a\n" + struct.pack("<BBBBBBBBHHI", 0, 0, 0, 0, 0, 8, 8, 0, 32, 16, 0) +
+                   struct.pack("<QQQQ", 0, UNDEF, len(f.buf), UNDEF) +
+                   struct.pack("<QQII", 0, root_addr, 1, 0) + struct.pack("<QQ", btree_addr, heap_addr))
+    with open(filename, "wb") as out:
+        out.write(f.buf)
+
+
+if __name__ == "__main__":
+    main(sys.argv[1] if len(sys.argv) > 1 else "filters.h5")
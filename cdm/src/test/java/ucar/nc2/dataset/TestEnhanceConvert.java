@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dataset;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.ma2.Section;
+import ucar.nc2.Attribute;
+import ucar.nc2.constants.CDM;
+import ucar.unidata.util.test.ParallelReads;
+
+import java.util.Random;
+
+/**
+ * The primitive loops of EnhanceScaleMissingUnsignedImpl.convert() must give the same results as the boxed loop.
+ */
+@RunWith(JUnit4.class)
+public class TestEnhanceConvert {
+
+  @Test
+  public void testPacked() throws Exception {
+    for (DataType dataType : new DataType[] {DataType.BYTE, DataType.SHORT, DataType.INT, DataType.LONG}) {
+      for (boolean unsigned : new boolean[] {false, true}) {
+        EnhanceScaleMissingUnsignedImpl enhance = makeEnhance(dataType, unsigned, true);
+        Array data = makeData(dataType, 1000);
+        for (int flags = 0; flags < 8; flags++)
+          checkSame(enhance, data, (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0);
+
+        // a strided section is not in canonical order
+        checkSame(enhance, data.section(new Section("3:900:7").getRanges()), true, true, true);
+      }
+    }
+  }
+
+  @Test
+  public void testFloatingPoint() throws Exception {
+    for (DataType dataType : new DataType[] {DataType.FLOAT, DataType.DOUBLE}) {
+      EnhanceScaleMissingUnsignedImpl enhance = makeEnhance(dataType, false, false);
+      Array data = makeData(dataType, 1000);
+      checkSame(enhance, data, false, false, true);
+    }
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    EnhanceScaleMissingUnsignedImpl enhance = makeEnhance(DataType.SHORT, true, true);
+    Array data = makeData(DataType.SHORT, 1001);
+    ParallelReads.withExecutor(3, exec -> EnhanceScaleMissingUnsignedImpl.setExecutor(exec, 100), () -> {
+      checkSame(enhance, data, true, true, true);
+      return null;
+    });
+  }
+
+  private EnhanceScaleMissingUnsignedImpl makeEnhance(DataType dataType, boolean unsigned, boolean scaleOffset) {
+    NetcdfDataset ds = new NetcdfDataset();
+    VariableDS v = new VariableDS(ds, ds.getRootGroup(), null, "data", dataType, "", null, null);
+    if (scaleOffset) {
+      v.addAttribute(new Attribute(CDM.SCALE_FACTOR, 0.5f));
+      v.addAttribute(new Attribute(CDM.ADD_OFFSET, 100.0f));
+    }
+    Array fill = Array.factory(dataType, new int[] {1});
+    fill.setInt(0, 7);
+    v.addAttribute(new Attribute(CDM.FILL_VALUE, fill));
+    v.addAttribute(new Attribute(CDM.MISSING_VALUE, -1));
+    if (unsigned)
+      v.addAttribute(new Attribute(CDM.UNSIGNED, "true"));
+    return new EnhanceScaleMissingUnsignedImpl(v);
+  }
+
+  // includes negative values, the fill and missing values, and the extremes of the type
+  private Array makeData(DataType dataType, int n) {
+    Array data = Array.factory(dataType, new int[] {n});
+    Random random = new Random(17);
+    for (int i = 0; i < n; i++)
+      data.setLong(i, random.nextLong());
+    data.setLong(0, 7);
+    data.setLong(1, -1);
+    data.setLong(2, Long.MIN_VALUE);
+    data.setLong(3, Long.MAX_VALUE);
+    data.setLong(4, 0);
+    return data;
+  }
+
+  private void checkSame(EnhanceScaleMissingUnsignedImpl enhance, Array data, boolean convertUnsigned,
+          boolean applyScaleOffset, boolean convertMissing) {
+    Array result = enhance.convert(data, convertUnsigned, applyScaleOffset, convertMissing);
+    if (result == data)
+      return;
+
+    Array expect = Array.factory(result.getDataType(), data.getShape());
+    enhance.convertBoxed(data, expect, convertUnsigned && enhance.getSignedness() == DataType.Signedness.UNSIGNED,
+        applyScaleOffset && enhance.hasScaleOffset(), convertMissing && result.getDataType().isFloatingPoint());
+
+    String what = data.getDataType() + " " + convertUnsigned + " " + applyScaleOffset + " " + convertMissing;
+    Assert.assertEquals(what, expect.getDataType(), result.getDataType());
+    IndexIterator iterExpect = expect.getIndexIterator();
+    IndexIterator iterResult = result.getIndexIterator();
+    while (iterExpect.hasNext())
+      Assert.assertEquals(what, iterExpect.getObjectNext(), iterResult.getObjectNext());
+  }
+}
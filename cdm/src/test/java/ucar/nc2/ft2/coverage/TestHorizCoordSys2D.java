@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.ft2.coverage;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.ma2.ArrayDouble;
+import ucar.ma2.DataType;
+import ucar.ma2.Range;
+import ucar.ma2.RangeIterator;
+import ucar.nc2.AttributeContainerHelper;
+import ucar.nc2.constants.AxisType;
+import ucar.nc2.dataset.CoordinateAxis2D;
+import ucar.nc2.util.Optional;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+
+import java.util.List;
+
+/**
+ * Point lookup and bounding box subsetting on a synthetic rotated curvilinear grid, using the spatial index.
+ */
+@RunWith(JUnit4.class)
+public class TestHorizCoordSys2D {
+  private static final int ny = 60, nx = 80;
+  private static final double angle = 0.3, delta = 0.1;
+
+  private HorizCoordSys2D makeHcs() {
+    double[] lats = new double[ny * nx];
+    double[] lons = new double[ny * nx];
+    for (int y = 0; y < ny; y++) {
+      for (int x = 0; x < nx; x++) {
+        lats[y * nx + x] = 30 + delta * (y * Math.cos(angle) + x * Math.sin(angle));
+        lons[y * nx + x] = -120 + delta * (x * Math.cos(angle) - y * Math.sin(angle));
+      }
+    }
+    return new HorizCoordSys2D(makeAxis("lat", AxisType.Lat, lats), makeAxis("lon", AxisType.Lon, lons));
+  }
+
+  private LatLonAxis2D makeAxis(String name, AxisType axisType, double[] values) {
+    CoverageCoordAxisBuilder builder = new CoverageCoordAxisBuilder(name, "degrees", null, DataType.DOUBLE, axisType,
+            new AttributeContainerHelper(name), CoverageCoordAxis.DependenceType.twoD, "y x",
+            CoverageCoordAxis.Spacing.irregularPoint, ny * nx, 0, 0, 0, values, null);
+    builder.shape = new int[] {ny, nx};
+    return new LatLonAxis2D(builder);
+  }
+
+  @Test
+  public void testFindEveryCellCenter() {
+    HorizCoordSys2D hcs = makeHcs();
+    for (int y = 0; y < ny; y++) {
+      for (int x = 0; x < nx; x++) {
+        double lat = hcs.getLatAxis2D().getCoord(y, x);
+        double lon = hcs.getLonAxis2D().getCoord(y, x);
+        Optional<HorizCoordSys.CoordReturn> opt = hcs.findXYindexFromCoord(lon, lat);
+        Assert.assertTrue(y + " " + x, opt.isPresent());
+        Assert.assertEquals(y, opt.get().y);
+        Assert.assertEquals(x, opt.get().x);
+      }
+    }
+  }
+
+  @Test
+  public void testOutsideGrid() {
+    HorizCoordSys2D hcs = makeHcs();
+    Assert.assertFalse(hcs.findXYindexFromCoord(0.0, 0.0).isPresent());
+    // inside the lat/lon bounding box of the rotated grid, but not in any cell
+    Assert.assertFalse(hcs.findXYindexFromCoord(-121.5, 30.2).isPresent());
+  }
+
+  @Test
+  public void testComputeBounds() {
+    HorizCoordSys2D hcs = makeHcs();
+    ArrayDouble.D2 latEdge = CoordinateAxis2D.makeEdges((ArrayDouble.D2) hcs.getLatAxis2D().getCoordsAsArray());
+    ArrayDouble.D2 lonEdge = CoordinateAxis2D.makeEdges((ArrayDouble.D2) hcs.getLonAxis2D().getCoordsAsArray());
+
+    double[][] rects = {{31, -119, 32, -117}, {30.5, -121, 31, -119.5}, {33, -116, 34, -115}};
+    for (double[] r : rects) {
+      LatLonRect rect = new LatLonRect(new LatLonPointImpl(r[0], r[1]), new LatLonPointImpl(r[2], r[3]));
+      Optional<List<RangeIterator>> opt = hcs.computeBounds(rect, 1);
+      Assert.assertTrue(opt.isPresent());
+
+      // brute force over every edge point
+      int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE, maxRow = -1, maxCol = -1;
+      for (int row = 0; row <= ny; row++) {
+        for (int col = 0; col <= nx; col++) {
+          double lat = latEdge.get(row, col);
+          double lon = lonEdge.get(row, col);
+          if (lat >= r[0] && lat <= r[2] && lon >= r[1] && lon <= r[3]) {
+            minRow = Math.min(minRow, row);
+            maxRow = Math.max(maxRow, row);
+            minCol = Math.min(minCol, col);
+            maxCol = Math.max(maxCol, col);
+          }
+        }
+      }
+
+      Range yRange = (Range) opt.get().get(0);
+      Range xRange = (Range) opt.get().get(1);
+      Assert.assertEquals(minRow, yRange.first());
+      Assert.assertEquals(maxRow - 1, yRange.last());
+      Assert.assertEquals(minCol, xRange.first());
+      Assert.assertEquals(maxCol - 1, xRange.last());
+    }
+  }
+}
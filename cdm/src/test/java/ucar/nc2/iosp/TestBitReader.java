@@ -9,6 +9,7 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.Random;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -49,6 +50,36 @@ public class TestBitReader {
 		assertEquals(-945, (int) bu.bits2SInt(11));
 	}
 
+	@Test
+	public void testUnpackMatchesBits2UInt() throws IOException {
+		Random random = new Random(17);
+		byte[] packed = new byte[1000];
+		random.nextBytes(packed);
+
+		for (int nbits = 0; nbits <= 32; nbits++) {
+			for (int skip = 0; skip < 8; skip++) { // start at every bit offset
+				int count = (packed.length * 8 - skip) / Math.max(nbits, 1) - 1;
+				count = Math.min(count, 300);
+
+				BitReader want = new BitReader(packed);
+				want.bits2UInt(skip);
+				BitReader got = new BitReader(packed);
+				got.bits2UInt(skip);
+
+				int[] values = new int[count + 2];
+				got.unpack(nbits, count, values, 2);
+				for (int i = 0; i < count; i++)
+					assertEquals("nbits=" + nbits + " skip=" + skip + " i=" + i, (int) want.bits2UInt(nbits), values[i + 2]);
+
+				// reader is left in the same state
+				assertEquals(want.bits2UInt(5), got.bits2UInt(5));
+				want.incrByte();
+				got.incrByte();
+				assertEquals(want.bits2UInt(8), got.bits2UInt(8));
+			}
+		}
+	}
+
 	@Test
 	@Ignore("why is this failing?")
 	public void testSignedNegative3() throws IOException {
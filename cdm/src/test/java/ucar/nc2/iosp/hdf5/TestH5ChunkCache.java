@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.hdf5;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+@RunWith(JUnit4.class)
+public class TestH5ChunkCache {
+
+  private ByteBuffer makeChunk(int size, int value) {
+    ByteBuffer bb = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < size / 4; i++) bb.putInt(i * 4, value);
+    return bb;
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    H5ChunkCache cache = new H5ChunkCache(300);
+    cache.put(0, makeChunk(100, 0));
+    cache.put(100, makeChunk(100, 1));
+    cache.put(200, makeChunk(100, 2));
+    Assert.assertNotNull(cache.get(0)); // now 100 is the oldest
+
+    cache.put(300, makeChunk(100, 3));
+    Assert.assertNull(cache.get(100));
+    Assert.assertNotNull(cache.get(0));
+    Assert.assertNotNull(cache.get(200));
+    Assert.assertNotNull(cache.get(300));
+  }
+
+  @Test
+  public void testViewsAreIndependent() {
+    H5ChunkCache cache = new H5ChunkCache(1000);
+    cache.put(42, makeChunk(100, 7));
+
+    ByteBuffer first = cache.get(42);
+    Assert.assertEquals(ByteOrder.LITTLE_ENDIAN, first.order());
+    first.position(50);
+
+    ByteBuffer second = cache.get(42);
+    Assert.assertEquals(0, second.position());
+    Assert.assertEquals(ByteOrder.LITTLE_ENDIAN, second.order());
+    Assert.assertEquals(7, second.getInt());
+  }
+
+  @Test
+  public void testTooBigOrOff() {
+    H5ChunkCache cache = new H5ChunkCache(50);
+    cache.put(0, makeChunk(100, 0));
+    Assert.assertNull(cache.get(0));
+
+    cache.setMaxBytes(0);
+    Assert.assertFalse(cache.isEnabled());
+    cache.put(0, makeChunk(40, 0));
+    Assert.assertNull(cache.get(0));
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.hdf5;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.TestDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+@RunWith(JUnit4.class)
+public class TestH5Filters {
+
+  @Test
+  public void testRegistry() {
+    Assert.assertTrue(H5FilterRegistry.getDecoder(H5SzipFilter.ID) instanceof H5SzipFilter);
+    Assert.assertTrue(H5FilterRegistry.getDecoder(H5Lz4Filter.ID) instanceof H5Lz4Filter);
+    Assert.assertTrue(H5FilterRegistry.getDecoder(H5BitshuffleFilter.ID) instanceof H5BitshuffleFilter);
+    Assert.assertTrue(H5FilterRegistry.getDecoder(H5ZstdFilter.ID) instanceof H5ZstdFilter);
+    Assert.assertNull(H5FilterRegistry.getDecoder(307));
+  }
+
+  @Test
+  public void testLz4() throws IOException {
+    // literals "abc", then an overlapping match (offset 3, length 9), then the last literals "xyz"
+    byte[] block = {0x35, 'a', 'b', 'c', 3, 0, 0x30, 'x', 'y', 'z'};
+
+    ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+    writeInt(chunk, 0);
+    writeInt(chunk, 18); // decoded size
+    writeInt(chunk, 15); // block size
+    writeInt(chunk, block.length);
+    chunk.write(block, 0, block.length);
+    writeInt(chunk, 3); // last block is stored
+    chunk.write('e');
+    chunk.write('n');
+    chunk.write('d');
+
+    byte[] in = chunk.toByteArray();
+    byte[] out = new H5Lz4Filter().decode(in, in.length, new int[0], 1, 0);
+    Assert.assertEquals("abcabcabcabcxyzend", new String(out, StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  public void testBitshuffle() throws IOException {
+    int elemSize = 4;
+    int blockSize = 16;
+    int nelems = 43; // two blocks, a block of 8 and 3 leftover elements
+    byte[] data = new byte[nelems * elemSize];
+    new Random(11).nextBytes(data);
+
+    // bit b of byte j of element i goes to bit i%8 of byte i/8 of row 8*j+b
+    byte[] shuffled = data.clone();
+    int start = 0;
+    for (int size : new int[] {16, 16, 8}) {
+      byte[] block = new byte[size * elemSize];
+      int rowBytes = size / 8;
+      for (int i = 0; i < size; i++)
+        for (int j = 0; j < elemSize; j++)
+          for (int b = 0; b < 8; b++)
+            if (((data[start + i * elemSize + j] >> b) & 1) != 0)
+              block[(8 * j + b) * rowBytes + i / 8] |= (byte) (1 << (i % 8));
+      System.arraycopy(block, 0, shuffled, start, block.length);
+      start += block.length;
+    }
+
+    int[] clientData = {0, 3, elemSize, blockSize, 0};
+    byte[] out = new H5BitshuffleFilter().decode(shuffled, shuffled.length, clientData, elemSize, 0);
+    Assert.assertArrayEquals(data, out);
+  }
+
+  @Test
+  public void testSzip() throws IOException {
+    // 8 bit samples, blocks of 8, no preprocessing
+    BitWriter bits = new BitWriter();
+    bits.put(7, 3); // uncompressed
+    for (int i = 1; i <= 8; i++) bits.put(i, 8);
+    bits.put(2, 3); // split, k = 1
+    for (int i = 0; i < 8; i++) bits.fs(i >> 1);
+    for (int i = 0; i < 8; i++) bits.put(i & 1, 1);
+    bits.put(0, 3); // low entropy
+    bits.put(0, 1); // zero block
+    bits.fs(0); // one block
+
+    ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+    chunk.write(24); // decoded size, little endian
+    chunk.write(0);
+    chunk.write(0);
+    chunk.write(0);
+    byte[] code = bits.toByteArray();
+    chunk.write(code, 0, code.length);
+
+    byte[] in = chunk.toByteArray();
+    int[] clientData = {4 | 8 | 128, 8, 8, 8}; // ec, lsb, raw; pixels per block; bits per pixel; pixels per scanline
+    byte[] out = new H5SzipFilter().decode(in, in.length, clientData, 1, 0);
+
+    byte[] expect = new byte[24];
+    for (int i = 0; i < 8; i++) {
+      expect[i] = (byte) (i + 1);
+      expect[8 + i] = (byte) i;
+    }
+    Assert.assertArrayEquals(expect, out);
+  }
+
+  // hdf5/filters.h5 is written by hdf5/makeFilters.py: each filtered variable holds the same data as the plain
+  // variable its name starts with, eg int16_szip_nn and int16
+  @Test
+  public void testFilteredVariables() throws IOException, InvalidRangeException {
+    String section = "1:8:3,5:140:7"; // across the chunks, some of which are on the edge
+    int count = 0;
+    try (NetcdfFile ncfile = NetcdfFile.open(TestDir.cdmLocalTestDataDir + "hdf5/filters.h5")) {
+      for (Variable v : ncfile.getVariables()) {
+        String name = v.getShortName();
+        if (!name.contains("_")) continue;
+        Assert.assertFalse(name, name.contains("_szip_")); // skipped, see H5SzipFilter
+        Variable plain = ncfile.findVariable(name.substring(0, name.indexOf('_')));
+        Assert.assertNotNull(name, plain);
+        Assert.assertArrayEquals(name, plain.read().getDataAsByteBuffer().array(), v.read().getDataAsByteBuffer().array());
+        Assert.assertArrayEquals(name, plain.read(section).getDataAsByteBuffer().array(),
+                v.read(section).getDataAsByteBuffer().array());
+        count++;
+      }
+    }
+    Assert.assertEquals(5, count);
+  }
+
+  private void writeInt(ByteArrayOutputStream out, int v) {
+    out.write(v >>> 24);
+    out.write(v >>> 16);
+    out.write(v >>> 8);
+    out.write(v);
+  }
+
+  private static class BitWriter {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int acc, nbits;
+
+    void put(int value, int n) {
+      for (int i = n - 1; i >= 0; i--) {
+        acc = (acc << 1) | ((value >>> i) & 1);
+        if (++nbits == 8) {
+          out.write(acc);
+          acc = nbits = 0;
+        }
+      }
+    }
+
+    void fs(int value) {
+      for (int i = 0; i < value; i++) put(0, 1);
+      put(1, 1);
+    }
+
+    byte[] toByteArray() {
+      if (nbits > 0) put(0, 8 - nbits);
+      return out.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.netcdf3;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Write non-record variables to a stream with N3outputStreamWriter, read them back with N3iosp.
+ */
+@RunWith(JUnit4.class)
+public class TestN3outputStreamWriter {
+
+  @Test
+  public void testClassic() throws IOException {
+    checkRoundTrip(false);
+  }
+
+  @Test
+  public void testLongOffset() throws IOException {
+    checkRoundTrip(true);
+  }
+
+  private void checkRoundTrip(boolean largeFile) throws IOException {
+    NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, null);
+    writer.addDimension(null, "y", 3);
+    writer.addDimension(null, "x", 5);
+    writer.addGroupAttribute(null, new Attribute("title", "stream test"));
+    Variable data = writer.addVariable(null, "data", DataType.FLOAT, "y x");
+    data.addAttribute(new Attribute("units", "K"));
+    Variable shorts = writer.addVariable(null, "shorts", DataType.SHORT, "x"); // needs padding
+    Variable bytes = writer.addVariable(null, "bytes", DataType.BYTE, "y");
+    Variable transform = writer.addVariable(null, "transform", DataType.INT, "");
+    Variable coords = writer.addVariable(null, "coords", DataType.DOUBLE, "x");
+
+    Array dataValues = Array.makeArray(DataType.FLOAT, 15, 1.5, .25).reshape(new int[] {3, 5});
+    Array shortValues = Array.makeArray(DataType.SHORT, 5, -2, 1);
+    Array byteValues = Array.makeArray(DataType.BYTE, 3, 7, -3);
+    Array coordValues = Array.makeArray(DataType.DOUBLE, 5, 100, 10);
+
+    NetcdfFile ncfile = writer.addGroup(null, null).getNetcdfFile();
+    N3outputStreamWriter streamWriter = new N3outputStreamWriter(ncfile);
+    streamWriter.setLargeFile(largeFile);
+
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    DataOutputStream stream = new DataOutputStream(bout);
+    streamWriter.writeHeader(stream, 0);
+    streamWriter.writeNonRecordData(data, stream, dataValues);
+    streamWriter.writeNonRecordData(shorts, stream, shortValues);
+    streamWriter.writeNonRecordData(bytes, stream, byteValues);
+    streamWriter.writeNonRecordFill(transform, stream);
+    streamWriter.writeNonRecordData(coords, stream, coordValues);
+    stream.flush();
+
+    byte[] result = bout.toByteArray();
+    Assert.assertEquals(largeFile ? 2 : 1, result[3]);
+
+    try (NetcdfFile ncfileIn = NetcdfFile.openInMemory("TestN3outputStreamWriter.nc", result)) {
+      Assert.assertEquals("stream test", ncfileIn.findGlobalAttribute("title").getStringValue());
+      Assert.assertEquals("K", ncfileIn.findVariable("data").findAttribute("units").getStringValue());
+
+      checkEquals(dataValues, ncfileIn.findVariable("data").read());
+      checkEquals(shortValues, ncfileIn.findVariable("shorts").read());
+      checkEquals(byteValues, ncfileIn.findVariable("bytes").read());
+      checkEquals(coordValues, ncfileIn.findVariable("coords").read());
+      Assert.assertEquals(N3iosp.NC_FILL_INT, ncfileIn.findVariable("transform").read().getInt(0));
+    }
+  }
+
+  private void checkEquals(Array expect, Array got) {
+    Assert.assertArrayEquals(expect.getShape(), got.getShape());
+    for (int i = 0; i < expect.getSize(); i++)
+      Assert.assertEquals(expect.getDouble(i), got.getDouble(i), 0.0);
+  }
+}
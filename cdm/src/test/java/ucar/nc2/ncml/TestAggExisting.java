@@ -11,6 +11,7 @@ import ucar.ma2.*;
 import ucar.nc2.*;
 import ucar.nc2.dataset.NetcdfDataset;
 import ucar.unidata.util.test.Assert2;
+import ucar.unidata.util.test.ParallelReads;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
@@ -51,6 +52,20 @@ public class TestAggExisting {
     ncfile.close();
   }
 
+  @Test
+  public void testParallelRead() throws Exception {
+    String filename = "file:./"+TestNcML.topDir + "aggExisting.xml";
+
+    ParallelReads.withExecutor(3, exec -> Aggregation.setExecutor(exec, 2), () -> {
+      try (NetcdfFile ncfile = NcMLReader.readNcML(filename, null)) {
+        ncfile.findVariable("T").setCaching(false);
+        testReadData(ncfile);
+        testReadSlice(ncfile);
+      }
+      return null;
+    });
+  }
+
   @Test
   public void testNcmlDatasetNoProtocolInFilename() throws IOException, InvalidRangeException {
     String filename = "./"+TestNcML.topDir + "aggExisting.xml";
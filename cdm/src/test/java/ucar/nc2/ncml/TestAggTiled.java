@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import ucar.ma2.*;
 import ucar.nc2.*;
 import ucar.unidata.util.test.Assert2;
+import ucar.unidata.util.test.ParallelReads;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
@@ -68,6 +69,24 @@ public class TestAggTiled extends TestCase {
     ncfile.close();
   }
 
+  public void testParallelRead() throws Exception {
+    String filename = "file:./" + TestNcML.topDir + "tiled/testAggTiled.ncml";
+
+    ParallelReads.withExecutor(3, exec -> Aggregation.setExecutor(exec, 2), () -> {
+      try (NetcdfFile ncfile = NcMLReader.readNcML(filename, null)) {
+        testCoordVar(ncfile, "lat", nlat, DataType.DOUBLE);
+        testCoordVar(ncfile, "lon", nlon, DataType.FLOAT);
+
+        Variable v = ncfile.findVariable("temperature");
+        v.setCaching(false);
+        testReadData(ncfile, v);
+        testReadDataSection(v, new Section("3:9,6:18"));
+        testReadDataSection(v, new Section("1:9:4,3:19:3"));
+      }
+      return null;
+    });
+  }
+
   public void testStride() throws IOException, InvalidRangeException {
     String filename = "file:./" + TestNcML.topDir + "tiled/testAggTiled.ncml";
 
@@ -4,11 +4,13 @@
  */
 package ucar.nc2.util.cache;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.nc2.dataset.DatasetUrl;
 import ucar.nc2.util.CancelTask;
+import ucar.nc2.util.CancelTaskImpl;
 import ucar.nc2.dataset.NetcdfDataset;
 import ucar.nc2.NetcdfFile;
 import ucar.unidata.util.test.TestDir;
@@ -19,6 +21,7 @@ import java.io.File;
 import java.lang.invoke.MethodHandles;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -156,4 +159,129 @@ public class TestFileCacheConcurrent {
 
     }
   }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////
+
+  // concurrent misses on the same key should open the file once
+  @Test
+  public void testCoalescedOpens() throws Exception {
+    FileCache fileCache = new FileCache("coalesce", 5, 10, 20, 0);
+    int nthreads = 20;
+    CountDownLatch parked = new CountDownLatch(nthreads - 1);
+    AtomicInteger opens = new AtomicInteger();
+    AtomicInteger opensWhileHeld = new AtomicInteger();
+    // hold the first open until every other thread is waiting for it, then see how many opens were started
+    // later opens are waiters that timed out on the locked copy, and are not held
+    FileFactory slowFactory = (location, buffer_size, cancelTask, iospMessage) -> {
+      if (opens.incrementAndGet() == 1) {
+        try {
+          if (!parked.await(30, TimeUnit.SECONDS)) throw new IOException("waiters never parked");
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        opensWhileHeld.set(opens.get());
+      }
+      return new FakeFile(location.trueurl);
+    };
+
+    ExecutorService pool = Executors.newFixedThreadPool(nthreads);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int i = 0; i < nthreads; i++) {
+        results.add(pool.submit(() -> {
+          FileCacheable fc = fileCache.acquire(slowFactory, null, new DatasetUrl(null, "cold"), -1, new ParkedTask(parked), null);
+          fc.close();
+          return null;
+        }));
+      }
+      for (Future<?> result : results)
+        result.get();
+    } finally {
+      pool.shutdownNow();
+    }
+
+    Assert.assertEquals(1, opensWhileHeld.get());
+    Assert.assertEquals(nthreads - 1, fileCache.coalesced.get());
+  }
+
+  // a thread waiting on another thread's open gives up when its task is canceled
+  @Test
+  public void testCanceledWhileWaiting() throws Exception {
+    FileCache fileCache = new FileCache("cancel", 5, 10, 20, 0);
+    CountDownLatch opening = new CountDownLatch(1);
+    CountDownLatch finishOpen = new CountDownLatch(1);
+    FileFactory heldFactory = (location, buffer_size, cancelTask, iospMessage) -> {
+      opening.countDown();
+      try {
+        if (!finishOpen.await(30, TimeUnit.SECONDS)) throw new IOException("open never released");
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return new FakeFile(location.trueurl);
+    };
+
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      Future<FileCacheable> opener = pool.submit(() -> fileCache.acquire(heldFactory, new DatasetUrl(null, "held")));
+      Assert.assertTrue(opening.await(30, TimeUnit.SECONDS));
+
+      CancelTaskImpl cancelTask = new CancelTaskImpl();
+      cancelTask.cancel();
+      Assert.assertNull(fileCache.acquire(heldFactory, null, new DatasetUrl(null, "held"), -1, cancelTask, null));
+      Assert.assertEquals(1, fileCache.coalesced.get());
+
+      finishOpen.countDown();
+      opener.get().close();
+    } finally {
+      finishOpen.countDown();
+      pool.shutdownNow();
+    }
+  }
+
+  // counts down the latch the first time it is polled, which a waiting thread does before parking on the open
+  private static class ParkedTask extends CancelTaskImpl {
+    private final CountDownLatch parked;
+    private final AtomicBoolean polled = new AtomicBoolean();
+
+    ParkedTask(CountDownLatch parked) {
+      this.parked = parked;
+    }
+
+    @Override
+    public boolean isCancel() {
+      if (polled.compareAndSet(false, true)) parked.countDown();
+      return super.isCancel();
+    }
+  }
+
+  private static class FakeFile implements FileCacheable {
+    private final String location;
+    private FileCacheIF fileCache;
+
+    FakeFile(String location) {
+      this.location = location;
+    }
+
+    public String getLocation() {
+      return location;
+    }
+
+    public void close() throws IOException {
+      if (fileCache != null) fileCache.release(this);
+    }
+
+    public long getLastModified() {
+      return 0;
+    }
+
+    public void setFileCache(FileCacheIF fileCache) {
+      this.fileCache = fileCache;
+    }
+
+    public void release() {
+    }
+
+    public void reacquire() {
+    }
+  }
 }
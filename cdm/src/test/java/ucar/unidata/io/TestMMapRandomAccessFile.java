@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Use small windows, so that reads cross window boundaries.
+ */
+@RunWith(JUnit4.class)
+public class TestMMapRandomAccessFile {
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private byte[] data;
+  private File file;
+
+  private void makeFile() throws IOException {
+    data = new byte[10007];
+    new Random(3).nextBytes(data);
+    System.arraycopy("GRIB".getBytes(), 0, data, 5000, 4);
+    file = tempFolder.newFile();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(data);
+    }
+  }
+
+  @Test
+  public void testArrayReads() throws IOException {
+    makeFile();
+    for (int endian : new int[] {RandomAccessFile.BIG_ENDIAN, RandomAccessFile.LITTLE_ENDIAN}) {
+      ByteOrder bo = (endian == RandomAccessFile.BIG_ENDIAN) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+      for (int windowSize : new int[] {16, 1024, MMapRandomAccessFile.DEFAULT_WINDOW_SIZE}) {
+        try (RandomAccessFile raf = new MMapRandomAccessFile(file.getPath(), "r", windowSize)) {
+          raf.order(endian);
+          for (int start : new int[] {0, 1, 15, 17, 1001}) {
+            int n = (data.length - start) / 8 - 1;
+
+            raf.seek(start);
+            int[] ia = new int[n];
+            raf.readInt(ia, 0, n);
+            Assert.assertEquals(start + 4L * n, raf.getFilePointer());
+            IntBuffer ib = ByteBuffer.wrap(data, start, 4 * n).slice().order(bo).asIntBuffer();
+            for (int i = 0; i < n; i++) Assert.assertEquals(ib.get(i), ia[i]);
+
+            raf.seek(start);
+            short[] sa = new short[n];
+            raf.readShort(sa, 0, n);
+            ShortBuffer sb = ByteBuffer.wrap(data, start, 2 * n).slice().order(bo).asShortBuffer();
+            for (int i = 0; i < n; i++) Assert.assertEquals(sb.get(i), sa[i]);
+
+            raf.seek(start);
+            double[] da = new double[n];
+            raf.readDouble(da, 0, n);
+            DoubleBuffer db = ByteBuffer.wrap(data, start, 8 * n).slice().order(bo).asDoubleBuffer();
+            for (int i = 0; i < n; i++)
+              Assert.assertEquals(Double.doubleToRawLongBits(db.get(i)), Double.doubleToRawLongBits(da[i]));
+
+            raf.seek(start);
+            byte[] ba = new byte[data.length - start];
+            raf.readFully(ba);
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, start, data.length), ba);
+            Assert.assertEquals(-1, raf.read());
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSearchForward() throws IOException {
+    makeFile();
+    try (RandomAccessFile raf = new MMapRandomAccessFile(file.getPath(), "r", 16)) {
+      KMPMatch match = new KMPMatch("GRIB".getBytes());
+      raf.seek(10);
+      Assert.assertTrue(raf.searchForward(match, -1));
+      Assert.assertEquals(5000, raf.getFilePointer());
+
+      raf.seek(5001);
+      Assert.assertFalse(raf.searchForward(match, -1));
+    }
+  }
+
+  @Test(expected = EOFException.class)
+  public void testEof() throws IOException {
+    makeFile();
+    try (RandomAccessFile raf = new MMapRandomAccessFile(file.getPath(), "r", 16)) {
+      raf.seek(data.length - 3);
+      raf.readInt(new int[1], 0, 1);
+    }
+  }
+
+  @Test
+  public void testMappedLocations() {
+    try {
+      MMapRandomAccessFile.setMappedLocations(Arrays.asList("/data/archive"));
+      Assert.assertTrue(MMapRandomAccessFile.isMappedLocation("/data/archive/gfs/file.grib2"));
+      Assert.assertFalse(MMapRandomAccessFile.isMappedLocation("/data/archive2/file.grib2"));
+    } finally {
+      MMapRandomAccessFile.setMappedLocations(null);
+    }
+    Assert.assertFalse(MMapRandomAccessFile.isMappedLocation("/data/archive/gfs/file.grib2"));
+  }
+}
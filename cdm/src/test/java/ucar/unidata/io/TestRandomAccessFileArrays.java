@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The reads, with buffers smaller and larger than the elements and the request.
+ * Also run against MMapRandomAccessFile, with windows smaller and larger than the elements and the request.
+ */
+@RunWith(Parameterized.class)
+public class TestRandomAccessFileArrays {
+
+  @Parameterized.Parameters(name = "mapped={0}")
+  public static List<Object[]> getTestParameters() {
+    List<Object[]> result = new ArrayList<>();
+    result.add(new Object[]{false});
+    result.add(new Object[]{true});
+    return result;
+  }
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final boolean mapped;
+  private byte[] data;
+  private File file;
+
+  public TestRandomAccessFileArrays(boolean mapped) {
+    this.mapped = mapped;
+  }
+
+  // buffer sizes for a RandomAccessFile, window sizes (a power of 2) for a MMapRandomAccessFile
+  // each window is its own mapping, so a big file gets bigger windows
+  private int[] bufferSizes(boolean bigFile) {
+    if (!mapped) return new int[] {1, 17, 8092};
+    return bigFile ? new int[] {4096, MMapRandomAccessFile.DEFAULT_WINDOW_SIZE} :
+            new int[] {16, 1024, MMapRandomAccessFile.DEFAULT_WINDOW_SIZE};
+  }
+
+  private RandomAccessFile open(int bufferSize) throws IOException {
+    return mapped ? new MMapRandomAccessFile(file.getPath(), "r", bufferSize) : new RandomAccessFile(file.getPath(), "r", bufferSize);
+  }
+
+  private void makeFile(int size) throws IOException {
+    data = new byte[size];
+    new Random(7).nextBytes(data);
+    file = tempFolder.newFile();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(data);
+    }
+  }
+
+  @Test
+  public void testArrayReads() throws IOException {
+    makeFile(3 * 1024 * 1024 + 7); // more than one direct read
+    for (int endian : new int[] {RandomAccessFile.BIG_ENDIAN, RandomAccessFile.LITTLE_ENDIAN}) {
+      ByteOrder bo = (endian == RandomAccessFile.BIG_ENDIAN) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+      for (int bufferSize : bufferSizes(true)) {
+        try (RandomAccessFile raf = open(bufferSize)) {
+          raf.order(endian);
+          for (int start : new int[] {0, 3, 1001}) {
+            int n = (data.length - start) / 8 - 1;
+
+            raf.seek(start);
+            float[] fa = new float[n];
+            raf.readFloat(fa, 0, n);
+            Assert.assertEquals(start + 4L * n, raf.getFilePointer());
+            Assert.assertEquals(data[start + 4 * n] & 0xff, raf.read());
+            FloatBuffer fb = ByteBuffer.wrap(data, start, 4 * n).slice().order(bo).asFloatBuffer();
+            for (int i = 0; i < n; i++)
+              Assert.assertEquals(Float.floatToRawIntBits(fb.get(i)), Float.floatToRawIntBits(fa[i]));
+
+            raf.seek(start);
+            long[] la = new long[n];
+            raf.readLong(la, 0, n);
+            LongBuffer lb = ByteBuffer.wrap(data, start, 8 * n).slice().order(bo).asLongBuffer();
+            for (int i = 0; i < n; i++) Assert.assertEquals(lb.get(i), la[i]);
+
+            raf.seek(start);
+            double[] da = new double[n];
+            raf.readDouble(da, 0, n);
+            DoubleBuffer db = ByteBuffer.wrap(data, start, 8 * n).slice().order(bo).asDoubleBuffer();
+            for (int i = 0; i < n; i++)
+              Assert.assertEquals(Double.doubleToRawLongBits(db.get(i)), Double.doubleToRawLongBits(da[i]));
+
+            raf.seek(start);
+            short[] sa = new short[10];
+            raf.readShort(sa, 3, 7);
+            ShortBuffer sb = ByteBuffer.wrap(data, start, 14).slice().order(bo).asShortBuffer();
+            for (int i = 0; i < 7; i++) Assert.assertEquals(sb.get(i), sa[i + 3]);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testScalarReads() throws IOException {
+    makeFile(10007);
+    for (int endian : new int[] {RandomAccessFile.BIG_ENDIAN, RandomAccessFile.LITTLE_ENDIAN}) {
+      ByteBuffer bb = ByteBuffer.wrap(data).order(
+              (endian == RandomAccessFile.BIG_ENDIAN) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+      for (int bufferSize : bufferSizes(false)) {
+        try (RandomAccessFile raf = open(bufferSize)) {
+          raf.order(endian);
+          Assert.assertEquals(data.length, raf.length());
+          for (int start : new int[] {0, 13, 15, 1001, data.length - 100}) {
+            raf.seek(start);
+            Assert.assertEquals(data[start] & 0xff, raf.read());
+            Assert.assertEquals(bb.getShort(start + 1), raf.readShort());
+            Assert.assertEquals(bb.getShort(start + 3) & 0xffff, raf.readUnsignedShort());
+            Assert.assertEquals(bb.getInt(start + 5), raf.readInt());
+            Assert.assertEquals(bb.getLong(start + 9), raf.readLong());
+            Assert.assertEquals(Float.floatToRawIntBits(bb.getFloat(start + 17)), Float.floatToRawIntBits(raf.readFloat()));
+            Assert.assertEquals(Double.doubleToRawLongBits(bb.getDouble(start + 21)),
+                    Double.doubleToRawLongBits(raf.readDouble()));
+            Assert.assertEquals(start + 29, raf.getFilePointer());
+
+            raf.unread();
+            Assert.assertEquals(data[start + 28] & 0xff, raf.read());
+            Assert.assertEquals(10, raf.skipBytes(10));
+
+            byte[] b = new byte[50];
+            raf.readFully(b);
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, start + 39, start + 89), b);
+            Assert.assertFalse(raf.isAtEndOfFile());
+          }
+
+          // read up to the end, then seek back
+          raf.seek(data.length - 2);
+          Assert.assertEquals(2, raf.read(new byte[10], 0, 10));
+          Assert.assertEquals(-1, raf.read());
+          Assert.assertEquals(-1, raf.read(new byte[10], 0, 10));
+          Assert.assertTrue(raf.isAtEndOfFile());
+          raf.seek(0);
+          Assert.assertFalse(raf.isAtEndOfFile());
+          Assert.assertEquals(data[0] & 0xff, raf.read());
+
+          raf.seek(data.length - 5);
+          try {
+            raf.readFully(new byte[10]);
+            Assert.fail("no EOFException");
+          } catch (EOFException e) {
+            // expected
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testEof() throws IOException {
+    makeFile(10000);
+    try (RandomAccessFile raf = open(mapped ? 64 : 100)) {
+      raf.seek(data.length - 3);
+      try {
+        raf.readInt(new int[1], 0, 1);
+        Assert.fail("no EOFException");
+      } catch (EOFException e) {
+        // expected
+      }
+
+      raf.seek(data.length - 4000);
+      try {
+        raf.readInt(new int[2000], 0, 2000);
+        Assert.fail("no EOFException");
+      } catch (EOFException e) {
+        // expected
+      }
+    }
+  }
+
+  // bulk reads past the end of an in-memory file go through read_(), which must report EOF
+  @Test
+  public void testInMemoryEof() throws IOException {
+    makeFile(1000);
+    try (RandomAccessFile raf = new InMemoryRandomAccessFile("test", data)) {
+      raf.seek(data.length);
+      try {
+        raf.readInt(new int[500], 0, 500);
+        Assert.fail("no EOFException");
+      } catch (EOFException e) {
+        // expected
+      }
+
+      raf.seek(data.length + 100);
+      try {
+        raf.readDouble(new double[500], 0, 500);
+        Assert.fail("no EOFException");
+      } catch (EOFException e) {
+        // expected
+      }
+
+      raf.seek(data.length - 8);
+      Assert.assertEquals(8, raf.read(new byte[100], 0, 100));
+      Assert.assertEquals(-1, raf.read());
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Read through the HTTPBlockCache from an embedded HTTP server that counts the Range requests.
+ */
+@RunWith(JUnit4.class)
+public class TestHTTPBlockCache {
+  private static final int blockSize = 1000;
+  private static final Pattern range = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+  private HttpServer server;
+  private byte[] content;
+  private String url;
+  private final AtomicInteger gets = new AtomicInteger();
+  private volatile boolean sendETag = true;
+
+  @Before
+  public void startServer() throws IOException {
+    content = new byte[10 * blockSize + 123];
+    new Random(37).nextBytes(content);
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/data.bin", this::handle);
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort() + "/data.bin";
+    HTTPBlockCache.init(1000 * 1000, blockSize);
+  }
+
+  @After
+  public void stopServer() {
+    HTTPBlockCache.shutdown();
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+    if (sendETag)
+      exchange.getResponseHeaders().add("ETag", "\"v1\"");
+    if (exchange.getRequestMethod().equals("HEAD")) {
+      exchange.getResponseHeaders().add("Content-Length", Integer.toString(content.length));
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+      return;
+    }
+
+    gets.incrementAndGet();
+    Matcher m = range.matcher(exchange.getRequestHeaders().getFirst("Range"));
+    Assert.assertTrue(m.matches());
+    int start = Integer.parseInt(m.group(1));
+    int end = Math.min(Integer.parseInt(m.group(2)), content.length - 1);
+    exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+    exchange.sendResponseHeaders(206, end - start + 1);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(content, start, end - start + 1);
+    }
+  }
+
+  private void checkRead(HTTPRandomAccessFile raf, long pos, int len) throws IOException {
+    byte[] got = new byte[len];
+    raf.seek(pos);
+    raf.readFully(got);
+    for (int i = 0; i < len; i++)
+      Assert.assertEquals("pos " + (pos + i), content[(int) pos + i], got[i]);
+  }
+
+  @Test
+  public void testBlocksAreShared() throws IOException {
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      checkRead(raf, 1500, 10);
+      checkRead(raf, 7010, 3);
+      checkRead(raf, content.length - 50, 50); // short last block
+    }
+    int afterFirst = gets.get();
+    Assert.assertEquals(3, afterFirst);
+
+    // another file on the same url uses the cached blocks
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      checkRead(raf, 2990, 20);
+      checkRead(raf, 7000, blockSize);
+    }
+    Assert.assertEquals(afterFirst + 1, gets.get()); // only block 3 was missing
+  }
+
+  @Test
+  public void testCoalesceMissingBlocks() throws IOException {
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      checkRead(raf, 3 * blockSize, 10);
+      gets.set(0);
+
+      // blocks 1,2 and 4,5,6 are missing: two requests, not five
+      checkRead(raf, blockSize + 5, 5 * blockSize + 10);
+      Assert.assertEquals(2, gets.get());
+
+      checkRead(raf, 0, content.length);
+      Assert.assertEquals(4, gets.get()); // block 0 and blocks 7 to 10
+    }
+  }
+
+  @Test
+  public void testNoValidatorBypassesCache() throws IOException {
+    sendETag = false;
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      checkRead(raf, 1500, 10);
+    }
+
+    // the file changes, with the same length
+    content = content.clone();
+    content[1505]++;
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      checkRead(raf, 1500, 10);
+    }
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    ExecutorService exec = Executors.newFixedThreadPool(2);
+    HTTPBlockCache.setPrefetch(exec, 4);
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      checkRead(raf, 0, blockSize);
+      checkRead(raf, blockSize, 10); // sequential, so the next blocks are fetched in the background
+
+      exec.shutdown();
+      Assert.assertTrue(exec.awaitTermination(10, TimeUnit.SECONDS));
+      int before = gets.get();
+      checkRead(raf, 2 * blockSize, 4 * blockSize);
+      Assert.assertEquals(before, gets.get());
+    } finally {
+      exec.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import ucar.unidata.io.RandomAccessFile;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.IOException;
+import java.util.Formatter;
+
+/**
+ * Bounded cache of decoded GRIB records, keyed by data file and record position.
+ * The size is weighted by the number of bytes in the decoded float[], so maxBytes bounds the heap used.
+ * Off by default; turn on with init(maxBytes).
+ * <p>
+ * The cached arrays are shared: callers must not modify them.
+ * The key includes the last modified time and length of the data file, so a file that is rewritten or appended to
+ * in place (eg by the TDM) no longer matches its old records, which age out of the cache.
+ */
+public class GribDataCache {
+  private static Cache<Key, float[]> cache;
+  private static long maxBytes;
+
+  /**
+   * Turn on the cache, replacing any existing one.
+   * @param maxSizeBytes maximum bytes of decoded data to hold; if <= 0, turn the cache off.
+   */
+  public static synchronized void init(long maxSizeBytes) {
+    if (maxSizeBytes <= 0) {
+      shutdown();
+      return;
+    }
+    maxBytes = maxSizeBytes;
+    cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxSizeBytes)
+            .weigher((Key key, float[] data) -> 4 * data.length)
+            .recordStats()
+            .build();
+  }
+
+  public static synchronized void shutdown() {
+    if (cache != null) cache.invalidateAll();
+    cache = null;
+    maxBytes = 0;
+  }
+
+  public static boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * Make the key of a record. Return null if the cache is off.
+   * @param dataFile the open data file
+   * @param pos position of the record in the data file
+   */
+  public static Key makeKey(RandomAccessFile dataFile, long pos) throws IOException {
+    if (cache == null || dataFile == null) return null;
+    return new Key(dataFile.getLocation(), dataFile.getLastModified(), dataFile.length(), pos);
+  }
+
+  /**
+   * Get a decoded record.
+   * @param key from makeKey(), may be null
+   * @return cached decoded data, or null if not cached or the cache is off. Do not modify.
+   */
+  public static float[] get(Key key) {
+    Cache<Key, float[]> c = cache;
+    if (c == null || key == null) return null;
+    return c.getIfPresent(key);
+  }
+
+  /**
+   * Add a decoded record. Ignored if the cache is off.
+   * @param key from makeKey(), may be null
+   * @param data decoded data, must not be modified after it is added
+   */
+  public static void put(Key key, float[] data) {
+    Cache<Key, float[]> c = cache;
+    if (c == null || key == null || data == null) return;
+    c.put(key, data);
+  }
+
+  public static void clear() {
+    Cache<Key, float[]> c = cache;
+    if (c != null) c.invalidateAll();
+  }
+
+  /** Total bytes of decoded data currently held. */
+  public static long getBytesHeld() {
+    Cache<Key, float[]> c = cache;
+    if (c == null) return 0;
+    long total = 0;
+    for (float[] data : c.asMap().values())
+      total += 4L * data.length;
+    return total;
+  }
+
+  public static CacheStats getStats() {
+    Cache<Key, float[]> c = cache;
+    return (c == null) ? null : c.stats();
+  }
+
+  public static void showCache(Formatter f) {
+    Cache<Key, float[]> c = cache;
+    if (c == null) {
+      f.format("GribDataCache : turned off%n");
+      return;
+    }
+    CacheStats stats = c.stats();
+    f.format("GribDataCache: records=%d bytesHeld=%d maxBytes=%d%n", c.size(), getBytesHeld(), maxBytes);
+    f.format(" hitRate=%.3f hits=%d misses=%d evictions=%d%n", stats.hitRate(), stats.hitCount(), stats.missCount(),
+            stats.evictionCount());
+  }
+
+  @Immutable
+  public static class Key {
+    private final String dataFile;
+    private final long lastModified;
+    private final long length;
+    private final long pos;
+
+    Key(String dataFile, long lastModified, long length, long pos) {
+      this.dataFile = dataFile;
+      this.lastModified = lastModified;
+      this.length = length;
+      this.pos = pos;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return pos == key.pos && lastModified == key.lastModified && length == key.length &&
+              dataFile.equals(key.dataFile);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = dataFile.hashCode();
+      result = 31 * result + Long.hashCode(lastModified);
+      result = 31 * result + Long.hashCode(length);
+      return 31 * result + Long.hashCode(pos);
+    }
+  }
+}
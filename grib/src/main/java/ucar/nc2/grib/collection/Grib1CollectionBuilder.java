@@ -8,11 +8,9 @@ package ucar.nc2.grib.collection;
 import javax.annotation.Nonnull;
 import thredds.featurecollection.FeatureCollectionConfig;
 import thredds.featurecollection.FeatureCollectionConfig.GribConfig;
-import thredds.inventory.CollectionUpdateType;
 import thredds.inventory.MCollection;
 import thredds.inventory.MFile;
 import ucar.coord.*;
-import ucar.nc2.grib.GribIndex;
 import ucar.nc2.grib.GribIndexCache;
 import ucar.nc2.grib.grib1.*;
 import ucar.nc2.grib.grib1.tables.Grib1Customizer;
@@ -20,7 +18,6 @@ import ucar.nc2.grib.grib2.Grib2Utils;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.time.CalendarPeriod;
-import ucar.nc2.util.CloseableIterator;
 
 import java.io.File;
 import java.io.IOException;
@@ -35,6 +32,7 @@ import java.util.*;
  */
 public class Grib1CollectionBuilder extends GribCollectionBuilder {
   private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(Grib1CollectionBuilder.class);
+  static boolean compactRecords = true; // turned off in tests, the index must come out the same
 
   private FeatureCollectionConfig.GribConfig gribConfig;
   private Grib1Customizer cust;
@@ -61,31 +59,15 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
     logger.debug(" dcm={}", dcm);
 
     // place each record into its group
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
-      if (iter == null)
-        return new ArrayList<>(); // empty
+    List<MFile> files = getSortedFiles();
+    if (files == null)
+      return new ArrayList<>(); // empty
 
-      while (iter.hasNext()) {
-        MFile mfile = iter.next();
-        Grib1Index index;
-        try {
-          if (Grib.debugGbxIndexOnly) {
-            index = (Grib1Index) GribIndex.open(true, mfile);
-            if (index == null) continue;
-          } else {
-            // here is where gbx9 files get recreated
-            index = (Grib1Index) GribIndex.readOrCreateIndexFromSingleFile(true, mfile, CollectionUpdateType.test, logger);
-          }
-          allFiles.add(mfile);  // add on success
-
-        } catch (IOException ioe) {
-          logger.error("Grib2CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath() + " failed", ioe);
-          continue;
-        }
-        if (index == null) {
-          logger.error("Grib2CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath() + " failed");
-          continue;
-        }
+    Grib1RecordCompactor compactor = new Grib1RecordCompactor(); // all records stay in memory until the index is written
+    try (GbxIndexIterator indexes = new GbxIndexIterator(files)) {
+      Grib1Index index;
+      while ((index = (Grib1Index) indexes.next()) != null) {
+        allFiles.add(indexes.getMFile());  // add on success
 
         for (Grib1Record gr : index.getRecords()) { // we are using entire Grib1Record - likely this is the memory bottleneck for how big a collection can handle
           if (this.cust == null) {
@@ -97,6 +79,7 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
             continue; // skip
           }
 
+          if (compactRecords) gr = compactor.compact(gr); // keep only what the index needs
           gr.setFile(fileno); // each record tracks which file it belongs to
           Grib1Gds gds = gr.getGDS();  // use GDS to group records
           int hashCode = gribConfig.convertGdsHash(gds.hashCode());  // allow external config to muck with gdsHash. Why? because of error in encoding and we need exact hash matching
@@ -127,12 +110,16 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
       rect.make(gribConfig, stats, errlog);
       g.gribVars = rect.gribvars;
       g.coords = rect.coords;
+      g.records = null; // the variables now hold the records, without the duplicates
 
       statsAll.add(stats);
     }
 
     // debugging and validation
-    if (logger.isDebugEnabled()) logger.debug(statsAll.show());
+    if (logger.isDebugEnabled()) {
+      logger.debug(statsAll.show());
+      logger.debug(compactor.show());
+    }
 
     return groups;
   }
@@ -281,6 +268,7 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
 
         // done, build coordinates and sparse array indicating which records to use
         vb.coordND = coordNBuilder.finish(vb.atomList, info);
+        vb.atomList = null; // the sparse array has the records that are used
       }
 
       // make shared coordinates across variables
@@ -7,11 +7,9 @@ package ucar.nc2.grib.collection;
 
 import javax.annotation.Nonnull;
 import thredds.featurecollection.FeatureCollectionConfig;
-import thredds.inventory.CollectionUpdateType;
 import thredds.inventory.MCollection;
 import thredds.inventory.MFile;
 import ucar.coord.*;
-import ucar.nc2.grib.GribIndex;
 import ucar.nc2.grib.GribIndexCache;
 import ucar.nc2.grib.VertCoord;
 import ucar.nc2.grib.grib2.*;
@@ -19,7 +17,6 @@ import ucar.nc2.grib.grib2.table.Grib2Customizer;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.time.CalendarPeriod;
-import ucar.nc2.util.CloseableIterator;
 
 import java.io.File;
 import java.io.IOException;
@@ -60,31 +57,15 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
 
     // place each record into its group
     int totalRecords = 0;
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
-      if (iter == null)
-        return new ArrayList<>(); // empty
-
-      while (iter.hasNext()) {
-        MFile mfile = iter.next();
-        Grib2Index index;
-
-        try {
-          if (Grib.debugGbxIndexOnly) {
-             index = (Grib2Index) GribIndex.open(false, mfile);
-           } else {
-             // this is where gbx9 files get recreated
-             index = (Grib2Index) GribIndex.readOrCreateIndexFromSingleFile(false, mfile, CollectionUpdateType.test, logger);
-           }
-          allFiles.add(mfile);  // add on success
-
-        } catch (IOException ioe) {
-          logger.error("Grib2CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath() + " failed", ioe);
-          continue;
-        }
-        if (index == null) {
-          logger.error("Grib2CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath() + " failed");
-          continue;
-        }
+    List<MFile> files = getSortedFiles();
+    if (files == null)
+      return new ArrayList<>(); // empty
+
+    Grib2RecordCompactor compactor = new Grib2RecordCompactor(); // all records stay in memory until the index is written
+    try (GbxIndexIterator indexes = new GbxIndexIterator(files)) {
+      Grib2Index index;
+      while ((index = (Grib2Index) indexes.next()) != null) {
+        allFiles.add(indexes.getMFile());  // add on success
         int n = index.getNRecords();
         totalRecords += n;
 
@@ -98,6 +79,7 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
             continue; // skip
           }
 
+          gr = compactor.compact(gr); // keep only what the index needs
           gr.setFile(fileno); // each record tracks which file it belongs to
           Grib2Gds gds = gr.getGDS();  // use GDS to group records
           int hashCode = gribConfig.convertGdsHash(gds.hashCode());  // allow external config to muck with gdsHash. Why? because of error in encoding and we need exact hash matching
@@ -133,12 +115,16 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
       rect.make(gribConfig, stats, errlog);
       g.gribVars = rect.gribvars;
       g.coords = rect.coords;
+      g.records = null; // the variables now hold the records, without the duplicates
 
       statsAll.add(stats);
     }
 
     // debugging and validation
-    if (logger.isDebugEnabled()) logger.debug(statsAll.show());
+    if (logger.isDebugEnabled()) {
+      logger.debug(statsAll.show());
+      logger.debug(compactor.show());
+    }
 
     return groups;
   }
@@ -275,6 +261,7 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
 
         // done, build coordinates and sparse array indicating which records to use
         vb.coordND = coordNBuilder.finish(vb.atomList, info);
+        vb.atomList = null; // the sparse array has the records that are used
       }
 
       // make shared coordinates across variables
@@ -38,6 +38,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Formatter;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -72,6 +73,32 @@ public class GribCdmIndex implements IndexReader {
     gribCollectionCache = cache;
   }
 
+  // optional cache for the component collections of partitions, and their data files - used in the TDS
+  private static volatile PartitionCache partitionCache;
+
+  /**
+   * Keep the component collections of partitions open, along with handles to their data files.
+   * Used instead of gribCollectionCache when reading through a partition.
+   *
+   * @param maxPartitions max number of idle component collections to keep; if <= 0, turn the cache off
+   * @param idleSecs close component collections not used for this many seconds
+   */
+  public static synchronized void initPartitionCache(int maxPartitions, int idleSecs) {
+    disablePartitionCache();
+    if (maxPartitions > 0)
+      partitionCache = new PartitionCache("PartitionCache", maxPartitions, idleSecs);
+  }
+
+  public static synchronized void disablePartitionCache() {
+    if (null != partitionCache) partitionCache.shutdown();
+    partitionCache = null;
+  }
+
+  /** @return the PartitionCache, or null if it is off */
+  public static PartitionCache getPartitionCache() {
+    return partitionCache;
+  }
+
   // open GribCollectionImmutable from an existing index file. return null on failure
   static GribCollectionImmutable acquireGribCollection(FileFactory factory, Object hashKey,
       String location, int buffer_size, CancelTask cancelTask, Object spiObject) throws IOException {
@@ -92,6 +119,23 @@ public class GribCdmIndex implements IndexReader {
 
   public static void shutdown() {
     if (gribCollectionCache != null) gribCollectionCache.clearCache(true);
+    disablePartitionCache();
+  }
+
+  /**
+   * Set the Executor used to read or create the gbx9 index of each file when building a collection index.
+   * Null (the default) means one file at a time on the calling thread. Either way the files are sorted by path,
+   * and their records are grouped in that order. Use a separate Executor from the one that builds the collections.
+   *
+   * @param exec use this Executor, shared by all collections
+   * @param maxPendingFiles max number of files whose index is read ahead of the grouping step, must be > 0
+   */
+  public static void setGbxIndexExecutor(Executor exec, int maxPendingFiles) {
+    GribCollectionBuilder.setExecutor(exec, maxPendingFiles);
+  }
+
+  public static void setGbxIndexExecutor(Executor exec) {
+    GribCollectionBuilder.setExecutor(exec);
   }
 
   /////////////////////////////////////////////////////////////////////////////////////////////////
@@ -708,6 +752,8 @@ public class GribCdmIndex implements IndexReader {
     // 5.0 if performance is an issue
     if ((updateType == CollectionUpdateType.never) || changed) {
       gribCollectionCache.clearCache(true);
+      PartitionCache pc = partitionCache;
+      if (pc != null) pc.clearCache(true);
     }
 
     return openCdmIndex(idxFile.getPath(), config, true, logger);
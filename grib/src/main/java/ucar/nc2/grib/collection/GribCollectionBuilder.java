@@ -24,9 +24,14 @@ import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.util.CloseableIterator;
 import ucar.unidata.util.StringUtil2;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Superclass to build indexes for collections of Grib files.
@@ -36,6 +41,20 @@ import java.util.*;
  */
 abstract class GribCollectionBuilder {
 
+  // see GribCdmIndex.setGbxIndexExecutor()
+  static private volatile Executor executor;
+  static private volatile int maxPendingFiles = 32;
+
+  static void setExecutor(Executor exec, int maxPending) {
+    if (maxPending < 1) throw new IllegalArgumentException("maxPendingFiles must be > 0");
+    executor = exec;
+    maxPendingFiles = maxPending;
+  }
+
+  static void setExecutor(Executor exec) {
+    executor = exec;
+  }
+
   protected final MCollection dcm;
   protected final org.slf4j.Logger logger;
   protected final boolean isGrib1;
@@ -236,6 +255,130 @@ abstract class GribCollectionBuilder {
     return ok;
   }
 
+  //////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // reading the gbx9 indexes
+
+  /**
+   * The files of the collection sorted by path, so that the fileno assignment does not depend on the order
+   * of the directory listing.
+   *
+   * @return sorted files, or null if the collection is empty
+   */
+  protected List<MFile> getSortedFiles() throws IOException {
+    List<MFile> result = new ArrayList<>();
+    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
+      if (iter == null)
+        return null;
+      while (iter.hasNext())
+        result.add(iter.next());
+    }
+    result.sort(Comparator.comparing(MFile::getPath));
+    return result;
+  }
+
+  private GribIndex readIndex(MFile mfile) throws IOException {
+    if (Grib.debugGbxIndexOnly)
+      return GribIndex.open(isGrib1, mfile);
+    // this is where gbx9 files get recreated
+    return GribIndex.readOrCreateIndexFromSingleFile(isGrib1, mfile, CollectionUpdateType.test, logger);
+  }
+
+  /*
+   Returns the gbx9 index of each file, in file order. If an executor is set, up to maxPendingFiles indexes
+   are read or created ahead, in parallel. Each file has its own gbx9, so the tasks share nothing.
+   Files whose index can't be read or created are logged and skipped. If a task throws, or the caller stops early
+   and closes the iterator, the tasks still pending are cancelled.
+   */
+  protected class GbxIndexIterator implements Closeable {
+    private final Iterator<MFile> files;
+    private final Executor exec;
+    private final int maxPending;
+    private final ArrayDeque<IndexTask> pending = new ArrayDeque<>();
+    private MFile mfile;
+
+    GbxIndexIterator(List<MFile> files) {
+      this.files = files.iterator();
+      this.exec = executor;
+      this.maxPending = (exec == null) ? 1 : maxPendingFiles;
+    }
+
+    // next index, or null when done
+    GribIndex next() throws IOException {
+      boolean ok = false;
+      try {
+        IndexTask task;
+        GribIndex index = null;
+        while (index == null && (task = nextTask()) != null) {
+          mfile = task.mfile;
+          index = task.getIndex();
+        }
+        ok = true;
+        return index;
+      } finally {
+        if (!ok) close();
+      }
+    }
+
+    // the file of the index last returned by next()
+    MFile getMFile() {
+      return mfile;
+    }
+
+    private IndexTask nextTask() {
+      while (pending.size() < maxPending && files.hasNext()) {
+        IndexTask task = new IndexTask(files.next());
+        if (exec == null) {
+          task.run();
+        } else {
+          try {
+            exec.execute(task);
+          } catch (RejectedExecutionException e) {
+            task.run(); // executor is shut down
+          }
+        }
+        pending.add(task);
+      }
+      return pending.poll();
+    }
+
+    @Override
+    public void close() {
+      for (IndexTask task : pending) task.cancel(true);
+      pending.clear();
+    }
+  }
+
+  private class IndexTask extends FutureTask<GribIndex> {
+    private final MFile mfile;
+
+    IndexTask(MFile mfile) {
+      super(() -> readIndex(mfile));
+      this.mfile = mfile;
+    }
+
+    // null if the index could not be read or created
+    GribIndex getIndex() throws IOException {
+      String builder = GribCollectionBuilder.this.getClass().getSimpleName();
+      try {
+        GribIndex index = get();
+        if (index == null)
+          logger.error(builder + " " + name + " : reading/Creating gbx9 index for file " + mfile.getPath() + " failed");
+        return index;
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(builder + " interrupted", e);
+
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        logger.error(builder + " " + name + " : reading/Creating gbx9 index for file " + mfile.getPath() + " failed", cause);
+        return null;
+      }
+    }
+  }
+
   public interface Group {
     CalendarDate getRuntime();
     List<Coordinate> getCoordinates();
@@ -5,6 +5,13 @@
 
 package ucar.nc2.grib.collection;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
 import javax.annotation.Nullable;
 import thredds.featurecollection.FeatureCollectionConfig;
 import thredds.inventory.MFile;
@@ -17,11 +24,16 @@ import ucar.nc2.time.CalendarDateUnit;
 import ucar.nc2.time.CalendarPeriod;
 import ucar.unidata.io.RandomAccessFile;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /**
  * Superclass to read GribCollection from ncx file.
+ * The groups of each dataset are decoded the first time they are used, from the memory-mapped index when possible.
  *
  * @author caron
  * @since 2/20/14
@@ -30,10 +42,14 @@ abstract class GribCollectionBuilderFromIndex {
   protected static final boolean debug = false;
   private static final boolean stackTrace = true;
 
+  // on Windows a mapped file cannot be deleted, and the index writers delete the old index before writing the new one
+  private static final boolean mapIndex = !System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+
   protected GribCollectionMutable gc;
   protected final org.slf4j.Logger logger;
   protected final FeatureCollectionConfig config;
   protected GribTables tables;
+  private final Object groupLock = new Object(); // decoding a group uses the builder
 
   protected abstract GribHorizCoordSystem readGds(GribCollectionProto.Gds p);
   protected abstract GribTables makeCustomizer() throws IOException;
@@ -53,6 +69,7 @@ abstract class GribCollectionBuilderFromIndex {
   protected boolean readIndex(RandomAccessFile raf) {
 
     gc.setIndexRaf(raf);
+    long lastModified = raf.getLastModified(); // the raf came from acquire, which checks this against the cached value
     try {
       raf.order(RandomAccessFile.BIG_ENDIAN);
       raf.seek(0);
@@ -86,8 +103,7 @@ abstract class GribCollectionBuilderFromIndex {
       }
       if (debug) System.out.printf("GribCollectionBuilderFromIndex proto len = %d%n", size);
 
-      byte[] m = new byte[size];
-      raf.readFully(m);
+      ByteBuffer m = readProtoBytes(raf, size, lastModified);
 
       /*
       message GribCollection {
@@ -116,7 +132,11 @@ abstract class GribCollectionBuilderFromIndex {
       }
        */
 
-      GribCollectionProto.GribCollection proto = GribCollectionProto.GribCollection.parseFrom(m);
+      // the datasets are kept undecoded, everything else is decoded now
+      List<ByteString> datasetBytes = new ArrayList<>();
+      ByteString rest = splitField(UnsafeByteOperations.unsafeWrap(m).newCodedInput(),
+          GribCollectionProto.GribCollection.DATASET_FIELD_NUMBER, datasetBytes);
+      GribCollectionProto.GribCollection proto = GribCollectionProto.GribCollection.parseFrom(rest);
 
       // need to read this first to get this.tables initialized
       gc.center = proto.getCenter();
@@ -152,9 +172,9 @@ abstract class GribCollectionBuilderFromIndex {
 
       gc.masterRuntime = (CoordinateRuntime) readCoord(proto.getMasterRuntime());
 
-      gc.datasets = new ArrayList<>(proto.getDatasetCount());
-      for (int i = 0; i < proto.getDatasetCount(); i++)
-        readDataset(proto.getDataset(i));
+      gc.datasets = new ArrayList<>(datasetBytes.size());
+      for (ByteString dsBytes : datasetBytes)
+        readDataset(dsBytes);
 
       return readExtensions(proto);
 
@@ -165,6 +185,40 @@ abstract class GribCollectionBuilderFromIndex {
     }
   }
 
+  // the GribCollection message, kept for decoding the groups later; a mapping survives the writers deleting and recreating the file
+  private ByteBuffer readProtoBytes(RandomAccessFile raf, int size, long lastModified) throws IOException {
+    File file = new File(raf.getLocation());
+    if (mapIndex && file.exists()) {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        // the same file that raf has open: not rewritten since readIndex started
+        if (channel.size() == raf.length() && file.lastModified() == lastModified)
+          return channel.map(FileChannel.MapMode.READ_ONLY, raf.getFilePointer(), size);
+      } catch (IOException | UnsupportedOperationException e) {
+        logger.debug("GribCollectionBuilderFromIndex {}: cant map index {}", gc.getName(), raf.getLocation(), e);
+      }
+    }
+
+    byte[] m = new byte[size];
+    raf.readFully(m);
+    return ByteBuffer.wrap(m);
+  }
+
+  // decode everything but the given repeated message field, whose messages are added undecoded to fieldBytes
+  private static ByteString splitField(CodedInputStream input, int fieldNumber, List<ByteString> fieldBytes) throws IOException {
+    input.enableAliasing(true); // fieldBytes are views of the input, not copies
+    ByteString.Output rest = ByteString.newOutput();
+    CodedOutputStream out = CodedOutputStream.newInstance(rest);
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (WireFormat.getTagFieldNumber(tag) == fieldNumber)
+        fieldBytes.add(input.readBytes());
+      else
+        input.skipField(tag, out);
+    }
+    out.flush();
+    return rest.toByteString();
+  }
+
   protected boolean readExtensions(GribCollectionProto.GribCollection proto) {
     return true;
   }
@@ -186,18 +240,100 @@ message Dataset {
   repeated Group groups = 2;      // separate group for each GDS
 }
  */
-  private GribCollectionMutable.Dataset readDataset(GribCollectionProto.Dataset p) {
+  private GribCollectionMutable.Dataset readDataset(ByteString dsBytes) throws IOException {
+    List<ByteString> groupBytes = new ArrayList<>();
+    ByteString rest = splitField(dsBytes.newCodedInput(), GribCollectionProto.Dataset.GROUPS_FIELD_NUMBER, groupBytes);
+    GribCollectionProto.Dataset p = GribCollectionProto.Dataset.parseFrom(rest);
+
     GribCollectionImmutable.Type type = GribCollectionImmutable.Type.valueOf(p.getType().toString());
     GribCollectionMutable.Dataset ds = gc.makeDataset(type);
-
-    List<GribCollectionMutable.GroupGC> groups = new ArrayList<>(p.getGroupsCount());
-    for (int i = 0; i < p.getGroupsCount(); i++)
-      groups.add(readGroup(p.getGroups(i)));
-    ds.groups = Collections.unmodifiableList(groups);
+    ds.groups = new LazyGroups(this, groupBytes);
 
     return ds;
   }
 
+  /**
+   * The groups of a dataset, each decoded the first time it is fetched.
+   * Reading one variable from a partition then decodes only that variable's group.
+   * The framing of every group is checked when the index is read, so a bad index fails readIndex and gets rebuilt.
+   */
+  private static class LazyGroups extends AbstractList<GribCollectionMutable.GroupGC> {
+    private final Object lock; // groups of all datasets share the builder
+    private GribCollectionBuilderFromIndex builder; // null once all groups are decoded
+    private final GribCollectionMutable.GroupGC[] groups;
+    private ByteString[] undecoded; // element is null once decoded
+    private int ndecoded;
+
+    LazyGroups(GribCollectionBuilderFromIndex builder, List<ByteString> groupBytes) throws IOException {
+      this.lock = builder.groupLock;
+      this.builder = builder;
+      this.groups = new GribCollectionMutable.GroupGC[groupBytes.size()];
+      this.undecoded = groupBytes.toArray(new ByteString[0]);
+
+      // the horizCoordSys names depend on the order the gds are read, so do them all now
+      for (int i = 0; i < groups.length; i++) {
+        checkFraming(undecoded[i].newCodedInput(), GribCollectionProto.Group.getDescriptor());
+        groups[i] = builder.gc.makeGroup();
+        groups[i].horizCoordSys = builder.readGds(readGroupGds(undecoded[i]));
+      }
+      if (groups.length == 0) release();
+    }
+
+    @Override
+    public GribCollectionMutable.GroupGC get(int index) {
+      synchronized (lock) {
+        if (undecoded != null && undecoded[index] != null) {
+          try {
+            builder.readGroup(groups[index], GribCollectionProto.Group.parseFrom(undecoded[index]));
+          } catch (InvalidProtocolBufferException e) { // the framing was checked, so the index is inconsistent with its schema
+            throw new IllegalStateException("GribCollectionBuilderFromIndex " + builder.gc.getName() + ": cant read group " + index, e);
+          }
+          undecoded[index] = null;
+          if (++ndecoded == groups.length) release();
+        }
+        return groups[index];
+      }
+    }
+
+    // like GribCollectionImmutable.GroupList, let go of the builder and index bytes once every group is made
+    private void release() {
+      builder = null;
+      undecoded = null;
+    }
+
+    @Override
+    public int size() {
+      return groups.length;
+    }
+  }
+
+  // walk the wire format of a message, into its message fields, without decoding it
+  private static void checkFraming(CodedInputStream input, Descriptors.Descriptor type) throws IOException {
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      Descriptors.FieldDescriptor field = type.findFieldByNumber(WireFormat.getTagFieldNumber(tag));
+      if (field != null && field.getType() == Descriptors.FieldDescriptor.Type.MESSAGE
+          && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+        int oldLimit = input.pushLimit(input.readRawVarint32()); // throws if negative or past the end
+        checkFraming(input, field.getMessageType());
+        input.popLimit(oldLimit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+  }
+
+  private static GribCollectionProto.Gds readGroupGds(ByteString groupBytes) throws IOException {
+    CodedInputStream input = groupBytes.newCodedInput();
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (WireFormat.getTagFieldNumber(tag) == GribCollectionProto.Group.GDS_FIELD_NUMBER)
+        return GribCollectionProto.Gds.parseFrom(input.readBytes());
+      input.skipField(tag);
+    }
+    return GribCollectionProto.Gds.getDefaultInstance();
+  }
+
   /*
 message Group {
   required uint32 gdsIndex = 1;       // index into GribCollection.gds array
@@ -209,11 +345,7 @@ message Group {
   extensions 100 to 199;
 }
  */
-  protected GribCollectionMutable.GroupGC readGroup(GribCollectionProto.Group p) {
-    GribCollectionMutable.GroupGC group = gc.makeGroup();
-
-    group.horizCoordSys = readGds( p.getGds());
-
+  protected void readGroup(GribCollectionMutable.GroupGC group, GribCollectionProto.Group p) {
     // read coords before variables
     group.coords = new ArrayList<>();
     for (int i = 0; i < p.getCoordsCount(); i++)
@@ -276,8 +408,6 @@ message Group {
     }
     assignVertNames(vertCoords);
     assignRuntimeNames(runtimes, time2DCoords, group.getId() + "-" + (group.isTwoD ? "TwoD" : "Best"));
-
-    return group;
   }
 
   public void assignVertNames(List<CoordinateVert> vertCoords) {
@@ -286,11 +286,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
 
     public Dataset(Type gctype, List<GribCollectionMutable.GroupGC> groups) {
       this.gctype = gctype;
-      List<GroupGC> work = new ArrayList<>(groups.size());
-      for (GribCollectionMutable.GroupGC gcGroup : groups) {
-        work.add(new GroupGC(this, gcGroup));
-      }
-      this.groups = Collections.unmodifiableList(work);
+      this.groups = new GroupList(this, groups);
     }
 
     public Iterable<GroupGC> getGroups() {
@@ -319,6 +315,34 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     }
   }
 
+  // make each GroupGC when first used, so that only the groups that are used get decoded from the index
+  private class GroupList extends AbstractList<GroupGC> {
+    private final Dataset ds;
+    private final GroupGC[] groups;
+    private List<GribCollectionMutable.GroupGC> from; // released when all groups are made
+    private int count;
+
+    GroupList(Dataset ds, List<GribCollectionMutable.GroupGC> from) {
+      this.ds = ds;
+      this.groups = new GroupGC[from.size()];
+      this.from = from;
+    }
+
+    @Override
+    public synchronized GroupGC get(int index) {
+      if (groups[index] == null) {
+        groups[index] = new GroupGC(ds, from.get(index));
+        if (++count == groups.length) from = null;
+      }
+      return groups[index];
+    }
+
+    @Override
+    public int size() {
+      return groups.length;
+    }
+  }
+
   @Immutable
   public class GroupGC {
     final Dataset ds;
@@ -1064,6 +1088,13 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
   }
 
   RandomAccessFile getDataRaf(int fileno) throws IOException {
+    File dataFile = getDataFile(fileno);
+    RandomAccessFile want = RandomAccessFile.acquire(dataFile.getPath());
+    want.order(RandomAccessFile.BIG_ENDIAN);
+    return want;
+  }
+
+  File getDataFile(int fileno) throws IOException {
     // absolute location
     MFile mfile = fileMap.get(fileno);
     String filename = mfile.getPath();
@@ -1082,10 +1113,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     if (!dataFile.exists()) {
       throw new FileNotFoundException("data file not found = " + dataFile.getPath());
     }
-
-    RandomAccessFile want = RandomAccessFile.acquire(dataFile.getPath());
-    want.order(RandomAccessFile.BIG_ENDIAN);
-    return want;
+    return dataFile;
   }
 
   String getDataRafFilename(int fileno) {
@@ -14,6 +14,7 @@ import ucar.ma2.*;
 import ucar.nc2.ft2.coverage.CoordsSet;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.grib.GdsHorizCoordSys;
+import ucar.nc2.grib.GribDataCache;
 import ucar.nc2.grib.TimeCoord;
 import ucar.nc2.grib.grib1.Grib1ParamTime;
 import ucar.nc2.grib.grib1.Grib1Parameter;
@@ -29,6 +30,11 @@ import ucar.unidata.io.RandomAccessFile;
 import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 
 /**
  * Grib Data Reader.
@@ -50,6 +56,14 @@ public abstract class GribDataReader {
   }
 
   protected abstract float[] readData(RandomAccessFile rafData, DataRecord dr) throws IOException;
+
+  /**
+   * Decode only the points of the record that the receiver wants, directly into its result.
+   * @return false if not possible for this record, then the caller must use readData()
+   */
+  protected boolean readDataSubset(RandomAccessFile rafData, DataRecord dr, DataReceiver receiver) throws IOException {
+    return false;
+  }
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -58,6 +72,28 @@ public abstract class GribDataReader {
   public static String currentDataRafFilename;
   static boolean show = false;   // debug
 
+  // if set, records are decoded in parallel, grouped by data file
+  static private volatile Executor executor;
+  static private volatile int maxRecordsPerTask = 8;
+
+  /**
+   * Set the Executor used to decode records in parallel. Null (the default) means decode serially on the calling thread.
+   * Records are sorted by file and position, then split into tasks of at most maxRecordsPerTask records from the same
+   * data file; each task opens its own RandomAccessFile.
+   *
+   * @param exec use this Executor, shared by all collections
+   * @param recordsPerTask max number of records decoded by one task, must be > 0
+   */
+  static public void setExecutor(Executor exec, int recordsPerTask) {
+    if (recordsPerTask < 1) throw new IllegalArgumentException("recordsPerTask must be > 0");
+    executor = exec;
+    maxRecordsPerTask = recordsPerTask;
+  }
+
+  static public void setExecutor(Executor exec) {
+    executor = exec;
+  }
+
   protected final GribCollectionImmutable gribCollection;
   private final GribCollectionImmutable.VariableIndex vindex;
   private List<DataRecord> records = new ArrayList<>();
@@ -225,6 +261,12 @@ public abstract class GribDataReader {
   private void read(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
 
+    Executor exec = parallelExecutor();
+    if (exec != null) {
+      readInParallel(exec, dataReceiver, false);
+      return;
+    }
+
     int currFile = -1;
     RandomAccessFile rafData = null;
     try {
@@ -254,9 +296,7 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
-        GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        readRecord(rafData, dr, dataReceiver);
       }
 
     } finally {
@@ -264,6 +304,23 @@ public abstract class GribDataReader {
     }
   }
 
+  // decode one record and send it to the receiver, decoding only the wanted points when thats possible and worth it
+  // fully decoded records are kept in the GribDataCache, if its enabled
+  private void readRecord(RandomAccessFile rafData, DataRecord dr, DataReceiverIF dataReceiver) throws IOException {
+    GribDataCache.Key key = GribDataCache.makeKey(rafData, dr.record.pos + dr.record.drsOffset);
+    float[] data = GribDataCache.get(key);
+    if (data == null) {
+      if (dataReceiver instanceof DataReceiver) {
+        DataReceiver receiver = (DataReceiver) dataReceiver;
+        if (receiver.isSmallSubset(dr.hcs) && readDataSubset(rafData, dr, receiver))
+          return;
+      }
+      data = readData(rafData, dr);
+      GribDataCache.put(key, data);
+    }
+    dataReceiver.addData(data, dr.resultIndex, dr.hcs.nx);
+  }
+
   private void show(SubsetParams validation) {
     if (validation == null) return;
     System.out.printf("Coords wanted%n %s", validation);
@@ -272,6 +329,12 @@ public abstract class GribDataReader {
   private void readPartitioned(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
 
+    Executor exec = parallelExecutor();
+    if (exec != null) {
+      readInParallel(exec, dataReceiver, true);
+      return;
+    }
+
     PartitionCollectionImmutable.DataRecord lastRecord = null;
     RandomAccessFile rafData = null;
     try {
@@ -300,9 +363,7 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
-        GdsHorizCoordSys hcs = dr.hcs;
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        readRecord(rafData, dr, dataReceiver);
       }
 
     } finally {
@@ -310,6 +371,98 @@ public abstract class GribDataReader {
     }
   }
 
+  // debugging and validation stay on the calling thread; null means read serially
+  private Executor parallelExecutor() {
+    Executor exec = executor;
+    if (exec == null || records.size() < 2) return null;
+    if (Grib.debugIndexOnly || Grib.debugGbxIndexOnly || show || GribDataReader.validator != null) return null;
+    return exec;
+  }
+
+  /*
+   Records have been sorted by file and position. Split them into tasks, each reading from a single data file,
+   and decode the tasks on the executor. Each task opens (and closes) its own RandomAccessFile, and writes
+   into a disjoint part of the result, so the DataReceiver needs no synchronization.
+   If a task fails, the ones still pending are cancelled.
+   */
+  private void readInParallel(Executor exec, DataReceiverIF dataReceiver, boolean partitioned) throws IOException {
+    int recordsPerTask = maxRecordsPerTask;
+    List<RecordReaderTask> tasks = new ArrayList<>();
+    List<DataRecord> current = null;
+    DataRecord last = null;
+    for (DataRecord dr : records) {
+      if (dr.record.pos == GribCollectionMutable.MISSING_RECORD) continue;
+      if (current == null || current.size() >= recordsPerTask || !sameFile(last, dr, partitioned)) {
+        current = new ArrayList<>();
+        tasks.add(new RecordReaderTask(current, dataReceiver, partitioned));
+      }
+      current.add(dr);
+      last = dr;
+    }
+
+    CompletionService<Integer> completionService = new ExecutorCompletionService<>(exec);
+    List<Future<Integer>> futures = new ArrayList<>(tasks.size());
+    try {
+      for (RecordReaderTask task : tasks)
+        futures.add(completionService.submit(task));
+
+      for (int i = 0; i < tasks.size(); i++)
+        completionService.take().get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("GribDataReader interrupted", e);
+
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException(cause);
+
+    } finally {
+      for (Future<Integer> f : futures)
+        f.cancel(true);  // no-op on the ones that are done
+    }
+  }
+
+  private boolean sameFile(DataRecord last, DataRecord dr, boolean partitioned) {
+    if (last == null) return false;
+    if (partitioned)
+      return ((PartitionCollectionImmutable.DataRecord) dr).usesSameFile((PartitionCollectionImmutable.DataRecord) last);
+    return last.record.fileno == dr.record.fileno;
+  }
+
+  private class RecordReaderTask implements java.util.concurrent.Callable<Integer> {
+    private final List<DataRecord> drs;  // all from the same data file, sorted by pos
+    private final DataReceiverIF dataReceiver;
+    private final boolean partitioned;
+
+    RecordReaderTask(List<DataRecord> drs, DataReceiverIF dataReceiver, boolean partitioned) {
+      this.drs = drs;
+      this.dataReceiver = dataReceiver;
+      this.partitioned = partitioned;
+    }
+
+    @Override
+    public Integer call() throws IOException {
+      DataRecord first = drs.get(0);
+      RandomAccessFile rafData;
+      if (partitioned) {
+        PartitionCollectionImmutable.DataRecord drp = (PartitionCollectionImmutable.DataRecord) first;
+        rafData = drp.usePartition.getRaf(drp.partno, first.record.fileno);
+      } else {
+        rafData = gribCollection.getDataRaf(first.record.fileno);
+      }
+
+      try {
+        for (DataRecord dr : drs)
+          readRecord(rafData, dr, dataReceiver);
+      } finally {
+        if (rafData != null) rafData.close();
+      }
+      return drs.size();
+    }
+  }
+
   public static class DataRecord implements Comparable<DataRecord> {
     int resultIndex; // index into the result array
     GribCollectionImmutable.Record record;
@@ -342,15 +495,22 @@ public abstract class GribDataReader {
     Array getArray();
   }
 
+  /**
+   * Receives decoded records and subsets them into the result Array.
+   * addData() may be called concurrently from multiple threads, as long as each call uses a different resultIndex.
+   */
   public static class DataReceiver implements DataReceiverIF {
+    private static final int SMALL_SUBSET_FACTOR = 4;
+
     private Array dataArray;
-    private RangeIterator yRange, xRange;
-    private int horizSize;
+    private final float[] result;  // backing store of dataArray
+    private final int[] yIndex, xIndex;
+    private final int horizSize;
 
     DataReceiver(int[] shape, RangeIterator yRange, RangeIterator xRange) {
-      this.yRange = yRange;
-      this.xRange = xRange;
-      this.horizSize = yRange.length() * xRange.length();
+      this.yIndex = toIndexArray(yRange);
+      this.xIndex = toIndexArray(xRange);
+      this.horizSize = yIndex.length * xIndex.length;
 
       long len = Section.computeSize(shape);
       if (len > 100 * 1000 * 1000*4) { // LOOK make configurable
@@ -358,21 +518,33 @@ public abstract class GribDataReader {
                 Throwables.getStackTraceAsString(new Throwable()));
         throw new IllegalArgumentException("RequestTooLarge: Len greater that 100M ");
       }
-      float[] data = new float[ (int) len];
-      Arrays.fill(data, Float.NaN); // prefill primitive array
-      dataArray = Array.factory(DataType.FLOAT, shape, data);
+      result = new float[ (int) len];
+      Arrays.fill(result, Float.NaN); // prefill primitive array
+      dataArray = Array.factory(DataType.FLOAT, shape, result);
+    }
+
+    private static int[] toIndexArray(RangeIterator range) {
+      int[] index = new int[range.length()];
+      int count = 0;
+      for (int i : range)
+        index[count++] = i;
+      return index;
+    }
+
+    // Subset decoding only pays off when a small part of the grid is wanted, eg a point or a small area.
+    // Thin grids are regridded after decoding, so the position of a point in the record isnt known.
+    boolean isSmallSubset(GdsHorizCoordSys hcs) {
+      return hcs.nptsInLine == null && (long) horizSize * SMALL_SUBSET_FACTOR <= hcs.gdsNumberPoints;
     }
 
+    // only touches result[resultIndex * horizSize, (resultIndex+1) * horizSize)
     @Override
     public void addData(float[] data, int resultIndex, int nx) {
-      int start = resultIndex * horizSize;
-      int count = 0;
-      for (int y : yRange) {
-        for (int x : xRange) {
-          int dataIdx = y * nx + x;
-          dataArray.setFloat(start + count, data[dataIdx]);
-          count++;
-        }
+      int count = resultIndex * horizSize;
+      for (int y : yIndex) {
+        int rowStart = y * nx;
+        for (int x : xIndex)
+          result[count++] = data[rowStart + x];
       }
     }
 
@@ -446,6 +618,15 @@ public abstract class GribDataReader {
               hcs.nxRaw, hcs.nyRaw, hcs.nptsInLine);
     }
 
+    @Override
+    protected boolean readDataSubset(RandomAccessFile rafData, DataRecord dr, DataReceiver receiver) throws IOException {
+      GdsHorizCoordSys hcs = dr.hcs;
+      long dataPos = dr.record.pos + dr.record.drsOffset;
+      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      return Grib2Record.readDataSubset(rafData, dataPos, bmsPos, hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw,
+              receiver.yIndex, receiver.xIndex, receiver.result, dr.resultIndex * receiver.horizSize);
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
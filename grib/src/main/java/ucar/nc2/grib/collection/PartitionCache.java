@@ -0,0 +1,522 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import javax.annotation.Nullable;
+import ucar.nc2.dataset.DatasetUrl;
+import ucar.nc2.time.CalendarDateFormatter;
+import ucar.nc2.util.CancelTask;
+import ucar.nc2.util.cache.FileCacheIF;
+import ucar.nc2.util.cache.FileCacheable;
+import ucar.nc2.util.cache.FileFactory;
+import ucar.unidata.io.MMapRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache of the component collections of partitioned GRIB collections, together with open handles to their data files.
+ * <p>
+ * A component collection is shared by all readers: it is reference counted, and stays open while in use.
+ * Collections not used for idleSecs are closed, as are the least recently used ones when there are more than maxPartitions.
+ * Data file handles are handed to one reader at a time; closing one returns it to its partition, to be reused by the next reader.
+ * When the RandomAccessFile global file cache is on, or the data file is under one of the MMapRandomAccessFile mapped locations,
+ * the handle comes from RandomAccessFile.acquire() instead, and is not counted in the raf stats.
+ * <p>
+ * A collection whose getLastModified() has changed since it was opened is not handed out again: it is closed when released,
+ * and the next reader opens the file anew.
+ * <p>
+ * Hits and misses are counted for each partition, for the TDS debug pages, keeping the maxTracked most recently used.
+ */
+public class PartitionCache implements FileCacheIF {
+  private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PartitionCache.class);
+  private static final int maxIdleRafs = 4; // for each data file
+  private static final int maxTracked = 1000; // partitions in the debug stats
+
+  private final String name;
+  private final int maxPartitions;
+  private final long idleMsecs;
+  private final Timer timer;
+
+  private final Map<Object, Entry> entries = new HashMap<>();                 // guarded by this
+  private final Map<FileCacheable, Entry> inUse = new IdentityHashMap<>();     // guarded by this
+  private final Map<Object, Stats> stats = new LinkedHashMap<Object, Stats>(16, 0.75f, true) { // guarded by this; survives eviction
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Object, Stats> eldest) {
+      return size() > maxTracked;
+    }
+  };
+  private final Stats totals = new Stats(null); // guarded by this
+  private boolean disabled;
+
+  /**
+   * Constructor.
+   * @param name       name of the cache, for debugging
+   * @param maxPartitions close the least recently used idle collections when there are more than this
+   * @param idleSecs   close collections that have not been used for this many seconds
+   */
+  public PartitionCache(String name, int maxPartitions, int idleSecs) {
+    this.name = name;
+    this.maxPartitions = maxPartitions;
+    this.idleMsecs = 1000L * idleSecs;
+
+    this.timer = new Timer(name, true);
+    long period = Math.max(idleMsecs / 2, 1000);
+    timer.schedule(new TimerTask() {
+      public void run() {
+        closeIdle();
+      }
+    }, period, period);
+  }
+
+  /**
+   * Acquire the collection of a partition. Call close() on it when done.
+   */
+  GribCollectionImmutable acquire(PartitionCollectionImmutable.Partition partition) throws IOException {
+    Entry e = acquireEntry(partition.getIndexFilenameKey(), () -> {
+      String path = partition.getIndexFilenameInCache();
+      DatasetUrl durl = new DatasetUrl(null, path);
+      return PartitionCollectionImmutable.partitionCollectionFactory.open(durl, -1, null, partition);
+    });
+    if (e == null) // disabled
+      return GribCdmIndex.acquireGribCollection(PartitionCollectionImmutable.partitionCollectionFactory,
+              partition.getIndexFilenameInCache(), partition.getIndexFilenameInCache(), -1, null, partition);
+    return (GribCollectionImmutable) e.ncfile;
+  }
+
+  /**
+   * Get an open data file of a partition, reusing a handle returned by an earlier reader if possible.
+   * Call close() on it when done.
+   */
+  RandomAccessFile getDataRaf(PartitionCollectionImmutable.Partition partition, int fileno) throws IOException {
+    try (GribCollectionImmutable gc = acquire(partition)) {
+      RandomAccessFile raf = getDataRaf(gc, fileno, () -> gc.getDataFile(fileno).getPath());
+      return (raf != null) ? raf : gc.getDataRaf(fileno); // disabled
+    }
+  }
+
+  interface DataFile {
+    String getPath() throws IOException;
+  }
+
+  /**
+   * Get an open data file of a collection acquired from this cache, reusing a handle returned by an earlier reader if possible.
+   * Call close() on it when done.
+   * @return null if ncfile is not in the cache
+   */
+  @Nullable
+  RandomAccessFile getDataRaf(FileCacheable ncfile, int fileno, DataFile dataFile) throws IOException {
+    Entry e;
+    synchronized (this) {
+      e = inUse.get(ncfile);
+    }
+    if (e == null)
+      return null;
+
+    String path = dataFile.getPath();
+    if (RandomAccessFile.getGlobalFileCache() != null || MMapRandomAccessFile.isMappedLocation(path)) {
+      RandomAccessFile raf = RandomAccessFile.acquire(path);
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      return raf;
+    }
+
+    PooledRaf raf = e.takeRaf(fileno);
+    synchronized (this) {
+      Stats s = stats(e.hashKey);
+      if (raf != null) s.rafHit();
+      else s.rafMiss();
+    }
+    if (raf == null) {
+      raf = new PooledRaf(e, fileno, path);
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+    }
+    return raf;
+  }
+
+  @Override
+  public FileCacheable acquire(FileFactory factory, DatasetUrl durl) throws IOException {
+    return acquire(factory, durl.trueurl, durl, -1, null, null);
+  }
+
+  @Override
+  public FileCacheable acquire(FileFactory factory, Object hashKey, DatasetUrl durl, int buffer_size, CancelTask cancelTask,
+                               Object spiObject) throws IOException {
+    if (hashKey == null) hashKey = durl.trueurl;
+    Entry e = acquireEntry(hashKey, () -> factory.open(durl, buffer_size, cancelTask, spiObject));
+    return (e == null) ? factory.open(durl, buffer_size, cancelTask, spiObject) : e.ncfile;
+  }
+
+  private interface Opener {
+    FileCacheable open() throws IOException;
+  }
+
+  // return the entry with its object open and its reference count incremented, or null if disabled
+  private Entry acquireEntry(Object hashKey, Opener opener) throws IOException {
+    while (true) {
+      Entry e;
+      Stats s;
+      synchronized (this) {
+        if (disabled) return null;
+        e = entries.get(hashKey);
+        if (e == null) {
+          e = new Entry(hashKey);
+          entries.put(hashKey, e);
+        }
+        e.refCount++;
+        s = stats(hashKey);
+      }
+
+      synchronized (e) { // one thread opens it, the others wait
+        if (e.ncfile == null) {
+          try {
+            FileCacheable ncfile = opener.open();
+            if (ncfile == null)
+              throw new IOException("PartitionCache " + name + ": failed to open " + hashKey);
+            ncfile.setFileCache(this);
+            synchronized (this) {
+              inUse.put(ncfile, e);
+              s.miss();
+            }
+            e.lastModified = ncfile.getLastModified();
+            e.ncfile = ncfile;
+            return e;
+
+          } catch (Throwable t) {
+            synchronized (this) {
+              e.refCount--;
+              if (e.refCount == 0) entries.remove(hashKey, e);
+            }
+            throw t;
+          }
+        }
+        if (e.ncfile.getLastModified() == e.lastModified) {
+          synchronized (this) {
+            s.hit();
+          }
+          return e;
+        }
+      }
+
+      // the file changed since it was opened: the readers that have it keep it, this one opens it again
+      logger.debug("PartitionCache {}: {} has changed", name, hashKey);
+      boolean closeIt;
+      synchronized (this) {
+        if (entries.get(hashKey) == e) remove(e);
+        e.refCount--;
+        closeIt = (e.refCount == 0);
+      }
+      if (closeIt)
+        e.close();
+    }
+  }
+
+  // the stats of a partition, made most recently used; caller must hold the lock
+  private Stats stats(Object hashKey) {
+    return stats.computeIfAbsent(hashKey, k -> new Stats(totals));
+  }
+
+  @Override
+  public boolean release(FileCacheable ncfile) throws IOException {
+    if (ncfile == null) return false;
+    Entry closeThis = null;
+    synchronized (this) {
+      Entry e = inUse.get(ncfile);
+      if (e == null) return false;
+      e.refCount--;
+      e.lastUsed = System.currentTimeMillis();
+      if (e.refCount == 0 && e.stale)
+        closeThis = e;
+    }
+    if (closeThis != null)
+      closeThis.close();
+    closeOverflow();
+    return true;
+  }
+
+  // close the least recently used idle entries beyond maxPartitions
+  private void closeOverflow() {
+    List<Entry> closeThese = new ArrayList<>();
+    synchronized (this) {
+      if (entries.size() <= maxPartitions) return;
+      List<Entry> idle = new ArrayList<>();
+      for (Entry e : entries.values())
+        if (e.refCount == 0) idle.add(e);
+      idle.sort(Comparator.comparingLong(e -> e.lastUsed));
+      for (Entry e : idle) {
+        if (entries.size() <= maxPartitions) break;
+        remove(e);
+        closeThese.add(e);
+      }
+    }
+    for (Entry e : closeThese)
+      e.close();
+  }
+
+  private void closeIdle() {
+    List<Entry> closeThese = new ArrayList<>();
+    synchronized (this) {
+      long olderThan = System.currentTimeMillis() - idleMsecs;
+      for (Entry e : new ArrayList<>(entries.values())) {
+        if (e.refCount == 0 && e.lastUsed < olderThan) {
+          remove(e);
+          closeThese.add(e);
+        }
+      }
+    }
+    for (Entry e : closeThese)
+      e.close();
+  }
+
+  // caller must hold the lock
+  private void remove(Entry e) {
+    entries.remove(e.hashKey, e);
+    e.stale = true;
+    stats(e.hashKey).evict();
+  }
+
+  @Override
+  public void eject(Object hashKey) {
+    Entry closeThis = null;
+    synchronized (this) {
+      Entry e = entries.get(hashKey);
+      if (e == null) return;
+      remove(e);
+      if (e.refCount == 0) closeThis = e;
+    }
+    if (closeThis != null)
+      closeThis.close();
+  }
+
+  /**
+   * Remove the collections from the cache. Idle collections are closed; those in use are closed when they are released.
+   * @param force if true, remove the collections in use as well
+   */
+  @Override
+  public void clearCache(boolean force) {
+    List<Entry> closeThese = new ArrayList<>();
+    synchronized (this) {
+      for (Entry e : new ArrayList<>(entries.values())) {
+        if (e.refCount == 0 || force) {
+          remove(e);
+          if (e.refCount == 0) closeThese.add(e);
+        }
+      }
+    }
+    for (Entry e : closeThese)
+      e.close();
+  }
+
+  @Override
+  public void enable() {
+    synchronized (this) {
+      disabled = false;
+    }
+  }
+
+  @Override
+  public void disable() {
+    synchronized (this) {
+      disabled = true;
+    }
+    clearCache(true);
+  }
+
+  public void shutdown() {
+    disable();
+    timer.cancel();
+  }
+
+  ////////////////////////////////////////////////////////////
+  // debugging
+
+  @Override
+  public synchronized void resetTracking() {
+    stats.clear();
+    totals.reset();
+  }
+
+  @Override
+  public synchronized void showTracking(Formatter f) {
+    List<Map.Entry<Object, Stats>> list = new ArrayList<>(stats.entrySet());
+    list.sort(Comparator.comparing(me -> me.getKey().toString()));
+    f.format("  hits   miss  rafHits rafMiss  evict  partition%n");
+    for (Map.Entry<Object, Stats> me : list) {
+      Stats s = me.getValue();
+      f.format("%6d %6d %8d %7d %6d  %s%n", s.hits, s.misses, s.rafHits, s.rafMisses, s.evictions, me.getKey());
+    }
+  }
+
+  @Override
+  public void showCache(Formatter f) {
+    f.format("PartitionCache %s: maxPartitions=%d idle=%d secs%n", name, maxPartitions, idleMsecs / 1000);
+    for (String s : showCache())
+      f.format(" %s%n", s);
+    showStats(f);
+    showTracking(f);
+  }
+
+  @Override
+  public synchronized List<String> showCache() {
+    List<String> result = new ArrayList<>(entries.size());
+    for (Entry e : entries.values())
+      result.add(e.toString());
+    Collections.sort(result);
+    return result;
+  }
+
+  @Override
+  public void showStats(Formatter f) {
+    synchronized (this) {
+      f.format("  hits= %d miss= %d rafHits= %d rafMiss= %d partitions= %d%n", totals.hits, totals.misses, totals.rafHits,
+              totals.rafMisses, entries.size());
+    }
+  }
+
+  ////////////////////////////////////////////////////////////
+
+  // guarded by PartitionCache.this; each count is added to the totals as well
+  private static class Stats {
+    private final Stats totals;
+    int hits, misses, rafHits, rafMisses, evictions;
+
+    Stats(Stats totals) {
+      this.totals = totals;
+    }
+
+    void hit() {
+      hits++;
+      if (totals != null) totals.hit();
+    }
+
+    void miss() {
+      misses++;
+      if (totals != null) totals.miss();
+    }
+
+    void rafHit() {
+      rafHits++;
+      if (totals != null) totals.rafHit();
+    }
+
+    void rafMiss() {
+      rafMisses++;
+      if (totals != null) totals.rafMiss();
+    }
+
+    void evict() {
+      evictions++;
+      if (totals != null) totals.evict();
+    }
+
+    void reset() {
+      hits = misses = rafHits = rafMisses = evictions = 0;
+    }
+  }
+
+  private class Entry {
+    final Object hashKey;
+    volatile FileCacheable ncfile;
+    long lastModified;        // of ncfile when opened. guarded by this entry
+    int refCount;             // guarded by PartitionCache.this
+    long lastUsed = System.currentTimeMillis();
+    boolean stale;            // removed from the cache; close when released. guarded by PartitionCache.this
+    private final Map<Integer, Deque<PooledRaf>> idleRafs = new HashMap<>(); // guarded by this entry
+    private final AtomicInteger nidle = new AtomicInteger();
+    private boolean closed; // guarded by this entry
+
+    Entry(Object hashKey) {
+      this.hashKey = hashKey;
+    }
+
+    synchronized PooledRaf takeRaf(int fileno) {
+      Deque<PooledRaf> rafs = idleRafs.get(fileno);
+      PooledRaf raf = (rafs == null) ? null : rafs.pollFirst();
+      if (raf != null) {
+        raf.idle = false;
+        nidle.decrementAndGet();
+      }
+      return raf;
+    }
+
+    // return true if kept for reuse
+    synchronized boolean putRaf(int fileno, PooledRaf raf) {
+      if (closed) return false;
+      Deque<PooledRaf> rafs = idleRafs.computeIfAbsent(fileno, k -> new ArrayDeque<>());
+      if (rafs.size() >= maxIdleRafs) return false;
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      raf.idle = true;
+      rafs.addFirst(raf);
+      nidle.incrementAndGet();
+      return true;
+    }
+
+    void close() {
+      List<PooledRaf> closeThese = new ArrayList<>();
+      synchronized (this) {
+        closed = true;
+        for (Deque<PooledRaf> rafs : idleRafs.values())
+          closeThese.addAll(rafs);
+        idleRafs.clear();
+        nidle.set(0);
+      }
+      for (PooledRaf raf : closeThese) {
+        try {
+          raf.closeFile();
+        } catch (IOException ioe) {
+          logger.warn("PartitionCache {}: failed to close {}", name, raf.getLocation(), ioe);
+        }
+      }
+
+      FileCacheable ncfile = this.ncfile;
+      if (ncfile == null) return;
+      synchronized (PartitionCache.this) {
+        inUse.remove(ncfile);
+      }
+      try {
+        ncfile.setFileCache(null);
+        ncfile.close();
+      } catch (IOException ioe) {
+        logger.warn("PartitionCache {}: failed to close {}", name, hashKey, ioe);
+      }
+    }
+
+    // caller must hold the PartitionCache lock, and not the entry lock
+    @Override
+    public String toString() {
+      return String.format("%3d %s idleRafs=%d %s", refCount, CalendarDateFormatter.toDateTimeStringISO(lastUsed), nidle.get(),
+              hashKey);
+    }
+  }
+
+  // a data file handle that goes back to its partition when closed
+  private static class PooledRaf extends RandomAccessFile {
+    private final Entry entry;
+    private final int fileno;
+    private boolean idle; // guarded by entry
+
+    PooledRaf(Entry entry, int fileno, String location) throws IOException {
+      super(location, "r");
+      this.entry = entry;
+      this.fileno = fileno;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      synchronized (entry) {
+        if (idle) return; // close called more than once
+      }
+      if (!entry.putRaf(fileno, this))
+        closeFile();
+    }
+
+    void closeFile() throws IOException {
+      super.close();
+    }
+  }
+
+}
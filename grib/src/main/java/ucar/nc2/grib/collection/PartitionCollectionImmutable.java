@@ -158,6 +158,10 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
 
   RandomAccessFile getRaf(int partno, int fileno) throws IOException {
     Partition part = getPartition(partno);
+    PartitionCache cache = GribCdmIndex.getPartitionCache();
+    if (cache != null)
+      return cache.getDataRaf(part, fileno);  // reuse an open data file of the partition
+
     try (GribCollectionImmutable gc = part.getGribCollection()) {
       return gc.getDataRaf(fileno);
     }
@@ -244,8 +248,17 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
       return existingFile.getPath();
     }
 
+    // unique for each partition, without looking in the index cache
+    String getIndexFilenameKey() {
+      return new File(directory, filename).getPath();
+    }
+
     // acquire or construct GribCollection - caller must call gc.close() when done
     public GribCollectionImmutable getGribCollection() throws IOException {
+      PartitionCache cache = GribCdmIndex.getPartitionCache();
+      if (cache != null)
+        return cache.acquire(this);
+
       String path = getIndexFilenameInCache();
       return GribCdmIndex.acquireGribCollection(partitionCollectionFactory, path, path, -1, null, this);
     }
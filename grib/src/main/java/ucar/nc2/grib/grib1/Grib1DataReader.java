@@ -125,11 +125,21 @@ public class Grib1DataReader {
         throw new IllegalStateException("Bitmap section length!= grid length");
       }
       BitReader reader = new BitReader(raf, startPos + 11);
+      int[] packed = null;
+      if (!isConstant) {
+        int npacked = 0;
+        for (int i = 0; i < nPts; i++) {
+          if ((bitmap[i / 8] & GribNumbers.bitmask[i % 8]) != 0) npacked++;
+        }
+        packed = new int[npacked];
+        reader.unpack(info.numberOfBits, npacked, packed);
+      }
       values = new float[nPts];
+      int idx = 0;
       for (int i = 0; i < nPts; i++) {
         if ((bitmap[i / 8] & GribNumbers.bitmask[i % 8]) != 0) {
           if (!isConstant) {
-            values[i] = ref + scale * reader.bits2UInt(info.numberOfBits);
+            values[i] = ref + scale * (packed[idx++] & 0xffffffffL);
           } else {  // rdg - added this to handle a constant valued parameter
             values[i] = ref;
           }
@@ -150,8 +160,10 @@ public class Grib1DataReader {
           values = new float[nPts];
         }
         BitReader reader = new BitReader(raf, startPos + 11);
+        int[] packed = new int[values.length];
+        reader.unpack(info.numberOfBits, values.length, packed);
         for (int i = 0; i < values.length; i++) {
-          values[i] = ref + scale * reader.bits2UInt(info.numberOfBits);
+          values[i] = ref + scale * (packed[i] & 0xffffffffL);
         }
         scanningModeCheck(values, scanMode, nxRaw);
 
@@ -456,9 +468,7 @@ From http://cost733.geo.uni-augsburg.de/cost733class-1.2/browser/grib_api-1.9.18
 
     // meta groupWidths unsigned_bits(widthOfWidths,numberOfGroups) : read_only;
     int[] groupWidth = new int[NG];
-    for (int group = 0; group < NG; group++) {
-      groupWidth[group] = (int) reader.bits2UInt(widthOfWidths);
-    }
+    reader.unpack(widthOfWidths, NG, groupWidth);
 
     reader.incrByte(); // assume on byte boundary
     showOffset(f, "GroupLength", raf, NL - 1, 2723);
@@ -468,8 +478,7 @@ From http://cost733.geo.uni-augsburg.de/cost733class-1.2/browser/grib_api-1.9.18
 
     // meta groupLengths unsigned_bits(widthOfLengths,numberOfGroups) : read_only;
     int[] groupLength = new int[NG];
-    for (int group = 0; group < NG; group++)
-      groupLength[group] = (int) reader.bits2UInt(widthOfLengths);
+    reader.unpack(widthOfLengths, NG, groupLength);
     showOffset(f, "FirstOrderValues", raf, N1 - 1, 5774);
 
     // meta countOfGroupLengths sum(groupLengths);
@@ -488,8 +497,7 @@ From http://cost733.geo.uni-augsburg.de/cost733class-1.2/browser/grib_api-1.9.18
     // meta firstOrderValues unsigned_bits(widthOfFirstOrderValues,numberOfGroups) : read_only;
     reader.incrByte(); // assume on byte boundary
     int[] firstOrderValues = new int[NG];
-    for (int group = 0; group < NG; group++)
-      firstOrderValues[group] = (int) reader.bits2UInt(foWidth);
+    reader.unpack(foWidth, NG, firstOrderValues);
     int offset3 = (int) (raf.getFilePointer() - this.startPos);
     f.format("nbytes=%d%n", (foWidth * NG + 7) / 8);
     showOffset(f, "SecondOrderValues", raf, N2 - 1, 11367);
@@ -516,12 +524,8 @@ From http://cost733.geo.uni-augsburg.de/cost733class-1.2/browser/grib_api-1.9.18
       double log2 = Math.log(2);
       for (int group = 0; group < NG; group++) {
         //System.out.printf("%3d: %3d %3d %d: ", group, groupLength[group], groupWidth[group], firstOrderValues[group]);
-        for (int i = 0; i < groupLength[group]; i++) {
-          int secVal = (int) reader.bits2UInt(groupWidth[group]);
-          secondOrderValues[val++] = secVal;
-          //int nbits = secVal == 0 ? 0 : (int) Math.ceil(Math.log(secVal) / log2);
-          //System.out.printf("%d,", nbits);
-        }
+        reader.unpack(groupWidth[group], groupLength[group], secondOrderValues, val);
+        val += groupLength[group];
         //System.out.printf("%n");
         countGroups++;
       }
@@ -784,9 +788,7 @@ From http://cost733.geo.uni-augsburg.de/cost733class-1.2/browser/grib_api-1.9.18
     // *** read int values *******************************************************
     BitReader reader = new BitReader(raf, startPos + 11);
     int[] ivals = new int[nPts];
-    for (int i = 0; i < nPts; i++) {
-      ivals[i] = (int) reader.bits2UInt(numbits);
-    }
+    reader.unpack(numbits, nPts, ivals);
 
     return ivals;
   }
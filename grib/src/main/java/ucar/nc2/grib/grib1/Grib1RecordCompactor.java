@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.grib1;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Makes small copies of Grib1Records, for building collection indexes, which keep every record of the collection
+ * in memory until the index is written.
+ * The copy keeps the file number, the indicator, GDS and PDS sections. GDS and PDS sections with the same contents
+ * are shared between copies, so each data file no longer holds its own GDS (with its parsed Grib1Gds).
+ * The header, bitmap and data sections are dropped, so a copy can't be used to read data.
+ * Not thread-safe, use one for each collection build.
+ */
+public class Grib1RecordCompactor {
+  private final Map<ByteBuffer, Grib1SectionGridDefinition> gdsMap = new HashMap<>();
+  private final Map<ByteBuffer, Grib1SectionProductDefinition> pdsMap = new HashMap<>();
+  private int countRecords;
+
+  public Grib1Record compact(Grib1Record gr) {
+    Grib1SectionGridDefinition gdss = gr.getGDSsection();
+    if (gdss.getRawBytes() != null) // predefined grids have no GDS
+      gdss = gdsMap.computeIfAbsent(ByteBuffer.wrap(gdss.getRawBytes()), k -> gr.getGDSsection());
+
+    Grib1SectionProductDefinition pdss = pdsMap.computeIfAbsent(ByteBuffer.wrap(gr.getPDSsection().getRawBytes()),
+            k -> gr.getPDSsection());
+
+    Grib1Record result = new Grib1Record(null, gr.getIs(), gdss, pdss, null, null);
+    result.setFile(gr.getFile());
+    countRecords++;
+    return result;
+  }
+
+  public String show() {
+    return String.format("records=%d distinct gds=%d pds=%d", countRecords, gdsMap.size(), pdsMap.size());
+  }
+}
@@ -129,6 +129,115 @@ public class Grib2DataReader2 {
     return data;
   }
 
+  /**
+   * Decode only the wanted points of the record, without decoding the whole grid.
+   * Only possible for simple packing (DRS template 0) with scan mode 0 or 64, where the position of any point in the
+   * data section can be computed directly, with or without a bitmap. For each wanted row, only the bytes spanning
+   * its wanted points are read.
+   * Points are written to result in row major order: for each y in yIndex, for each x in xIndex.
+   *
+   * @param yIndex    wanted rows, in the raw (unflipped) grid
+   * @param xIndex    wanted columns, in the raw grid
+   * @param result    put the values in here
+   * @param resultPos starting at this index in result
+   * @return false if this record can't be subset this way; the caller should then use getData() and subset that.
+   */
+  public boolean getDataSubset(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs,
+      int[] yIndex, int[] xIndex, float[] result, int resultPos) throws IOException {
+    if (dataTemplate != 0 || (scanMode != 0 && scanMode != 64)) {
+      return false;
+    }
+    Grib2Drs.Type0 drs0 = (Grib2Drs.Type0) gdrs;
+    int nb = drs0.numberOfBits;
+    if (nb > 32) {
+      return false;
+    }
+
+    this.bitmap = bitmapSection.getBitmap(raf);
+    this.bitmapIndicator = bitmapSection.getBitMapIndicator();
+    if (bitmap != null && bitmap.length * 8 < totalNPoints) { // is bitmap ok ?
+      log.warn("Bitmap section length = {} != grid length {} ({},{})", bitmap.length,
+          totalNPoints, nx, totalNPoints / nx);
+      throw new IllegalStateException("Bitmap section length!= grid length");
+    }
+
+    float DD = (float) java.lang.Math.pow((double) 10, (double) drs0.decimalScaleFactor);
+    float R = drs0.referenceValue;
+    float EE = (float) java.lang.Math.pow(2.0, (double) drs0.binaryScaleFactor);
+
+    int[] bitmapRank = (bitmap == null) ? null : makeBitmapRank();
+    long[] packedIndex = new long[xIndex.length];
+    int[] values = new int[xIndex.length];
+    long dataBits = 8L * Math.max(dataLength - 5, 0);
+    byte[] rowBytes = new byte[0];
+
+    int count = resultPos;
+    for (int y : yIndex) {
+      // the index of each wanted point among the packed values, or -1 if missing
+      // without a bitmap, point i is the i-th packed value; with one, the n-th, where n = bits set before i
+      long first = Long.MAX_VALUE, last = -1;
+      for (int i = 0; i < xIndex.length; i++) {
+        int pt = y * nx + xIndex[i];
+        long n;
+        if (bitmap == null) {
+          n = pt;
+        } else {
+          int bitmapByte = bitmap[pt / 8] & 0xff;
+          n = ((bitmapByte & GribNumbers.bitmask[pt % 8]) == 0) ? -1 :
+              bitmapRank[pt / 8] + Integer.bitCount(bitmapByte >>> (8 - pt % 8));
+        }
+        packedIndex[i] = n;
+        if (n >= 0) {
+          first = Math.min(first, n);
+          last = Math.max(last, n);
+        }
+      }
+
+      if (last >= 0) {
+        // read the bytes holding packed values first .. last
+        long bitEnd = (last + 1) * nb;
+        if (bitEnd > dataBits)
+          throw new java.io.EOFException();
+        long byteStart = (first * nb) >>> 3;
+        int nbytes = (int) (((bitEnd + 7) >>> 3) - byteStart);
+        if (rowBytes.length < nbytes)
+          rowBytes = new byte[nbytes];
+        raf.seek(startPos + 5 + byteStart);
+        raf.readFully(rowBytes, 0, nbytes);
+
+        // unpack each run of consecutive packed values at once
+        long bitBase = 8 * byteStart;
+        int start = 0;
+        while (start < xIndex.length) {
+          int end = start + 1;
+          if (packedIndex[start] >= 0) {
+            while (end < xIndex.length && packedIndex[end] == packedIndex[end - 1] + 1) end++;
+            BitReader.unpack(rowBytes, packedIndex[start] * nb - bitBase, nb, end - start, values, start);
+          }
+          start = end;
+        }
+      }
+
+      for (int i = 0; i < xIndex.length; i++) {
+        result[count++] = (packedIndex[i] < 0) ? staticMissingValue : (R + (values[i] & 0xffffffffL) * EE) / DD;
+      }
+    }
+
+    return true;
+  }
+
+  // bitmapRank[i] = number of bits set in bitmap[0 .. i-1]
+  private int[] makeBitmapRank() {
+    int nbytes = (totalNPoints + 7) / 8;
+    int[] rank = new int[nbytes];
+    int count = 0;
+    for (int i = 0; i < nbytes; i++) {
+      rank[i] = count;
+      count += Integer.bitCount(bitmap[i] & 0xff);
+    }
+    return rank;
+  }
+
   @Nullable
   int[] getRawData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs)
       throws IOException {
@@ -170,6 +279,32 @@ public class Grib2DataReader2 {
     return mv;
   }
 
+  // the packed values of the data section (section 7), after the 5 byte header
+  private byte[] readDataSection(RandomAccessFile raf) throws IOException {
+    byte[] packed = new byte[Math.max(dataLength - 5, 0)];
+    raf.seek(startPos + 5);
+    raf.readFully(packed);
+    return packed;
+  }
+
+  private static int maxValue(int[] values) {
+    int max = 0;
+    for (int v : values) max = Math.max(max, v);
+    return max;
+  }
+
+  // number of points with a value, from the first totalNPoints bits of the bitmap
+  private int countBitmapPoints() {
+    int count = 0;
+    int nbytes = totalNPoints / 8;
+    for (int i = 0; i < nbytes; i++)
+      count += Integer.bitCount(bitmap[i] & 0xff);
+    for (int i = nbytes * 8; i < totalNPoints; i++) {
+      if ((bitmap[i / 8] & GribNumbers.bitmask[i % 8]) != 0) count++;
+    }
+    return count;
+  }
+
   /*
   92.9.4 Data shall be coded in the form of non-negative scaled differences from a reference value
   of the whole field plus, if applicable, a local reference value.
@@ -226,16 +361,32 @@ public class Grib2DataReader2 {
     //   X2 = scaled encoded value
     //   data[ i ] = (R + ( X1 + X2) * EE)/DD ;
 
-    BitReader reader = new BitReader(raf, startPos + 5);
+    if (nb > 32) { // rare; unpack() only handles up to 32 bits, so read one value at a time
+      BitReader reader = new BitReader(raf, startPos + 5);
+      for (int i = 0; i < totalNPoints; i++) {
+        if (bitmap == null || (bitmap[i / 8] & GribNumbers.bitmask[i % 8]) != 0)
+          data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+        else
+          data[i] = staticMissingValue;
+      }
+      return data;
+    }
+
+    BitReader reader = new BitReader(readDataSection(raf));
     if (bitmap == null) {
+      int[] packed = new int[totalNPoints];
+      reader.unpack(nb, totalNPoints, packed);
       for (int i = 0; i < totalNPoints; i++) {
         //data[ i ] = (R + ( X1 + X2) * EE)/DD ;
-        data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+        data[i] = (R + (packed[i] & 0xffffffffL) * EE) / DD;
       }
     } else {
+      int[] packed = new int[countBitmapPoints()];
+      reader.unpack(nb, packed.length, packed);
+      int idx = 0;
       for (int i = 0; i < totalNPoints; i++) {
         if ((bitmap[i / 8] & GribNumbers.bitmask[i % 8]) != 0) {
-          data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+          data[i] = (R + (packed[idx++] & 0xffffffffL) * EE) / DD;
         } else {
           data[i] = staticMissingValue;
           //data[i] = R / DD;
@@ -286,15 +437,13 @@ public class Grib2DataReader2 {
       return nGroups0(bitmapIndicator, ref_val, mv);
     }
 
-    BitReader reader = new BitReader(raf, startPos + 5);
+    BitReader reader = new BitReader(readDataSection(raf));
 
     // 6-xx  Get reference values for groups (X1's)
     int[] X1 = new int[NG];
     int nb = gdrs.numberOfBits;
     if (nb != 0) {
-      for (int i = 0; i < NG; i++) {
-        X1[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NG, X1);
     }
 
     // [xx +1 ]-yy Get number of bits used to encode each group
@@ -302,9 +451,7 @@ public class Grib2DataReader2 {
     nb = gdrs.bitsGroupWidths;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        NB[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NG, NB);
     }
 
     // [yy +1 ]-zz Get the scaled group lengths using formula
@@ -317,12 +464,14 @@ public class Grib2DataReader2 {
     nb = gdrs.bitsScaledGroupLength;
 
     reader.incrByte();
+    reader.unpack(nb, NG, L);
     for (int i = 0; i < NG; i++) {
-      L[i] = ref + (int) reader.bits2UInt(nb) * len_inc;
+      L[i] = ref + L[i] * len_inc;
     }
     L[NG - 1] = gdrs.lengthLastGroup; // enter Length of Last Group
 
     float[] data = new float[totalNPoints];
+    int[] X2 = new int[maxValue(L)];
 
     // [zz +1 ]-nn get X2 values and calculate the results Y using formula
 
@@ -337,6 +486,8 @@ public class Grib2DataReader2 {
     int count = 0;
     reader.incrByte();
     for (int i = 0; i < NG; i++) {
+      if (NB[i] != 0)
+        reader.unpack(NB[i], L[i], X2);
       for (int j = 0; j < L[i]; j++) {
         if (NB[i] == 0) {
           if (mvm == 0) {  // X2 = 0
@@ -345,15 +496,14 @@ public class Grib2DataReader2 {
             data[count++] = mv;
           }
         } else {
-          int X2 = (int) reader.bits2UInt(NB[i]);
           if (mvm == 0) {
-            data[count++] = (R + (X1[i] + X2) * EE) / DD;
+            data[count++] = (R + (X1[i] + X2[j]) * EE) / DD;
           } else { //if (mvm == 1) || (mvm == 2 )
             // X2 is also set to missing value if all bits set to 1's
-            if (X2 == bitsmv1[NB[i]]) {
+            if (X2[j] == bitsmv1[NB[i]]) {
               data[count++] = mv;
             } else {
-              data[count++] = (R + (X1[i] + X2) * EE) / DD;
+              data[count++] = (R + (X1[i] + X2[j]) * EE) / DD;
             }
           }
         }
@@ -468,7 +618,7 @@ public class Grib2DataReader2 {
       return nGroups0(bitmapIndicator, ref_val, mv);
     }
 
-    BitReader reader = new BitReader(raf, startPos + 5);
+    BitReader reader = new BitReader(readDataSection(raf));
 
     int ival1;
     int ival2 = 0;
@@ -513,9 +663,7 @@ public class Grib2DataReader2 {
     int nb = gdrs.numberOfBits;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        X1[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NG, X1);
     }
 
     // [xx +1 ]-yy Get number of bits used to encode each group
@@ -524,9 +672,7 @@ public class Grib2DataReader2 {
     nb = gdrs.bitsGroupWidths;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        NB[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NG, NB);
     }
 
     int referenceGroupWidths = gdrs.referenceGroupWidths;
@@ -545,9 +691,7 @@ public class Grib2DataReader2 {
 
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        L[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NG, L);
     }
 
     int totalL = 0;
@@ -583,6 +727,7 @@ public class Grib2DataReader2 {
     }
 
     float[] data = new float[totalNPoints];
+    int[] X2 = new int[maxValue(L)];
 
     // [zz +1 ]-nn get X2 values and calculate the results Y using formula
 //      formula used to create values,  Y * 10**D = R + (X1 + X2) * 2**E
@@ -602,8 +747,9 @@ public class Grib2DataReader2 {
     if (mvm == 0) {
       for (int i = 0; i < NG; i++) {
         if (NB[i] != 0) {
+          reader.unpack(NB[i], L[i], X2);
           for (int j = 0; j < L[i]; j++) {
-            data[count++] = (int) reader.bits2UInt(NB[i]) + X1[i];
+            data[count++] = X2[j] + X1[i];
           }
         } else {
           for (int j = 0; j < L[i]; j++) {
@@ -620,8 +766,9 @@ public class Grib2DataReader2 {
         if (NB[i] != 0) {
           int msng1 = bitsmv1[NB[i]];
           int msng2 = msng1 - 1;
+          reader.unpack(NB[i], L[i], X2);
           for (int j = 0; j < L[i]; j++) {
-            data[count] = (int) reader.bits2UInt(NB[i]);
+            data[count] = X2[j];
             if (data[count] == msng1 || mvm == 2 && data[count] == msng2) {
               dataBitMap[count] = false;
             } else {
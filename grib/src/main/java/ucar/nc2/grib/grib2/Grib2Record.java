@@ -157,6 +157,11 @@ public class Grib2Record {
     return pds2;
   }
 
+  // share the parsed pds with other records that have the same pdss, see Grib2RecordCompactor
+  void setPDS(Grib2Pds pds2) {
+    this.pds2 = pds2;
+  }
+
   public synchronized Grib2Gds getGDS() {
     return gdss.getGDS();
   }
@@ -308,6 +313,42 @@ public class Grib2Record {
     return data;
   }
 
+  /**
+   * Read only the wanted points of the data array, when that can be done without decoding the whole record.
+   * Use when you want to be independent of the GribRecord.
+   *
+   * @param raf             from this RandomAccessFile
+   * @param drsPos          Grib2SectionDataRepresentation starts here
+   * @param bmsPos          if non-zero, use the bms that starts here
+   * @param gdsNumberPoints gdss.getNumberPoints()
+   * @param scanMode        gds.scanMode
+   * @param nx              gds.nx
+   * @param yIndex          wanted rows
+   * @param xIndex          wanted columns
+   * @param result          put the wanted points here, in row major order
+   * @param resultPos       starting at this index
+   * @return false if not possible for this record, see Grib2DataReader2.getDataSubset()
+   * @throws IOException on read error
+   */
+  public static boolean readDataSubset(RandomAccessFile raf, long drsPos, long bmsPos, int gdsNumberPoints, int scanMode, int nx,
+                                       int[] yIndex, int[] xIndex, float[] result, int resultPos) throws IOException {
+    raf.seek(drsPos);
+    Grib2SectionDataRepresentation drs = new Grib2SectionDataRepresentation(raf);
+    if (drs.getDataTemplate() != 0)
+      return false;
+    Grib2SectionBitMap bms = new Grib2SectionBitMap(raf);
+    Grib2SectionData dataSection = new Grib2SectionData(raf);
+
+    if (bmsPos > 0)
+      bms = Grib2SectionBitMap.factory(raf, bmsPos);
+
+    Grib2DataReader2 reader = new Grib2DataReader2(drs.getDataTemplate(), gdsNumberPoints, drs.getDataPoints(),
+            scanMode, nx, dataSection.getStartingPosition(), dataSection.getMsgLength());
+
+    Grib2Drs gdrs = drs.getDrs(raf);
+    return reader.getDataSubset(raf, bms, gdrs, yIndex, xIndex, result, resultPos);
+  }
+
   /**
    * Read data array: use when you want to be independent of the GribRecord
    *
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.grib2;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Makes small copies of Grib2Records, for building collection indexes, which keep every record of the collection
+ * in memory until the index is written.
+ * The copy keeps the file number, the indicator, GDS, PDS and DRS sections, and the BMS only if it is replaced.
+ * Sections with the same contents are shared between copies: the identification and local use sections,
+ * the GDS (with its parsed Grib2Gds) and the PDS (with its parsed Grib2Pds). PDS contents repeat in every run of a
+ * model, so in a multi-year collection nearly all records share their PDS.
+ * The header and data sections are dropped, so a copy can't be used to read data.
+ * Not thread-safe, use one for each collection build.
+ */
+public class Grib2RecordCompactor {
+  private static final byte[] noHeader = new byte[0];
+
+  private final Map<Grib2SectionIdentification, Grib2SectionIdentification> idMap = new HashMap<>();
+  private final Map<ByteBuffer, Grib2SectionLocalUse> lusMap = new HashMap<>();
+  private final Map<ByteBuffer, Grib2SectionGridDefinition> gdsMap = new HashMap<>();
+  private final Map<ByteBuffer, Grib2Record> pdsMap = new HashMap<>(); // first copy with this pds
+  private int countRecords;
+
+  public Grib2Record compact(Grib2Record gr) {
+    Grib2SectionIdentification id = idMap.computeIfAbsent(gr.getId(), k -> k);
+
+    Grib2SectionLocalUse lus = gr.getLocalUseSection();
+    if (lus != null && lus.getRawBytes() != null)
+      lus = lusMap.computeIfAbsent(ByteBuffer.wrap(lus.getRawBytes()), k -> gr.getLocalUseSection());
+
+    Grib2SectionGridDefinition gdss = gr.getGDSsection();
+    gdss = gdsMap.computeIfAbsent(ByteBuffer.wrap(gdss.getRawBytes()), k -> gr.getGDSsection());
+
+    ByteBuffer pdsKey = ByteBuffer.wrap(gr.getPDSsection().getRawBytes());
+    Grib2Record proto = pdsMap.get(pdsKey);
+    Grib2SectionProductDefinition pdss = (proto == null) ? gr.getPDSsection() : proto.getPDSsection();
+
+    Grib2SectionBitMap bms = gr.isBmsReplaced() ? gr.getBitmapSection() : null;
+    Grib2Record result = new Grib2Record(noHeader, gr.getIs(), id, lus, gdss, pdss, gr.getDataRepresentationSection(),
+            bms, null, gr.isBmsReplaced(), gr.getScanMode());
+    result.setFile(gr.getFile());
+
+    if (proto == null)
+      pdsMap.put(pdsKey, result);
+    else
+      result.setPDS(proto.getPDS());
+
+    countRecords++;
+    return result;
+  }
+
+  public String show() {
+    return String.format("records=%d distinct ids=%d lus=%d gds=%d pds=%d", countRecords, idMap.size(), lusMap.size(),
+            gdsMap.size(), pdsMap.size());
+  }
+}
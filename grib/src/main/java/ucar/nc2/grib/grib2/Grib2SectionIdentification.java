@@ -208,4 +208,35 @@ public class Grib2SectionIdentification {
             ", local_table_version=" + local_table_version +
             '}';
   }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    Grib2SectionIdentification that = (Grib2SectionIdentification) o;
+    return center_id == that.center_id && subcenter_id == that.subcenter_id &&
+            master_table_version == that.master_table_version && local_table_version == that.local_table_version &&
+            significanceOfRT == that.significanceOfRT && year == that.year && month == that.month && day == that.day &&
+            hour == that.hour && minute == that.minute && second == that.second &&
+            productionStatus == that.productionStatus && processedDataType == that.processedDataType;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = center_id;
+    result = 31 * result + subcenter_id;
+    result = 31 * result + master_table_version;
+    result = 31 * result + local_table_version;
+    result = 31 * result + significanceOfRT;
+    result = 31 * result + year;
+    result = 31 * result + month;
+    result = 31 * result + day;
+    result = 31 * result + hour;
+    result = 31 * result + minute;
+    result = 31 * result + second;
+    result = 31 * result + productionStatus;
+    result = 31 * result + processedDataType;
+    return result;
+  }
 }
@@ -0,0 +1,82 @@
+/* Copyright Unidata */
+package ucar.nc2.grib.collection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.filesystem.MFileOS;
+import thredds.inventory.CollectionSingleFile;
+import thredds.inventory.MCollection;
+import ucar.nc2.grib.GribIndexCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+
+/**
+ * Building a GRIB1 collection index from compacted records must write the same index as from the records as read.
+ */
+@RunWith(Parameterized.class)
+public class TestGrib1CompactIndex {
+  private static final Logger logger = LoggerFactory.getLogger(TestGrib1CompactIndex.class);
+
+  @Parameterized.Parameters(name = "{0}")
+  public static List<Object[]> getTestParameters() {
+    List<Object[]> result = new ArrayList<>();
+    result.add(new Object[]{"ECMWF.grib1"});
+    result.add(new Object[]{"ncepPredefinedGds.grib1"}); // predefined grids, no GDS section
+    result.add(new Object[]{"radar_national.grib1"});
+    result.add(new Object[]{"thinGrid.grib1"});
+    result.add(new Object[]{"D2.2006091400.F012.002M.CLWMR.grib1"});
+    return result;
+  }
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final String filename;
+
+  public TestGrib1CompactIndex(String filename) {
+    this.filename = filename;
+  }
+
+  @After
+  public void cleanup() {
+    Grib1CollectionBuilder.compactRecords = true;
+  }
+
+  @Test
+  public void testSameIndex() throws IOException {
+    File data = new File(tempFolder.getRoot(), filename);
+    Files.copy(new File("../grib/src/test/data/" + filename).toPath(), data.toPath());
+
+    byte[] compacted = makeIndex(data);
+    Grib1CollectionBuilder.compactRecords = false;
+    byte[] asRead = makeIndex(data);
+    Assert.assertArrayEquals(asRead, compacted);
+  }
+
+  private byte[] makeIndex(File data) throws IOException {
+    MCollection dcm = new CollectionSingleFile(new MFileOS(data), logger);
+    dcm.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG, new FeatureCollectionConfig());
+    Grib1CollectionBuilder builder = new Grib1CollectionBuilder(dcm.getCollectionName(), dcm, logger);
+    Formatter errlog = new Formatter();
+    Assert.assertTrue(errlog.toString(), builder.createIndex(FeatureCollectionConfig.PartitionType.file, errlog));
+
+    File index = GribIndexCache.getExistingFileOrCache(dcm.getIndexFilename(GribCdmIndex.NCX_SUFFIX));
+    Assert.assertNotNull(index);
+    byte[] result = Files.readAllBytes(index.toPath());
+    Assert.assertTrue(index.delete());
+    return result;
+  }
+}
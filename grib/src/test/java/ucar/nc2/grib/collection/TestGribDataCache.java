@@ -0,0 +1,103 @@
+/* Copyright Unidata */
+package ucar.nc2.grib.collection;
+
+import com.google.common.cache.CacheStats;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.nc2.grib.GribDataCache;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reading through the GribDataCache gives the same data, and the second read comes from the cache.
+ */
+@RunWith(JUnit4.class)
+public class TestGribDataCache {
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void cleanup() {
+    GribDataCache.shutdown();
+  }
+
+  @Test
+  public void testCacheHits() throws IOException {
+    String filename = "../grib/src/test/data/ds.snow.grib2";
+    float[] want;
+    try (NetcdfFile nc = NetcdfFile.open(filename)) {
+      Variable v = findGridVariable(nc);
+      want = (float[]) v.read().get1DJavaArray(DataType.FLOAT);
+    }
+
+    GribDataCache.init(100 * 1000 * 1000);
+    try (NetcdfFile nc = NetcdfFile.open(filename)) {
+      Variable v = findGridVariable(nc);
+      Array first = v.read();
+      CacheStats afterFirst = GribDataCache.getStats();
+      Assert.assertEquals(0, afterFirst.hitCount());
+      Assert.assertTrue(GribDataCache.getBytesHeld() > 0);
+
+      Array second = v.read();
+      CacheStats afterSecond = GribDataCache.getStats();
+      Assert.assertEquals(afterFirst.missCount(), afterSecond.hitCount());
+
+      Assert.assertTrue(Arrays.equals(want, (float[]) first.get1DJavaArray(DataType.FLOAT)));
+      Assert.assertTrue(Arrays.equals(want, (float[]) second.get1DJavaArray(DataType.FLOAT)));
+    }
+  }
+
+  @Test
+  public void testTurnedOff() throws IOException {
+    GribDataCache.init(0);
+    Assert.assertFalse(GribDataCache.isEnabled());
+    try (RandomAccessFile raf = new RandomAccessFile("../grib/src/test/data/ds.snow.grib2", "r")) {
+      Assert.assertNull(GribDataCache.makeKey(raf, 0));
+      GribDataCache.put(GribDataCache.makeKey(raf, 0), new float[10]);
+      Assert.assertNull(GribDataCache.get(GribDataCache.makeKey(raf, 0)));
+    }
+  }
+
+  // a data file appended to in place no longer matches the records cached before
+  @Test
+  public void testAppendedFile() throws IOException {
+    File file = tempFolder.newFile("appended.grib2");
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[100]);
+    }
+
+    GribDataCache.init(1000 * 1000);
+    float[] data = new float[10];
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      GribDataCache.put(GribDataCache.makeKey(raf, 16), data);
+      Assert.assertSame(data, GribDataCache.get(GribDataCache.makeKey(raf, 16)));
+      Assert.assertNull(GribDataCache.get(GribDataCache.makeKey(raf, 32)));
+    }
+
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(new byte[100]);
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      Assert.assertNull(GribDataCache.get(GribDataCache.makeKey(raf, 16)));
+    }
+  }
+
+  private Variable findGridVariable(NetcdfFile nc) {
+    for (Variable v : nc.getVariables())
+      if (v.getRank() > 2) return v;
+    throw new IllegalStateException("no grid variable");
+  }
+}
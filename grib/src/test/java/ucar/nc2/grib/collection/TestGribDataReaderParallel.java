@@ -0,0 +1,52 @@
+/* Copyright Unidata */
+package ucar.nc2.grib.collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.ParallelReads;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compare serial and parallel decoding in GribDataReader.
+ */
+@RunWith(JUnit4.class)
+public class TestGribDataReaderParallel {
+
+  @Test
+  public void testGrib2() throws Exception {
+    compareSerialAndParallel("../grib/src/test/data/ds.snow.grib2");
+  }
+
+  @Test
+  public void testGrib1() throws Exception {
+    compareSerialAndParallel("../grib/src/test/data/jma.grib1");
+  }
+
+  // one record per task, so that every record is decoded in its own task
+  private void compareSerialAndParallel(String filename) throws Exception {
+    Map<String, String> serial = ParallelReads.assertSameAsSerial(4, exec -> GribDataReader.setExecutor(exec, 1),
+            () -> readAll(filename));
+    Assert.assertTrue(serial.size() > 0);
+  }
+
+  // decoding is deterministic, so expect identical values (Float.toString keeps every bit, and NaN == NaN)
+  private Map<String, String> readAll(String filename) throws IOException {
+    Map<String, String> result = new LinkedHashMap<>();
+    try (NetcdfFile nc = NetcdfFile.open(filename)) {
+      for (Variable v : nc.getVariables()) {
+        if (v.getRank() > 2)
+          result.put(v.getFullName(), Arrays.toString((float[]) v.read().get1DJavaArray(DataType.FLOAT)));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,75 @@
+/* Copyright Unidata */
+package ucar.nc2.grib.collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Small horizontal subsets are decoded without decoding the whole record; check against subsetting the full grid.
+ */
+@RunWith(JUnit4.class)
+public class TestGribDataReaderSubset {
+
+  @Test
+  public void testSimplePacking() throws IOException, InvalidRangeException {
+    compareSubsets("../grib/src/test/data/cosmo.pds11.grib2");
+  }
+
+  @Test
+  public void testBitmap() throws IOException, InvalidRangeException {
+    compareSubsets("../grib/src/test/data/ofs_atl.grib2");
+  }
+
+  @Test
+  public void testOtherPacking() throws IOException, InvalidRangeException {
+    compareSubsets("../grib/src/test/data/ds.snow.grib2");
+  }
+
+  private void compareSubsets(String filename) throws IOException, InvalidRangeException {
+    try (NetcdfFile nc = NetcdfFile.open(filename)) {
+      int count = 0;
+      for (Variable v : nc.getVariables()) {
+        int rank = v.getRank();
+        if (rank < 3) continue;
+        int ny = v.getShape(rank - 2);
+        int nx = v.getShape(rank - 1);
+        if (ny < 8 || nx < 8) continue;
+        Array full = v.read();
+
+        // a single point, a small box and a strided box
+        compareSubset(v, full, ny / 2, 1, 1, nx / 3, 1, 1);
+        compareSubset(v, full, 1, 5, 1, nx - 6, 5, 1);
+        compareSubset(v, full, 0, 4, 2, 0, 4, 2);
+        count++;
+      }
+      Assert.assertTrue(count > 0);
+    }
+  }
+
+  private void compareSubset(Variable v, Array full, int y0, int ny, int ystride, int x0, int nx, int xstride)
+          throws IOException, InvalidRangeException {
+    int rank = v.getRank();
+    List<Range> ranges = new ArrayList<>(v.getShapeAsSection().getRanges().subList(0, rank - 2));
+    ranges.add(new Range(y0, y0 + (ny - 1) * ystride, ystride));
+    ranges.add(new Range(x0, x0 + (nx - 1) * xstride, xstride));
+    Section section = new Section(ranges);
+
+    float[] want = (float[]) full.sectionNoReduce(ranges).copy().get1DJavaArray(DataType.FLOAT);
+    float[] got = (float[]) v.read(section).get1DJavaArray(DataType.FLOAT);
+    Assert.assertTrue(v.getFullName() + " " + section, Arrays.equals(want, got));
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.nc2.dataset.DatasetUrl;
+import ucar.nc2.util.cache.FileCache;
+import ucar.nc2.util.cache.FileCacheIF;
+import ucar.nc2.util.cache.FileCacheable;
+import ucar.nc2.util.cache.FileFactory;
+import ucar.unidata.io.MMapRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Formatter;
+
+/**
+ * The PartitionCache shares one open object among its users, and closes it only when it is no longer in use.
+ * Data file handles go back to their partition when closed, and are closed with it.
+ */
+@RunWith(JUnit4.class)
+public class TestPartitionCache {
+  private final PartitionCache cache = new PartitionCache("TestPartitionCache", 2, 3600);
+  private int nopened;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private class Thing implements FileCacheable {
+    private final String location;
+    private FileCacheIF fileCache;
+    boolean closed;
+    long lastModified;
+
+    Thing(String location) {
+      this.location = location;
+      nopened++;
+    }
+
+    public String getLocation() {
+      return location;
+    }
+
+    public synchronized void close() throws IOException {
+      if (fileCache != null && fileCache.release(this)) return;
+      closed = true;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public synchronized void setFileCache(FileCacheIF fileCache) {
+      this.fileCache = fileCache;
+    }
+
+    public void release() {
+    }
+
+    public void reacquire() {
+    }
+  }
+
+  private final FileFactory factory = (durl, buffer_size, cancelTask, iospMessage) -> new Thing(durl.trueurl);
+
+  private Thing acquire(String location) throws IOException {
+    return (Thing) cache.acquire(factory, location, new DatasetUrl(null, location), -1, null, null);
+  }
+
+  private String makeDataFile() throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), new byte[]{1, 2, 3, 4});
+    return file.getPath();
+  }
+
+  private int nopen(String path) {
+    return Collections.frequency(RandomAccessFile.getOpenFiles(), path);
+  }
+
+  @After
+  public void cleanup() {
+    cache.shutdown();
+    RandomAccessFile.setDebugLeaks(false);
+    MMapRandomAccessFile.setMappedLocations(null);
+  }
+
+  @Test
+  public void testShared() throws IOException {
+    Thing t1 = acquire("part1");
+    Thing t2 = acquire("part1");
+    Assert.assertSame(t1, t2);
+    Assert.assertEquals(1, nopened);
+
+    t1.close();
+    t2.close();
+    Assert.assertFalse(t1.closed);
+
+    Thing t3 = acquire("part1");
+    Assert.assertSame(t1, t3);
+    t3.close();
+    Assert.assertEquals(1, nopened);
+
+    Formatter f = new Formatter();
+    cache.showStats(f);
+    Assert.assertTrue(f.toString(), f.toString().contains("hits= 2 miss= 1"));
+  }
+
+  @Test
+  public void testClearWhileInUse() throws IOException {
+    Thing inUse = acquire("part1");
+    Thing idle = acquire("part2");
+    idle.close();
+
+    cache.clearCache(false);
+    Assert.assertTrue(idle.closed);
+    Assert.assertFalse(inUse.closed);
+
+    cache.clearCache(true);
+    Assert.assertFalse(inUse.closed);
+    Thing reopened = acquire("part1"); // no longer in the cache
+    Assert.assertNotSame(inUse, reopened);
+    reopened.close();
+
+    inUse.close();
+    Assert.assertTrue(inUse.closed);
+  }
+
+  @Test
+  public void testChanged() throws IOException {
+    Thing t1 = acquire("part1");
+    t1.lastModified = 1000; // the file was rewritten
+
+    Thing t2 = acquire("part1");
+    Assert.assertNotSame(t1, t2);
+    Assert.assertEquals(2, nopened);
+    Assert.assertFalse(t1.closed); // still in use
+
+    t1.close();
+    Assert.assertTrue(t1.closed);
+    Thing t3 = acquire("part1");
+    Assert.assertSame(t2, t3);
+    t2.close();
+    t3.close();
+    Assert.assertFalse(t2.closed);
+  }
+
+  @Test
+  public void testDataRafReuse() throws IOException {
+    RandomAccessFile.setDebugLeaks(true);
+    String path = makeDataFile();
+    Thing t = acquire("part1");
+
+    RandomAccessFile raf1 = cache.getDataRaf(t, 0, () -> path);
+    RandomAccessFile raf2 = cache.getDataRaf(t, 0, () -> path);
+    Assert.assertNotSame(raf1, raf2); // one reader at a time
+    Assert.assertEquals(2, nopen(path));
+
+    raf1.close();
+    raf2.close();
+    Assert.assertEquals(2, nopen(path)); // kept for reuse
+    RandomAccessFile raf3 = cache.getDataRaf(t, 0, () -> path);
+    Assert.assertTrue(raf3 == raf1 || raf3 == raf2);
+    raf3.seek(2);
+    Assert.assertEquals(3, raf3.read());
+    raf3.close();
+
+    Formatter f = new Formatter();
+    cache.showStats(f);
+    Assert.assertTrue(f.toString(), f.toString().contains("rafHits= 1 rafMiss= 2"));
+
+    Assert.assertNull(cache.getDataRaf(new Thing("notCached"), 0, () -> path));
+    t.close();
+    cache.clearCache(true);
+    Assert.assertEquals(0, nopen(path));
+  }
+
+  @Test
+  public void testDataRafDoubleClose() throws IOException {
+    String path = makeDataFile();
+    Thing t = acquire("part1");
+
+    RandomAccessFile raf = cache.getDataRaf(t, 0, () -> path);
+    raf.close();
+    raf.close(); // must not be pooled twice
+
+    RandomAccessFile raf1 = cache.getDataRaf(t, 0, () -> path);
+    RandomAccessFile raf2 = cache.getDataRaf(t, 0, () -> path);
+    Assert.assertSame(raf, raf1);
+    Assert.assertNotSame(raf1, raf2);
+    raf1.close();
+    raf2.close();
+    t.close();
+  }
+
+  @Test
+  public void testDataRafClosedAfterStale() throws IOException {
+    RandomAccessFile.setDebugLeaks(true);
+    String path = makeDataFile();
+    Thing t = acquire("part1");
+    RandomAccessFile raf = cache.getDataRaf(t, 0, () -> path);
+    t.close();
+
+    cache.clearCache(true); // the partition is closed while its data file is still in use
+    Assert.assertTrue(t.closed);
+    Assert.assertEquals(1, nopen(path));
+    raf.close();
+    Assert.assertEquals(0, nopen(path));
+  }
+
+  @Test
+  public void testDataRafMapped() throws IOException {
+    String path = makeDataFile();
+    MMapRandomAccessFile.setMappedLocations(Collections.singletonList(tempFolder.getRoot().getPath()));
+    Thing t = acquire("part1");
+
+    RandomAccessFile raf = cache.getDataRaf(t, 0, () -> path);
+    Assert.assertTrue(raf instanceof MMapRandomAccessFile);
+    raf.seek(2);
+    Assert.assertEquals(3, raf.read());
+    raf.close();
+    t.close();
+  }
+
+  @Test
+  public void testDataRafGlobalFileCache() throws IOException {
+    String path = makeDataFile();
+    FileCache rafCache = new FileCache("TestPartitionCache.raf", 0, 10, 20, 0);
+    RandomAccessFile.setGlobalFileCache(rafCache);
+    try {
+      Thing t = acquire("part1");
+      RandomAccessFile raf = cache.getDataRaf(t, 0, () -> path);
+      Assert.assertEquals(1, rafCache.showCache().size());
+      raf.close();
+      t.close();
+
+      Formatter f = new Formatter();
+      cache.showStats(f);
+      Assert.assertTrue(f.toString(), f.toString().contains("rafHits= 0 rafMiss= 0"));
+    } finally {
+      RandomAccessFile.setGlobalFileCache(null);
+    }
+  }
+
+  @Test
+  public void testMaxPartitions() throws IOException {
+    Thing[] things = new Thing[4];
+    for (int i = 0; i < things.length; i++)
+      things[i] = acquire("part" + i);
+    for (Thing t : things)
+      t.close();
+
+    // the least recently used beyond maxPartitions are closed
+    Assert.assertTrue(things[0].closed);
+    Assert.assertTrue(things[1].closed);
+    Assert.assertFalse(things[2].closed);
+    Assert.assertFalse(things[3].closed);
+    Assert.assertEquals(2, cache.showCache().size());
+  }
+}
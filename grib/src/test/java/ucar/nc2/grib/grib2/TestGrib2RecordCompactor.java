@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The compact records keep what the collection index needs, and share sections with identical contents.
+ */
+@RunWith(JUnit4.class)
+public class TestGrib2RecordCompactor {
+
+  private List<Grib2Record> readFile(String path) throws IOException {
+    List<Grib2Record> result = new ArrayList<>();
+    try (RandomAccessFile raf = new RandomAccessFile(path, "r")) {
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      raf.seek(0);
+      Grib2RecordScanner reader = new Grib2RecordScanner(raf);
+      while (reader.hasNext()) {
+        Grib2Record gr = reader.next();
+        if (gr == null) break;
+        result.add(gr);
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testCompact() throws IOException {
+    List<Grib2Record> records = readFile("../grib/src/test/data/sref.pds2.grib2");
+    Assert.assertTrue(records.size() > 0);
+
+    Grib2RecordCompactor compactor = new Grib2RecordCompactor();
+    List<Grib2Record> compacted = new ArrayList<>();
+    for (Grib2Record gr : records)
+      compacted.add(compactor.compact(gr));
+
+    for (int i = 0; i < records.size(); i++) {
+      Grib2Record gr = records.get(i);
+      Grib2Record cr = compacted.get(i);
+      Assert.assertEquals(gr.getIs().getStartPos(), cr.getIs().getStartPos());
+      Assert.assertEquals(gr.getDataRepresentationSection().getStartingPosition(),
+              cr.getDataRepresentationSection().getStartingPosition());
+      Assert.assertEquals(gr.getDiscipline(), cr.getDiscipline());
+      Assert.assertEquals(gr.getReferenceDate(), cr.getReferenceDate());
+      Assert.assertEquals(gr.getGDSsection().getGDS().hashCode(), cr.getGDSsection().getGDS().hashCode());
+      Assert.assertArrayEquals(gr.getPDSsection().getRawBytes(), cr.getPDSsection().getRawBytes());
+      Assert.assertNull(cr.getDataSection());
+    }
+
+    // records with the same pds share the section and the parsed pds
+    for (int i = 0; i < compacted.size(); i++) {
+      for (int j = i + 1; j < compacted.size(); j++) {
+        Grib2Record ri = compacted.get(i);
+        Grib2Record rj = compacted.get(j);
+        if (Arrays.equals(ri.getPDSsection().getRawBytes(), rj.getPDSsection().getRawBytes())) {
+          Assert.assertSame(ri.getPDSsection(), rj.getPDSsection());
+          Assert.assertSame(ri.getPDS(), rj.getPDS());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSameRecordsTwice() throws IOException {
+    List<Grib2Record> records = readFile("../grib/src/test/data/ds.snow.grib2");
+    Grib2RecordCompactor compactor = new Grib2RecordCompactor();
+    List<Grib2Record> first = new ArrayList<>();
+    for (Grib2Record gr : records)
+      first.add(compactor.compact(gr));
+
+    // the same file again, as if it were the next run of a collection
+    List<Grib2Record> again = readFile("../grib/src/test/data/ds.snow.grib2");
+    for (int i = 0; i < again.size(); i++) {
+      Grib2Record cr = compactor.compact(again.get(i));
+      Assert.assertSame(first.get(i).getPDS(), cr.getPDS());
+      Assert.assertSame(first.get(i).getGDSsection(), cr.getGDSsection());
+      Assert.assertSame(first.get(i).getId(), cr.getId());
+    }
+  }
+}
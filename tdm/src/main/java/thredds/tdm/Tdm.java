@@ -73,6 +73,7 @@ public class Tdm {
   private List<Server> servers;
 
   private java.util.concurrent.ExecutorService executor;
+  private java.util.concurrent.ExecutorService gbxIndexExecutor; // separate pool, the collection tasks wait on it
   private Resource catalog;
   private boolean showOnly = false; // if true, just show dirs and exit
 
@@ -109,6 +110,10 @@ public class Tdm {
   public void setNThreads(int n) {
     executor = Executors.newFixedThreadPool(n);
     tdmLogger.info(" TDM nthreads= {}", n);
+    if (n > 1) {
+      gbxIndexExecutor = Executors.newFixedThreadPool(n);
+      GribCdmIndex.setGbxIndexExecutor(gbxIndexExecutor, 4 * n);
+    }
   }
 
   public void setForceOnStartup(boolean forceOnStartup) {
@@ -213,6 +218,7 @@ public class Tdm {
         System.out.printf(" %s%n", makeTriggerUrl(name));
 
       executor.shutdown();
+      if (gbxIndexExecutor != null) gbxIndexExecutor.shutdown();
       collectionUpdater.shutdown();
       return;
     }
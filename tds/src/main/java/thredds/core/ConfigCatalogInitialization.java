@@ -28,10 +28,19 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Reads in the Config catalogs on startup, and if triggered.
  * Spring managed auto-wired.
+ * <p>
+ * If nthreads > 1, the catalog files are parsed ahead on a thread pool, at most 4 * nthreads at a time,
+ * in the order the catalog tree is walked. The parsed catalogs are then processed on the calling thread in that order,
+ * as when reading serially, so duplicate dataRoots, catalog ids etc come out the same.
+ * In ReadMode.check, only catalogs whose file has been modified since they were last read are parsed.
  *
  * @author caron
  * @since 3/21/2015
@@ -83,6 +92,8 @@ public class ConfigCatalogInitialization {
   private String contextPath;      // thredds
   private String trackerDir;       // the tracker "databases" are kept in this directory
   private long maxDatasets;        // chronicle limit
+  private int nthreads = 1;        // read catalogs in parallel if > 1
+  private ExecutorService pool;    // only during reread, if nthreads > 1; see fillReadAhead()
 
    // on reread, construct new objects, so cant be spring beans
   private DataRootPathMatcher dataRootPathMatcher;
@@ -93,6 +104,9 @@ public class ConfigCatalogInitialization {
   private CatalogTracker catalogTracker;
   private Set<String> catPathMap;          // Hash of paths, to look for duplicate catalogs
   private Map<String, String> fcNameMap;   // Hash of featureCollection ids, to look for duplicates
+  private Map<String, Future<ConfigCatalog>> readAhead;  // catalogs being parsed ahead, at most readAheadMax
+  private Deque<CatalogToRead> toReadAhead;               // catalogs to parse ahead, in the order the tree is walked
+  private int readAheadMax;
   private List<String> rootCatalogKeys;    // needed ??
 
   // track stats
@@ -109,6 +123,14 @@ public class ConfigCatalogInitialization {
     this.maxDatasets = maxDatasets;
   }
 
+  /**
+   * Read the catalogs with this many threads, default 1.
+   * @param nthreads number of threads; <= 1 reads the catalog tree on the calling thread.
+   */
+  public synchronized void setNumberOfThreads(int nthreads) {
+    this.nthreads = nthreads;
+  }
+
   // called from TdsInit on spring-managed auto-wired bean
   public synchronized void init(ReadMode readMode, PreferencesExt prefs) {
     if (readMode == null)
@@ -151,39 +173,57 @@ public class ConfigCatalogInitialization {
     // going to reread global services
     allowedServices.clearGlobalServices();
 
-    switch (readMode) {
-      case always:
-        // if the database already exists, we need to close it
-        // before we reinit
-        if (databaseAlreadyExists) {
-          logCatalogInit.info("ConfigCatalogInitializion datasetTracker database already exists - closing it before reinitialization.");
-          try {
-            this.datasetTracker.close();
-          } catch (IOException e) {
-            logCatalogInit.error("There was an error closing the datasetTracker database.", e);
+    if (nthreads > 1) {
+      pool = Executors.newFixedThreadPool(nthreads);
+      readAhead = new HashMap<>();
+      toReadAhead = new ArrayDeque<>();
+      readAheadMax = 4 * nthreads;
+    }
+
+    try {
+      switch (readMode) {
+        case always:
+          // if the database already exists, we need to close it
+          // before we reinit
+          if (databaseAlreadyExists) {
+            logCatalogInit.info("ConfigCatalogInitializion datasetTracker database already exists - closing it before reinitialization.");
+            try {
+              this.datasetTracker.close();
+            } catch (IOException e) {
+              logCatalogInit.error("There was an error closing the datasetTracker database.", e);
+            }
+            this.datasetTracker.reinit();
           }
-          this.datasetTracker.reinit();
-        }
-        this.catalogTracker = new CatalogTracker(trackerDir, true, numberCatalogs, nextCatId);
-        this.dataRootTracker = new DataRootTracker(trackerDir, true, callback);
-        this.dataRootPathMatcher = new DataRootPathMatcher(ccc, dataRootTracker);  // starting over
-        readRootCatalogs(readMode);
-        break;
-
-      case check:
-        this.catalogTracker = new CatalogTracker(trackerDir, false, numberCatalogs, nextCatId);        // use existing catalog list
-        this.dataRootTracker = new DataRootTracker(trackerDir, false, callback);      // use existing data roots
-        this.dataRootPathMatcher = new DataRootPathMatcher(ccc, dataRootTracker);
-        readRootCatalogs(readMode);           // read just roots to get global services
-        checkExistingCatalogs(readMode);
-        break;
-
-      case triggerOnly:
-        this.catalogTracker = new CatalogTracker(trackerDir, false, numberCatalogs, nextCatId);               // use existing catalog list
-        this.dataRootTracker = new DataRootTracker(trackerDir, false, callback);             // use existing data roots
-        this.dataRootPathMatcher = new DataRootPathMatcher(ccc, dataRootTracker);
-        readRootCatalogs(readMode);           // read just roots to get global services
-        break;
+          this.catalogTracker = new CatalogTracker(trackerDir, true, numberCatalogs, nextCatId);
+          this.dataRootTracker = new DataRootTracker(trackerDir, true, callback);
+          this.dataRootPathMatcher = new DataRootPathMatcher(ccc, dataRootTracker);  // starting over
+          readRootCatalogs(readMode);
+          break;
+
+        case check:
+          this.catalogTracker = new CatalogTracker(trackerDir, false, numberCatalogs, nextCatId);        // use existing catalog list
+          this.dataRootTracker = new DataRootTracker(trackerDir, false, callback);      // use existing data roots
+          this.dataRootPathMatcher = new DataRootPathMatcher(ccc, dataRootTracker);
+          readRootCatalogs(readMode);           // read just roots to get global services
+          checkExistingCatalogs(readMode);
+          break;
+
+        case triggerOnly:
+          this.catalogTracker = new CatalogTracker(trackerDir, false, numberCatalogs, nextCatId);               // use existing catalog list
+          this.dataRootTracker = new DataRootTracker(trackerDir, false, callback);             // use existing data roots
+          this.dataRootPathMatcher = new DataRootPathMatcher(ccc, dataRootTracker);
+          readRootCatalogs(readMode);           // read just roots to get global services
+          break;
+      }
+    } finally {
+      if (pool != null) {
+        for (Future<ConfigCatalog> f : readAhead.values()) // not used, eg if exceedLimit
+          f.cancel(true);
+        pool.shutdownNow();
+        pool = null;
+      }
+      readAhead = null;
+      toReadAhead = null;
     }
 
     numberCatalogs = catalogTracker.size();
@@ -235,6 +275,12 @@ public class ConfigCatalogInitialization {
       rootCatalogKeys.add( location );
     logCatalogInit.info("ConfigCatalogInit: initializing " + rootCatalogKeys.size() + " root catalogs.");
 
+    if (pool != null) {
+      for (String pathname : rootCatalogKeys)
+        toReadAhead.add(new CatalogToRead(StringUtils.cleanPath(pathname), true, 0));
+      fillReadAhead(readMode);
+    }
+
     // all root catalogs are checked
     for (String pathname : rootCatalogKeys) {
       try {
@@ -248,6 +294,14 @@ public class ConfigCatalogInitialization {
   }
 
   private void checkExistingCatalogs(ReadMode readMode) {
+    if (pool != null) {
+      for (CatalogExt catalogExt : catalogTracker.getCatalogs()) {
+        if (catalogExt.isRoot()) continue; // already read in
+        toReadAhead.add(new CatalogToRead(StringUtils.cleanPath(catalogExt.getCatRelLocation()), false, catalogExt.getLastRead()));
+      }
+      fillReadAhead(readMode);
+    }
+
     for (CatalogExt catalogExt : catalogTracker.getCatalogs()) {
       if (catalogExt.isRoot()) continue; // already read in
 
@@ -262,6 +316,64 @@ public class ConfigCatalogInitialization {
     }
   }
 
+  private static class CatalogToRead {
+    final String catalogRelPath;
+    final boolean isRoot;
+    final long lastRead;
+
+    CatalogToRead(String catalogRelPath, boolean isRoot, long lastRead) {
+      this.catalogRelPath = catalogRelPath;
+      this.isRoot = isRoot;
+      this.lastRead = lastRead;
+    }
+  }
+
+  // start parsing the next catalogs that checkCatalogToRead() is going to read, until readAheadMax are pending
+  private void fillReadAhead(ReadMode readMode) {
+    while (readAhead.size() < readAheadMax && !toReadAhead.isEmpty() && !exceedLimit) {
+      CatalogToRead next = toReadAhead.removeFirst();
+      String catalogRelPath = next.catalogRelPath;
+      if (catPathMap.contains(catalogRelPath) || readAhead.containsKey(catalogRelPath)) continue; // already read, or a loop
+      File catalogFile = new File(contentRootPath, catalogRelPath);
+      if (!catalogFile.exists()) continue;
+      if (!next.isRoot && readMode != ReadMode.always && catalogFile.lastModified() < next.lastRead) continue;
+      if (!next.isRoot && readMode == ReadMode.triggerOnly) continue;
+      readAhead.put(catalogRelPath, pool.submit(() -> readCatalog(catalogRelPath, catalogFile.getPath())));
+    }
+  }
+
+  // the catalogs that cat references are walked next, before the rest
+  private void addReadAhead(String catalogRelPath, File catalogFile, ConfigCatalog cat) {
+    try {
+      String dirPath = getDirPath(catalogRelPath);
+      List<String> paths = new ArrayList<>();
+      findCatalogRefs(dirPath, cat.getDatasetsLocal(), paths);
+      for (CatalogScan catScan : cat.getCatalogScans()) {
+        Path relLocation = Paths.get(dirPath, catScan.getLocation());
+        Path absLocation = Paths.get(catalogFile.getParent(), catScan.getLocation());
+        findCatsInDirectory(relLocation.toString(), absLocation, paths);
+      }
+      for (int i = paths.size() - 1; i >= 0; i--) {
+        String path = StringUtils.cleanPath(paths.get(i));
+        toReadAhead.addFirst(new CatalogToRead(path, false, getLastRead(path)));
+      }
+    } catch (Throwable e) {
+      logCatalogInit.error(ERROR + "initializing catalog " + catalogRelPath + "; " + e.getMessage(), e);
+    }
+  }
+
+  // the catalog parsed ahead, or null if it was not
+  private ConfigCatalog takeReadAhead(String catalogRelPath, File catalogFile) {
+    Future<ConfigCatalog> f = readAhead.remove(catalogRelPath);
+    if (f == null)
+      return readCatalog(catalogRelPath, catalogFile.getPath());
+    try {
+      return f.get();
+    } catch (InterruptedException | ExecutionException e) {
+      return readCatalog(catalogRelPath, catalogFile.getPath());
+    }
+  }
+
   // decide if we need to read this catalog or not. if yes, follow any catrefs
   // catalogRelpath must be relative to rootDir
   private void checkCatalogToRead(ReadMode readMode, String catalogRelPath, boolean isRoot, long lastRead) throws IOException {
@@ -289,8 +401,13 @@ public class ConfigCatalogInitialization {
 
     // if (logCatalogInit.isDebugEnabled()) logCatalogInit.debug("initCatalog {} -> {}", path, f.getAbsolutePath());
 
-    // read it
-    ConfigCatalog cat = readCatalog(catalogRelPath, catalogFile.getPath());
+    // read it, unless it was parsed ahead
+    ConfigCatalog cat = (pool == null) ? readCatalog(catalogRelPath, catalogFile.getPath()) : takeReadAhead(catalogRelPath, catalogFile);
+    if (pool != null) {
+      if (cat != null && !(isRoot && readMode == ReadMode.triggerOnly))
+        addReadAhead(catalogRelPath, catalogFile, cat);
+      fillReadAhead(readMode);
+    }
     if (cat == null) {
       logCatalogInit.error(ERROR + "initCatalog(): failed to read catalog <" + catalogFile.getPath() + ">.");
       return;
@@ -321,8 +438,7 @@ public class ConfigCatalogInitialization {
     dataRootPathMatcher.extractDataRoots(catalogRelPath, cat.getDatasetsLocal(), readMode == ReadMode.always, fcNameMap);
 
     // get the directory path, reletive to the rootDir
-    int pos = catalogRelPath.lastIndexOf("/");
-    String dirPath = (pos > 0) ? catalogRelPath.substring(0, pos + 1) : "";
+    String dirPath = getDirPath(catalogRelPath);
     processDatasets(catId, readMode, dirPath, cat.getDatasetsLocal(), idSet);     // recurse
 
     // look for catalogScans
@@ -335,6 +451,17 @@ public class ConfigCatalogInitialization {
     }
   }
 
+  // the directory path of a catalog, reletive to the rootDir
+  private String getDirPath(String catalogRelPath) {
+    int pos = catalogRelPath.lastIndexOf("/");
+    return (pos > 0) ? catalogRelPath.substring(0, pos + 1) : "";
+  }
+
+  private long getLastRead(String catalogRelPath) {
+    CatalogExt ext = catalogTracker.get(catalogRelPath);
+    return (ext == null) ? 0 : ext.getLastRead();
+  }
+
   /**
    * Does the actual work of reading a catalog.
    *
@@ -399,29 +526,15 @@ public class ConfigCatalogInitialization {
         String href = catref.getXlinkHref();
         // if (logCatalogInit.isDebugEnabled()) logCatalogInit.debug("  catref.getXlinkHref=" + href);
 
-        // Check that catRef is relative
-        if (!href.startsWith("http:")) {
-          // Clean up relative URLs that start with "./"
-          if (href.startsWith("./")) {
-            href = href.substring(2);
-          }
+        String path = getCatalogRefPath(href, dirPath);
+        if (path != null) {
+          checkCatalogToRead(readMode, path, false, getLastRead(path));
 
-          String path;
+        } else if (!href.startsWith("http:")) {
+          // Drop the catRef because it points to a non-TDS served catalog.
           String contextPathPlus = this.contextPath + "/";
-          if (href.startsWith(contextPathPlus)) {
-            path = href.substring(contextPathPlus.length()); // absolute starting from content root
-          } else if (href.startsWith("/")) {
-            // Drop the catRef because it points to a non-TDS served catalog.
-            logCatalogInit.error(ERROR + "Skipping catalogRef <xlink:href=" + href + ">. Reference is relative to the server outside the context path [" + contextPathPlus + "]. " +
-                    "Parent catalog info: Name=\"" + catref.getParentCatalog().getName() + "\"; Base URI=\"" + catref.getParentCatalog().getUriString() + "\"; dirPath=\"" + dirPath + "\".");
-            continue;
-          } else {
-            path = dirPath + href;  // reletive starting from current directory
-          }
-
-          CatalogExt ext = catalogTracker.get(path);
-          long lastRead = (ext == null) ? 0 : ext.getLastRead();
-          checkCatalogToRead(readMode, path, false, lastRead);
+          logCatalogInit.error(ERROR + "Skipping catalogRef <xlink:href=" + href + ">. Reference is relative to the server outside the context path [" + contextPathPlus + "]. " +
+                  "Parent catalog info: Name=\"" + catref.getParentCatalog().getName() + "\"; Base URI=\"" + catref.getParentCatalog().getUriString() + "\"; dirPath=\"" + dirPath + "\".");
         }
 
       } else {
@@ -431,21 +544,58 @@ public class ConfigCatalogInitialization {
     }
   }
 
+  // the catalogRefs to follow in these datasets, in the order processDatasets() follows them
+  private void findCatalogRefs(String dirPath, List<Dataset> datasets, List<String> paths) {
+    for (Dataset ds : datasets) {
+      if ((ds instanceof DatasetScan) || (ds instanceof FeatureCollectionRef)) continue;
+      if (ds instanceof CatalogScan) continue;
+
+      if (ds instanceof CatalogRef) {
+        String path = getCatalogRefPath(((CatalogRef) ds).getXlinkHref(), dirPath);
+        if (path != null) paths.add(path);
+      } else {
+        findCatalogRefs(dirPath, ds.getDatasetsLocal(), paths);
+      }
+    }
+  }
+
+  // the path of a catalogRef, reletive to the rootDir; null if its not a catalog served by this TDS
+  private String getCatalogRefPath(String href, String dirPath) {
+    // Check that catRef is relative
+    if (href.startsWith("http:")) return null;
+
+    // Clean up relative URLs that start with "./"
+    if (href.startsWith("./")) {
+      href = href.substring(2);
+    }
+
+    String contextPathPlus = this.contextPath + "/";
+    if (href.startsWith(contextPathPlus))
+      return href.substring(contextPathPlus.length()); // absolute starting from content root
+    if (href.startsWith("/"))
+      return null;   // relative to the server, outside the context path
+    return dirPath + href;  // reletive starting from current directory
+  }
+
   // dirPath is the directory relative to rootDir, directory is absolute
   private void readCatsInDirectory(ReadMode readMode, String dirPath, Path directory) throws IOException {
     if (exceedLimit) return;
 
+    List<String> paths = new ArrayList<>();
+    findCatsInDirectory(dirPath, directory, paths);
+    for (String path : paths)
+      checkCatalogToRead(readMode, path, false, getLastRead(path));
+  }
+
+  // the catalogs in a directory, then recurse into its subdirectories
+  private void findCatsInDirectory(String dirPath, Path directory, List<String> paths) throws IOException {
      // do any catalogs first
     try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory, "*.xml")) {
       for (Path p : ds) {
         if (!Files.isDirectory(p)) {
           // path must be relative to rootDir
           String filename = p.getFileName().toString();
-          String path = dirPath.length() == 0 ? filename :  dirPath + "/" + filename;  // reletive starting from current directory
-
-          CatalogExt ext = catalogTracker.get(path);
-          long lastRead = (ext == null) ? 0 : ext.getLastRead();
-          checkCatalogToRead(readMode, path, false, lastRead);
+          paths.add(dirPath.length() == 0 ? filename :  dirPath + "/" + filename);  // reletive starting from current directory
         }
       }
     }
@@ -455,7 +605,7 @@ public class ConfigCatalogInitialization {
        for (Path dir : ds) {
          if (Files.isDirectory(dir)) {
            String dirPathChild = dirPath + "/" + dir.getFileName().toString();  // reletive starting from current directory
-           readCatsInDirectory(readMode, dirPathChild, dir);
+           findCatsInDirectory(dirPathChild, dir, paths);
          }
        }
      }
@@ -640,6 +790,13 @@ public class ConfigCatalogInitialization {
   // used from outside of tomcat/spring for testing
   public ConfigCatalogInitialization(ReadMode readMode, File contentRootPath, String trackerDir, DatasetTracker datasetTracker,
                                      AllowedServices allowedServices, DatasetTracker.Callback callback, long maxDatasetsProcess) throws IOException {
+    this(readMode, contentRootPath, trackerDir, datasetTracker, allowedServices, callback, maxDatasetsProcess, 1);
+  }
+
+  public ConfigCatalogInitialization(ReadMode readMode, File contentRootPath, String trackerDir, DatasetTracker datasetTracker,
+                                     AllowedServices allowedServices, DatasetTracker.Callback callback, long maxDatasetsProcess,
+                                     int nthreads) throws IOException {
+    this.nthreads = nthreads;
     this.contentRootPath = contentRootPath;
     this.contextPath = "/thredds";
     this.trackerDir = trackerDir != null ? trackerDir : new File(contentRootPath, "cache/catalog").getPath();
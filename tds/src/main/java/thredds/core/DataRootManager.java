@@ -16,9 +16,11 @@ import thredds.server.admin.DebugCommands;
 import thredds.server.catalog.*;
 import thredds.server.catalog.tracker.DataRootExt;
 import thredds.server.config.TdsContext;
+import thredds.server.config.ThreddsConfig;
 
 import thredds.util.filesource.FileSource;
 import ucar.nc2.util.AliasTranslator;
+import ucar.unidata.io.MMapRandomAccessFile;
 
 import javax.annotation.Resource;
 import java.io.File;
@@ -87,6 +89,22 @@ public class DataRootManager implements InitializingBean {
 
   public synchronized void setDataRootPathMatcher(DataRootPathMatcher dataRootPathMatcher) {
     this.dataRootPathMatcher = dataRootPathMatcher;
+    setMemoryMappedLocations();
+  }
+
+  // files under the dataRoots listed in threddsConfig.xml MemoryMappedFile are opened as MMapRandomAccessFile
+  private void setMemoryMappedLocations() {
+    List<String> locations = new ArrayList<>();
+    for (String path : ThreddsConfig.getElementList("MemoryMappedFile", "dataRoot")) {
+      DataRoot dataRoot = findDataRoot(path);
+      if (dataRoot == null) {
+        startupLog.warn("DataRootManager: MemoryMappedFile dataRoot {} not found", path);
+        continue;
+      }
+      locations.add(dataRoot.getDirLocation());
+      startupLog.info("DataRootManager: MemoryMappedFile dataRoot {} location {}", path, dataRoot.getDirLocation());
+    }
+    MMapRandomAccessFile.setMappedLocations(locations);
   }
 
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
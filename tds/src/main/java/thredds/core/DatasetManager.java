@@ -33,10 +33,13 @@ import ucar.nc2.ft2.simpgeometry.SimpleGeometryFeatureDataset;
 import ucar.nc2.ft2.coverage.CoverageCollection;
 import ucar.nc2.ncml.NcMLReader;
 import ucar.nc2.util.Optional;
+import ucar.nc2.util.cache.FileCache;
+import ucar.nc2.util.cache.FileCacheIF;
 import ucar.nc2.util.cache.FileFactory;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringReader;
@@ -79,6 +82,34 @@ public class DatasetManager implements InitializingBean {
   // possible change to one global hash table request
   private ArrayList<DatasetSource> datasetSources = new ArrayList<>();
 
+  // GridDataset and FeatureDatasetCoverage opened from plain files, so the coordinate systems are not rebuilt on each request
+  static private volatile FileCache datasetCache;
+
+  /**
+   * Keep GridDataset and CoverageCollection objects opened from plain files (not feature collections, not NcML),
+   * so that repeated requests do not rebuild the coordinate systems. Default is off.
+   * A cached object is used by one request at a time; it is returned to the cache when the request closes it.
+   *
+   * @param minElementsInMemory keep this number in the cache
+   * @param maxElementsInMemory trigger a cleanup if it goes over this number.
+   * @param period              (secs) do periodic cleanups every this number of seconds.
+   */
+  static public synchronized void initDatasetCache(int minElementsInMemory, int maxElementsInMemory, int period) {
+    datasetCache = new FileCache("DatasetManager", minElementsInMemory, maxElementsInMemory, -1, period);
+  }
+
+  static public FileCacheIF getDatasetCache() {
+    return datasetCache;
+  }
+
+  /**
+   * Close the datasets in the datasetCache and turn it off. Call when the TDS shuts down.
+   */
+  static public synchronized void shutdown() {
+    if (datasetCache != null) datasetCache.disable();
+    datasetCache = null;
+  }
+
   @Override
   public void afterPropertiesSet() throws Exception {
     TdsRequestedDataset.setDatasetManager(this);      // LOOK why not autowire this ?  maybe because static ??
@@ -120,6 +151,62 @@ public class DatasetManager implements InitializingBean {
     }
   }
 
+  private static final FileFactory gridDatasetFactory = (durl, buffer_size, cancelTask, spiObject) -> {
+    NetcdfDataset ncd = NetcdfDataset.openDataset(durl, NetcdfDataset.getDefaultEnhanceMode(), buffer_size, cancelTask, spiObject);
+    try {
+      return new GridDataset(ncd);
+    } catch (Throwable t) {
+      ncd.close();
+      throw t;
+    }
+  };
+
+  private static final FileFactory coverageDatasetFactory = (durl, buffer_size, cancelTask, spiObject) -> {
+    Optional<FeatureDatasetCoverage> opt = CoverageDatasetFactory.openCoverageDataset(durl.trueurl);
+    if (!opt.isPresent())
+      throw new FileNotFoundException("Not a Grid Dataset " + durl.trueurl + " err=" + opt.getErrorMessage());
+    return opt.get();
+  };
+
+  // FileCache checks GridDataset.getLastModified(), and reopens the file if it has changed
+  static GridDataset acquireGridDataset(FileCacheIF cache, String location) throws IOException {
+    return (GridDataset) cache.acquire(gridDatasetFactory, "GridDataset#" + location,
+            DatasetUrl.findDatasetUrl(location), -1, null, null);
+  }
+
+  // for GRIB, FeatureDatasetCoverage.getLastModified() is the index file's, so the data file's is part of the key;
+  // old versions age out of the cache
+  static FeatureDatasetCoverage acquireCoverageDataset(FileCacheIF cache, String location) throws IOException {
+    String hashKey = "FeatureDatasetCoverage#" + location + "#" + new File(location).lastModified();
+    return (FeatureDatasetCoverage) cache.acquire(coverageDatasetFactory, hashKey,
+            DatasetUrl.findDatasetUrl(location), -1, null, null);
+  }
+
+  /**
+   * If the request is for a plain file, that openNetcdfFile() would open with NetcdfDataset.acquireFile(), return its location.
+   * These are the only datasets kept in the datasetCache.
+   *
+   * @return file location, or null if its NcML, a feature collection, a DatasetSource, or not found
+   */
+  private String findPlainFileLocation(HttpServletRequest req, String reqPath) {
+    if (datasetTracker.findNcml(reqPath) != null)
+      return null;
+
+    DataRootManager.DataRootMatch match = dataRootManager.findDataRootMatch(reqPath);
+    if (match == null || match.dataRoot == null || match.dataRoot.getFeatureCollection() != null)
+      return null;
+
+    for (DatasetSource datasetSource : datasetSources) {
+      if (datasetSource.isMine(req)) return null;
+    }
+
+    DatasetScan dscan = match.dataRoot.getDatasetScan();
+    if (dscan != null && dscan.getNcmlElement() != null)
+      return null;
+
+    return dataRootManager.getLocationFromRequestPath(reqPath);
+  }
+
   // return null means request has been handled, and calling routine should exit without further processing
   public NetcdfFile openNetcdfFile(HttpServletRequest req, HttpServletResponse res, String reqPath) throws IOException {
     if (log.isDebugEnabled()) log.debug("DatasetHandler wants " + reqPath);
@@ -218,6 +305,20 @@ public class DatasetManager implements InitializingBean {
       return gds;
     }
 
+    // a plain file may already be open in the datasetCache
+    FileCacheIF cache = datasetCache;
+    if (cache != null && reqPath != null) {
+      String path = reqPath.startsWith("/") ? reqPath.substring(1) : reqPath;
+      String location = findPlainFileLocation(req, path);
+      if (location != null) {
+        if (!resourceControlOk(req, res, path))
+          return null;
+        GridDataset gds = acquireGridDataset(cache, location);
+        if (gds == null) throw new FileNotFoundException(reqPath);
+        return gds;
+      }
+    }
+
     // fetch it as a NetcdfFile; this deals with possible NcML
     NetcdfFile ncfile = openNetcdfFile(req, res, reqPath);
     if (ncfile == null) return null;
@@ -317,6 +418,20 @@ public class DatasetManager implements InitializingBean {
 
     // try to open as a FeatureDatasetCoverage. This allows GRIB to be handle specially
     String location = getLocationFromRequestPath(reqPath);
+
+    // a plain file may already be open in the datasetCache
+    FileCacheIF cache = datasetCache;
+    if (cache != null && location != null && location.equals(findPlainFileLocation(req, reqPath))) {
+      FeatureDatasetCoverage fdc = acquireCoverageDataset(cache, location);
+      if (fdc == null) throw new FileNotFoundException(reqPath);
+      if (fdc.getCoverageCollections().size() != 1) {
+        fdc.close();
+        throw new FileNotFoundException("Multiple CoverageCollections in " + reqPath);
+      }
+      if (log.isDebugEnabled()) log.debug("  -- DatasetHandler found FeatureCollection from datasetCache= " + location);
+      return fdc.getSingleCoverageCollection(); // closing it returns fdc to the cache
+    }
+
     if (location != null) {
       Optional<FeatureDatasetCoverage> opt = CoverageDatasetFactory.openCoverageDataset(location);
       if (!opt.isPresent())
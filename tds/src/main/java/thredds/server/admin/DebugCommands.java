@@ -8,6 +8,7 @@ package thredds.server.admin;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import thredds.core.DatasetManager;
 import thredds.server.config.TdsContext;
 import thredds.servlet.ServletUtil;
 import ucar.nc2.dataset.NetcdfDataset;
@@ -19,9 +20,11 @@ import java.io.PrintStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import ucar.nc2.grib.GribDataCache;
 import ucar.nc2.grib.collection.GribCdmIndex;
 import ucar.nc2.util.cache.FileCacheIF;
 import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.http.HTTPBlockCache;
 
 /**
  * A Singleton class instantiated by Spring, to populate the Debug methods in the
@@ -135,6 +138,25 @@ public class DebugCommands {
           fc.showCache(f);
         }
 
+        fc = GribCdmIndex.getPartitionCache();
+        if (fc == null) f.format("%nPartitionCache : turned off%n");
+        else {
+          f.format("%n%n");
+          fc.showCache(f);
+        }
+
+        fc = DatasetManager.getDatasetCache();
+        if (fc == null) f.format("%nDatasetManager : turned off%n");
+        else {
+          f.format("%n%n");
+          fc.showCache(f);
+        }
+
+        f.format("%n%n");
+        GribDataCache.showCache(f);
+        f.format("%n");
+        HTTPBlockCache.showCache(f);
+
         e.pw.flush();
       }
     };
@@ -146,6 +168,12 @@ public class DebugCommands {
          RandomAccessFile.getGlobalFileCache().clearCache(false);
          FileCacheIF fc = GribCdmIndex.gribCollectionCache;
          if (fc != null) fc.clearCache(false);
+         fc = GribCdmIndex.getPartitionCache();
+         if (fc != null) fc.clearCache(false);
+         fc = DatasetManager.getDatasetCache();
+         if (fc != null) fc.clearCache(false);
+         GribDataCache.clear();
+         HTTPBlockCache.clear();
          e.pw.println("  ClearCache ok");
        }
      };
@@ -192,6 +220,15 @@ public class DebugCommands {
      };
      debugHandler.addAction(act);
 
+    act = new Action("resetPartitionCacheStats", "Reset Partition Cache hit/miss counts") {
+      public void doAction(Event e) {
+        FileCacheIF fc = GribCdmIndex.getPartitionCache();
+        if (fc != null) fc.resetTracking();
+        e.pw.println("  PartitionCache resetTracking done");
+      }
+    };
+    debugHandler.addAction(act);
+
     act = new Action("forceGCCache", "Force clear TimePartition Cache") {
       public void doAction(Event e) {
         FileCacheIF fc = GribCdmIndex.gribCollectionCache;
@@ -29,8 +29,12 @@ import thredds.server.ncss.format.SupportedFormat;
 import thredds.server.notebook.JupyterNotebookServiceCache;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.grib.GribDataCache;
 import ucar.nc2.grib.GribIndexCache;
 import ucar.nc2.grib.collection.GribCdmIndex;
+import ucar.nc2.grib.collection.GribDataReader;
+import ucar.nc2.iosp.bufr.BufrIosp2;
+import ucar.nc2.iosp.hdf5.H5iosp;
 import ucar.nc2.jni.netcdf.Nc4Iosp;
 import ucar.nc2.ncml.Aggregation;
 import ucar.nc2.stream.CdmRemote;
@@ -40,16 +44,22 @@ import ucar.nc2.util.DiskCache;
 import ucar.nc2.util.DiskCache2;
 import ucar.nc2.util.cache.FileCache;
 import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.http.HTTPBlockCache;
 import ucar.util.prefs.PreferencesExt;
 import ucar.util.prefs.XMLStore;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ObjIntConsumer;
 
 /**
  * A Singleton class to initialize and shutdown the CDM/TDS
@@ -99,6 +109,7 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
   private NcssDiskCache ncssDiskCache;
 
   private Timer cdmDiskCacheTimer;
+  private final List<Runnable> executorShutdowns = new ArrayList<>(); // see startExecutor()
   private boolean wasInitialized;
 
   private XMLStore store;
@@ -283,6 +294,9 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
     Aggregation.setTypicalDatasetMode(typicalDataset);
     startupLog.info("TdsInit: Aggregation.setTypicalDatasetMode= " + typicalDataset);
 
+    int aggMaxParallelReads = ThreddsConfig.getInt("Aggregation.maxParallelReads", 8);
+    startExecutor("Aggregation.nthreads", (exec, n) -> Aggregation.setExecutor(exec, aggMaxParallelReads));
+
     ////////////////////////////////////////////////////////////////
     // Disk Caching
     String dir;
@@ -396,6 +410,51 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
       startupLog.info("TdsInit: GribCdmIndex.initDefaultCollectionCache= [" + min + "," + max + "] scour = " + secs);
     }
 
+    // PartitionCache: component collections of partitions with their open data files, default is off
+    max = ThreddsConfig.getInt("PartitionCache.maxPartitions", 0);
+    secs = ThreddsConfig.getSeconds("PartitionCache.scour", 10 * 60);
+    if (max > 0) {
+      GribCdmIndex.initPartitionCache(max, secs);
+      startupLog.info("TdsInit: GribCdmIndex.initPartitionCache maxPartitions= " + max + " scour = " + secs);
+    }
+
+    // DatasetManager: GridDataset and CoverageCollection objects from plain files, default is off
+    min = ThreddsConfig.getInt("DatasetCache.minFiles", 0);
+    max = ThreddsConfig.getInt("DatasetCache.maxFiles", 0);
+    secs = ThreddsConfig.getSeconds("DatasetCache.scour", 14 * 60);
+    if (max > 0) {
+      DatasetManager.initDatasetCache(min, max, secs);
+      startupLog.info("TdsInit: DatasetManager.initDatasetCache= [" + min + "," + max + "] scour = " + secs);
+    }
+
+    // thread pools for reading in parallel, all off by default; see "Parallel Reading" in ThreddsConfigRef
+    startExecutor("GribIndex.nthreads", (exec, n) -> GribCdmIndex.setGbxIndexExecutor(exec, 4 * n));
+    int gribRecordsPerTask = ThreddsConfig.getInt("GribDataReader.recordsPerTask", 8);
+    startExecutor("GribDataReader.nthreads", (exec, n) -> GribDataReader.setExecutor(exec, gribRecordsPerTask));
+    int bufrMessagesPerTask = ThreddsConfig.getInt("BufrIosp.messagesPerTask", 16);
+    startExecutor("BufrIosp.nthreads", (exec, n) -> BufrIosp2.setExecutor(exec, bufrMessagesPerTask));
+    int enhanceMinSize = ThreddsConfig.getInt("Enhance.minParallelSize", 1000 * 1000);
+    startExecutor("Enhance.nthreads", (exec, n) -> NetcdfDataset.setEnhanceExecutor(exec, enhanceMinSize));
+    int h5ChunksAhead = ThreddsConfig.getInt("H5iosp.chunksAhead", 16);
+    startExecutor("H5iosp.nthreads", (exec, n) -> H5iosp.setChunkExecutor(exec, h5ChunksAhead));
+
+    // GribDataCache: keep decoded GRIB records in memory, default is off
+    long gribDataCacheBytes = ThreddsConfig.getBytes("GribDataCache.maxSize", 0);
+    if (gribDataCacheBytes > 0) {
+      GribDataCache.init(gribDataCacheBytes);
+      startupLog.info("TdsInit: GribDataCache maxSize= " + gribDataCacheBytes);
+    }
+
+    // HTTPBlockCache: keep blocks of remote files read over HTTP in memory, default is off
+    long httpCacheBytes = ThreddsConfig.getBytes("HTTPBlockCache.maxSize", 0);
+    if (httpCacheBytes > 0) {
+      int httpBlockSize = (int) ThreddsConfig.getBytes("HTTPBlockCache.blockSize", HTTPBlockCache.defaultBlockSize);
+      HTTPBlockCache.init(httpCacheBytes, httpBlockSize);
+      startupLog.info("TdsInit: HTTPBlockCache maxSize= " + httpCacheBytes + " blockSize= " + httpBlockSize);
+      int prefetchBlocks = ThreddsConfig.getInt("HTTPBlockCache.prefetchBlocks", 4);
+      startExecutor("HTTPBlockCache.prefetchThreads", (exec, n) -> HTTPBlockCache.setPrefetch(exec, prefetchBlocks));
+    }
+
     //RandomAccessFile.enableDefaultGlobalFileCache();
     //RandomAccessFile.setDebugLeaks(true);
 
@@ -414,6 +473,11 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
     }
     configCatalogInitializer.setTrackerDir(trackerDir);
     configCatalogInitializer.setMaxDatasetToTrack(trackerMax);
+    int catalogThreads = ThreddsConfig.getInt("ConfigCatalog.nthreads", 1);
+    if (catalogThreads > 1) {
+      configCatalogInitializer.setNumberOfThreads(catalogThreads);
+      startupLog.info("TdsInit: ConfigCatalogInitialization nthreads= " + catalogThreads);
+    }
 
     // Jupyter notebook service cache
     if (allowedServices.isAllowed(StandardService.jupyterNotebook)) {
@@ -423,6 +487,22 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
     }
   }
 
+  /*
+   * If threddsConfig.xml sets nthreadsKey > 0, make a thread pool of that size and hand it to a library with
+   * setExecutor.accept(pool, nthreads). On shutdown, setExecutor.accept(null, nthreads) is called, then the pool is stopped.
+   */
+  private void startExecutor(String nthreadsKey, ObjIntConsumer<Executor> setExecutor) {
+    int nthreads = ThreddsConfig.getInt(nthreadsKey, 0);
+    if (nthreads <= 0) return;
+    ExecutorService exec = Executors.newFixedThreadPool(nthreads);
+    setExecutor.accept(exec, nthreads);
+    executorShutdowns.add(() -> {
+      setExecutor.accept(null, nthreads);
+      exec.shutdownNow();
+    });
+    startupLog.info("TdsInit: " + nthreadsKey + "= " + nthreads);
+  }
+
   static private class CacheScourTask extends TimerTask {
     long maxBytes;
 
@@ -461,6 +541,11 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
     DiskCache2.exit();                // this handles background threads for all instances of DiskCache2
     thredds.inventory.bdb.MetadataManager.closeAll();
     executor.shutdownNow();
+    for (Runnable shutdown : executorShutdowns)
+      shutdown.run();
+    executorShutdowns.clear();
+    GribDataCache.shutdown();
+    HTTPBlockCache.shutdown();
 
     /* try {
       catalogWatcher.close();
@@ -475,6 +560,7 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
 
     // memory caches
     GribCdmIndex.shutdown();
+    DatasetManager.shutdown();
     datasetManager.setDatasetTracker(null); // closes the existing tracker
 
     collectionUpdater.shutdown();
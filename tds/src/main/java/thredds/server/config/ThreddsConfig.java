@@ -73,4 +73,9 @@ public final class ThreddsConfig {
     return reader.getRootList(elementName);
   }
 
+  static public List<String> getElementList(String elementName, String subElementName) {
+    if (reader == null) return new ArrayList<>(0);
+    return reader.getElementList(elementName, subElementName);
+  }
+
 }
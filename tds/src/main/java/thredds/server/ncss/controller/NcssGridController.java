@@ -109,9 +109,6 @@ public class NcssGridController extends AbstractNcssController {
                 "Grid requests with vertCoord must have variables with same vertical levels.");
       }
 
-    String responseFile = getResponseFileName(datasetPath, version);
-    File netcdfResult = makeCFNetcdfFile(gcd, responseFile, params, version);
-
     // filename download attachment
     String suffix = version.getSuffix();
     int pos = datasetPath.lastIndexOf("/");
@@ -125,6 +122,24 @@ public class NcssGridController extends AbstractNcssController {
     httpHeaders.set(ContentType.HEADER, sf.getMimeType());
     httpHeaders.set(Constants.Content_Disposition, Constants.setContentDispositionValue(filename));
 
+    SubsetParams subset = params.makeSubset(gcd);
+    checkSize(gcd, subset, params, version);
+
+    if (version == NetcdfFileWriter.Version.netcdf3) {
+      // netcdf-3 is written directly to the response, no content length
+      setResponseHeaders(res, httpHeaders);
+      res.setStatus(HttpServletResponse.SC_OK);
+      Optional<Long> estimatedSizeo = CFGridCoverageWriter2.writeToStream(
+              gcd, params.getVar(), subset, params.isAddLatLon(), res.getOutputStream());
+      if (!estimatedSizeo.isPresent())
+        throw new InvalidRangeException("Request contains no data: " + estimatedSizeo.getErrorMessage());
+      res.flushBuffer();
+      return;
+    }
+
+    String responseFile = getResponseFileName(datasetPath, version);
+    File netcdfResult = makeCFNetcdfFile(gcd, responseFile, params, subset, version);
+
     // set content length
     httpHeaders.set(Constants.Content_Length, Constants.getContentLengthValue(netcdfResult));
 
@@ -136,11 +151,9 @@ public class NcssGridController extends AbstractNcssController {
     res.setStatus(HttpServletResponse.SC_OK);
   }
 
-  private File makeCFNetcdfFile(CoverageCollection gcd, String responseFilename, NcssGridParamsBean params,
+  // Test maxFileDownloadSize
+  private void checkSize(CoverageCollection gcd, SubsetParams subset, NcssGridParamsBean params,
           NetcdfFileWriter.Version version) throws InvalidRangeException, IOException {
-    SubsetParams subset = params.makeSubset(gcd);
-
-    // Test maxFileDownloadSize
     long maxFileDownloadSize = ThreddsConfig.getBytes("NetcdfSubsetService.maxFileDownloadSize", -1L);
     if (maxFileDownloadSize > 0) {
       Optional<Long> estimatedSizeo = CFGridCoverageWriter2.writeOrTestSize(
@@ -156,7 +169,10 @@ public class NcssGridController extends AbstractNcssController {
         throw new RequestTooLargeException(
                 "NCSS response too large = " + estimatedSize + " max = " + maxFileDownloadSize);
     }
+  }
 
+  private File makeCFNetcdfFile(CoverageCollection gcd, String responseFilename, NcssGridParamsBean params,
+          SubsetParams subset, NetcdfFileWriter.Version version) throws InvalidRangeException, IOException {
     // write the file
     NetcdfFileWriter writer = NetcdfFileWriter.createNew(
             version, responseFilename, null);  // default chunking - let user control at some point
@@ -11,12 +11,19 @@ import ucar.nc2.*;
 
 import opendap.servers.*;
 import opendap.dap.BaseType;
+import opendap.dap.BytePrimitiveVector;
 import opendap.dap.DArrayDimension;
+import opendap.dap.Float32PrimitiveVector;
+import opendap.dap.Float64PrimitiveVector;
+import opendap.dap.Int16PrimitiveVector;
+import opendap.dap.Int32PrimitiveVector;
+import opendap.dap.NoSuchVariableException;
 import opendap.dap.PrimitiveVector;
 
 import java.io.IOException;
 import java.io.EOFException;
 import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,6 +38,20 @@ public class NcSDArray extends SDArray implements HasNetcdfVariable {
   static private org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(NcSDArray.class);
 
   private static final boolean debug = false, debugRead = false;
+
+  // max bytes of data read and written at once, when streaming
+  static private int slabSize = 8 * 1000 * 1000;
+
+  /**
+   * Set the maximum amount of data held in memory when serializing a numeric array.
+   * The array is read and written in slabs along its outer dimension, each no bigger than this (but at least one row).
+   *
+   * @param bytes max slab size in bytes
+   */
+  static public void setSlabSize(int bytes) {
+    if (bytes > 0) slabSize = bytes;
+  }
+
   private Variable ncVar = null;
   //ignore protected BaseType elemType;
 
@@ -174,6 +195,128 @@ public class NcSDArray extends SDArray implements HasNetcdfVariable {
     setRead(true);
   }
 
+  /**
+   * Write the data for the constrained array to the sink.
+   * Unless the data has already been read, numeric arrays are streamed: the requested section is read in slabs
+   * along the outer dimension, and each slab is written as one block of big endian bytes.
+   * So the memory used is bounded by the slab size, not the size of the request.
+   */
+  @Override
+  public void serialize(String dataset, DataOutputStream sink, CEEvaluator ce, Object specialO)
+          throws NoSuchVariableException, DAP2ServerSideException, IOException {
+    int wireSize = getWireSize(getPrimitiveVector());
+    if (isRead() || wireSize == 0) {
+      super.serialize(dataset, sink, ce, specialO);
+      return;
+    }
+    if (!ce.evalClauses(specialO))
+      return;
+
+    long tstart = System.currentTimeMillis();
+    try {
+      int n = numDimensions();
+      List<Range> ranges = new ArrayList<>(n);
+      for (int i = 0; i < n; i++)
+        ranges.add(new Range(getStart(i), getStop(i), getStride(i)));
+
+      long size = new Section(ranges).computeSize();
+      if (size > Integer.MAX_VALUE)
+        throw new IllegalStateException("NcSDArray too many elements = " + size + " for request= " + getRequestedRange());
+
+      // Because both XDR and OPeNDAP read the length, we must write it twice (see SDArray.serialize)
+      sink.writeInt((int) size);
+      sink.writeInt((int) size);
+      if (size == 0) return;
+
+      Range outer = ranges.get(0);
+      long rowSize = size / outer.length(); // elements per outer index
+      int rowsPerSlab = (int) Math.max(1, Math.min(outer.length(), slabSize / (rowSize * wireSize)));
+      ByteBuffer bb = (wireSize == 1) ? null : ByteBuffer.allocate((int) (rowsPerSlab * rowSize * wireSize)); // big endian
+
+      for (int row = 0; row < outer.length(); row += rowsPerSlab) {
+        int nrows = Math.min(rowsPerSlab, outer.length() - row);
+        ranges.set(0, new Range(outer.getName(), outer.element(row), outer.element(row + nrows - 1), outer.stride()));
+        Array slab;
+        try {
+          slab = ncVar.read(ranges);
+        } catch (java.lang.ArrayIndexOutOfBoundsException t) {
+          log.error(getRequestedRange(), t);
+          throw new RuntimeException("NcSDArray java.lang.ArrayIndexOutOfBoundsException=" + t.getMessage() +
+              " for request= " + getRequestedRange() + " dataset= " + dataset, t);
+        }
+        writeSlab(sink, slab, bb);
+      }
+
+      // bytes are padded out to a multiple of four (see BytePrimitiveVector.externalize)
+      if (wireSize == 1) {
+        for (int i = 0; i < (4 - size % 4) % 4; i++)
+          sink.writeByte(0);
+      }
+
+    } catch (InvalidDimensionException e) {
+      log.error(getRequestedRange(), e);
+      throw new IllegalStateException("NcSDArray InvalidDimensionException=" + e.getMessage());
+
+    } catch (InvalidRangeException e) {
+      log.error(getRequestedRange(), e);
+      throw new IllegalStateException("NcSDArray InvalidRangeException=" + e.getMessage());
+    }
+
+    if (log.isDebugEnabled()) {
+      long tookTime = System.currentTimeMillis() - tstart;
+      log.debug("NcSDArray stream " + getEncodedName() + ": " + tookTime * .001 + " seconds");
+    }
+  }
+
+  // number of bytes each element takes on the wire, or 0 if the array is not streamed
+  private int getWireSize(PrimitiveVector pv) {
+    if (pv instanceof Float64PrimitiveVector) return 8;
+    if (pv instanceof Float32PrimitiveVector) return 4;
+    if (pv instanceof Int32PrimitiveVector) return 4;   // includes UInt32
+    if (pv instanceof Int16PrimitiveVector) return 4;   // includes UInt16, which are sent as 32 bit ints
+    if (pv instanceof BytePrimitiveVector) return 1;
+    return 0;
+  }
+
+  // convert the slab to XDR (big endian) in bb, then write it in one block
+  private void writeSlab(DataOutputStream sink, Array slab, ByteBuffer bb) throws IOException {
+    Object pa = slab.get1DJavaArray(slab.getDataType());
+    if (pa instanceof byte[]) {
+      byte[] vals = (byte[]) pa;
+      sink.write(vals, 0, vals.length);
+      return;
+    }
+
+    bb.clear();
+    int nbytes;
+    if (pa instanceof double[]) {
+      double[] vals = (double[]) pa;
+      bb.asDoubleBuffer().put(vals);
+      nbytes = 8 * vals.length;
+
+    } else if (pa instanceof float[]) {
+      float[] vals = (float[]) pa;
+      bb.asFloatBuffer().put(vals);
+      nbytes = 4 * vals.length;
+
+    } else if (pa instanceof int[]) {
+      int[] vals = (int[]) pa;
+      bb.asIntBuffer().put(vals);
+      nbytes = 4 * vals.length;
+
+    } else if (pa instanceof short[]) {
+      short[] vals = (short[]) pa;
+      for (short val : vals)
+        bb.putInt(val);
+      nbytes = 4 * vals.length;
+
+    } else {
+      throw new IllegalStateException("NcSDArray cant stream " + slab.getDataType() + " for " + getRequestedRange());
+    }
+
+    sink.write(bb.array(), 0, nbytes);
+  }
+
   public void serialize(DataOutputStream sink, StructureData sdata, StructureMembers.Member m) throws IOException {
     long tstart = System.currentTimeMillis();
 
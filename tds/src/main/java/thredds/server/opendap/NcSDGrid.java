@@ -13,6 +13,7 @@ import opendap.dap.BaseType;
 import opendap.dap.NoSuchVariableException;
 import ucar.nc2.Variable;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -48,4 +49,14 @@ public class NcSDGrid extends SDGrid {
     setRead(true);
     return(false);
   }
+
+  /**
+   * Write the array and maps without reading them first; each NcSDArray streams its own data.
+   */
+  @Override
+  public void serialize(String dataset, DataOutputStream sink, CEEvaluator ce, Object specialO)
+          throws NoSuchVariableException, DAP2ServerSideException, IOException {
+    setRead(true);
+    super.serialize(dataset, sink, ce, specialO);
+  }
 }
@@ -0,0 +1,81 @@
+/* Copyright */
+package thredds.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.nc2.dt.GridDatatype;
+import ucar.nc2.dt.grid.GridDataset;
+import ucar.nc2.ft2.coverage.FeatureDatasetCoverage;
+import ucar.nc2.util.cache.FileCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * The DatasetManager datasetCache: a plain file opened twice is a hit, and a miss once the file has been touched.
+ */
+public class TestDatasetCache {
+  private static final String testFile = "../tds/src/test/content/thredds/public/testdata/2004050300_eta_211.nc";
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private FileCache cache;
+  private File file;
+
+  @Before
+  public void setup() throws IOException {
+    cache = new FileCache("TestDatasetCache", 0, 10, -1, 0);
+    file = new File(tempFolder.getRoot(), "eta_211.nc");
+    Files.copy(new File(testFile).toPath(), file.toPath());
+  }
+
+  @After
+  public void cleanup() {
+    cache.clearCache(true);
+  }
+
+  @Test
+  public void testGridDataset() throws IOException {
+    GridDataset first = DatasetManager.acquireGridDataset(cache, file.getPath());
+    first.close();  // back to the cache, with its file released
+
+    GridDataset second = DatasetManager.acquireGridDataset(cache, file.getPath());
+    Assert.assertSame(first, second);
+    GridDatatype grid = second.getGrids().get(0);
+    Array data = grid.readDataSlice(0, 0, -1, -1); // the file was reacquired
+    Assert.assertTrue(data.getSize() > 0);
+    second.close();
+
+    touch(file);
+    GridDataset third = DatasetManager.acquireGridDataset(cache, file.getPath());
+    Assert.assertNotSame(first, third);
+    third.close();
+  }
+
+  @Test
+  public void testCoverageDataset() throws IOException {
+    FeatureDatasetCoverage first = DatasetManager.acquireCoverageDataset(cache, file.getPath());
+    Assert.assertEquals(file.lastModified(), first.getLastModified());
+    first.getSingleCoverageCollection().close();  // closing the collection returns the dataset to the cache
+
+    FeatureDatasetCoverage second = DatasetManager.acquireCoverageDataset(cache, file.getPath());
+    Assert.assertSame(first, second);
+    second.close();
+
+    touch(file);
+    FeatureDatasetCoverage third = DatasetManager.acquireCoverageDataset(cache, file.getPath());
+    Assert.assertNotSame(first, third);
+    third.close();
+  }
+
+  private void touch(File file) {
+    Assert.assertTrue(file.setLastModified(file.lastModified() + 10 * 1000));
+  }
+}
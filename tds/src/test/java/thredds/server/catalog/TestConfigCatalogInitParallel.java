@@ -0,0 +1,82 @@
+/* Copyright */
+package thredds.server.catalog;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.core.AllowedServices;
+import thredds.core.ConfigCatalogInitialization;
+import thredds.core.ConfigCatalogInitialization.ReadMode;
+import thredds.server.catalog.tracker.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reading the config catalogs with a thread pool must give the same dataRoots and catalog ids as reading them serially,
+ * also when several catalogs declare the same dataRoot.
+ */
+public class TestConfigCatalogInitParallel {
+  private static final int ncats = 20;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testDuplicateDataRoots() throws IOException {
+    File content = makeContent();
+    Map<String, String> serial = read(content, 1);
+    Assert.assertEquals("/data/0/ from sub/cat0.xml", serial.get("dataRoot dup"));
+    Assert.assertEquals(1 + 2 * ncats, serial.keySet().stream().filter(k -> k.startsWith("catalog ")).count());
+
+    for (int trial = 0; trial < 5; trial++)
+      Assert.assertEquals(serial, read(content, 4));
+  }
+
+  // a root catalog referencing ncats catalogs, each referencing one more; all declare the dataRoot "dup"
+  private File makeContent() throws IOException {
+    File content = tempFolder.newFolder("content");
+    File sub = new File(content, "sub");
+    Assert.assertTrue(sub.mkdirs());
+
+    StringBuilder refs = new StringBuilder();
+    for (int i = 0; i < ncats; i++) {
+      refs.append(String.format("  <catalogRef xlink:href='sub/cat%d.xml' xlink:title='cat%d' name='cat%d'/>%n", i, i, i));
+      write(new File(sub, "cat" + i + ".xml"), String.format(
+              "  <datasetRoot path='dup' location='/data/%d/'/>%n" +
+              "  <datasetRoot path='own%d' location='/data/own%d/'/>%n" +
+              "  <catalogRef xlink:href='deep%d.xml' xlink:title='deep%d' name='deep%d'/>%n", i, i, i, i, i, i));
+      write(new File(sub, "deep" + i + ".xml"), String.format(
+              "  <datasetRoot path='dup' location='/data/deep%d/'/>%n", i));
+    }
+    write(new File(content, "catalog.xml"), refs.toString());
+    return content;
+  }
+
+  private void write(File file, String body) throws IOException {
+    String cat = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+            "<catalog name='" + file.getName() + "' xmlns='http://www.unidata.ucar.edu/namespaces/thredds/InvCatalog/v1.0'\n" +
+            "         xmlns:xlink='http://www.w3.org/1999/xlink' version='1.2'>\n" +
+            body + "</catalog>\n";
+    Files.write(file.toPath(), cat.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // the dataRoots and catalogs, as saved by the trackers
+  private Map<String, String> read(File content, int nthreads) throws IOException {
+    String trackerDir = tempFolder.newFolder().getPath();
+    new ConfigCatalogInitialization(ReadMode.always, content, trackerDir, new DatasetTrackerNoop(), new AllowedServices(),
+            new ConfigCatalogInitialization.StatCallback(ReadMode.always), -1, nthreads);
+
+    Map<String, String> result = new TreeMap<>();
+    for (DataRootExt root : new DataRootTracker(trackerDir, false, null).getDataRoots())
+      result.put("dataRoot " + root.getPath(), root.getDirLocation() + " from " + root.getCatLocation());
+    for (CatalogExt cat : new CatalogTracker(trackerDir, false, 0, 0).getCatalogs())
+      result.put("catalog " + cat.getCatRelLocation(), "id " + cat.getCatId());
+    return result;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.server.opendap;
+
+import opendap.servers.CEEvaluator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.constants.CDM;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * NcSDArray.serialize streams numeric arrays in slabs; it must write the same bytes as reading the whole array
+ * into the PrimitiveVector (setData) and externalizing it.
+ */
+public class TestNcSDArray {
+  private static final String[] varNames = {"b", "s", "us", "i", "f", "d"};
+  private static final DataType[] dataTypes = {DataType.BYTE, DataType.SHORT, DataType.SHORT, DataType.INT,
+          DataType.FLOAT, DataType.DOUBLE};
+
+  // start, stride, stop of the two dimensions; null for the whole (5, 7) array, 35 elements
+  private static final int[][] projections = {null, {0, 2, 4, 1, 3, 6}, {1, 1, 3, 0, 2, 6}};
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void resetSlabSize() {
+    NcSDArray.setSlabSize(8 * 1000 * 1000);
+  }
+
+  @Test
+  public void testSameAsExternalize() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFile.open(makeFile())) {
+      for (int slabSize : new int[]{20, 100, 8 * 1000 * 1000}) { // one row, a few rows, everything
+        NcSDArray.setSlabSize(slabSize);
+        for (String varName : varNames) {
+          for (int[] proj : projections) {
+            String what = varName + " " + Arrays.toString(proj) + " slabSize=" + slabSize;
+            Assert.assertArrayEquals(what, serialize(ncfile, varName, proj, false), serialize(ncfile, varName, proj, true));
+          }
+        }
+      }
+    }
+  }
+
+  private byte[] serialize(NetcdfFile ncfile, String varName, int[] proj, boolean stream) throws Exception {
+    NcDDS dds = new NcDDS("test", ncfile);
+    NcSDArray array = (NcSDArray) dds.getVariable(varName);
+    if (proj != null) {
+      array.setProjection(0, proj[0], proj[1], proj[2]);
+      array.setProjection(1, proj[3], proj[4], proj[5]);
+    }
+    if (!stream)
+      array.read("test", null); // calls setData, so serialize externalizes the PrimitiveVector
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      array.serialize("test", out, new CEEvaluator(dds), null);
+    }
+    Assert.assertEquals(!stream, array.isRead());
+    return bytes.toByteArray();
+  }
+
+  // one variable of each numeric type, with negative values; us is an unsigned short, with values over 32767
+  private String makeFile() throws Exception {
+    File file = new File(tempFolder.getRoot(), "arrays.nc");
+    NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, file.getPath());
+    writer.addDimension(null, "x", 5);
+    writer.addDimension(null, "y", 7);
+    for (int i = 0; i < varNames.length; i++)
+      writer.addVariable(null, varNames[i], dataTypes[i], "x y");
+    writer.addVariableAttribute("us", CDM.UNSIGNED, "true");
+    writer.create();
+
+    for (int i = 0; i < varNames.length; i++) {
+      Array data = Array.factory(dataTypes[i], new int[]{5, 7});
+      IndexIterator ii = data.getIndexIterator();
+      int count = 0;
+      while (ii.hasNext())
+        ii.setDoubleNext(count++ * 1500.25 - 5000);
+      writer.write(writer.findVariable(varNames[i]), data);
+    }
+    writer.close();
+    return file.getPath();
+  }
+}
@@ -0,0 +1,50 @@
+package ucar.unidata.util.test;
+
+import org.junit.Assert;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Run reads with a thread pool handed to the code under test, eg to GribDataReader.setExecutor().
+ */
+public class ParallelReads {
+    /**
+     * Hand a new thread pool to the code under test, run the read, then turn the pool off again.
+     *
+     * @param nthreads     size of the pool
+     * @param setExecutor  hands over the pool, eg {@code exec -> GribDataReader.setExecutor(exec, 1)};
+     *                     it is called again with null when the read is done
+     * @param read         the read to run
+     * @return the result of the read
+     */
+    public static <T> T withExecutor(int nthreads, Consumer<Executor> setExecutor, Callable<T> read) throws Exception {
+        ExecutorService exec = Executors.newFixedThreadPool(nthreads);
+        setExecutor.accept(exec);
+        try {
+            return read.call();
+        } finally {
+            setExecutor.accept(null);
+            exec.shutdownNow();
+        }
+    }
+
+    /**
+     * Asserts that a read gives equal results when run serially, and with a thread pool.
+     *
+     * @param nthreads     size of the pool
+     * @param setExecutor  see {@link #withExecutor}
+     * @param read         the read to run twice; its result must implement equals()
+     * @return the serial result
+     */
+    public static <T> T assertSameAsSerial(int nthreads, Consumer<Executor> setExecutor, Callable<T> read)
+            throws Exception {
+        T serial = read.call();
+        T parallel = withExecutor(nthreads, setExecutor, read);
+        Assert.assertEquals(serial, parallel);
+        return serial;
+    }
+}
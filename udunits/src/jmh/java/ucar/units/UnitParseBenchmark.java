@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.units;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse the unit strings typically found when opening a dataset, from several threads at once.
+ * cached() goes through UnitFormat.parse(String), which uses the parsed unit cache and the pooled parsers;
+ * shared() parses every string on the singleton parser while holding a lock, as parse(String) used to.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class UnitParseBenchmark {
+  private static final String[] specs = {"m/s", "degrees_north", "degrees_east", "K", "Pa", "hPa", "kg m-2 s-1",
+          "kg m-2", "m2 s-2", "W m-2", "1", "percent", "hours since 2018-01-01T00:00:00Z", "days since 1970-01-01"};
+
+  private static final Object lock = new Object();
+
+  private UnitFormat format;
+  private UnitDB unitDB;
+
+  @State(Scope.Thread)
+  public static class Index {
+    int next;
+
+    String nextSpec() {
+      String spec = specs[next];
+      next = (next + 1) % specs.length;
+      return spec;
+    }
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    format = StandardUnitFormat.instance();
+    unitDB = UnitDBManager.instance();
+  }
+
+  @Benchmark
+  public void cached(Index index, Blackhole bh) throws Exception {
+    bh.consume(format.parse(index.nextSpec()));
+  }
+
+  @Benchmark
+  public void shared(Index index, Blackhole bh) throws Exception {
+    synchronized (lock) {
+      bh.consume(format.parse(index.nextSpec(), unitDB));
+    }
+  }
+}
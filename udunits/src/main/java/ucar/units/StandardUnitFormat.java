@@ -37,6 +37,20 @@ public final class
    */
   private static StandardUnitFormat _instance;
 
+  /**
+   * The parsers for specifications that aren't cached.  A fixed number, each
+   * used by one thread at a time, so that none is kept for every thread.
+   */
+  private static final class Parsers {
+    static final StandardUnitFormat[] pool =
+            new StandardUnitFormat[Math.min(Runtime.getRuntime().availableProcessors(), 8)];
+
+    static {
+      for (int i = 0; i < pool.length; i++)
+        pool[i] = new StandardUnitFormat();
+    }
+  }
+
   /**
    * The date formatter.
    *
@@ -88,6 +102,25 @@ public final class
   }
 
 
+  /**
+   * Parses a unit specification on one of a few parsers, chosen by thread,
+   * so that concurrent calls don't all serialize on a shared parser.
+   */
+  @Override
+  protected Unit parseUncached(String spec, UnitDB unitDB)
+          throws UnitParseException,
+          SpecificationException,
+          UnitDBException,
+          PrefixDBException,
+          UnitSystemException {
+    StandardUnitFormat parser =
+            Parsers.pool[(int) (Thread.currentThread().getId() % Parsers.pool.length)];
+    synchronized (parser) {
+      return parser.parse(spec, unitDB);
+    }
+  }
+
+
   /**
    * Indicates if a unit is a time unit.
    *
@@ -4,11 +4,15 @@
  */
 package ucar.units;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Provides support for classes that parse and format unit specifications.
  *
- * Instances are thread-safe.
+ * Instances are thread-safe. Successfully parsed specifications are kept in a
+ * bounded cache that is shared by all threads, so that the same unit string
+ * (e.g. "degrees_north") is only parsed once per unit database.
  * 
  * @author Steven R. Emmerson
  */
@@ -18,7 +22,39 @@ public abstract class UnitFormatImpl implements UnitFormat {
 	private static Object		MUTEX				= new Object();
 
 	/**
-	 * Parses a unit specification.  This method is thread-safe.
+	 * The maximum number of parsed specifications in the cache. When the cache
+	 * is full it's cleared rather than evicting single entries: the number of
+	 * distinct unit strings in practice is small.
+	 */
+	static final int			MAX_CACHED			= 1000;
+
+	/**
+	 * The cache of parsed units, keyed by unit specification.
+	 */
+	private static final ConcurrentMap<String, ParsedUnit>	cache	= new ConcurrentHashMap<>();
+
+	/**
+	 * A cache entry. Units are immutable, so they may be shared between
+	 * threads. An entry is only valid for the format class and unit database
+	 * that produced it.
+	 */
+	private static final class ParsedUnit {
+		final Class<?>	formatClass;
+		final UnitDB	unitDB;
+		final Unit		unit;
+
+		ParsedUnit(final Class<?> formatClass, final UnitDB unitDB,
+				final Unit unit) {
+			this.formatClass = formatClass;
+			this.unitDB = unitDB;
+			this.unit = unit;
+		}
+	}
+
+	/**
+	 * Parses a unit specification.  This method is thread-safe. Previously
+	 * parsed specifications are returned from the cache; others are parsed by
+	 * {@link #parseUncached(String, UnitDB)} and then cached.
 	 * 
 	 * @param spec
 	 *            The unit specification (e.g. "m/s");
@@ -40,11 +76,65 @@ public abstract class UnitFormatImpl implements UnitFormat {
 	public final Unit parse(final String spec) throws NoSuchUnitException,
 			UnitParseException, SpecificationException, UnitDBException,
 			PrefixDBException, UnitSystemException {
+		final UnitDB unitDB = UnitDBManager.instance();
+		if (spec == null) {
+			return parseUncached(spec, unitDB);
+		}
+		final ParsedUnit cached = cache.get(spec);
+		if (cached != null && cached.formatClass == getClass()
+				&& cached.unitDB == unitDB) {
+			return cached.unit;
+		}
+		final Unit unit = parseUncached(spec, unitDB);
+		if (cache.size() >= MAX_CACHED) {
+			cache.clear();
+		}
+		cache.put(spec, new ParsedUnit(getClass(), unitDB, unit));
+		return unit;
+	}
+
+	/**
+	 * Parses a unit specification that isn't in the cache. This method must be
+	 * thread-safe. The default implementation serializes all calls to
+	 * {@link #parse(String, UnitDB)}; subclasses whose parser isn't shared
+	 * between threads may override it.
+	 * 
+	 * @param spec
+	 *            The unit specification (e.g. "m/s");
+	 * @param unitDB
+	 *            The unit database to use.
+	 * @return The unit corresponding to the specification.
+	 * @throws NoSuchUnitException
+	 *             A unit in the specification couldn't be found.
+	 * @throws UnitParseException
+	 *             The specification is grammatically incorrect.
+	 * @throws SpecificationException
+	 *             The specification is incorrect somehow.
+	 * @throws UnitDBException
+	 *             Problem with the unit database.
+	 * @throws PrefixDBException
+	 *             Problem with the unit-prefix database.
+	 * @throws UnitSystemException
+	 *             Problem with the system of units.
+	 */
+	protected Unit parseUncached(final String spec, final UnitDB unitDB)
+			throws NoSuchUnitException, UnitParseException,
+			SpecificationException, UnitDBException, PrefixDBException,
+			UnitSystemException {
 		synchronized (MUTEX) {
-			return parse(spec, UnitDBManager.instance());
+			return parse(spec, unitDB);
 		}
 	}
 
+	/**
+	 * Clears the cache of parsed units. Call this after units have been added
+	 * to the unit database, so that specifications that were parsed into
+	 * unknown units are parsed again.
+	 */
+	public static void clearCache() {
+		cache.clear();
+	}
+
 	/**
 	 * Formats a Factor (a base unit/exponent pair).
 	 * 
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.units;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The parsed unit cache of UnitFormatImpl and the pooled parsers of StandardUnitFormat.
+ */
+@RunWith(JUnit4.class)
+public class TestUnitFormatCache {
+  private static final String[] specs = {"m/s", "degrees_north", "K", "hPa", "kg m-2 s-1", "days since 1970-01-01",
+          "hours since 2018-01-01T00:00:00Z", "1.e-3", "mbar", "ft/s", "W m-2", "celsius"};
+
+  @Test
+  public void testCachedUnitIsSame() throws Exception {
+    UnitFormat format = StandardUnitFormat.instance();
+    for (String spec : specs) {
+      Unit unit = format.parse(spec);
+      Assert.assertSame(spec, unit, format.parse(spec));
+      Assert.assertEquals(spec, unit, format.parse(spec, UnitDBManager.instance()));
+    }
+  }
+
+  @Test
+  public void testClearCache() throws Exception {
+    UnitFormat format = StandardUnitFormat.instance();
+    Unit unit = format.parse("m/s");
+    UnitFormatImpl.clearCache();
+    Unit again = format.parse("m/s");
+    Assert.assertEquals(unit, again);
+  }
+
+  @Test(expected = UnitParseException.class)
+  public void testBadSpecNotCached() throws Exception {
+    UnitFormat format = StandardUnitFormat.instance();
+    try {
+      format.parse("m/s)");
+      Assert.fail();
+    } catch (UnitParseException e) {
+      // expected
+    }
+    format.parse("m/s)");
+  }
+
+  @Test
+  public void testConcurrentParse() throws Exception {
+    final UnitFormat format = StandardUnitFormat.instance();
+    final List<Unit> expected = new ArrayList<>();
+    for (String spec : specs)
+      expected.add(format.parse(spec, UnitDBManager.instance()));
+
+    ExecutorService exec = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 32; t++) {
+        final int offset = t;
+        results.add(exec.submit(new Callable<Boolean>() {
+          public Boolean call() throws Exception {
+            for (int i = 0; i < 200; i++) {
+              int which = (i + offset) % specs.length;
+              if (i % 50 == 0)
+                UnitFormatImpl.clearCache();
+              if (!expected.get(which).equals(format.parse(specs[which])))
+                return false;
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> result : results)
+        Assert.assertTrue(result.get());
+    } finally {
+      exec.shutdown();
+    }
+  }
+}